@@ -2,6 +2,11 @@ package com.wafflemkr.points.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Properties specific to Points.
  * <p>
@@ -11,4 +16,981 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final SearchIndexing searchIndexing = new SearchIndexing();
+
+    private final CsvImport csvImport = new CsvImport();
+
+    private final Cache cache = new Cache();
+
+    private final Security security = new Security();
+
+    private final Audit audit = new Audit();
+
+    private final Mail mail = new Mail();
+
+    private final Websocket websocket = new Websocket();
+
+    private final Metrics metrics = new Metrics();
+
+    private final Scheduling scheduling = new Scheduling();
+
+    public SearchIndexing getSearchIndexing() {
+        return searchIndexing;
+    }
+
+    public CsvImport getCsvImport() {
+        return csvImport;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Security getSecurity() {
+        return security;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public Mail getMail() {
+        return mail;
+    }
+
+    public Websocket getWebsocket() {
+        return websocket;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Scheduling getScheduling() {
+        return scheduling;
+    }
+
+    public static class SearchIndexing {
+
+        /**
+         * Delay between two flushes of the indexing outbox, in milliseconds.
+         */
+        private long flushInterval = 1000;
+
+        /**
+         * Maximum number of outbox entries processed in a single transaction.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Time after which a flush stops processing batches, in milliseconds; the rest of the outbox waits for the
+         * next flush.
+         */
+        private long flushTimeBudget = 10000;
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushTimeBudget() {
+            return flushTimeBudget;
+        }
+
+        public void setFlushTimeBudget(long flushTimeBudget) {
+            this.flushTimeBudget = flushTimeBudget;
+        }
+    }
+
+    public static class CsvImport {
+
+        /**
+         * Number of rows written in a single transaction.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Number of imports running at once, on their own threads.
+         */
+        private int threads = 2;
+
+        /**
+         * Number of imports waiting for a thread, beyond which new imports are rejected with a 429.
+         */
+        private int queueCapacity = 10;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Security {
+
+        /**
+         * Maximum number of validated JWT tokens kept in memory, so their signature is only checked once.
+         */
+        private int tokenCacheSize = 10000;
+
+        /**
+         * Validity of the access tokens, in seconds. Refresh tokens use the jhipster.security.authentication.jwt
+         * validities.
+         */
+        private long accessTokenValidityInSeconds = 900;
+
+        /**
+         * Number of revoked tokens the in-memory revocation list is sized for.
+         */
+        private int revocationExpectedTokens = 100000;
+
+        /**
+         * Delay between two synchronizations of the revocation list with the database, in milliseconds.
+         */
+        private long revocationSyncInterval = 10000;
+
+        /**
+         * BCrypt cost of the password hashes. Passwords hashed with another cost are hashed again when their
+         * users log in.
+         */
+        private int passwordHashCost = 10;
+
+        /**
+         * Number of threads hashing the passwords of authentications. Hashing is CPU bound.
+         */
+        private int passwordHashThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Number of authentications waiting for a hashing thread, beyond which they are rejected.
+         */
+        private int passwordHashQueueCapacity = 100;
+
+        public int getTokenCacheSize() {
+            return tokenCacheSize;
+        }
+
+        public void setTokenCacheSize(int tokenCacheSize) {
+            this.tokenCacheSize = tokenCacheSize;
+        }
+
+        public long getAccessTokenValidityInSeconds() {
+            return accessTokenValidityInSeconds;
+        }
+
+        public void setAccessTokenValidityInSeconds(long accessTokenValidityInSeconds) {
+            this.accessTokenValidityInSeconds = accessTokenValidityInSeconds;
+        }
+
+        public int getRevocationExpectedTokens() {
+            return revocationExpectedTokens;
+        }
+
+        public void setRevocationExpectedTokens(int revocationExpectedTokens) {
+            this.revocationExpectedTokens = revocationExpectedTokens;
+        }
+
+        public long getRevocationSyncInterval() {
+            return revocationSyncInterval;
+        }
+
+        public void setRevocationSyncInterval(long revocationSyncInterval) {
+            this.revocationSyncInterval = revocationSyncInterval;
+        }
+
+        public int getPasswordHashCost() {
+            return passwordHashCost;
+        }
+
+        public void setPasswordHashCost(int passwordHashCost) {
+            this.passwordHashCost = passwordHashCost;
+        }
+
+        public int getPasswordHashThreads() {
+            return passwordHashThreads;
+        }
+
+        public void setPasswordHashThreads(int passwordHashThreads) {
+            this.passwordHashThreads = passwordHashThreads;
+        }
+
+        public int getPasswordHashQueueCapacity() {
+            return passwordHashQueueCapacity;
+        }
+
+        public void setPasswordHashQueueCapacity(int passwordHashQueueCapacity) {
+            this.passwordHashQueueCapacity = passwordHashQueueCapacity;
+        }
+    }
+
+    public static class Audit {
+
+        /**
+         * Maximum number of audit events waiting to be written, beyond which new events are dropped.
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * Delay between two writes of the waiting audit events, in milliseconds.
+         */
+        private long flushInterval = 1000;
+
+        /**
+         * Maximum number of audit events written in a single transaction.
+         */
+        private int batchSize = 100;
+
+        /**
+         * Number of months the audit events are kept, beyond the current one.
+         */
+        private int retentionMonths = 12;
+
+        /**
+         * Number of months ahead for which partitions are created, on databases partitioning the audit events.
+         */
+        private int partitionsAhead = 2;
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getRetentionMonths() {
+            return retentionMonths;
+        }
+
+        public void setRetentionMonths(int retentionMonths) {
+            this.retentionMonths = retentionMonths;
+        }
+
+        public int getPartitionsAhead() {
+            return partitionsAhead;
+        }
+
+        public void setPartitionsAhead(int partitionsAhead) {
+            this.partitionsAhead = partitionsAhead;
+        }
+    }
+
+    public static class Mail {
+
+        /**
+         * Delay between two deliveries of the waiting emails, in milliseconds.
+         */
+        private long pollInterval = 5000;
+
+        /**
+         * Maximum number of emails claimed by a single delivery.
+         */
+        private int batchSize = 50;
+
+        /**
+         * Number of threads sending emails, each over its own SMTP connection.
+         */
+        private int deliveryThreads = 2;
+
+        /**
+         * Maximum number of emails sent to the same domain per minute; the others wait for the next deliveries.
+         */
+        private int domainRateLimit = 60;
+
+        /**
+         * Number of attempts to send an email, after which it is marked as failed.
+         */
+        private int maxAttempts = 8;
+
+        /**
+         * Delay before retrying an email after its first failure, in milliseconds; it doubles on each failure.
+         */
+        private long retryInitialInterval = 60000;
+
+        /**
+         * Maximum delay between two attempts to send an email, in milliseconds.
+         */
+        private long retryMaxInterval = 3600000;
+
+        /**
+         * Time during which claimed emails are not claimed again, in milliseconds, in case the node sending them
+         * stops before recording the result.
+         */
+        private long claimTimeout = 300000;
+
+        /**
+         * Maximum time a delivery waits for its emails to be sent, in milliseconds; it must stay well under the
+         * claim timeout. The results of the emails sent later are recorded when their sends complete.
+         */
+        private long deliveryTimeout = 60000;
+
+        public long getPollInterval() {
+            return pollInterval;
+        }
+
+        public void setPollInterval(long pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getDeliveryThreads() {
+            return deliveryThreads;
+        }
+
+        public void setDeliveryThreads(int deliveryThreads) {
+            this.deliveryThreads = deliveryThreads;
+        }
+
+        public int getDomainRateLimit() {
+            return domainRateLimit;
+        }
+
+        public void setDomainRateLimit(int domainRateLimit) {
+            this.domainRateLimit = domainRateLimit;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getRetryInitialInterval() {
+            return retryInitialInterval;
+        }
+
+        public void setRetryInitialInterval(long retryInitialInterval) {
+            this.retryInitialInterval = retryInitialInterval;
+        }
+
+        public long getRetryMaxInterval() {
+            return retryMaxInterval;
+        }
+
+        public void setRetryMaxInterval(long retryMaxInterval) {
+            this.retryMaxInterval = retryMaxInterval;
+        }
+
+        public long getClaimTimeout() {
+            return claimTimeout;
+        }
+
+        public void setClaimTimeout(long claimTimeout) {
+            this.claimTimeout = claimTimeout;
+        }
+
+        public long getDeliveryTimeout() {
+            return deliveryTimeout;
+        }
+
+        public void setDeliveryTimeout(long deliveryTimeout) {
+            this.deliveryTimeout = deliveryTimeout;
+        }
+    }
+
+    public static class Scheduling {
+
+        /**
+         * Number of threads running the scheduled jobs, so that a slow job does not delay the others.
+         */
+        private int poolSize = 8;
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+    }
+
+    public static class Websocket {
+
+        public enum Broker {
+            /**
+             * In-memory broker, only reaching the sessions of the same node.
+             */
+            SIMPLE,
+            /**
+             * Relay to an external STOMP broker, such as RabbitMQ or ActiveMQ, shared by all the nodes.
+             */
+            RELAY
+        }
+
+        private Broker broker = Broker.SIMPLE;
+
+        private final Relay relay = new Relay();
+
+        /**
+         * Threads handling the messages received from the clients.
+         */
+        private final Channel inboundChannel = new Channel();
+
+        /**
+         * Threads handling the messages of the in-memory broker, which fans them out to the subscribed sessions.
+         */
+        private final Channel brokerChannel = new Channel();
+
+        /**
+         * Threads writing the messages to the clients.
+         */
+        private final Channel outboundChannel = new Channel();
+
+        /**
+         * Maximum time spent sending a message to a client, in milliseconds, beyond which the session is closed.
+         */
+        private int sendTimeLimit = 10000;
+
+        /**
+         * Maximum number of bytes buffered for a client which is slow to read them, beyond which the session is
+         * closed.
+         */
+        private int sendBufferSizeLimit = 512 * 1024;
+
+        /**
+         * Maximum size of a message received from a client, in bytes.
+         */
+        private int messageSizeLimit = 64 * 1024;
+
+        /**
+         * Interval between two snapshots of the user activities sent to the admin tracker, in milliseconds.
+         */
+        private long trackerTick = 2000;
+
+        public Broker getBroker() {
+            return broker;
+        }
+
+        public void setBroker(Broker broker) {
+            this.broker = broker;
+        }
+
+        public Relay getRelay() {
+            return relay;
+        }
+
+        public Channel getInboundChannel() {
+            return inboundChannel;
+        }
+
+        public Channel getBrokerChannel() {
+            return brokerChannel;
+        }
+
+        public Channel getOutboundChannel() {
+            return outboundChannel;
+        }
+
+        public int getSendTimeLimit() {
+            return sendTimeLimit;
+        }
+
+        public void setSendTimeLimit(int sendTimeLimit) {
+            this.sendTimeLimit = sendTimeLimit;
+        }
+
+        public int getSendBufferSizeLimit() {
+            return sendBufferSizeLimit;
+        }
+
+        public void setSendBufferSizeLimit(int sendBufferSizeLimit) {
+            this.sendBufferSizeLimit = sendBufferSizeLimit;
+        }
+
+        public int getMessageSizeLimit() {
+            return messageSizeLimit;
+        }
+
+        public void setMessageSizeLimit(int messageSizeLimit) {
+            this.messageSizeLimit = messageSizeLimit;
+        }
+
+        public long getTrackerTick() {
+            return trackerTick;
+        }
+
+        public void setTrackerTick(long trackerTick) {
+            this.trackerTick = trackerTick;
+        }
+
+        public static class Relay {
+
+            private String host = "localhost";
+
+            private int port = 61613;
+
+            /**
+             * Credentials of the connections opened for the clients.
+             */
+            private String clientLogin = "guest";
+
+            private String clientPasscode = "guest";
+
+            /**
+             * Credentials of the shared connection used by the application itself.
+             */
+            private String systemLogin = "guest";
+
+            private String systemPasscode = "guest";
+
+            private String virtualHost;
+
+            public String getHost() {
+                return host;
+            }
+
+            public void setHost(String host) {
+                this.host = host;
+            }
+
+            public int getPort() {
+                return port;
+            }
+
+            public void setPort(int port) {
+                this.port = port;
+            }
+
+            public String getClientLogin() {
+                return clientLogin;
+            }
+
+            public void setClientLogin(String clientLogin) {
+                this.clientLogin = clientLogin;
+            }
+
+            public String getClientPasscode() {
+                return clientPasscode;
+            }
+
+            public void setClientPasscode(String clientPasscode) {
+                this.clientPasscode = clientPasscode;
+            }
+
+            public String getSystemLogin() {
+                return systemLogin;
+            }
+
+            public void setSystemLogin(String systemLogin) {
+                this.systemLogin = systemLogin;
+            }
+
+            public String getSystemPasscode() {
+                return systemPasscode;
+            }
+
+            public void setSystemPasscode(String systemPasscode) {
+                this.systemPasscode = systemPasscode;
+            }
+
+            public String getVirtualHost() {
+                return virtualHost;
+            }
+
+            public void setVirtualHost(String virtualHost) {
+                this.virtualHost = virtualHost;
+            }
+        }
+
+        public static class Channel {
+
+            private int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+            /**
+             * Maximum number of messages waiting for a thread, beyond which new messages are dropped.
+             */
+            private int queueCapacity = 10000;
+
+            public int getPoolSize() {
+                return poolSize;
+            }
+
+            public void setPoolSize(int poolSize) {
+                this.poolSize = poolSize;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+        }
+    }
+
+    public static class Metrics {
+
+        /**
+         * Period over which the percentiles of the request latencies are computed, in seconds.
+         */
+        private int latencyWindow = 60;
+
+        /**
+         * Upper bounds of the buckets of the Prometheus request latency histograms, in seconds.
+         */
+        private List<Double> latencyBuckets = new ArrayList<>(Arrays.asList(
+            0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0));
+
+        private final Queries queries = new Queries();
+
+        public int getLatencyWindow() {
+            return latencyWindow;
+        }
+
+        public void setLatencyWindow(int latencyWindow) {
+            this.latencyWindow = latencyWindow;
+        }
+
+        public List<Double> getLatencyBuckets() {
+            return latencyBuckets;
+        }
+
+        public void setLatencyBuckets(List<Double> latencyBuckets) {
+            this.latencyBuckets = latencyBuckets;
+        }
+
+        public Queries getQueries() {
+            return queries;
+        }
+
+        public static class Queries {
+
+            /**
+             * Whether the SQL statements are timed, through a proxy of the datasource.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Maximum number of distinct statements whose statistics are kept, beyond which new statements are
+             * only counted in the totals.
+             */
+            private int maxStatements = 1000;
+
+            /**
+             * Number of executions of the same select statement in a request from which it is reported as an
+             * N+1 query.
+             */
+            private int repeatThreshold = 5;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxStatements() {
+                return maxStatements;
+            }
+
+            public void setMaxStatements(int maxStatements) {
+                this.maxStatements = maxStatements;
+            }
+
+            public int getRepeatThreshold() {
+                return repeatThreshold;
+            }
+
+            public void setRepeatThreshold(int repeatThreshold) {
+                this.repeatThreshold = repeatThreshold;
+            }
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Directory of the persistent disk tier, which is off when it is not set. Each instance must have its
+         * own directory, which is not cleaned up by the system.
+         */
+        private String diskPath;
+
+        /**
+         * Sizing of the caches which are not listed in the regions.
+         */
+        private final Region defaults = new Region();
+
+        /**
+         * Sizing of specific caches, overriding the defaults.
+         */
+        private List<Region> regions = new ArrayList<>();
+
+        /**
+         * Clustered cache, used instead of Ehcache with the "cluster" profile.
+         */
+        private final Cluster cluster = new Cluster();
+
+        public String getDiskPath() {
+            return diskPath;
+        }
+
+        public void setDiskPath(String diskPath) {
+            this.diskPath = diskPath;
+        }
+
+        public Region getDefaults() {
+            return defaults;
+        }
+
+        public List<Region> getRegions() {
+            return regions;
+        }
+
+        public void setRegions(List<Region> regions) {
+            this.regions = regions;
+        }
+
+        public Cluster getCluster() {
+            return cluster;
+        }
+
+        /**
+         * Sizing of a cache. Unset values fall back to the defaults, then to the jhipster.cache.ehcache properties.
+         */
+        public static class Region {
+
+            /**
+             * Name of the cache, usually the class name of an entity.
+             */
+            private String name;
+
+            /**
+             * Time to live of the entries, in seconds.
+             */
+            private Long timeToLiveSeconds;
+
+            /**
+             * Maximum number of entries of the heap tier, ignored when heapSizeMb is set.
+             */
+            private Long heapEntries;
+
+            /**
+             * Maximum size of the heap tier, in megabytes.
+             */
+            private Long heapSizeMb;
+
+            /**
+             * Size of the off-heap tier, in megabytes, no off-heap tier when not set.
+             */
+            private Long offHeapSizeMb;
+
+            /**
+             * Size of the persistent disk tier, in megabytes, no disk tier when not set.
+             */
+            private Long diskSizeMb;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public Long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(Long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public Long getHeapEntries() {
+                return heapEntries;
+            }
+
+            public void setHeapEntries(Long heapEntries) {
+                this.heapEntries = heapEntries;
+            }
+
+            public Long getHeapSizeMb() {
+                return heapSizeMb;
+            }
+
+            public void setHeapSizeMb(Long heapSizeMb) {
+                this.heapSizeMb = heapSizeMb;
+            }
+
+            public Long getOffHeapSizeMb() {
+                return offHeapSizeMb;
+            }
+
+            public void setOffHeapSizeMb(Long offHeapSizeMb) {
+                this.offHeapSizeMb = offHeapSizeMb;
+            }
+
+            public Long getDiskSizeMb() {
+                return diskSizeMb;
+            }
+
+            public void setDiskSizeMb(Long diskSizeMb) {
+                this.diskSizeMb = diskSizeMb;
+            }
+        }
+
+        /**
+         * Hazelcast cluster sharing the caches between the nodes of the application.
+         */
+        public static class Cluster {
+
+            /**
+             * Name of the Hazelcast instance, which Hibernate uses to find it.
+             */
+            private String instanceName = "points";
+
+            /**
+             * Name of the cluster group, nodes only join a cluster of the same group.
+             */
+            private String groupName = "points";
+
+            /**
+             * Port of this node, the next free port is used when it is taken.
+             */
+            private int port = 5701;
+
+            /**
+             * Addresses of the nodes, as host or host:port, discovered over TCP/IP rather than multicast.
+             */
+            private List<String> members = new ArrayList<>(Collections.singletonList("127.0.0.1"));
+
+            /**
+             * Number of synchronous backups of each entry on other nodes.
+             */
+            private int backupCount = 1;
+
+            /**
+             * Time to live of the entries, in seconds.
+             */
+            private int timeToLiveSeconds = 3600;
+
+            /**
+             * Maximum number of entries of each cache on each node.
+             */
+            private int maxEntries = 10000;
+
+            /**
+             * Maximum number of entries of the near cache of each cache, kept on heap by each node.
+             */
+            private int nearCacheMaxEntries = 1000;
+
+            public String getInstanceName() {
+                return instanceName;
+            }
+
+            public void setInstanceName(String instanceName) {
+                this.instanceName = instanceName;
+            }
+
+            public String getGroupName() {
+                return groupName;
+            }
+
+            public void setGroupName(String groupName) {
+                this.groupName = groupName;
+            }
+
+            public int getPort() {
+                return port;
+            }
+
+            public void setPort(int port) {
+                this.port = port;
+            }
+
+            public List<String> getMembers() {
+                return members;
+            }
+
+            public void setMembers(List<String> members) {
+                this.members = members;
+            }
+
+            public int getBackupCount() {
+                return backupCount;
+            }
+
+            public void setBackupCount(int backupCount) {
+                this.backupCount = backupCount;
+            }
+
+            public int getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public int getNearCacheMaxEntries() {
+                return nearCacheMaxEntries;
+            }
+
+            public void setNearCacheMaxEntries(int nearCacheMaxEntries) {
+                this.nearCacheMaxEntries = nearCacheMaxEntries;
+            }
+        }
+    }
 }
@@ -1,53 +1,152 @@
 package com.wafflemkr.points.config;
 
 import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.config.ResourcePools;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.expiry.Duration;
 import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.config.persistence.DefaultPersistenceConfiguration;
+import org.ehcache.impl.serialization.PlainJavaSerializer;
 import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.cache.Caching;
 
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
-import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.*;
 
+/**
+ * Ehcache configuration, sized per cache with the application.cache properties.
+ * <p>
+ * Each cache has a heap tier, sized in entries or in megabytes, and optionally an off-heap tier and a persistent
+ * disk tier. Entries in those tiers are stored serialized, outside of the Java heap, so they do not add to
+ * garbage collection pauses, and the disk tier survives restarts. The disk tiers are off unless a disk path is
+ * configured, which must be a directory of its own for each instance: the sizes of the disk tiers are ignored
+ * otherwise.
+ * <p>
+ * The JCache CacheManager is created here rather than by Spring Boot, as the disk tier must be configured on the
+ * CacheManager itself. It is registered under the default URI of the caching provider, where Hibernate looks up
+ * its second level cache regions.
+ * <p>
+ * The caches are local to each node, see {@link ClusteredCacheConfiguration} to share them between several nodes.
+ */
 @Configuration
 @EnableCaching
+@Profile("!" + Constants.SPRING_PROFILE_CLUSTER)
 @AutoConfigureAfter(value = { MetricsConfiguration.class })
 @AutoConfigureBefore(value = { WebConfigurer.class, DatabaseConfiguration.class })
 public class CacheConfiguration {
 
-    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+    private final Logger log = LoggerFactory.getLogger(CacheConfiguration.class);
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache =
-            jHipsterProperties.getCache().getEhcache();
+    private final JHipsterProperties.Cache.Ehcache ehcache;
 
-        jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
-            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
-                ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                .withExpiry(Expirations.timeToLiveExpiration(Duration.of(ehcache.getTimeToLiveSeconds(), TimeUnit.SECONDS)))
-                .build());
+    private final ApplicationProperties.Cache cache;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        this.ehcache = jHipsterProperties.getCache().getEhcache();
+        this.cache = applicationProperties.getCache();
     }
 
     @Bean
-    public JCacheManagerCustomizer cacheManagerCustomizer() {
-        return cm -> {
-            cm.createCache(com.wafflemkr.points.repository.UserRepository.USERS_BY_LOGIN_CACHE, jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.repository.UserRepository.USERS_BY_EMAIL_CACHE, jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.User.class.getName(), jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.Authority.class.getName(), jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.User.class.getName() + ".authorities", jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.SocialUserConnection.class.getName(), jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.Points.class.getName(), jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.Weight.class.getName(), jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.BloodPressure.class.getName(), jcacheConfiguration);
-            cm.createCache(com.wafflemkr.points.domain.Preferences.class.getName(), jcacheConfiguration);
-            // jhipster-needle-ehcache-add-entry
-        };
+    public javax.cache.CacheManager jCacheCacheManager() {
+        // Hazelcast, used by the cluster profile, also ships a caching provider, so Ehcache is asked for by name
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+            EhcacheCachingProvider.class.getName());
+        ConfigurationBuilder configuration = ConfigurationBuilder.newConfigurationBuilder();
+        if (cache.getDiskPath() != null) {
+            log.debug("Storing the disk tier of the caches in {}", cache.getDiskPath());
+            configuration = configuration.addService(new DefaultPersistenceConfiguration(new File(cache.getDiskPath())));
+        }
+        javax.cache.CacheManager cm = provider.getCacheManager(provider.getDefaultURI(), configuration.build());
+        createCache(cm, com.wafflemkr.points.repository.UserRepository.USERS_BY_LOGIN_CACHE);
+        createCache(cm, com.wafflemkr.points.repository.UserRepository.USERS_BY_EMAIL_CACHE);
+        createCache(cm, com.wafflemkr.points.repository.UserRepository.USERS_BY_LOGIN_OR_EMAIL_CACHE);
+        createCache(cm, com.wafflemkr.points.domain.User.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.Authority.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.User.class.getName() + ".authorities");
+        createCache(cm, com.wafflemkr.points.domain.SocialUserConnection.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.Points.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.Weight.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.BloodPressure.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.Preferences.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.WeeklyPoints.class.getName());
+        createCache(cm, com.wafflemkr.points.domain.DailyBloodPressure.class.getName());
+        // jhipster-needle-ehcache-add-entry
+        return cm;
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String name) {
+        if (cm.getCache(name) == null) {
+            cm.createCache(name, jcacheConfiguration(name));
+        }
+    }
+
+    private javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration(String name) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, resourcePools(name))
+                .withExpiry(Expirations.timeToLiveExpiration(Duration.of(timeToLiveSeconds(name), TimeUnit.SECONDS)))
+                // Keys and values are typed Object for Hibernate, so the serializer of the lower tiers must be explicit
+                .withKeySerializer(new PlainJavaSerializer<>(classLoader))
+                .withValueSerializer(new PlainJavaSerializer<>(classLoader))
+                .build());
+    }
+
+    ResourcePools resourcePools(String name) {
+        ApplicationProperties.Cache.Region region = region(name);
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder();
+        Long heapSizeMb = valueOf(region, ApplicationProperties.Cache.Region::getHeapSizeMb, null);
+        if (heapSizeMb != null) {
+            resourcePools = resourcePools.heap(heapSizeMb, MemoryUnit.MB);
+        } else {
+            resourcePools = resourcePools.heap(valueOf(region, ApplicationProperties.Cache.Region::getHeapEntries,
+                (long) ehcache.getMaxEntries()), EntryUnit.ENTRIES);
+        }
+        Long offHeapSizeMb = valueOf(region, ApplicationProperties.Cache.Region::getOffHeapSizeMb, null);
+        if (offHeapSizeMb != null) {
+            resourcePools = resourcePools.offheap(offHeapSizeMb, MemoryUnit.MB);
+        }
+        Long diskSizeMb = valueOf(region, ApplicationProperties.Cache.Region::getDiskSizeMb, null);
+        if (diskSizeMb != null) {
+            if (cache.getDiskPath() != null) {
+                resourcePools = resourcePools.disk(diskSizeMb, MemoryUnit.MB, true);
+            } else {
+                log.debug("No disk path is set, the cache {} has no disk tier", name);
+            }
+        }
+        return resourcePools.build();
+    }
+
+    long timeToLiveSeconds(String name) {
+        return valueOf(region(name), ApplicationProperties.Cache.Region::getTimeToLiveSeconds,
+            (long) ehcache.getTimeToLiveSeconds());
+    }
+
+    private ApplicationProperties.Cache.Region region(String name) {
+        return cache.getRegions().stream()
+            .filter(candidate -> name.equals(candidate.getName()))
+            .findFirst()
+            .orElseGet(ApplicationProperties.Cache.Region::new);
+    }
+
+    private <T> T valueOf(ApplicationProperties.Cache.Region region, Function<ApplicationProperties.Cache.Region, T> property, T fallback) {
+        T value = property.apply(region);
+        if (value == null) {
+            value = property.apply(cache.getDefaults());
+        }
+        return value != null ? value : fallback;
     }
 }
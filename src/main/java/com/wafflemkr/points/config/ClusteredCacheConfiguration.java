@@ -0,0 +1,91 @@
+package com.wafflemkr.points.config;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MaxSizeConfig;
+import com.hazelcast.config.NearCacheConfig;
+import com.hazelcast.config.NetworkConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.spring.cache.HazelcastCacheManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.*;
+
+/**
+ * Hazelcast configuration, sharing the caches between the nodes of a cluster, enabled by the "cluster" profile.
+ * <p>
+ * Each cache, whether a Hibernate second level cache region or a Spring cache such as
+ * {@link com.wafflemkr.points.repository.UserRepository#USERS_BY_LOGIN_CACHE}, is a distributed map, partitioned
+ * between the nodes with backups. Each node keeps a near cache of the entries it reads, so most reads stay local,
+ * and the near caches of all the nodes are invalidated when an entry changes on any of them.
+ * <p>
+ * Nodes discover each other over TCP/IP from the application.cache.cluster.members list rather than multicast,
+ * so several nodes can run on a single machine on consecutive ports.
+ */
+@Configuration
+@EnableCaching
+@Profile(Constants.SPRING_PROFILE_CLUSTER)
+@AutoConfigureBefore(value = { WebConfigurer.class, DatabaseConfiguration.class })
+public class ClusteredCacheConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(ClusteredCacheConfiguration.class);
+
+    private final ApplicationProperties.Cache.Cluster cluster;
+
+    public ClusteredCacheConfiguration(ApplicationProperties applicationProperties) {
+        this.cluster = applicationProperties.getCache().getCluster();
+    }
+
+    /**
+     * The Hazelcast instance, named so that Hibernate uses it rather than starting its own. Spring Boot makes the
+     * EntityManagerFactory depend on the "hazelcastInstance" bean, so it is started first.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public HazelcastInstance hazelcastInstance() {
+        log.debug("Joining the cache cluster {} with members {}", cluster.getGroupName(), cluster.getMembers());
+        return Hazelcast.newHazelcastInstance(hazelcastConfig(cluster));
+    }
+
+    @Bean
+    public CacheManager cacheManager(HazelcastInstance hazelcastInstance) {
+        return new HazelcastCacheManager(hazelcastInstance);
+    }
+
+    static Config hazelcastConfig(ApplicationProperties.Cache.Cluster cluster) {
+        Config config = new Config(cluster.getInstanceName());
+        config.getGroupConfig().setName(cluster.getGroupName());
+        config.setProperty("hazelcast.logging.type", "slf4j");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+
+        NetworkConfig network = config.getNetworkConfig();
+        network.setPort(cluster.getPort());
+        network.setPortAutoIncrement(true);
+        JoinConfig join = network.getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getAwsConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).setMembers(cluster.getMembers());
+
+        // The default map configuration applies to every cache, as the maps are created on first use
+        NearCacheConfig nearCache = new NearCacheConfig()
+            .setInMemoryFormat(InMemoryFormat.OBJECT)
+            .setInvalidateOnChange(true)
+            .setMaxSize(cluster.getNearCacheMaxEntries())
+            .setEvictionPolicy(EvictionPolicy.LRU.name())
+            .setTimeToLiveSeconds(cluster.getTimeToLiveSeconds());
+        config.addMapConfig(new MapConfig("default")
+            .setBackupCount(cluster.getBackupCount())
+            .setTimeToLiveSeconds(cluster.getTimeToLiveSeconds())
+            .setEvictionPolicy(EvictionPolicy.LRU)
+            .setMaxSizeConfig(new MaxSizeConfig(cluster.getMaxEntries(), MaxSizeConfig.MaxSizePolicy.PER_NODE))
+            .setNearCacheConfig(nearCache));
+        return config;
+    }
+}
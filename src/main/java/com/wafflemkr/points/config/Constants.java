@@ -11,6 +11,9 @@ public final class Constants {
     public static final String SYSTEM_ACCOUNT = "system";
     public static final String ANONYMOUS_USER = "anonymoususer";
     public static final String DEFAULT_LANGUAGE = "en";
+
+    // Spring profile sharing the caches between the nodes of a cluster
+    public static final String SPRING_PROFILE_CLUSTER = "cluster";
     
     private Constants() {
     }
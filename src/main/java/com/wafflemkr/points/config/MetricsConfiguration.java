@@ -1,5 +1,10 @@
 package com.wafflemkr.points.config;
 
+import com.wafflemkr.points.config.metrics.HttpMetricsFilter;
+import com.wafflemkr.points.config.metrics.QueryScopeFilter;
+import com.wafflemkr.points.config.metrics.QueryStatistics;
+import com.wafflemkr.points.config.metrics.QueryStatisticsProxy;
+
 import io.github.jhipster.config.JHipsterProperties;
 
 import com.codahale.metrics.JmxReporter;
@@ -12,15 +17,28 @@ import com.codahale.metrics.jvm.*;
 import com.ryantenney.metrics.spring.config.annotation.EnableMetrics;
 import com.ryantenney.metrics.spring.config.annotation.MetricsConfigurerAdapter;
 import com.zaxxer.hikari.HikariDataSource;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.dropwizard.DropwizardExports;
+import io.prometheus.client.exporter.MetricsServlet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.boot.autoconfigure.jdbc.metadata.HikariDataSourcePoolMetadata;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.*;
+import org.springframework.core.Ordered;
 
 import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
 import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
@@ -42,17 +60,71 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
 
     private HealthCheckRegistry healthCheckRegistry = new HealthCheckRegistry();
 
+    private CollectorRegistry collectorRegistry = new CollectorRegistry(true);
+
     private final JHipsterProperties jHipsterProperties;
 
+    private final ApplicationProperties applicationProperties;
+
+    private final QueryStatistics queryStatistics;
+
     private HikariDataSource hikariDataSource;
 
-    public MetricsConfiguration(JHipsterProperties jHipsterProperties) {
+    public MetricsConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+            QueryStatistics queryStatistics) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.queryStatistics = queryStatistics;
     }
 
+    /**
+     * The datasource is usually proxied by {@link #queryStatisticsPostProcessor}, so the pool is unwrapped.
+     */
     @Autowired(required = false)
-    public void setHikariDataSource(HikariDataSource hikariDataSource) {
-        this.hikariDataSource = hikariDataSource;
+    public void setDataSource(DataSource dataSource) throws SQLException {
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            this.hikariDataSource = dataSource.unwrap(HikariDataSource.class);
+        }
+    }
+
+    /**
+     * Proxy the datasources, to record the statements executed in {@link QueryStatistics}.
+     */
+    @Bean
+    public static BeanPostProcessor queryStatisticsPostProcessor(ObjectProvider<QueryStatistics> queryStatistics) {
+        return new BeanPostProcessor() {
+
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && queryStatistics.getObject().isEnabled()) {
+                    return QueryStatisticsProxy.wrap((DataSource) bean, queryStatistics.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Provide the metadata of the Hikari pool behind a proxied datasource, for the "datasource.*" actuator metrics:
+     * the provider of Spring Boot only recognizes the pool itself.
+     */
+    @Bean
+    public DataSourcePoolMetadataProvider proxiedHikariPoolMetadataProvider() {
+        return dataSource -> {
+            try {
+                if (!(dataSource instanceof HikariDataSource) && dataSource.isWrapperFor(HikariDataSource.class)) {
+                    return new HikariDataSourcePoolMetadata(dataSource.unwrap(HikariDataSource.class));
+                }
+            } catch (SQLException e) {
+                log.warn("Could not unwrap the datasource: {}", e.getMessage());
+            }
+            return null;
+        };
     }
 
     @Override
@@ -67,6 +139,40 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
         return healthCheckRegistry;
     }
 
+    /**
+     * The registry of the Prometheus metrics, which also exposes the Dropwizard metrics.
+     */
+    @Bean
+    public CollectorRegistry getCollectorRegistry() {
+        return collectorRegistry;
+    }
+
+    @Bean
+    public FilterRegistrationBean httpMetricsFilter() {
+        ApplicationProperties.Metrics metrics = applicationProperties.getMetrics();
+        FilterRegistrationBean registration = new FilterRegistrationBean(new HttpMetricsFilter(metricRegistry,
+            collectorRegistry, metrics.getLatencyWindow(), metrics.getLatencyBuckets()));
+        // Before the security filters, so that the rejected requests are timed too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean queryScopeFilter() {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new QueryScopeFilter(queryStatistics));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        registration.addUrlPatterns("/api/*", "/management/*");
+        return registration;
+    }
+
+    @Bean
+    @ConditionalOnProperty("jhipster.metrics.prometheus.enabled")
+    public ServletRegistrationBean prometheusMetricsServlet() {
+        String endpoint = jHipsterProperties.getMetrics().getPrometheus().getEndpoint();
+        log.debug("Initializing Prometheus metrics exporting via {}", endpoint);
+        return new ServletRegistrationBean(new MetricsServlet(collectorRegistry), endpoint);
+    }
+
     @PostConstruct
     public void init() {
         log.debug("Registering JVM gauges");
@@ -77,6 +183,8 @@ public class MetricsConfiguration extends MetricsConfigurerAdapter {
         metricRegistry.register(PROP_METRIC_REG_JVM_BUFFERS, new BufferPoolMetricSet(ManagementFactory.getPlatformMBeanServer()));
         metricRegistry.register(PROP_METRIC_REG_JVM_ATTRIBUTE_SET, new JvmAttributeGaugeSet());
         metricRegistry.register(PROP_METRIC_REG_JCACHE_STATISTICS, new JCacheGaugeSet());
+        metricRegistry.registerAll(queryStatistics);
+        collectorRegistry.register(new DropwizardExports(metricRegistry));
         if (hikariDataSource != null) {
             log.debug("Monitoring the datasource");
             hikariDataSource.setMetricRegistry(metricRegistry);
@@ -1,5 +1,6 @@
 package com.wafflemkr.points.config;
 
+import com.codahale.metrics.MetricRegistry;
 import com.wafflemkr.points.security.AuthoritiesConstants;
 import io.github.jhipster.config.JHipsterProperties;
 import org.slf4j.Logger;
@@ -9,13 +10,17 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.AbstractWebSocketMessageBrokerConfigurer;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
@@ -25,6 +30,14 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Configuration of the STOMP endpoints and of their message broker.
+ * <p>
+ * By default messages go through an in-memory broker, which only reaches the sessions of the same node. With
+ * {@code application.websocket.broker: relay} they are relayed to an external STOMP broker instead, so that
+ * topics and user destinations reach the sessions of every node. The relay needs the Reactor and Netty TCP
+ * client, which is only packaged when building with {@code -Prelay}.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebsocketConfiguration extends AbstractWebSocketMessageBrokerConfigurer {
@@ -33,15 +46,81 @@ public class WebsocketConfiguration extends AbstractWebSocketMessageBrokerConfig
 
     public static final String IP_ADDRESS = "IP_ADDRESS";
 
+    private static final String RELAY_TCP_CLIENT_CLASS = "reactor.io.net.NetStreams";
+
     private final JHipsterProperties jHipsterProperties;
 
-    public WebsocketConfiguration(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties.Websocket properties;
+
+    private final WebsocketMetrics websocketMetrics;
+
+    public WebsocketConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+            MetricRegistry metricRegistry) {
         this.jHipsterProperties = jHipsterProperties;
+        this.properties = applicationProperties.getWebsocket();
+        this.websocketMetrics = new WebsocketMetrics(metricRegistry);
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        if (properties.getBroker() == ApplicationProperties.Websocket.Broker.RELAY) {
+            if (!ClassUtils.isPresent(RELAY_TCP_CLIENT_CLASS, getClass().getClassLoader())) {
+                throw new IllegalStateException("The websocket relay broker needs reactor-net and netty, " +
+                    "which are only packaged when building with -Prelay");
+            }
+            ApplicationProperties.Websocket.Relay relay = properties.getRelay();
+            log.info("Relaying websocket messages to the STOMP broker at {}:{}", relay.getHost(), relay.getPort());
+            config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relay.getHost())
+                .setRelayPort(relay.getPort())
+                .setClientLogin(relay.getClientLogin())
+                .setClientPasscode(relay.getClientPasscode())
+                .setSystemLogin(relay.getSystemLogin())
+                .setSystemPasscode(relay.getSystemPasscode())
+                .setVirtualHost(relay.getVirtualHost())
+                // Messages to users connected to other nodes, and the users connected to each node, are shared
+                // through the broker
+                .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                .setUserRegistryBroadcast("/topic/user-registry");
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+            // The in-memory broker fans messages out on its own threads, rather than on the inbound ones
+            config.configureBrokerChannel().taskExecutor(channelExecutor("broker", properties.getBrokerChannel()));
+        }
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(channelExecutor("inbound", properties.getInboundChannel()));
+        registration.interceptors(websocketMetrics.inboundInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(channelExecutor("outbound", properties.getOutboundChannel()));
+        registration.interceptors(websocketMetrics.outboundInterceptor());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(properties.getSendTimeLimit())
+            .setSendBufferSizeLimit(properties.getSendBufferSizeLimit())
+            .setMessageSizeLimit(properties.getMessageSizeLimit())
+            .addDecoratorFactory(websocketMetrics.sessionDecoratorFactory());
+    }
+
+    /**
+     * A fixed number of threads with a bounded queue, so that a burst of messages is dropped rather than
+     * exhausting the memory.
+     */
+    private ThreadPoolTaskExecutor channelExecutor(String name, ApplicationProperties.Websocket.Channel channel) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(channel.getPoolSize());
+        executor.setMaxPoolSize(channel.getPoolSize());
+        executor.setQueueCapacity(channel.getQueueCapacity());
+        executor.setThreadNamePrefix("points-websocket-" + name + "-");
+        executor.setRejectedExecutionHandler(websocketMetrics.droppingHandler(name));
+        return executor;
     }
 
     @Override
@@ -52,6 +131,12 @@ public class WebsocketConfiguration extends AbstractWebSocketMessageBrokerConfig
             .setAllowedOrigins(allowedOrigins)
             .withSockJS()
             .setInterceptors(httpSessionHandshakeInterceptor());
+        // Pushes the changes of their entities to authenticated users, see EntityChangeService
+        registry.addEndpoint("/websocket/updates")
+            .setHandshakeHandler(defaultHandshakeHandler())
+            .setAllowedOrigins(allowedOrigins)
+            .withSockJS()
+            .setInterceptors(httpSessionHandshakeInterceptor());
     }
 
     @Bean
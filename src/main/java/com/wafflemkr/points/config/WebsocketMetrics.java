@@ -0,0 +1,113 @@
+package com.wafflemkr.points.config;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of the websocket sessions and of the messages going through the STOMP channels.
+ * <p>
+ * Messages are dropped either when a channel has too many messages waiting for a thread, or when a client is
+ * too slow to read its messages: its session is then closed with {@link CloseStatus#SESSION_NOT_RELIABLE}.
+ */
+public class WebsocketMetrics {
+
+    private final Logger log = LoggerFactory.getLogger(WebsocketMetrics.class);
+
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private final Meter inboundMessages;
+
+    private final Meter outboundMessages;
+
+    private final Meter droppedMessages;
+
+    private final Meter slowConsumers;
+
+    public WebsocketMetrics(MetricRegistry metricRegistry) {
+        this.inboundMessages = metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "inbound-messages"));
+        this.outboundMessages = metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "outbound-messages"));
+        this.droppedMessages = metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "dropped-messages"));
+        this.slowConsumers = metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "slow-consumers"));
+        metricRegistry.register(MetricRegistry.name(WebsocketMetrics.class, "sessions"), (Gauge<Integer>) sessions::get);
+    }
+
+    /**
+     * @return an interceptor counting the messages received from the clients
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return countingInterceptor(inboundMessages);
+    }
+
+    /**
+     * @return an interceptor counting the messages sent to the clients
+     */
+    public ChannelInterceptor outboundInterceptor() {
+        return countingInterceptor(outboundMessages);
+    }
+
+    private static ChannelInterceptor countingInterceptor(Meter meter) {
+        return new ChannelInterceptorAdapter() {
+
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                meter.mark();
+                return message;
+            }
+        };
+    }
+
+    /**
+     * @param channel the name of the channel, for the logs
+     * @return a handler counting and rejecting the messages which a channel has no room for
+     */
+    public RejectedExecutionHandler droppingHandler(String channel) {
+        return (task, executor) -> {
+            droppedMessages.mark();
+            log.warn("Dropping a message of the {} channel, {} messages are already waiting", channel, executor.getQueue().size());
+            throw new RejectedExecutionException("The " + channel + " channel is full");
+        };
+    }
+
+    /**
+     * @return a decorator counting the open sessions, and the sessions closed for being too slow
+     */
+    public WebSocketHandlerDecoratorFactory sessionDecoratorFactory() {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                sessions.incrementAndGet();
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.decrementAndGet();
+                if (closeStatus.equalsCode(CloseStatus.SESSION_NOT_RELIABLE)) {
+                    slowConsumers.mark();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    int getSessions() {
+        return sessions.get();
+    }
+}
@@ -0,0 +1,172 @@
+package com.wafflemkr.points.config.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Reservoir} keeping every value of a sliding time window in an HDR histogram.
+ * <p>
+ * Unlike the default exponentially decaying reservoir, which samples the values and favours the recent ones,
+ * the percentiles are those of all the values of the window, with 2 significant digits, so the tail latencies
+ * are not smeared. Values are recorded without locking; the window moves by chunks of a tenth of its length.
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+    private static final int CHUNKS = 10;
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+
+    private final Clock clock;
+
+    private final long chunkNanos;
+
+    /**
+     * The histograms of the previous chunks of the window, the oldest first.
+     */
+    private final Deque<Histogram> chunks = new ArrayDeque<>();
+
+    /**
+     * The values of the current chunk taken from the recorder by the snapshots.
+     */
+    private Histogram currentChunk = new Histogram(SIGNIFICANT_DIGITS);
+
+    private volatile long nextRotation;
+
+    public HdrHistogramReservoir(long window, TimeUnit windowUnit) {
+        this(window, windowUnit, Clock.defaultClock());
+    }
+
+    public HdrHistogramReservoir(long window, TimeUnit windowUnit, Clock clock) {
+        this.clock = clock;
+        this.chunkNanos = Math.max(1, windowUnit.toNanos(window) / CHUNKS);
+        this.nextRotation = clock.getTick() + chunkNanos;
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        if (clock.getTick() >= nextRotation) {
+            synchronized (this) {
+                rotate();
+            }
+        }
+        recorder.recordValue(Math.max(0, value));
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        rotate();
+        currentChunk.add(recorder.getIntervalHistogram());
+        Histogram histogram = new Histogram(SIGNIFICANT_DIGITS);
+        chunks.forEach(histogram::add);
+        histogram.add(currentChunk);
+        return new HdrSnapshot(histogram);
+    }
+
+    /**
+     * Close the current chunk if its time is over, and drop the chunks which left the window.
+     */
+    private void rotate() {
+        long tick = clock.getTick();
+        if (tick < nextRotation) {
+            return;
+        }
+        long elapsedChunks = (tick - nextRotation) / chunkNanos + 1;
+        nextRotation += elapsedChunks * chunkNanos;
+        currentChunk.add(recorder.getIntervalHistogram());
+        chunks.addLast(currentChunk);
+        currentChunk = new Histogram(SIGNIFICANT_DIGITS);
+        for (long i = 1; i < Math.min(elapsedChunks, CHUNKS); i++) {
+            chunks.addLast(new Histogram(SIGNIFICANT_DIGITS));
+        }
+        while (chunks.size() >= CHUNKS) {
+            chunks.removeFirst();
+        }
+    }
+
+    /**
+     * A snapshot of the values of an HDR histogram.
+     */
+    static final class HdrSnapshot extends Snapshot {
+
+        private final Histogram histogram;
+
+        HdrSnapshot(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            return histogram.getValueAtPercentile(quantile * 100);
+        }
+
+        /**
+         * @return every value, with the precision of the histogram
+         */
+        @Override
+        public long[] getValues() {
+            long[] values = new long[size()];
+            int i = 0;
+            for (HistogramIterationValue value : histogram.recordedValues()) {
+                long highest = histogram.highestEquivalentValue(value.getValueIteratedTo());
+                for (long count = 0; count < value.getCountAddedInThisIterationStep() && i < values.length; count++) {
+                    values[i++] = highest;
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, histogram.getTotalCount());
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMaxValue();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMinValue();
+        }
+
+        @Override
+        public double getStdDev() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getStdDeviation();
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (long value : getValues()) {
+                    out.printf("%d%n", value);
+                }
+            }
+        }
+    }
+}
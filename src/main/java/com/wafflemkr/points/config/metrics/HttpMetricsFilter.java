@@ -0,0 +1,125 @@
+package com.wafflemkr.points.config.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Histogram;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter timing the requests by endpoint and by class of HTTP status.
+ * <p>
+ * Endpoints are identified by their method and the pattern of their mapping, such as "GET /api/points/{id}",
+ * so that the number of metrics does not depend on the URLs requested. For the same reason, the methods which
+ * are not standard HTTP methods are all counted as "OTHER". Each endpoint and status class has:
+ * <ul>
+ * <li>a Dropwizard timer named "http.{method} {pattern}.{status class}", whose percentiles are those of all the
+ * requests of a sliding window, see {@link HdrHistogramReservoir}</li>
+ * <li>a Prometheus histogram "http_server_requests_seconds", whose buckets can be summed over the nodes to
+ * compute the percentiles of the whole fleet</li>
+ * </ul>
+ * Asynchronous requests are timed until their response is complete.
+ */
+public class HttpMetricsFilter extends OncePerRequestFilter {
+
+    static final String UNMAPPED = "unmapped";
+
+    static final String OTHER_METHOD = "OTHER";
+
+    private final MetricRegistry metricRegistry;
+
+    private final long latencyWindow;
+
+    private final Histogram histogram;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * @param metricRegistry the registry of the timers
+     * @param collectorRegistry the registry of the Prometheus histogram
+     * @param latencyWindow the period over which the percentiles of the timers are computed, in seconds
+     * @param latencyBuckets the upper bounds of the buckets of the Prometheus histogram, in seconds
+     */
+    public HttpMetricsFilter(MetricRegistry metricRegistry, CollectorRegistry collectorRegistry, long latencyWindow,
+            List<Double> latencyBuckets) {
+        this.metricRegistry = metricRegistry;
+        this.latencyWindow = latencyWindow;
+        this.histogram = Histogram.build()
+            .name("http_server_requests_seconds")
+            .help("Duration of the HTTP requests, by endpoint and class of status")
+            .labelNames("method", "uri", "status")
+            .buckets(latencyBuckets.stream().mapToDouble(Double::doubleValue).toArray())
+            .register(collectorRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            // The error page is rendered later, by the container
+            record(request, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, start);
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    record(request, response.getStatus(), start);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            record(request, response.getStatus(), start);
+        }
+    }
+
+    private void record(HttpServletRequest request, int status, long start) {
+        long duration = System.nanoTime() - start;
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? UNMAPPED : pattern.toString();
+        String statusClass = status / 100 + "xx";
+        String method = method(request);
+        getTimer(method + " " + uri, statusClass).update(duration, TimeUnit.NANOSECONDS);
+        histogram.labels(method, uri, statusClass).observe(duration / 1.0e9);
+    }
+
+    private static String method(HttpServletRequest request) {
+        HttpMethod method = HttpMethod.resolve(request.getMethod());
+        return method == null ? OTHER_METHOD : method.name();
+    }
+
+    private Timer getTimer(String endpoint, String status) {
+        return timers.computeIfAbsent(MetricRegistry.name("http", endpoint, status), name ->
+            metricRegistry.register(name, new Timer(new HdrHistogramReservoir(latencyWindow, TimeUnit.SECONDS))));
+    }
+}
@@ -0,0 +1,32 @@
+package com.wafflemkr.points.config.metrics;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Filter reporting the N+1 queries of each request, see {@link QueryStatistics#openScope()}.
+ */
+public class QueryScopeFilter extends OncePerRequestFilter {
+
+    private final QueryStatistics queryStatistics;
+
+    public QueryScopeFilter(QueryStatistics queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        queryStatistics.openScope();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            queryStatistics.closeScope(request.getMethod() + " " + request.getRequestURI());
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.wafflemkr.points.config.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import com.wafflemkr.points.config.ApplicationProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Statistics of the SQL statements executed through the datasource, see {@link QueryStatisticsProxy}.
+ * <p>
+ * Statements are grouped by shape: their literals and the values of their "in" lists are replaced by "?", so
+ * that the same query with different values is counted once. The time of a statement is the time of its
+ * execution, not including reading its results.
+ * <p>
+ * Within a request, a select statement executed {@code repeat-threshold} times or more is reported as an N+1
+ * query: its rows should most likely be loaded with a join or in batch.
+ * <p>
+ * The totals by kind of statement are also Dropwizard metrics.
+ */
+@Component
+public class QueryStatistics implements MetricSet {
+
+    static final String OTHER = "other";
+
+    private static final int MAX_CACHED_SHAPES = 5000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final List<String> KINDS = Arrays.asList("select", "insert", "update", "delete", OTHER);
+
+    private final Logger log = LoggerFactory.getLogger(QueryStatistics.class);
+
+    private final boolean enabled;
+
+    private final int maxStatements;
+
+    private final int repeatThreshold;
+
+    private final Map<String, String> shapes = new ConcurrentHashMap<>();
+
+    private final Map<String, Statement> statements = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> timers = new LinkedHashMap<>();
+
+    private final Meter rows = new Meter();
+
+    private final Meter repeatedQueries = new Meter();
+
+    private final Meter untrackedStatements = new Meter();
+
+    private final ThreadLocal<Map<String, int[]>> scope = new ThreadLocal<>();
+
+    public QueryStatistics(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Metrics metrics = applicationProperties.getMetrics();
+        this.enabled = metrics.getQueries().isEnabled();
+        this.maxStatements = metrics.getQueries().getMaxStatements();
+        this.repeatThreshold = metrics.getQueries().getRepeatThreshold();
+        for (String kind : KINDS) {
+            timers.put(kind, new Timer(new HdrHistogramReservoir(metrics.getLatencyWindow(), TimeUnit.SECONDS)));
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        timers.forEach((kind, timer) -> metrics.put(MetricRegistry.name(QueryStatistics.class, kind), timer));
+        metrics.put(MetricRegistry.name(QueryStatistics.class, "rows"), rows);
+        metrics.put(MetricRegistry.name(QueryStatistics.class, "repeated-queries"), repeatedQueries);
+        metrics.put(MetricRegistry.name(QueryStatistics.class, "untracked-statements"), untrackedStatements);
+        metrics.put(MetricRegistry.name(QueryStatistics.class, "statements"), (Gauge<Integer>) statements::size);
+        return metrics;
+    }
+
+    /**
+     * @return whether the datasource should be proxied to record the statements
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record the execution of a statement.
+     *
+     * @param sql the SQL of the statement
+     * @param nanos the duration of the execution
+     * @param rowCount the number of rows updated, or 0 for a query whose rows are recorded when they are read
+     */
+    public void recordExecution(String sql, long nanos, long rowCount) {
+        String shape = getShape(sql);
+        String kind = getKind(shape);
+        timers.get(kind).update(nanos, TimeUnit.NANOSECONDS);
+        rows.mark(rowCount);
+        Statement statement = getStatement(shape);
+        if (statement != null) {
+            statement.count.increment();
+            statement.totalNanos.add(nanos);
+            statement.maxNanos.accumulateAndGet(nanos, Math::max);
+            statement.rows.add(rowCount);
+        }
+        Map<String, int[]> executions = scope.get();
+        if (executions != null && "select".equals(kind)) {
+            executions.computeIfAbsent(shape, key -> new int[1])[0]++;
+        }
+    }
+
+    /**
+     * Record the rows read from the results of a query.
+     *
+     * @param sql the SQL of the query
+     * @param rowCount the number of rows read
+     */
+    public void recordRows(String sql, long rowCount) {
+        rows.mark(rowCount);
+        Statement statement = statements.get(getShape(sql));
+        if (statement != null) {
+            statement.rows.add(rowCount);
+        }
+    }
+
+    /**
+     * Start counting the executions of each statement by the current thread, to report N+1 queries.
+     */
+    public void openScope() {
+        scope.set(new HashMap<>());
+    }
+
+    /**
+     * Stop counting the executions of each statement by the current thread, and report the N+1 queries.
+     *
+     * @param description the description of the work done in the scope, for the logs
+     */
+    public void closeScope(String description) {
+        Map<String, int[]> executions = scope.get();
+        scope.remove();
+        if (executions == null) {
+            return;
+        }
+        executions.forEach((shape, count) -> {
+            if (count[0] >= repeatThreshold) {
+                repeatedQueries.mark();
+                Statement statement = statements.get(shape);
+                if (statement != null) {
+                    statement.repeated.increment();
+                }
+                log.debug("{} executed the same query {} times: {}", description, count[0], shape);
+            }
+        });
+    }
+
+    /**
+     * @return the statistics of the statements, in no particular order
+     */
+    public List<Statement> getStatements() {
+        return new ArrayList<>(statements.values());
+    }
+
+    /**
+     * Forget the statistics of the statements; the Dropwizard metrics are kept.
+     */
+    public void reset() {
+        statements.clear();
+    }
+
+    private Statement getStatement(String shape) {
+        Statement statement = statements.get(shape);
+        if (statement == null) {
+            if (statements.size() >= maxStatements) {
+                untrackedStatements.mark();
+                return null;
+            }
+            statement = statements.computeIfAbsent(shape, Statement::new);
+        }
+        return statement;
+    }
+
+    /**
+     * The statements are usually prepared from a few SQL strings, so their shapes are cached.
+     */
+    private String getShape(String sql) {
+        if (sql == null) {
+            return OTHER;
+        }
+        String shape = shapes.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (shapes.size() < MAX_CACHED_SHAPES) {
+                shapes.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    private static String getKind(String shape) {
+        int end = shape.indexOf(' ');
+        String keyword = (end < 0 ? shape : shape.substring(0, end)).toLowerCase(Locale.ENGLISH);
+        if ("with".equals(keyword)) {
+            return "select";
+        }
+        return KINDS.contains(keyword) ? keyword : OTHER;
+    }
+
+    /**
+     * The statistics of a statement shape.
+     */
+    public static final class Statement {
+
+        private final String shape;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private final LongAdder rows = new LongAdder();
+
+        private final LongAdder repeated = new LongAdder();
+
+        private Statement(String shape) {
+            this.shape = shape;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * @return the number of requests which executed the statement as an N+1 query
+         */
+        public long getRepeated() {
+            return repeated.sum();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.wafflemkr.points.config.metrics;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Proxies of the JDBC objects of a datasource, recording the execution of the statements in
+ * {@link QueryStatistics}.
+ * <p>
+ * Connections, statements and their result sets are proxied, and the statements and result sets return the
+ * proxies of their connection and statement; everything else, including the objects returned by {@code unwrap},
+ * is the datasource's own.
+ */
+public final class QueryStatisticsProxy {
+
+    private QueryStatisticsProxy() {
+    }
+
+    /**
+     * @param dataSource the datasource to record the statements of
+     * @param queryStatistics where the statements are recorded
+     * @return a datasource recording the statements executed on the connections it provides
+     */
+    public static DataSource wrap(DataSource dataSource, QueryStatistics queryStatistics) {
+        // The connection pool is closed through its datasource, when the application stops
+        Class<?>[] types = dataSource instanceof Closeable ?
+            new Class<?>[]{DataSource.class, Closeable.class} : new Class<?>[]{DataSource.class};
+        return (DataSource) Proxy.newProxyInstance(QueryStatisticsProxy.class.getClassLoader(), types,
+            (proxy, method, args) -> {
+                Object result = invoke(dataSource, method, args);
+                if (result instanceof Connection) {
+                    return wrapConnection((Connection) result, queryStatistics);
+                }
+                return result;
+            });
+    }
+
+    private static Connection wrapConnection(Connection connection, QueryStatistics queryStatistics) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            Connection connectionProxy = (Connection) proxy;
+            if (result instanceof CallableStatement) {
+                return wrapStatement(CallableStatement.class, (Statement) result, (String) args[0], connectionProxy,
+                    queryStatistics);
+            } else if (result instanceof PreparedStatement && method.getName().equals("prepareStatement")) {
+                return wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0], connectionProxy,
+                    queryStatistics);
+            } else if (result instanceof Statement && method.getName().equals("createStatement")) {
+                return wrapStatement(Statement.class, (Statement) result, null, connectionProxy, queryStatistics);
+            }
+            return result;
+        });
+    }
+
+    private static <T extends Statement> T wrapStatement(Class<T> type, Statement statement, String preparedSql,
+            Connection connectionProxy, QueryStatistics queryStatistics) {
+        return proxy(type, statement, new InvocationHandler() {
+
+            private String lastSql;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("addBatch") && args != null && args.length == 1) {
+                    lastSql = (String) args[0];
+                }
+                if (!name.startsWith("execute")) {
+                    Object result = QueryStatisticsProxy.invoke(statement, method, args);
+                    if (result instanceof ResultSet && name.equals("getResultSet")) {
+                        return wrapResultSet((ResultSet) result, (Statement) proxy, getSql(null), queryStatistics);
+                    } else if (result instanceof Connection && name.equals("getConnection")) {
+                        return connectionProxy;
+                    }
+                    return result;
+                }
+                String sql = getSql(args);
+                lastSql = sql;
+                long start = System.nanoTime();
+                Object result = QueryStatisticsProxy.invoke(statement, method, args);
+                long nanos = System.nanoTime() - start;
+                queryStatistics.recordExecution(sql, nanos, getUpdateCount(result));
+                if (result instanceof ResultSet) {
+                    return wrapResultSet((ResultSet) result, (Statement) proxy, sql, queryStatistics);
+                }
+                return result;
+            }
+
+            private String getSql(Object[] args) {
+                if (preparedSql != null) {
+                    return preparedSql;
+                }
+                if (args != null && args.length > 0 && args[0] instanceof String) {
+                    return (String) args[0];
+                }
+                return lastSql;
+            }
+        });
+    }
+
+    private static long getUpdateCount(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return Math.max(0, ((Number) result).longValue());
+        }
+        long count = 0;
+        if (result instanceof int[]) {
+            for (int updated : (int[]) result) {
+                count += Math.max(0, updated);
+            }
+        } else if (result instanceof long[]) {
+            for (long updated : (long[]) result) {
+                count += Math.max(0, updated);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Count the rows read from a result set, which are recorded when it is closed.
+     */
+    private static ResultSet wrapResultSet(ResultSet resultSet, Statement statementProxy, String sql,
+            QueryStatistics queryStatistics) {
+        return proxy(ResultSet.class, resultSet, new InvocationHandler() {
+
+            private long rows;
+
+            private boolean closed;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object result = QueryStatisticsProxy.invoke(resultSet, method, args);
+                String name = method.getName();
+                if (result instanceof Statement && name.equals("getStatement")) {
+                    return statementProxy;
+                } else if (name.equals("next") && Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else if (name.equals("close") && !closed) {
+                    closed = true;
+                    queryStatistics.recordRows(sql, rows);
+                }
+                return result;
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(QueryStatisticsProxy.class.getClassLoader(), new Class<?>[]{type},
+            handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Metrics specific code.
+ */
+package com.wafflemkr.points.config.metrics;
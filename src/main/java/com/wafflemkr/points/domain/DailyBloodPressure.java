@@ -0,0 +1,154 @@
+package com.wafflemkr.points.domain;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Daily totals of a user's BloodPressure readings, from which rolling averages are computed.
+ * <p>
+ * Rows are maintained incrementally whenever a BloodPressure reading is written, so they
+ * should never be updated directly.
+ */
+@Entity
+@Table(name = "daily_blood_pressure")
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+public class DailyBloodPressure implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Column(name = "reading_date", nullable = false)
+    private LocalDate readingDate;
+
+    @NotNull
+    @Column(name = "systolic_sum", nullable = false)
+    private Long systolicSum = 0L;
+
+    @NotNull
+    @Column(name = "diastolic_sum", nullable = false)
+    private Long diastolicSum = 0L;
+
+    @NotNull
+    @Column(name = "readings", nullable = false)
+    private Integer readings = 0;
+
+    @ManyToOne(optional = false)
+    @NotNull
+    private User user;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getReadingDate() {
+        return readingDate;
+    }
+
+    public DailyBloodPressure readingDate(LocalDate readingDate) {
+        this.readingDate = readingDate;
+        return this;
+    }
+
+    public void setReadingDate(LocalDate readingDate) {
+        this.readingDate = readingDate;
+    }
+
+    public Long getSystolicSum() {
+        return systolicSum;
+    }
+
+    public DailyBloodPressure systolicSum(Long systolicSum) {
+        this.systolicSum = systolicSum;
+        return this;
+    }
+
+    public void setSystolicSum(Long systolicSum) {
+        this.systolicSum = systolicSum;
+    }
+
+    public Long getDiastolicSum() {
+        return diastolicSum;
+    }
+
+    public DailyBloodPressure diastolicSum(Long diastolicSum) {
+        this.diastolicSum = diastolicSum;
+        return this;
+    }
+
+    public void setDiastolicSum(Long diastolicSum) {
+        this.diastolicSum = diastolicSum;
+    }
+
+    public Integer getReadings() {
+        return readings;
+    }
+
+    public DailyBloodPressure readings(Integer readings) {
+        this.readings = readings;
+        return this;
+    }
+
+    public void setReadings(Integer readings) {
+        this.readings = readings;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public DailyBloodPressure user(User user) {
+        this.user = user;
+        return this;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DailyBloodPressure dailyBloodPressure = (DailyBloodPressure) o;
+        if (dailyBloodPressure.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), dailyBloodPressure.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "DailyBloodPressure{" +
+            "id=" + getId() +
+            ", readingDate='" + getReadingDate() + "'" +
+            ", systolicSum=" + getSystolicSum() +
+            ", diastolicSum=" + getDiastolicSum() +
+            ", readings=" + getReadings() +
+            "}";
+    }
+}
@@ -0,0 +1,201 @@
+package com.wafflemkr.points.domain;
+
+import com.wafflemkr.points.domain.enumeration.ImportStatus;
+import com.wafflemkr.points.domain.enumeration.ImportType;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The import of a CSV file of Weight or BloodPressure readings.
+ * <p>
+ * The counters are updated as each chunk of the file is committed, so they can be
+ * polled to follow the progress of the import.
+ */
+@Entity
+@Table(name = "import_job")
+public class ImportJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int ERRORS_MAX_LENGTH = 2000;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "jhi_type", nullable = false)
+    private ImportType type;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ImportStatus status = ImportStatus.PENDING;
+
+    @NotNull
+    @Column(name = "imported_rows", nullable = false)
+    private Long importedRows = 0L;
+
+    @NotNull
+    @Column(name = "rejected_rows", nullable = false)
+    private Long rejectedRows = 0L;
+
+    @Size(max = ERRORS_MAX_LENGTH)
+    @Column(name = "errors", length = ERRORS_MAX_LENGTH)
+    private String errors;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    @Column(name = "finished_date")
+    private Instant finishedDate;
+
+    @ManyToOne(optional = false)
+    @NotNull
+    private User user;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ImportType getType() {
+        return type;
+    }
+
+    public ImportJob type(ImportType type) {
+        this.type = type;
+        return this;
+    }
+
+    public void setType(ImportType type) {
+        this.type = type;
+    }
+
+    public ImportStatus getStatus() {
+        return status;
+    }
+
+    public ImportJob status(ImportStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public void setStatus(ImportStatus status) {
+        this.status = status;
+    }
+
+    public Long getImportedRows() {
+        return importedRows;
+    }
+
+    public void setImportedRows(Long importedRows) {
+        this.importedRows = importedRows;
+    }
+
+    public Long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public void setRejectedRows(Long rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+
+    public String getErrors() {
+        return errors;
+    }
+
+    public void setErrors(String errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Record an error, as long as the errors already recorded leave room for it.
+     *
+     * @param error the error to record
+     */
+    public void addError(String error) {
+        String appended = errors == null ? error : errors + "\n" + error;
+        if (appended.length() <= ERRORS_MAX_LENGTH) {
+            errors = appended;
+        }
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Instant getFinishedDate() {
+        return finishedDate;
+    }
+
+    public ImportJob finishedDate(Instant finishedDate) {
+        this.finishedDate = finishedDate;
+        return this;
+    }
+
+    public void setFinishedDate(Instant finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public ImportJob user(User user) {
+        this.user = user;
+        return this;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ImportJob importJob = (ImportJob) o;
+        if (importJob.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), importJob.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "ImportJob{" +
+            "id=" + getId() +
+            ", type='" + getType() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", importedRows=" + getImportedRows() +
+            ", rejectedRows=" + getRejectedRows() +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", finishedDate='" + getFinishedDate() + "'" +
+            "}";
+    }
+}
@@ -1,5 +1,7 @@
 package com.wafflemkr.points.domain;
 
+import org.hibernate.annotations.SQLInsert;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -36,6 +38,11 @@ public class PersistentAuditEvent implements Serializable {
     @MapKeyColumn(name = "name")
     @Column(name = "value")
     @CollectionTable(name = "jhi_persistent_audit_evt_data", joinColumns=@JoinColumn(name="event_id"))
+    // The data is partitioned by the date of its event, which is copied from the event row inserted before it
+    @SQLInsert(sql = "insert into jhi_persistent_audit_evt_data (event_id, event_date, name, value) " +
+        "select e.event_id, e.event_date, d.name, d.value from jhi_persistent_audit_event e join " +
+        "(select cast(? as bigint) as event_id, cast(? as varchar(150)) as name, cast(? as varchar(255)) as value) d " +
+        "on d.event_id = e.event_id")
     private Map<String, String> data = new HashMap<>();
 
     public Long getId() {
@@ -0,0 +1,110 @@
+package com.wafflemkr.points.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A JWT token revoked before its expiration, identified by its "jti" claim.
+ * <p>
+ * Rows are only needed until the token expires, and are deleted afterwards.
+ */
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Size(max = 36)
+    @Column(name = "token_id", length = 36, nullable = false, unique = true)
+    private String tokenId;
+
+    @NotNull
+    @Column(name = "expiration_date", nullable = false)
+    private Instant expirationDate;
+
+    @NotNull
+    @Column(name = "revoked_date", nullable = false)
+    private Instant revokedDate = Instant.now();
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public RevokedToken tokenId(String tokenId) {
+        this.tokenId = tokenId;
+        return this;
+    }
+
+    public void setTokenId(String tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    public Instant getExpirationDate() {
+        return expirationDate;
+    }
+
+    public RevokedToken expirationDate(Instant expirationDate) {
+        this.expirationDate = expirationDate;
+        return this;
+    }
+
+    public void setExpirationDate(Instant expirationDate) {
+        this.expirationDate = expirationDate;
+    }
+
+    public Instant getRevokedDate() {
+        return revokedDate;
+    }
+
+    public void setRevokedDate(Instant revokedDate) {
+        this.revokedDate = revokedDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RevokedToken revokedToken = (RevokedToken) o;
+        if (revokedToken.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), revokedToken.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "RevokedToken{" +
+            "id=" + getId() +
+            ", tokenId='" + getTokenId() + "'" +
+            ", expirationDate='" + getExpirationDate() + "'" +
+            ", revokedDate='" + getRevokedDate() + "'" +
+            "}";
+    }
+}
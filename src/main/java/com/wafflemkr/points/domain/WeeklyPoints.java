@@ -0,0 +1,154 @@
+package com.wafflemkr.points.domain;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Weekly totals of a user's Points, keyed by the Monday starting the ISO week.
+ * <p>
+ * Rows are maintained incrementally whenever a Points entry is written, so they
+ * should never be updated directly.
+ */
+@Entity
+@Table(name = "weekly_points")
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+public class WeeklyPoints implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Column(name = "week_start", nullable = false)
+    private LocalDate weekStart;
+
+    @NotNull
+    @Column(name = "exercise", nullable = false)
+    private Integer exercise = 0;
+
+    @NotNull
+    @Column(name = "meals", nullable = false)
+    private Integer meals = 0;
+
+    @NotNull
+    @Column(name = "alcohol", nullable = false)
+    private Integer alcohol = 0;
+
+    @ManyToOne(optional = false)
+    @NotNull
+    private User user;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public WeeklyPoints weekStart(LocalDate weekStart) {
+        this.weekStart = weekStart;
+        return this;
+    }
+
+    public void setWeekStart(LocalDate weekStart) {
+        this.weekStart = weekStart;
+    }
+
+    public Integer getExercise() {
+        return exercise;
+    }
+
+    public WeeklyPoints exercise(Integer exercise) {
+        this.exercise = exercise;
+        return this;
+    }
+
+    public void setExercise(Integer exercise) {
+        this.exercise = exercise;
+    }
+
+    public Integer getMeals() {
+        return meals;
+    }
+
+    public WeeklyPoints meals(Integer meals) {
+        this.meals = meals;
+        return this;
+    }
+
+    public void setMeals(Integer meals) {
+        this.meals = meals;
+    }
+
+    public Integer getAlcohol() {
+        return alcohol;
+    }
+
+    public WeeklyPoints alcohol(Integer alcohol) {
+        this.alcohol = alcohol;
+        return this;
+    }
+
+    public void setAlcohol(Integer alcohol) {
+        this.alcohol = alcohol;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public WeeklyPoints user(User user) {
+        this.user = user;
+        return this;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        WeeklyPoints weeklyPoints = (WeeklyPoints) o;
+        if (weeklyPoints.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), weeklyPoints.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "WeeklyPoints{" +
+            "id=" + getId() +
+            ", weekStart='" + getWeekStart() + "'" +
+            ", exercise=" + getExercise() +
+            ", meals=" + getMeals() +
+            ", alcohol=" + getAlcohol() +
+            "}";
+    }
+}
@@ -0,0 +1,8 @@
+package com.wafflemkr.points.domain.enumeration;
+
+/**
+ * The ImportStatus enumeration.
+ */
+public enum ImportStatus {
+    PENDING, RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,8 @@
+package com.wafflemkr.points.domain.enumeration;
+
+/**
+ * The ImportType enumeration.
+ */
+public enum ImportType {
+    WEIGHT, BLOOD_PRESSURE
+}
@@ -0,0 +1,8 @@
+package com.wafflemkr.points.domain.enumeration;
+
+/**
+ * The MailStatus enumeration.
+ */
+public enum MailStatus {
+    PENDING, FAILED
+}
@@ -0,0 +1,29 @@
+package com.wafflemkr.points.domain.util;
+
+import org.hibernate.dialect.PostgreSQL95Dialect;
+import org.hibernate.type.descriptor.sql.BinaryTypeDescriptor;
+import org.hibernate.type.descriptor.sql.SqlTypeDescriptor;
+
+import java.sql.Types;
+
+/**
+ * PostgreSQL 9.5+ dialect, with the BLOB mapping fix of JHipster's FixedPostgreSQL82Dialect.
+ * <p>
+ * Unlike the 8.2 dialect, it renders the lock timeout hint -2 as {@code for update skip locked}, which
+ * lets several nodes claim different rows of the same outbox.
+ */
+public class FixedPostgreSQL95Dialect extends PostgreSQL95Dialect {
+
+    public FixedPostgreSQL95Dialect() {
+        super();
+        registerColumnType(Types.BLOB, "bytea");
+    }
+
+    @Override
+    public SqlTypeDescriptor remapSqlTypeDescriptor(SqlTypeDescriptor sqlTypeDescriptor) {
+        if (sqlTypeDescriptor.getSqlType() == Types.BLOB) {
+            return BinaryTypeDescriptor.INSTANCE;
+        }
+        return super.remapSqlTypeDescriptor(sqlTypeDescriptor);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Hibernate specific code.
+ */
+package com.wafflemkr.points.domain.util;
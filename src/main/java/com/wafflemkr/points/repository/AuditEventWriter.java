@@ -0,0 +1,146 @@
+package com.wafflemkr.points.repository;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.wafflemkr.points.config.ApplicationProperties;
+import com.wafflemkr.points.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind of the audit events, so that authentications never wait for the database.
+ * <p>
+ * Events are put in a bounded, lock-free queue, and written periodically by a background task, in batches
+ * sharing one transaction each so that Hibernate sends their inserts in JDBC batches. When the queue is full,
+ * new events are dropped and counted rather than slowing down the application. The queue is drained when the
+ * application shuts down.
+ * <p>
+ * Events are only found by the queries once written, at most one flush interval later.
+ */
+@Component
+public class AuditEventWriter {
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventWriter.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int queueCapacity;
+
+    private final int batchSize;
+
+    private final Queue<PersistentAuditEvent> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Size of the queue, reserved before adding an event, as {@link ConcurrentLinkedQueue#size()} is not constant time.
+     */
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final AtomicLong droppedSinceFlush = new AtomicLong();
+
+    private final Timer writeTimer;
+
+    private final Meter writtenMeter;
+
+    private final Meter droppedMeter;
+
+    public AuditEventWriter(PersistenceAuditEventRepository persistenceAuditEventRepository,
+            PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+            MetricRegistry metricRegistry) {
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queueCapacity = applicationProperties.getAudit().getQueueCapacity();
+        this.batchSize = applicationProperties.getAudit().getBatchSize();
+
+        this.writeTimer = metricRegistry.timer(MetricRegistry.name(AuditEventWriter.class, "write"));
+        this.writtenMeter = metricRegistry.meter(MetricRegistry.name(AuditEventWriter.class, "written"));
+        this.droppedMeter = metricRegistry.meter(MetricRegistry.name(AuditEventWriter.class, "dropped"));
+        metricRegistry.register(MetricRegistry.name(AuditEventWriter.class, "queued"),
+            (Gauge<Integer>) queueSize::get);
+    }
+
+    /**
+     * Queue an audit event to be written, without waiting.
+     *
+     * @param event the audit event
+     * @return false if the queue is full, and the event was dropped
+     */
+    public boolean enqueue(PersistentAuditEvent event) {
+        int size;
+        do {
+            size = queueSize.get();
+            if (size >= queueCapacity) {
+                droppedMeter.mark();
+                droppedSinceFlush.incrementAndGet();
+                return false;
+            }
+        } while (!queueSize.compareAndSet(size, size + 1));
+        queue.offer(event);
+        return true;
+    }
+
+    /**
+     * Write the queued audit events on a fixed delay.
+     * <p>
+     * A batch which can not be written is dropped, rather than retried forever.
+     */
+    @Scheduled(fixedDelayString = "${application.audit.flush-interval:1000}")
+    public void flush() {
+        long dropped = droppedSinceFlush.getAndSet(0);
+        if (dropped > 0) {
+            log.warn("Dropped {} audit events, as more than {} were waiting to be written", dropped, queueCapacity);
+        }
+        List<PersistentAuditEvent> batch = poll();
+        while (!batch.isEmpty()) {
+            write(batch);
+            batch = poll();
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        log.debug("Writing the {} queued audit events before shutting down", queueSize.get());
+        flush();
+    }
+
+    private List<PersistentAuditEvent> poll() {
+        List<PersistentAuditEvent> batch = new ArrayList<>();
+        PersistentAuditEvent event;
+        while (batch.size() < batchSize && (event = queue.poll()) != null) {
+            batch.add(event);
+        }
+        queueSize.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private void write(List<PersistentAuditEvent> batch) {
+        final Timer.Context context = writeTimer.time();
+        try {
+            transactionTemplate.execute(status -> persistenceAuditEventRepository.save(batch));
+            writtenMeter.mark(batch.size());
+        } catch (DataAccessException | TransactionException e) {
+            droppedMeter.mark(batch.size());
+            log.error("Could not write {} audit events: {}", batch.size(), e.getMessage());
+        } finally {
+            context.stop();
+        }
+    }
+}
@@ -3,8 +3,19 @@ package com.wafflemkr.points.repository;
 import com.wafflemkr.points.domain.BloodPressure;
 import org.springframework.stereotype.Repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * Spring Data JPA repository for the BloodPressure entity.
@@ -16,4 +27,27 @@ public interface BloodPressureRepository extends JpaRepository<BloodPressure, Lo
     @Query("select blood_pressure from BloodPressure blood_pressure where blood_pressure.user.login = ?#{principal.username}")
     List<BloodPressure> findByUserIsCurrentUser();
 
+    @Query("select bloodPressure from BloodPressure bloodPressure where bloodPressure.timestamp is not null order by bloodPressure.timestamp desc, bloodPressure.id desc")
+    List<BloodPressure> findKeysetFirstPage(Pageable pageable);
+
+    @Query("select bloodPressure from BloodPressure bloodPressure where bloodPressure.timestamp < :timestamp or (bloodPressure.timestamp = :timestamp and bloodPressure.id < :id) " +
+        "order by bloodPressure.timestamp desc, bloodPressure.id desc")
+    List<BloodPressure> findKeysetPageAfter(@Param("timestamp") LocalDate timestamp, @Param("id") Long id, Pageable pageable);
+
+    Page<BloodPressure> findByUserLogin(String login, Pageable pageable);
+
+    @Query("select bloodPressure from BloodPressure bloodPressure where bloodPressure.user.login = :login and bloodPressure.timestamp is not null " +
+        "order by bloodPressure.timestamp desc, bloodPressure.id desc")
+    List<BloodPressure> findKeysetFirstPageByUserLogin(@Param("login") String login, Pageable pageable);
+
+    @Query("select bloodPressure from BloodPressure bloodPressure where bloodPressure.user.login = :login " +
+        "and (bloodPressure.timestamp < :timestamp or (bloodPressure.timestamp = :timestamp and bloodPressure.id < :id)) " +
+        "order by bloodPressure.timestamp desc, bloodPressure.id desc")
+    List<BloodPressure> findKeysetPageAfterByUserLogin(@Param("login") String login, @Param("timestamp") LocalDate timestamp, @Param("id") Long id,
+        Pageable pageable);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select bloodPressure from BloodPressure bloodPressure where bloodPressure.user.login = :login order by bloodPressure.timestamp, bloodPressure.id")
+    Stream<BloodPressure> streamByUserLogin(@Param("login") String login);
+
 }
@@ -0,0 +1,28 @@
+package com.wafflemkr.points.repository;
+
+import com.wafflemkr.points.domain.DailyBloodPressure;
+import org.springframework.stereotype.Repository;
+
+import org.springframework.data.jpa.repository.*;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the DailyBloodPressure entity.
+ */
+@Repository
+public interface DailyBloodPressureRepository extends JpaRepository<DailyBloodPressure, Long> {
+
+    /**
+     * Fetch the rollup row of a user for update, so that concurrent writes to the same
+     * day are serialized instead of losing increments.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<DailyBloodPressure> findOneByUserIdAndReadingDate(Long userId, LocalDate readingDate);
+
+    List<DailyBloodPressure> findAllByUserLoginAndReadingDateBetween(String login, LocalDate from, LocalDate to);
+
+}
@@ -0,0 +1,19 @@
+package com.wafflemkr.points.repository;
+
+import com.wafflemkr.points.domain.ImportJob;
+import org.springframework.stereotype.Repository;
+
+import org.springframework.data.jpa.repository.*;
+
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the ImportJob entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+
+    Optional<ImportJob> findOneByIdAndUserLogin(Long id, String login);
+
+}
@@ -0,0 +1,34 @@
+package com.wafflemkr.points.repository;
+
+import com.wafflemkr.points.domain.MailOutbox;
+import com.wafflemkr.points.domain.enumeration.MailStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import org.springframework.data.jpa.repository.*;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the MailOutbox entity.
+ */
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    /**
+     * Lock the oldest emails due to be sent, skipping the emails already locked by other nodes.
+     * <p>
+     * The skipping needs a dialect rendering the -2 timeout as {@code skip locked}, such as the FixedPostgreSQL95Dialect
+     * of the prod profile. Other dialects render a plain {@code for update}, which waits for the other nodes instead.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<MailOutbox> findAllByStatusAndNextAttemptDateLessThanEqualOrderByNextAttemptDateAsc(MailStatus status,
+        Instant nextAttemptDate, Pageable pageable);
+
+    long countByStatus(MailStatus status);
+
+}
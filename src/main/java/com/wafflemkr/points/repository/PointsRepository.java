@@ -1,10 +1,22 @@
 package com.wafflemkr.points.repository;
 
 import com.wafflemkr.points.domain.Points;
+import com.wafflemkr.points.service.dto.PointsAggregateDTO;
 import org.springframework.stereotype.Repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * Spring Data JPA repository for the Points entity.
@@ -16,4 +28,41 @@ public interface PointsRepository extends JpaRepository<Points, Long> {
     @Query("select points from Points points where points.user.login = ?#{principal.username}")
     List<Points> findByUserIsCurrentUser();
 
+    @Query("select points from Points points where points.date is not null order by points.date desc, points.id desc")
+    List<Points> findKeysetFirstPage(Pageable pageable);
+
+    @Query("select points from Points points where points.date < :date or (points.date = :date and points.id < :id) " +
+        "order by points.date desc, points.id desc")
+    List<Points> findKeysetPageAfter(@Param("date") LocalDate date, @Param("id") Long id, Pageable pageable);
+
+    Page<Points> findByUserLogin(String login, Pageable pageable);
+
+    @Query("select points from Points points where points.user.login = :login and points.date is not null " +
+        "order by points.date desc, points.id desc")
+    List<Points> findKeysetFirstPageByUserLogin(@Param("login") String login, Pageable pageable);
+
+    @Query("select points from Points points where points.user.login = :login " +
+        "and (points.date < :date or (points.date = :date and points.id < :id)) " +
+        "order by points.date desc, points.id desc")
+    List<Points> findKeysetPageAfterByUserLogin(@Param("login") String login, @Param("date") LocalDate date, @Param("id") Long id,
+        Pageable pageable);
+
+    @Query("select new com.wafflemkr.points.service.dto.PointsAggregateDTO(points.date, " +
+        "sum(points.exercise), sum(points.meals), sum(points.alcohol), count(points), " +
+        "count(points.exercise), count(points.meals), count(points.alcohol)) " +
+        "from Points points where points.user.login = :login and points.date between :from and :to " +
+        "group by points.date order by points.date")
+    List<PointsAggregateDTO> aggregateByDay(@Param("login") String login, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("select new com.wafflemkr.points.service.dto.PointsAggregateDTO(year(points.date), month(points.date), " +
+        "sum(points.exercise), sum(points.meals), sum(points.alcohol), count(points), " +
+        "count(points.exercise), count(points.meals), count(points.alcohol)) " +
+        "from Points points where points.user.login = :login and points.date between :from and :to " +
+        "group by year(points.date), month(points.date) order by year(points.date), month(points.date)")
+    List<PointsAggregateDTO> aggregateByMonth(@Param("login") String login, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select points from Points points where points.user.login = :login order by points.date, points.id")
+    Stream<Points> streamByUserLogin(@Param("login") String login);
+
 }
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Repository;
 
 import org.springframework.data.jpa.repository.*;
 
+import java.util.Optional;
 
 /**
  * Spring Data JPA repository for the Preferences entity.
@@ -13,4 +14,6 @@ import org.springframework.data.jpa.repository.*;
 @Repository
 public interface PreferencesRepository extends JpaRepository<Preferences, Long> {
 
+    Optional<Preferences> findOneByUserLogin(String login);
+
 }
@@ -0,0 +1,24 @@
+package com.wafflemkr.points.repository;
+
+import com.wafflemkr.points.domain.RevokedToken;
+import org.springframework.stereotype.Repository;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for the RevokedToken entity.
+ */
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+
+    List<RevokedToken> findAllByRevokedDateAfterAndExpirationDateAfter(Instant revokedDate, Instant expirationDate);
+
+    @Modifying
+    @Query("delete from RevokedToken revokedToken where revokedToken.expirationDate < :expirationDate")
+    int deleteAllByExpirationDateBefore(@Param("expirationDate") Instant expirationDate);
+
+}
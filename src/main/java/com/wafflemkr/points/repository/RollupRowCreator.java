@@ -0,0 +1,105 @@
+package com.wafflemkr.points.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * Creates the rows of the per-user rollup tables, such as weekly_points, in the transaction of the caller.
+ * <p>
+ * The rollups are updated under a row lock, but the first write of a period has no row to lock yet. The row is
+ * created empty by an insert which does nothing when the row exists, over the connection of the current
+ * transaction, so that a write never needs a second connection. On PostgreSQL, {@code on conflict do nothing}
+ * waits for a concurrent insert of the same row, and skips it once committed. H2 fails instead, so the insert
+ * is retried until the row of the other transaction is committed.
+ * <p>
+ * The ids are taken from the hibernate_sequence: each value is the upper bound of a block of ids, which Hibernate
+ * never hands out once the value is taken.
+ */
+@Component
+public class RollupRowCreator {
+
+    private static final long CONCURRENT_INSERT_TIMEOUT = 10000;
+
+    private static final long CONCURRENT_INSERT_RETRY_INTERVAL = 10;
+
+    private final Logger log = LoggerFactory.getLogger(RollupRowCreator.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final EntityManager entityManager;
+
+    private volatile Boolean postgreSQL;
+
+    public RollupRowCreator(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Insert the row of a user for a period, unless it already exists. Its totals are left to their default, 0.
+     *
+     * @param table the rollup table
+     * @param periodColumn the column of the period, unique with the user
+     * @param userId the id of the user
+     * @param period the first day of the period
+     */
+    public void createIfAbsent(String table, String periodColumn, Long userId, LocalDate period) {
+        String columns = "id, user_id, " + periodColumn;
+        String values = "nextval('hibernate_sequence'), ?, ?";
+        // The user may have been created by the current transaction
+        entityManager.flush();
+        if (isPostgreSQL()) {
+            jdbcTemplate.update("insert into " + table + " (" + columns + ") values (" + values + ") on conflict do nothing",
+                userId, Date.valueOf(period));
+            return;
+        }
+        String insert = "insert into " + table + " (" + columns + ") select " + values + " from dual where not exists " +
+            "(select 1 from " + table + " where user_id = ? and " + periodColumn + " = ?)";
+        String count = "select count(*) from " + table + " where user_id = ? and " + periodColumn + " = ?";
+        long deadline = System.currentTimeMillis() + CONCURRENT_INSERT_TIMEOUT;
+        while (true) {
+            try {
+                jdbcTemplate.update(insert, userId, Date.valueOf(period), userId, Date.valueOf(period));
+                return;
+            } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+                if (jdbcTemplate.queryForObject(count, Long.class, userId, Date.valueOf(period)) > 0) {
+                    return;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                log.debug("Waiting for a concurrent insert into {} of user {} for {}", table, userId, period);
+                sleep();
+            }
+        }
+    }
+
+    private boolean isPostgreSQL() {
+        Boolean result = postgreSQL;
+        if (result == null) {
+            String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equals(database);
+            postgreSQL = result;
+        }
+        return result;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(CONCURRENT_INSERT_RETRY_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyFailureException("Interrupted while waiting for a concurrent insert", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.wafflemkr.points.repository;
+
+import com.wafflemkr.points.domain.SearchIndexOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import org.springframework.data.jpa.repository.*;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the SearchIndexOutbox entity.
+ */
+@Repository
+public interface SearchIndexOutboxRepository extends JpaRepository<SearchIndexOutbox, Long> {
+
+    /**
+     * Lock the oldest entries, skipping the entries already locked by other nodes.
+     * <p>
+     * As for the mail outbox, the skipping needs a dialect rendering the -2 timeout as {@code skip locked}, such as
+     * the FixedPostgreSQL95Dialect of the prod profile. Other dialects wait for the other nodes instead.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<SearchIndexOutbox> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<SearchIndexOutbox> findAllByIdLessThan(Long id);
+
+    Optional<SearchIndexOutbox> findFirstByOrderByIdAsc();
+
+}
@@ -7,6 +7,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -22,6 +24,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     String USERS_BY_EMAIL_CACHE = "usersByEmail";
 
+    String USERS_BY_LOGIN_OR_EMAIL_CACHE = "usersByLoginOrEmail";
+
     Optional<User> findOneByActivationKey(String activationKey);
 
     List<User> findAllByActivatedIsFalseAndCreatedDateBefore(Instant dateTime);
@@ -43,5 +47,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Cacheable(cacheNames = USERS_BY_EMAIL_CACHE)
     Optional<User> findOneWithAuthoritiesByEmail(String email);
 
+    /**
+     * Find the user authenticating with a login or an email, in a single query. Logins cannot contain "@", so at
+     * most one user matches.
+     */
+    @Query("select distinct user from User user left join fetch user.authorities where user.login = :loginOrEmail or user.email = :loginOrEmail")
+    @Cacheable(cacheNames = USERS_BY_LOGIN_OR_EMAIL_CACHE)
+    Optional<User> findOneWithAuthoritiesByLoginOrEmail(@Param("loginOrEmail") String loginOrEmail);
+
     Page<User> findAllByLoginNot(Pageable pageable, String login);
 }
@@ -0,0 +1,27 @@
+package com.wafflemkr.points.repository;
+
+import com.wafflemkr.points.domain.WeeklyPoints;
+import org.springframework.stereotype.Repository;
+
+import org.springframework.data.jpa.repository.*;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the WeeklyPoints entity.
+ */
+@Repository
+public interface WeeklyPointsRepository extends JpaRepository<WeeklyPoints, Long> {
+
+    /**
+     * Fetch the rollup row of a user for update, so that concurrent writes to the same
+     * week are serialized instead of losing increments.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<WeeklyPoints> findOneByUserIdAndWeekStart(Long userId, LocalDate weekStart);
+
+    Optional<WeeklyPoints> findOneByUserLoginAndWeekStart(String login, LocalDate weekStart);
+
+}
@@ -3,8 +3,19 @@ package com.wafflemkr.points.repository;
 import com.wafflemkr.points.domain.Weight;
 import org.springframework.stereotype.Repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * Spring Data JPA repository for the Weight entity.
@@ -16,4 +27,38 @@ public interface WeightRepository extends JpaRepository<Weight, Long> {
     @Query("select weight from Weight weight where weight.user.login = ?#{principal.username}")
     List<Weight> findByUserIsCurrentUser();
 
+    @Query("select weight from Weight weight where weight.timestamp is not null order by weight.timestamp desc, weight.id desc")
+    List<Weight> findKeysetFirstPage(Pageable pageable);
+
+    @Query("select weight from Weight weight where weight.timestamp < :timestamp or (weight.timestamp = :timestamp and weight.id < :id) " +
+        "order by weight.timestamp desc, weight.id desc")
+    List<Weight> findKeysetPageAfter(@Param("timestamp") ZonedDateTime timestamp, @Param("id") Long id, Pageable pageable);
+
+    Page<Weight> findByUserLogin(String login, Pageable pageable);
+
+    @Query("select weight from Weight weight where weight.user.login = :login and weight.timestamp is not null " +
+        "order by weight.timestamp desc, weight.id desc")
+    List<Weight> findKeysetFirstPageByUserLogin(@Param("login") String login, Pageable pageable);
+
+    @Query("select weight from Weight weight where weight.user.login = :login " +
+        "and (weight.timestamp < :timestamp or (weight.timestamp = :timestamp and weight.id < :id)) " +
+        "order by weight.timestamp desc, weight.id desc")
+    List<Weight> findKeysetPageAfterByUserLogin(@Param("login") String login, @Param("timestamp") ZonedDateTime timestamp, @Param("id") Long id,
+        Pageable pageable);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select weight from Weight weight where weight.user.login = :login order by weight.timestamp, weight.id")
+    Stream<Weight> streamByUserLogin(@Param("login") String login);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select weight.id, weight.timestamp, weight.weight from Weight weight where weight.user.login = :login " +
+        "and weight.timestamp >= :from and weight.timestamp < :to and weight.weight is not null order by weight.timestamp, weight.id")
+    Stream<Object[]> streamReadingsByUserLogin(@Param("login") String login, @Param("from") ZonedDateTime from,
+        @Param("to") ZonedDateTime to);
+
+    @Query("select count(weight) from Weight weight where weight.user.login = :login " +
+        "and weight.timestamp >= :from and weight.timestamp < :to and weight.weight is not null")
+    long countReadingsByUserLogin(@Param("login") String login, @Param("from") ZonedDateTime from,
+        @Param("to") ZonedDateTime to);
+
 }
@@ -0,0 +1,95 @@
+package com.wafflemkr.points.security;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.wafflemkr.points.config.ApplicationProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor running authentications, which hash passwords, off the web server threads.
+ * <p>
+ * BCrypt is deliberately slow and CPU bound, so a burst of logins would otherwise occupy every worker of the
+ * web server. Authentications run on a fixed number of threads, and when too many are already waiting they
+ * are rejected straight away, with an estimate of when to retry, rather than queued for minutes.
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    private final Logger log = LoggerFactory.getLogger(PasswordHashingExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+
+    private final Timer hashTimer;
+
+    private final Meter rejectedMeter;
+
+    public PasswordHashingExecutor(ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+        ApplicationProperties.Security security = applicationProperties.getSecurity();
+        this.executor = new ThreadPoolExecutor(security.getPasswordHashThreads(), security.getPasswordHashThreads(),
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(security.getPasswordHashQueueCapacity()),
+            new CustomizableThreadFactory("points-PasswordHashing-"), new ThreadPoolExecutor.AbortPolicy());
+
+        this.hashTimer = metricRegistry.timer(MetricRegistry.name(PasswordHashingExecutor.class, "hash"));
+        this.rejectedMeter = metricRegistry.meter(MetricRegistry.name(PasswordHashingExecutor.class, "rejected"));
+        metricRegistry.register(MetricRegistry.name(PasswordHashingExecutor.class, "queue-depth"),
+            (Gauge<Integer>) () -> executor.getQueue().size());
+    }
+
+    /**
+     * Run a task hashing a password.
+     *
+     * @param task the task, typically an authentication
+     * @param <T> the type of the result of the task
+     * @return the result of the task, completed with the exception of the task if it fails
+     * @throws RejectedExecutionException if too many tasks are already waiting
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                Timer.Context context = hashTimer.time();
+                // The timer is stopped before the future completes, so the mean is up to date for the next request
+                try {
+                    T result = task.get();
+                    context.stop();
+                    future.complete(result);
+                } catch (Throwable t) {
+                    context.stop();
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedMeter.mark();
+            log.warn("Rejected an authentication, {} are already waiting to be hashed", executor.getQueue().size());
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Estimate when a rejected task can be submitted again: the time to hash the waiting tasks, from the mean
+     * hashing time.
+     *
+     * @return the delay, in seconds, at least 1
+     */
+    public long getRetryAfterSeconds() {
+        double meanNanos = hashTimer.getSnapshot().getMean();
+        double waitingNanos = meanNanos * (executor.getQueue().size() + executor.getActiveCount()) / executor.getMaximumPoolSize();
+        return Math.max(1, (long) Math.ceil(waitingNanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,8 +1,14 @@
 package com.wafflemkr.points.security.jwt;
 
+import com.wafflemkr.points.config.ApplicationProperties;
 import io.github.jhipster.config.JHipsterProperties;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 
@@ -24,16 +30,40 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String TOKEN_TYPE_KEY = "token_type";
+
+    private static final String ACCESS_TOKEN = "access";
+
+    private static final String REFRESH_TOKEN = "refresh";
+
     private String secretKey;
 
     private long tokenValidityInMilliseconds;
 
-    private long tokenValidityInMillisecondsForRememberMe;
+    private long refreshTokenValidityInMilliseconds;
+
+    private long refreshTokenValidityInMillisecondsForRememberMe;
 
     private final JHipsterProperties jHipsterProperties;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    private final TokenRevocationList tokenRevocationList;
+
+    private final int tokenCacheSize;
+
+    private final ConcurrentMap<String, ValidatedToken> validatedTokens = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, GrantedAuthority> grantedAuthorities = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, List<GrantedAuthority>> authoritiesByClaim = new ConcurrentHashMap<>();
+
+    public TokenProvider(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+            TokenRevocationList tokenRevocationList) {
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.tokenRevocationList = tokenRevocationList;
+        this.tokenCacheSize = applicationProperties.getSecurity().getTokenCacheSize();
     }
 
     @PostConstruct
@@ -42,52 +72,142 @@ public class TokenProvider {
             jHipsterProperties.getSecurity().getAuthentication().getJwt().getSecret();
 
         this.tokenValidityInMilliseconds =
+            1000 * applicationProperties.getSecurity().getAccessTokenValidityInSeconds();
+        this.refreshTokenValidityInMilliseconds =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
-        this.tokenValidityInMillisecondsForRememberMe =
+        this.refreshTokenValidityInMillisecondsForRememberMe =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSecondsForRememberMe();
     }
 
-    public String createToken(Authentication authentication, Boolean rememberMe) {
+    /**
+     * Create a short-lived access token, which authenticates requests.
+     *
+     * @param authentication the authenticated user
+     * @return the access token
+     */
+    public String createToken(Authentication authentication) {
         String authorities = authentication.getAuthorities().stream()
             .map(GrantedAuthority::getAuthority)
             .collect(Collectors.joining(","));
 
-        long now = (new Date()).getTime();
-        Date validity;
-        if (rememberMe) {
-            validity = new Date(now + this.tokenValidityInMillisecondsForRememberMe);
-        } else {
-            validity = new Date(now + this.tokenValidityInMilliseconds);
-        }
-
         return Jwts.builder()
+            .setId(UUID.randomUUID().toString())
             .setSubject(authentication.getName())
+            .claim(TOKEN_TYPE_KEY, ACCESS_TOKEN)
             .claim(AUTHORITIES_KEY, authorities)
             .signWith(SignatureAlgorithm.HS512, secretKey)
-            .setExpiration(validity)
+            .setExpiration(new Date(System.currentTimeMillis() + this.tokenValidityInMilliseconds))
             .compact();
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parser()
-            .setSigningKey(secretKey)
-            .parseClaimsJws(token)
-            .getBody();
+    /**
+     * Create a refresh token, which is only accepted to get new access tokens.
+     *
+     * @param authentication the authenticated user
+     * @param rememberMe whether the session lasts for the remember-me validity
+     * @return the refresh token
+     */
+    public String createRefreshToken(Authentication authentication, boolean rememberMe) {
+        long validity = rememberMe ? this.refreshTokenValidityInMillisecondsForRememberMe : this.refreshTokenValidityInMilliseconds;
+        return createRefreshToken(authentication.getName(), new Date(System.currentTimeMillis() + validity));
+    }
+
+    /**
+     * Create a refresh token replacing another one, with the same subject and expiration, so that refreshing
+     * does not extend the session.
+     *
+     * @param refreshToken the claims of the replaced refresh token
+     * @return the new refresh token
+     */
+    public String createRefreshToken(Claims refreshToken) {
+        return createRefreshToken(refreshToken.getSubject(), refreshToken.getExpiration());
+    }
+
+    private String createRefreshToken(String subject, Date expiration) {
+        return Jwts.builder()
+            .setId(UUID.randomUUID().toString())
+            .setSubject(subject)
+            .claim(TOKEN_TYPE_KEY, REFRESH_TOKEN)
+            .signWith(SignatureAlgorithm.HS512, secretKey)
+            .setExpiration(expiration)
+            .compact();
+    }
+
+    /**
+     * Get the claims of a refresh token.
+     *
+     * @param token the refresh token
+     * @return the claims, or empty if the token is not a valid refresh token, or was revoked
+     */
+    public Optional<Claims> parseRefreshToken(String token) {
+        return parseToken(token)
+            .filter(claims -> REFRESH_TOKEN.equals(claims.get(TOKEN_TYPE_KEY)));
+    }
+
+    /**
+     * Get the claims of a token, whatever its type.
+     *
+     * @param token the access or refresh token
+     * @return the claims, or empty if the token is not valid, or was revoked
+     */
+    public Optional<Claims> parseToken(String token) {
+        return parseClaims(token)
+            .filter(claims -> claims.getId() != null && !tokenRevocationList.isRevoked(claims.getId()));
+    }
 
-        Collection<? extends GrantedAuthority> authorities =
-            Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+    /**
+     * Get the authentication of an access token, parsing and verifying it at most once.
+     * <p>
+     * Validated tokens are cached until they expire, keyed by a hash of the token, with their principal and
+     * authorities already built. The cache is bounded: when it is full, expired tokens are dropped, and if there
+     * are none the whole cache is cleared.
+     * <p>
+     * Revocation is checked on every call, against the in-memory {@link TokenRevocationList}.
+     * <p>
+     * Tokens issued before the access and refresh tokens were split have neither a token id nor a token type.
+     * They are still accepted as access tokens until they expire, so that deploying does not log every user out,
+     * but they cannot be revoked nor refreshed.
+     *
+     * @param token the access token
+     * @return the authentication of the token, or empty if the token is not a valid access token, or was revoked
+     */
+    public Optional<Authentication> resolveAuthentication(String token) {
+        String key = hash(token);
+        ValidatedToken validatedToken = validatedTokens.get(key);
+        long now = System.currentTimeMillis();
+        if (validatedToken == null || validatedToken.expiration <= now) {
+            Optional<Claims> claims = parseClaims(token)
+                .filter(candidate -> isAccessToken(candidate) || isLegacyToken(candidate));
+            if (!claims.isPresent()) {
+                validatedTokens.remove(key);
+                return Optional.empty();
+            }
+            validatedToken = new ValidatedToken(claims.get(), getAuthorities(claims.get()));
+            cacheValidatedToken(key, validatedToken, now);
+        }
+        if (validatedToken.tokenId != null && tokenRevocationList.isRevoked(validatedToken.tokenId)) {
+            log.info("Revoked JWT token.");
+            return Optional.empty();
+        }
+        // The Authentication is mutable, so each request gets its own
+        return Optional.of(new UsernamePasswordAuthenticationToken(validatedToken.principal, token, validatedToken.principal.getAuthorities()));
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    private static boolean isAccessToken(Claims claims) {
+        return claims.getId() != null && ACCESS_TOKEN.equals(claims.get(TOKEN_TYPE_KEY));
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    private static boolean isLegacyToken(Claims claims) {
+        return claims.getId() == null && claims.get(TOKEN_TYPE_KEY) == null && claims.get(AUTHORITIES_KEY) != null;
     }
 
     public boolean validateToken(String authToken) {
+        return parseToken(authToken).isPresent();
+    }
+
+    private Optional<Claims> parseClaims(String authToken) {
         try {
-            Jwts.parser().setSigningKey(secretKey).parseClaimsJws(authToken);
-            return true;
+            return Optional.of(Jwts.parser().setSigningKey(secretKey).parseClaimsJws(authToken).getBody());
         } catch (SignatureException e) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace: {}", e);
@@ -104,6 +224,52 @@ public class TokenProvider {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
         }
-        return false;
+        return Optional.empty();
+    }
+
+    /**
+     * Get the authorities of the "auth" claim. Tokens share a handful of distinct claims, so the lists of
+     * authorities are built once per claim and shared.
+     */
+    private List<GrantedAuthority> getAuthorities(Claims claims) {
+        return authoritiesByClaim.computeIfAbsent(claims.get(AUTHORITIES_KEY).toString(), claim ->
+            Collections.unmodifiableList(Arrays.stream(claim.split(","))
+                .map(authority -> grantedAuthorities.computeIfAbsent(authority, SimpleGrantedAuthority::new))
+                .collect(Collectors.toList())));
+    }
+
+    private void cacheValidatedToken(String key, ValidatedToken validatedToken, long now) {
+        if (validatedTokens.size() >= tokenCacheSize) {
+            validatedTokens.values().removeIf(candidate -> candidate.expiration <= now);
+            if (validatedTokens.size() >= tokenCacheSize) {
+                log.debug("The cache of validated JWT tokens is full, clearing it");
+                validatedTokens.clear();
+            }
+        }
+        validatedTokens.put(key, validatedToken);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class ValidatedToken {
+
+        private final String tokenId;
+
+        private final User principal;
+
+        private final long expiration;
+
+        private ValidatedToken(Claims claims, List<GrantedAuthority> authorities) {
+            this.tokenId = claims.getId();
+            this.principal = new User(claims.getSubject(), "", authorities);
+            this.expiration = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+        }
     }
 }
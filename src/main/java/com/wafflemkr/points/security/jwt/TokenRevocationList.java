@@ -0,0 +1,139 @@
+package com.wafflemkr.points.security.jwt;
+
+import com.wafflemkr.points.config.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory list of the revoked JWT tokens which have not expired yet, identified by their "jti" claim.
+ * <p>
+ * Checks are made on every authenticated request, so they never reach the database. A Bloom filter answers
+ * most of them, as almost all tokens are not revoked, and only its positive answers are confirmed against the
+ * exact set of revoked tokens. Checks take no lock.
+ * <p>
+ * Bloom filters cannot remove entries, so the filter is rebuilt from the exact set when expired tokens are pruned.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private final int expectedTokens;
+
+    private final ConcurrentMap<String, Long> expirationByTokenId = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter bloomFilter;
+
+    public TokenRevocationList(ApplicationProperties applicationProperties) {
+        this.expectedTokens = applicationProperties.getSecurity().getRevocationExpectedTokens();
+        this.bloomFilter = new BloomFilter(expectedTokens, FALSE_POSITIVE_PROBABILITY);
+    }
+
+    /**
+     * Revoke a token until it expires.
+     *
+     * @param tokenId the "jti" claim of the token
+     * @param expiration the expiration of the token, in milliseconds since the epoch
+     */
+    public synchronized void revoke(String tokenId, long expiration) {
+        expirationByTokenId.put(tokenId, expiration);
+        bloomFilter.add(tokenId);
+    }
+
+    /**
+     * @param tokenId the "jti" claim of the token
+     * @return true if the token was revoked
+     */
+    public boolean isRevoked(String tokenId) {
+        return bloomFilter.mightContain(tokenId) && expirationByTokenId.containsKey(tokenId);
+    }
+
+    /**
+     * Forget the revoked tokens which have expired, as they are rejected anyway, and rebuild the Bloom filter
+     * from the remaining ones. The filter is resized when more tokens than expected are revoked.
+     *
+     * @param now the current time, in milliseconds since the epoch
+     */
+    public synchronized void prune(long now) {
+        int before = expirationByTokenId.size();
+        expirationByTokenId.values().removeIf(expiration -> expiration <= now);
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, 2 * expirationByTokenId.size()), FALSE_POSITIVE_PROBABILITY);
+        expirationByTokenId.keySet().forEach(rebuilt::add);
+        bloomFilter = rebuilt;
+        if (before != expirationByTokenId.size()) {
+            log.debug("Pruned {} expired tokens from the revocation list", before - expirationByTokenId.size());
+        }
+    }
+
+    public int size() {
+        return expirationByTokenId.size();
+    }
+
+    /**
+     * Bloom filter of strings, using double hashing to derive its hash functions.
+     */
+    static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+
+        private final int bitCount;
+
+        private final int hashCount;
+
+        BloomFilter(int expectedEntries, double falsePositiveProbability) {
+            long optimalBitCount = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+            this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBitCount));
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedEntries * Math.log(2)));
+            this.bits = new AtomicLongArray((bitCount + 63) / 64);
+        }
+
+        void add(String value) {
+            int hash1 = value.hashCode();
+            int hash2 = secondHash(value);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = index(hash1 + i * hash2);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = bits.get(bit >>> 6);
+                } while ((word & mask) == 0 && !bits.compareAndSet(bit >>> 6, word, word | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            int hash1 = value.hashCode();
+            int hash2 = secondHash(value);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = index(hash1 + i * hash2);
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int index(int hash) {
+            return (hash & Integer.MAX_VALUE) % bitCount;
+        }
+
+        /**
+         * FNV-1a hash, independent from {@link String#hashCode()}.
+         */
+        private static int secondHash(String value) {
+            int hash = 0x811c9dc5;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x01000193;
+            }
+            // A zero step would set a single bit per value
+            return hash | 1;
+        }
+    }
+}
@@ -48,9 +48,11 @@ public class CustomSignInAdapter implements SignInAdapter {
                 user.getAuthorities());
 
             SecurityContextHolder.getContext().setAuthentication(authenticationToken);
-            String jwt = tokenProvider.createToken(authenticationToken, false);
+            String jwt = tokenProvider.createToken(authenticationToken);
+            String refreshToken = tokenProvider.createRefreshToken(authenticationToken, false);
             ServletWebRequest servletWebRequest = (ServletWebRequest) request;
-            servletWebRequest.getResponse().addCookie(getSocialAuthenticationCookie(jwt));
+            servletWebRequest.getResponse().addCookie(getSocialAuthenticationCookie("social-authentication", jwt));
+            servletWebRequest.getResponse().addCookie(getSocialAuthenticationCookie("social-authentication-refresh", refreshToken));
         } catch (AuthenticationException ae) {
             log.error("Social authentication error");
             log.trace("Authentication exception trace: {}", ae);
@@ -58,8 +60,8 @@ public class CustomSignInAdapter implements SignInAdapter {
         return jHipsterProperties.getSocial().getRedirectAfterSignIn();
     }
 
-    private Cookie getSocialAuthenticationCookie(String token) {
-        Cookie socialAuthCookie = new Cookie("social-authentication", token);
+    private Cookie getSocialAuthenticationCookie(String name, String token) {
+        Cookie socialAuthCookie = new Cookie(name, token);
         socialAuthCookie.setPath("/");
         socialAuthCookie.setMaxAge(10);
         return socialAuthCookie;
@@ -0,0 +1,129 @@
+package com.wafflemkr.points.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wafflemkr.points.config.audit.AuditEventConverter;
+import com.wafflemkr.points.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Service exporting the audit events of a time period.
+ * <p>
+ * Events are read with plain JDBC through a forward-only cursor, joined with their data, and each event is
+ * converted and written as soon as its last row is read, so memory use does not depend on the number of events.
+ * Nothing goes through the persistence context.
+ */
+@Service
+public class AuditEventExportService {
+
+    private static final String EXPORT_QUERY = "select e.event_id, e.principal, e.event_date, e.event_type, d.name, d.value " +
+        "from jhi_persistent_audit_event e left join jhi_persistent_audit_evt_data d on d.event_id = e.event_id " +
+        "where e.event_date >= ? and e.event_date < ? order by e.event_date, e.event_id";
+
+    private static final int FETCH_SIZE = 500;
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventExportService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final ObjectMapper objectMapper;
+
+    public AuditEventExportService(DataSource dataSource, AuditEventConverter auditEventConverter, ObjectMapper objectMapper) {
+        // PostgreSQL only uses a cursor with a fetch size, inside a transaction
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.auditEventConverter = auditEventConverter;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the audit events of a time period to a stream, as NDJSON.
+     * <p>
+     * Each line is an audit event, in the same JSON format as the audits REST API, ordered by date.
+     *
+     * @param fromDate the start of the time period, inclusive
+     * @param toDate the end of the time period, exclusive
+     * @param out the stream to write to; it is flushed but not closed
+     * @throws IOException if the stream cannot be written to
+     */
+    @Transactional(readOnly = true)
+    public void export(Instant fromDate, Instant toDate, OutputStream out) throws IOException {
+        log.debug("Request to export the audit events from {} to {}", fromDate, toDate);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        EventWriter eventWriter = new EventWriter(writer);
+        try {
+            jdbcTemplate.query(EXPORT_QUERY, eventWriter, Timestamp.from(fromDate), Timestamp.from(toDate));
+            eventWriter.writeEvent();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.debug("Exported {} audit events", eventWriter.count);
+    }
+
+    /**
+     * Collects the rows of an event, which are consecutive, and writes the event when the rows of the next one start.
+     */
+    private final class EventWriter implements RowCallbackHandler {
+
+        private final Writer writer;
+
+        private PersistentAuditEvent event;
+
+        private long count;
+
+        private EventWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("event_id");
+            if (event == null || event.getId() != id) {
+                writeEvent();
+                event = new PersistentAuditEvent();
+                event.setId(id);
+                event.setPrincipal(rs.getString("principal"));
+                event.setAuditEventDate(rs.getTimestamp("event_date").toInstant());
+                event.setAuditEventType(rs.getString("event_type"));
+            }
+            String name = rs.getString("name");
+            if (name != null) {
+                event.getData().put(name, rs.getString("value"));
+            }
+        }
+
+        private void writeEvent() {
+            if (event == null) {
+                return;
+            }
+            try {
+                writer.write(objectMapper.writeValueAsString(auditEventConverter.convertToAuditEvent(event)));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+    }
+}
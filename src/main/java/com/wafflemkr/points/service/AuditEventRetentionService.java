@@ -0,0 +1,161 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.config.ApplicationProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Service keeping the audit events for a limited number of months.
+ * <p>
+ * On PostgreSQL the audit events and their data are partitioned by month: partitions are created ahead of time,
+ * and the partitions of expired months are dropped, which is much cheaper than deleting their rows. Other
+ * databases keep plain tables, whose expired rows are deleted.
+ * <p>
+ * Event dates are stored without time zone, in the time zone of the JVM, so partitions are bounded in that
+ * time zone too.
+ */
+@Service
+public class AuditEventRetentionService {
+
+    private static final String EVENT_TABLE = "jhi_persistent_audit_event";
+
+    private static final String EVENT_DATA_TABLE = "jhi_persistent_audit_evt_data";
+
+    private static final String PARTITION_PREFIX = EVENT_TABLE + "_p";
+
+    private static final String DATA_PARTITION_PREFIX = EVENT_DATA_TABLE + "_p";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile(Pattern.quote(PARTITION_PREFIX) + "(\\d{6})");
+
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventRetentionService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int retentionMonths;
+
+    private final int partitionsAhead;
+
+    public AuditEventRetentionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionMonths = applicationProperties.getAudit().getRetentionMonths();
+        this.partitionsAhead = applicationProperties.getAudit().getPartitionsAhead();
+    }
+
+    /**
+     * Create the partitions of the coming months before the first events are written.
+     * <p>
+     * In development Liquibase runs asynchronously, so the table may not exist yet: the partitions are then
+     * created by the next scheduled run.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            if (isPartitioned()) {
+                createPartitions(YearMonth.now());
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not create the audit event partitions at startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Create the partitions of the coming months and remove the expired audit events, every night.
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void applyRetention() {
+        applyRetention(YearMonth.now());
+    }
+
+    void applyRetention(YearMonth currentMonth) {
+        YearMonth oldestKept = currentMonth.minusMonths(retentionMonths);
+        if (isPartitioned()) {
+            createPartitions(currentMonth);
+            dropPartitionsBefore(oldestKept);
+        } else {
+            deleteEventsBefore(oldestKept);
+        }
+    }
+
+    private boolean isPartitioned() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+            connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(database) && jdbcTemplate.queryForObject(
+            "select count(*) from pg_partitioned_table t join pg_class c on c.oid = t.partrelid where c.relname = ?",
+            Integer.class, EVENT_TABLE) > 0;
+    }
+
+    private void createPartitions(YearMonth currentMonth) {
+        for (int i = 0; i <= partitionsAhead; i++) {
+            YearMonth month = currentMonth.plusMonths(i);
+            try {
+                createPartition(EVENT_TABLE, PARTITION_PREFIX, month);
+                createPartition(EVENT_DATA_TABLE, DATA_PARTITION_PREFIX, month);
+            } catch (DataAccessException e) {
+                // Typically because the default partition already has events of this month
+                log.error("Could not create the audit event partitions of {}: {}", month, e.getMessage());
+            }
+        }
+    }
+
+    private void createPartition(String table, String partitionPrefix, YearMonth month) {
+        jdbcTemplate.execute("create table if not exists " + partitionPrefix + month.format(PARTITION_MONTH) +
+            " partition of " + table + " for values from ('" + startOf(month) + "') to ('" +
+            startOf(month.plusMonths(1)) + "')");
+    }
+
+    private void dropPartitionsBefore(YearMonth oldestKept) {
+        List<String> partitions = jdbcTemplate.queryForList(
+            "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+                "join pg_class p on p.oid = i.inhparent where p.relname = ?", String.class, EVENT_TABLE);
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (matcher.matches() && YearMonth.parse(matcher.group(1), PARTITION_MONTH).isBefore(oldestKept)) {
+                String dataPartition = DATA_PARTITION_PREFIX + matcher.group(1);
+                transactionTemplate.execute(status -> {
+                    jdbcTemplate.execute("drop table if exists " + dataPartition);
+                    jdbcTemplate.execute("drop table " + partition);
+                    log.info("Dropped the audit event partitions {} and {}", partition, dataPartition);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private void deleteEventsBefore(YearMonth oldestKept) {
+        Timestamp cutoff = Timestamp.valueOf(oldestKept.atDay(1).atStartOfDay());
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.update("delete from " + EVENT_DATA_TABLE + " where event_date < ?", cutoff);
+            int deleted = jdbcTemplate.update("delete from " + EVENT_TABLE + " where event_date < ?", cutoff);
+            if (deleted > 0) {
+                log.info("Deleted {} audit events older than {}", deleted, oldestKept);
+            }
+            return null;
+        });
+    }
+
+    private static String startOf(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay()).toString();
+    }
+}
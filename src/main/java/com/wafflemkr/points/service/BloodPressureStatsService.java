@@ -0,0 +1,137 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.domain.BloodPressure;
+import com.wafflemkr.points.domain.DailyBloodPressure;
+import com.wafflemkr.points.repository.DailyBloodPressureRepository;
+import com.wafflemkr.points.repository.RollupRowCreator;
+import com.wafflemkr.points.service.dto.BloodPressureStatsDTO;
+import com.wafflemkr.points.service.dto.BloodPressureWindowDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Service maintaining the per-user daily rollup of BloodPressure readings, and computing rolling averages from it.
+ * <p>
+ * A rolling window moves every day, so rather than one running total per window, which would need to expire
+ * readings daily, totals are kept per day. The 90-day statistics then read at most 90 rows, whatever the
+ * number of readings.
+ * <p>
+ * Callers must invoke {@link #add(BloodPressure)} and {@link #subtract(BloodPressure)} in the same transaction
+ * as the BloodPressure write, so the rollup never drifts from the underlying readings. As for the weekly points,
+ * the row of a day is created empty if absent before it is locked, see {@link RollupRowCreator}, so that two first
+ * readings of the same day do not both insert it.
+ */
+@Service
+@Transactional
+public class BloodPressureStatsService {
+
+    private final Logger log = LoggerFactory.getLogger(BloodPressureStatsService.class);
+
+    private final DailyBloodPressureRepository dailyBloodPressureRepository;
+
+    private final RollupRowCreator rollupRowCreator;
+
+    public BloodPressureStatsService(DailyBloodPressureRepository dailyBloodPressureRepository,
+            RollupRowCreator rollupRowCreator) {
+        this.dailyBloodPressureRepository = dailyBloodPressureRepository;
+        this.rollupRowCreator = rollupRowCreator;
+    }
+
+    /**
+     * Add a reading to the totals of its day.
+     *
+     * @param bloodPressure the created or updated reading
+     */
+    public void add(BloodPressure bloodPressure) {
+        if (isTracked(bloodPressure)) {
+            apply(bloodPressure.getUser().getId(), bloodPressure.getTimestamp(),
+                bloodPressure.getSystolic(), bloodPressure.getDiastolic(), 1);
+        }
+    }
+
+    /**
+     * Add several readings, touching each user's day only once.
+     *
+     * @param bloodPressures the created readings
+     */
+    public void addAll(Collection<BloodPressure> bloodPressures) {
+        Map<String, DailyBloodPressure> days = new HashMap<>();
+        for (BloodPressure bloodPressure : bloodPressures) {
+            if (!isTracked(bloodPressure)) {
+                continue;
+            }
+            DailyBloodPressure day = days.computeIfAbsent(bloodPressure.getUser().getId() + "/" + bloodPressure.getTimestamp(),
+                key -> new DailyBloodPressure().user(bloodPressure.getUser()).readingDate(bloodPressure.getTimestamp()));
+            day.systolicSum(day.getSystolicSum() + bloodPressure.getSystolic())
+                .diastolicSum(day.getDiastolicSum() + bloodPressure.getDiastolic())
+                .readings(day.getReadings() + 1);
+        }
+        days.values().forEach(day -> apply(day.getUser().getId(), day.getReadingDate(),
+            day.getSystolicSum(), day.getDiastolicSum(), day.getReadings()));
+    }
+
+    /**
+     * Remove a reading from the totals of its day, before it is updated or deleted.
+     *
+     * @param bloodPressure the reading as currently stored
+     */
+    public void subtract(BloodPressure bloodPressure) {
+        if (isTracked(bloodPressure)) {
+            apply(bloodPressure.getUser().getId(), bloodPressure.getTimestamp(),
+                -bloodPressure.getSystolic(), -bloodPressure.getDiastolic(), -1);
+        }
+    }
+
+    /**
+     * Get the 7, 30 and 90-day averages of a user.
+     *
+     * @param login the login of the user
+     * @param date the last day of the windows
+     * @return the averages of each window, null when the window has no reading
+     */
+    @Transactional(readOnly = true)
+    public BloodPressureStatsDTO findByUserLogin(String login, LocalDate date) {
+        BloodPressureStatsDTO stats = new BloodPressureStatsDTO();
+        stats.setDate(date);
+        for (DailyBloodPressure day : dailyBloodPressureRepository.findAllByUserLoginAndReadingDateBetween(login, date.minusDays(89), date)) {
+            long age = date.toEpochDay() - day.getReadingDate().toEpochDay();
+            for (BloodPressureWindowDTO window : new BloodPressureWindowDTO[] {stats.getLast7Days(), stats.getLast30Days(), stats.getLast90Days()}) {
+                if (age < window.getDays()) {
+                    window.add(day.getSystolicSum(), day.getDiastolicSum(), day.getReadings());
+                }
+            }
+        }
+        return stats;
+    }
+
+    private void apply(Long userId, LocalDate readingDate, long systolic, long diastolic, long readings) {
+        DailyBloodPressure dailyBloodPressure = findForUpdate(userId, readingDate);
+        dailyBloodPressure
+            .systolicSum(dailyBloodPressure.getSystolicSum() + systolic)
+            .diastolicSum(dailyBloodPressure.getDiastolicSum() + diastolic)
+            .readings((int) (dailyBloodPressure.getReadings() + readings));
+        dailyBloodPressureRepository.save(dailyBloodPressure);
+        log.debug("Updated daily blood pressure: {}", dailyBloodPressure);
+    }
+
+    private DailyBloodPressure findForUpdate(Long userId, LocalDate readingDate) {
+        return dailyBloodPressureRepository.findOneByUserIdAndReadingDate(userId, readingDate).orElseGet(() -> {
+            rollupRowCreator.createIfAbsent("daily_blood_pressure", "reading_date", userId, readingDate);
+            return dailyBloodPressureRepository.findOneByUserIdAndReadingDate(userId, readingDate)
+                .orElseThrow(() -> new IllegalStateException("No daily blood pressure of user " + userId + " for " + readingDate));
+        });
+    }
+
+    private static boolean isTracked(BloodPressure bloodPressure) {
+        return bloodPressure != null && bloodPressure.getTimestamp() != null && bloodPressure.getSystolic() != null
+            && bloodPressure.getDiastolic() != null && bloodPressure.getUser() != null && bloodPressure.getUser().getId() != null;
+    }
+}
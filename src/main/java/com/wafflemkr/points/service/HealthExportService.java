@@ -0,0 +1,180 @@
+package com.wafflemkr.points.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wafflemkr.points.domain.BloodPressure;
+import com.wafflemkr.points.domain.Points;
+import com.wafflemkr.points.domain.Weight;
+import com.wafflemkr.points.repository.BloodPressureRepository;
+import com.wafflemkr.points.repository.PointsRepository;
+import com.wafflemkr.points.repository.WeightRepository;
+import com.wafflemkr.points.service.dto.BloodPressureDTO;
+import com.wafflemkr.points.service.dto.PointsDTO;
+import com.wafflemkr.points.service.dto.WeightDTO;
+import com.wafflemkr.points.service.mapper.BloodPressureMapper;
+import com.wafflemkr.points.service.mapper.PointsMapper;
+import com.wafflemkr.points.service.mapper.WeightMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Service exporting the full health history of a user.
+ * <p>
+ * Rows are read through forward-only database cursors and written one at a time, each entity being detached from
+ * the persistence context once written, so memory use does not depend on the length of the history.
+ */
+@Service
+public class HealthExportService {
+
+    /**
+     * The formats the history can be exported to.
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    static final String CSV_HEADER = "type,id,date,exercise,meals,alcohol,notes,weight,systolic,diastolic";
+
+    private final Logger log = LoggerFactory.getLogger(HealthExportService.class);
+
+    private final PointsRepository pointsRepository;
+
+    private final PointsMapper pointsMapper;
+
+    private final WeightRepository weightRepository;
+
+    private final WeightMapper weightMapper;
+
+    private final BloodPressureRepository bloodPressureRepository;
+
+    private final BloodPressureMapper bloodPressureMapper;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    public HealthExportService(PointsRepository pointsRepository, PointsMapper pointsMapper, WeightRepository weightRepository,
+            WeightMapper weightMapper, BloodPressureRepository bloodPressureRepository, BloodPressureMapper bloodPressureMapper,
+            EntityManager entityManager, ObjectMapper objectMapper) {
+        this.pointsRepository = pointsRepository;
+        this.pointsMapper = pointsMapper;
+        this.weightRepository = weightRepository;
+        this.weightMapper = weightMapper;
+        this.bloodPressureRepository = bloodPressureRepository;
+        this.bloodPressureMapper = bloodPressureMapper;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the points, weights and blood pressures of a user to a stream.
+     * <p>
+     * In NDJSON, each line is the JSON DTO of an entity with an additional "type" field. In CSV, all entities share
+     * the columns of {@link #CSV_HEADER}, the columns not applicable to a type being left empty.
+     *
+     * @param login the login of the user
+     * @param format the format to write
+     * @param out the stream to write to; it is flushed but not closed
+     * @throws IOException if the stream cannot be written to
+     */
+    @Transactional(readOnly = true)
+    public void export(String login, Format format, OutputStream out) throws IOException {
+        log.debug("Request to export the history of {} as {}", login, format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        LineFormatter formatter = format == Format.CSV ? this::toCsv : this::toJson;
+        try {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            try (Stream<Points> points = pointsRepository.streamByUserLogin(login)) {
+                write(points, pointsMapper::toDto, "points", formatter, writer);
+            }
+            try (Stream<Weight> weights = weightRepository.streamByUserLogin(login)) {
+                write(weights, weightMapper::toDto, "weight", formatter, writer);
+            }
+            try (Stream<BloodPressure> bloodPressures = bloodPressureRepository.streamByUserLogin(login)) {
+                write(bloodPressures, bloodPressureMapper::toDto, "blood-pressure", formatter, writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private <E, D> void write(Stream<E> entities, Function<E, D> mapper, String type, LineFormatter formatter, Writer writer)
+            throws IOException {
+        Iterator<E> iterator = entities.iterator();
+        while (iterator.hasNext()) {
+            E entity = iterator.next();
+            writer.write(formatter.format(type, mapper.apply(entity)));
+            writer.write('\n');
+            entityManager.detach(entity);
+        }
+    }
+
+    private String toJson(String type, Object dto) {
+        ObjectNode line = objectMapper.createObjectNode().put("type", type);
+        line.setAll((ObjectNode) objectMapper.valueToTree(dto));
+        try {
+            return objectMapper.writeValueAsString(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String toCsv(String type, Object dto) {
+        StringBuilder line = new StringBuilder(type);
+        if (dto instanceof PointsDTO) {
+            PointsDTO points = (PointsDTO) dto;
+            append(line, points.getId(), points.getDate(), points.getExercise(), points.getMeals(), points.getAlcohol(),
+                points.getNotes(), null, null, null);
+        } else if (dto instanceof WeightDTO) {
+            WeightDTO weight = (WeightDTO) dto;
+            append(line, weight.getId(), weight.getTimestamp() == null ? null : weight.getTimestamp().toInstant(),
+                null, null, null, null, weight.getWeight(), null, null);
+        } else {
+            BloodPressureDTO bloodPressure = (BloodPressureDTO) dto;
+            append(line, bloodPressure.getId(), bloodPressure.getTimestamp(), null, null, null, null, null,
+                bloodPressure.getSystolic(), bloodPressure.getDiastolic());
+        }
+        return line.toString();
+    }
+
+    private static void append(StringBuilder line, Object... values) {
+        for (Object value : values) {
+            line.append(',');
+            if (value != null) {
+                line.append(escapeCsv(value.toString()));
+            }
+        }
+    }
+
+    static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @FunctionalInterface
+    private interface LineFormatter {
+
+        String format(String type, Object dto);
+    }
+}
@@ -0,0 +1,298 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.config.ApplicationProperties;
+import com.wafflemkr.points.domain.BloodPressure;
+import com.wafflemkr.points.domain.ImportJob;
+import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.domain.Weight;
+import com.wafflemkr.points.domain.enumeration.ImportStatus;
+import com.wafflemkr.points.domain.enumeration.ImportType;
+import com.wafflemkr.points.repository.BloodPressureRepository;
+import com.wafflemkr.points.repository.ImportJobRepository;
+import com.wafflemkr.points.repository.UserRepository;
+import com.wafflemkr.points.repository.WeightRepository;
+import com.wafflemkr.points.service.dto.ImportJobDTO;
+import com.wafflemkr.points.service.mapper.ImportJobMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service importing CSV files of Weight and BloodPressure readings.
+ * <p>
+ * The uploaded file is spooled to a temporary file and imported in the background, on the threads of the imports,
+ * whose short queue bounds the spooled files. It is read line by line, and valid rows are written in chunks, each
+ * chunk in its own transaction, so the whole file is never held in memory.
+ * Invalid rows are counted and reported in the job, without stopping the import.
+ * <p>
+ * The expected columns are "timestamp,weight" for weights, and "timestamp,systolic,diastolic" for blood pressures.
+ * A header line is optional.
+ */
+@Service
+public class ImportJobService {
+
+    private final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+
+    private final ImportJobRepository importJobRepository;
+
+    private final ImportJobMapper importJobMapper;
+
+    private final UserRepository userRepository;
+
+    private final SearchIndexingService searchIndexingService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Executor importTaskExecutor;
+
+    private final int chunkSize;
+
+    private final Map<ImportType, ImportedEntity<?>> importedEntities = new EnumMap<>(ImportType.class);
+
+    public ImportJobService(ImportJobRepository importJobRepository, ImportJobMapper importJobMapper, UserRepository userRepository,
+            WeightRepository weightRepository, BloodPressureRepository bloodPressureRepository,
+            SearchIndexingService searchIndexingService, BloodPressureStatsService bloodPressureStatsService,
+            PlatformTransactionManager transactionManager,
+            ApplicationProperties applicationProperties, @Qualifier("importTaskExecutor") Executor importTaskExecutor) {
+        this.importJobRepository = importJobRepository;
+        this.importJobMapper = importJobMapper;
+        this.userRepository = userRepository;
+        this.searchIndexingService = searchIndexingService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.importTaskExecutor = importTaskExecutor;
+        this.chunkSize = applicationProperties.getCsvImport().getChunkSize();
+        importedEntities.put(ImportType.WEIGHT,
+            new ImportedEntity<>(Weight.class, weightRepository, Weight::getId, ImportJobService::parseWeight, saved -> { }));
+        importedEntities.put(ImportType.BLOOD_PRESSURE,
+            new ImportedEntity<>(BloodPressure.class, bloodPressureRepository, BloodPressure::getId, ImportJobService::parseBloodPressure,
+                bloodPressureStatsService::addAll));
+    }
+
+    /**
+     * Start importing a CSV file for a user.
+     *
+     * @param login the login of the user owning the imported readings
+     * @param type the type of the imported readings
+     * @param content the content of the CSV file
+     * @return the created job, which completes in the background
+     * @throws IOException if the content cannot be spooled to a temporary file
+     * @throws TaskRejectedException if too many imports are in progress, the job is then recorded as failed
+     */
+    public ImportJobDTO submit(String login, ImportType type, InputStream content) throws IOException {
+        log.debug("Request to import {} readings for {}", type, login);
+        User user = userRepository.findOneByLogin(login)
+            .orElseThrow(() -> new IllegalArgumentException("Unknown user " + login));
+        Path file = Files.createTempFile("import-", ".csv");
+        try {
+            Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+            ImportJob job = importJobRepository.save(new ImportJob().type(type).user(user));
+            ImportJobDTO result = importJobMapper.toDto(job);
+            try {
+                importTaskExecutor.execute(() -> run(job, file));
+            } catch (TaskRejectedException e) {
+                log.warn("Import job {} rejected: {}", job.getId(), e.getMessage());
+                job.status(ImportStatus.FAILED);
+                job.addError("Import rejected: too many imports in progress");
+                importJobRepository.save(job.finishedDate(Instant.now()));
+                throw e;
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Get the import job of a user.
+     *
+     * @param id the id of the job
+     * @param login the login of the user, or null to get the job of any user
+     * @return the job, if it exists and belongs to the user
+     */
+    @Transactional(readOnly = true)
+    public Optional<ImportJobDTO> findOne(Long id, String login) {
+        log.debug("Request to get ImportJob : {}", id);
+        Optional<ImportJob> job = login == null ? Optional.ofNullable(importJobRepository.findOne(id))
+            : importJobRepository.findOneByIdAndUserLogin(id, login);
+        return job.map(importJobMapper::toDto);
+    }
+
+    private void run(ImportJob job, Path file) {
+        ImportedEntity<?> importedEntity = importedEntities.get(job.getType());
+        job.status(ImportStatus.RUNNING);
+        importJobRepository.save(job);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            importRows(job, reader, importedEntity);
+            job.status(ImportStatus.COMPLETED);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Import job {} failed: {}", job.getId(), e.getMessage());
+            job.status(ImportStatus.FAILED);
+            job.addError("Import aborted: " + e.getMessage());
+        } finally {
+            importJobRepository.save(job.finishedDate(Instant.now()));
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete imported file {}: {}", file, e.getMessage());
+            }
+        }
+        log.info("Import job {} finished with status {}", job.getId(), job.getStatus());
+    }
+
+    private <E> void importRows(ImportJob job, BufferedReader reader, ImportedEntity<E> importedEntity) throws IOException {
+        List<E> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (line.trim().isEmpty() || (lineNumber == 1 && isHeader(line))) {
+                continue;
+            }
+            try {
+                chunk.add(importedEntity.parser.apply(line.split(",", -1), job.getUser()));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                job.setRejectedRows(job.getRejectedRows() + 1);
+                job.addError("Line " + lineNumber + ": " + e.getMessage());
+            }
+            if (chunk.size() == chunkSize) {
+                writeChunk(job, chunk, importedEntity);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        writeChunk(job, chunk, importedEntity);
+    }
+
+    /**
+     * Write a chunk of rows with JDBC batch inserts, update the rollups, queue the rows for bulk indexing,
+     * and record the progress of the job, all in one transaction.
+     */
+    private <E> void writeChunk(ImportJob job, List<E> chunk, ImportedEntity<E> importedEntity) {
+        transactionTemplate.execute(status -> {
+            List<E> saved = importedEntity.repository.save(chunk);
+            importedEntity.repository.flush();
+            importedEntity.rollup.accept(saved);
+            searchIndexingService.enqueue(importedEntity.type,
+                saved.stream().map(importedEntity.idGetter).collect(Collectors.toList()));
+            job.setImportedRows(job.getImportedRows() + saved.size());
+            importJobRepository.save(job);
+            return null;
+        });
+    }
+
+    private static boolean isHeader(String line) {
+        return !Character.isDigit(line.trim().charAt(0));
+    }
+
+    private static Weight parseWeight(String[] columns, User user) {
+        checkColumnCount(columns, 2);
+        double weight = parseNumber(columns[1], "weight");
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        return new Weight().timestamp(parseTimestamp(columns[0].trim())).weight(weight).user(user);
+    }
+
+    private static BloodPressure parseBloodPressure(String[] columns, User user) {
+        checkColumnCount(columns, 3);
+        int systolic = parseInteger(columns[1], "systolic");
+        int diastolic = parseInteger(columns[2], "diastolic");
+        if (diastolic <= 0 || systolic <= diastolic) {
+            throw new IllegalArgumentException("systolic must be greater than diastolic, which must be positive");
+        }
+        return new BloodPressure().timestamp(LocalDate.parse(columns[0].trim())).systolic(systolic).diastolic(diastolic).user(user);
+    }
+
+    private static void checkColumnCount(String[] columns, int expected) {
+        if (columns.length != expected) {
+            throw new IllegalArgumentException("expected " + expected + " columns but found " + columns.length);
+        }
+    }
+
+    private static double parseNumber(String value, String column) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * Parse a whole number, such as "120" or "120.0", rejecting "120.7" rather than truncating it.
+     */
+    private static int parseInteger(String value, String column) {
+        try {
+            return new BigDecimal(value.trim()).intValueExact();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " is not a number: " + value);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(column + " is not a whole number: " + value);
+        }
+    }
+
+    /**
+     * Parse an ISO-8601 date-time with an offset, or an ISO-8601 date taken as midnight UTC.
+     */
+    private static ZonedDateTime parseTimestamp(String value) {
+        if (value.indexOf('T') < 0) {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC);
+        }
+        return ZonedDateTime.parse(value);
+    }
+
+    private static final class ImportedEntity<E> {
+
+        private final Class<E> type;
+
+        private final JpaRepository<E, Long> repository;
+
+        private final Function<E, Long> idGetter;
+
+        private final BiFunction<String[], User, E> parser;
+
+        private final Consumer<List<E>> rollup;
+
+        private ImportedEntity(Class<E> type, JpaRepository<E, Long> repository, Function<E, Long> idGetter,
+                BiFunction<String[], User, E> parser, Consumer<List<E>> rollup) {
+            this.type = type;
+            this.repository = repository;
+            this.idGetter = idGetter;
+            this.parser = parser;
+            this.rollup = rollup;
+        }
+    }
+}
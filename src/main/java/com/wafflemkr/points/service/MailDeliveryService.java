@@ -0,0 +1,390 @@
+package com.wafflemkr.points.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.wafflemkr.points.config.ApplicationProperties;
+import com.wafflemkr.points.domain.MailOutbox;
+import com.wafflemkr.points.domain.enumeration.MailStatus;
+import com.wafflemkr.points.repository.MailOutboxRepository;
+
+import io.github.jhipster.config.JHipsterProperties;
+
+import org.apache.commons.lang3.CharEncoding;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Service sending the emails of the mail outbox.
+ * <p>
+ * Each delivery claims the oldest emails which are due, in a short transaction, so that other nodes skip them.
+ * The emails are then grouped by the domain of their recipient, and each group is sent on a worker thread, over
+ * a single SMTP connection. Sent emails are deleted from the outbox; emails which could not be sent are retried
+ * with an exponential backoff, and marked as failed after the maximum number of attempts.
+ * <p>
+ * The number of emails sent to the same domain is limited per minute, on each node: emails beyond the limit are
+ * left in the outbox for a later delivery, without counting as an attempt.
+ * <p>
+ * A delivery waits at most {@code application.mail.delivery-timeout} for its emails, so that a slow SMTP server
+ * does not hold the scheduler. The results of the batches still being sent are recorded by their worker thread
+ * when they complete, before the claim timeout lets another node send them again.
+ */
+@Service
+public class MailDeliveryService {
+
+    private final Logger log = LoggerFactory.getLogger(MailDeliveryService.class);
+
+    private final MailOutboxRepository mailOutboxRepository;
+
+    private final JavaMailSender javaMailSender;
+
+    private final JHipsterProperties jHipsterProperties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executor;
+
+    private final DomainRateLimiter domainRateLimiter;
+
+    private final ApplicationProperties.Mail properties;
+
+    private final Timer deliveryTimer;
+
+    private final Meter sentMeter;
+
+    private final Meter retriedMeter;
+
+    private final Meter failedMeter;
+
+    private final Meter deferredMeter;
+
+    private volatile long queueDepth;
+
+    public MailDeliveryService(MailOutboxRepository mailOutboxRepository, JavaMailSender javaMailSender,
+            JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties,
+            PlatformTransactionManager transactionManager, MetricRegistry metricRegistry) {
+        this.mailOutboxRepository = mailOutboxRepository;
+        this.javaMailSender = javaMailSender;
+        this.jHipsterProperties = jHipsterProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getMail();
+        this.executor = Executors.newFixedThreadPool(properties.getDeliveryThreads(),
+            new CustomizableThreadFactory("points-MailDelivery-"));
+        this.domainRateLimiter = new DomainRateLimiter(properties.getDomainRateLimit());
+
+        this.deliveryTimer = metricRegistry.timer(MetricRegistry.name(MailDeliveryService.class, "delivery"));
+        this.sentMeter = metricRegistry.meter(MetricRegistry.name(MailDeliveryService.class, "sent"));
+        this.retriedMeter = metricRegistry.meter(MetricRegistry.name(MailDeliveryService.class, "retried"));
+        this.failedMeter = metricRegistry.meter(MetricRegistry.name(MailDeliveryService.class, "failed"));
+        this.deferredMeter = metricRegistry.meter(MetricRegistry.name(MailDeliveryService.class, "deferred"));
+        metricRegistry.register(MetricRegistry.name(MailDeliveryService.class, "queue-depth"),
+            (Gauge<Long>) () -> queueDepth);
+    }
+
+    /**
+     * Send the waiting emails on a fixed delay.
+     */
+    @Scheduled(fixedDelayString = "${application.mail.poll-interval:5000}")
+    public void scheduledDeliver() {
+        deliver();
+    }
+
+    /**
+     * Send the oldest emails of the outbox which are due, and wait until they are sent.
+     *
+     * @return the number of emails sent
+     */
+    public int deliver() {
+        final Timer.Context context = deliveryTimer.time();
+        try {
+            Instant now = Instant.now();
+            List<MailOutbox> claimed = transactionTemplate.execute(status -> claim(now));
+            Map<String, List<MailOutbox>> mailsByDomain = claimed.stream()
+                .collect(Collectors.groupingBy(mail -> getDomain(mail.getRecipient()), LinkedHashMap::new, Collectors.toList()));
+
+            List<MailOutbox> deferred = new ArrayList<>();
+            List<List<MailOutbox>> batches = new ArrayList<>();
+            List<CompletableFuture<Map<Long, Exception>>> deliveries = new ArrayList<>();
+            mailsByDomain.forEach((domain, mails) -> {
+                int permits = domainRateLimiter.acquire(domain, mails.size(), now.toEpochMilli());
+                if (permits < mails.size()) {
+                    log.debug("Deferring {} emails to {}, over the rate limit", mails.size() - permits, domain);
+                    deferred.addAll(mails.subList(permits, mails.size()));
+                }
+                if (permits > 0) {
+                    List<MailOutbox> batch = mails.subList(0, permits);
+                    batches.add(batch);
+                    deliveries.add(CompletableFuture.supplyAsync(() -> send(batch), executor));
+                }
+            });
+            awaitDeliveries(deliveries);
+
+            List<MailOutbox> sent = new ArrayList<>();
+            List<MailOutbox> failed = new ArrayList<>();
+            int sending = 0;
+            Instant completed = Instant.now();
+            for (int i = 0; i < batches.size(); i++) {
+                List<MailOutbox> batch = batches.get(i);
+                CompletableFuture<Map<Long, Exception>> delivery = deliveries.get(i);
+                if (delivery.isDone()) {
+                    collectResults(batch, delivery.join(), completed, sent, failed);
+                } else {
+                    sending += batch.size();
+                    delivery.thenAccept(failures -> recordLateResults(batch, failures))
+                        .exceptionally(e -> {
+                            log.error("Could not record the results of {} emails, they are sent again after the claim timeout",
+                                batch.size(), e);
+                            return null;
+                        });
+                }
+            }
+            Instant nextPermit = completed.plusMillis(domainRateLimiter.getPermitInterval());
+            deferred.forEach(mail -> mail.setNextAttemptDate(nextPermit));
+
+            List<MailOutbox> remaining = new ArrayList<>(failed);
+            remaining.addAll(deferred);
+            transactionTemplate.execute(status -> {
+                store(sent, remaining);
+                queueDepth = mailOutboxRepository.countByStatus(MailStatus.PENDING);
+                return null;
+            });
+            sentMeter.mark(sent.size());
+            deferredMeter.mark(deferred.size());
+            if (!claimed.isEmpty()) {
+                log.debug("Sent {} emails, {} failed, {} deferred, {} still being sent, {} still pending", sent.size(),
+                    failed.size(), deferred.size(), sending, queueDepth);
+            }
+            return sent.size();
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * Wait for the batches being sent, at most for the delivery timeout.
+     */
+    private void awaitDeliveries(List<CompletableFuture<Map<Long, Exception>>> deliveries) {
+        try {
+            CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[deliveries.size()]))
+                .get(properties.getDeliveryTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Emails still being sent after {} ms, their results are recorded when they complete",
+                properties.getDeliveryTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Each batch catches its own failures, this is only thrown by bugs
+            log.error("Could not send emails", e.getCause());
+        }
+    }
+
+    /**
+     * Sort the emails of a batch into the sent and failed ones, and schedule the retries of the failed ones.
+     */
+    private void collectResults(List<MailOutbox> batch, Map<Long, Exception> failures, Instant completed,
+            List<MailOutbox> sent, List<MailOutbox> failed) {
+        for (MailOutbox mail : batch) {
+            Exception failure = failures.get(mail.getId());
+            if (failure == null) {
+                sent.add(mail);
+            } else {
+                recordFailure(mail, failure, completed);
+                failed.add(mail);
+            }
+        }
+    }
+
+    /**
+     * Record the results of a batch which completed after its delivery stopped waiting, on the worker thread.
+     */
+    private void recordLateResults(List<MailOutbox> batch, Map<Long, Exception> failures) {
+        List<MailOutbox> sent = new ArrayList<>();
+        List<MailOutbox> failed = new ArrayList<>();
+        collectResults(batch, failures, Instant.now(), sent, failed);
+        transactionTemplate.execute(status -> {
+            store(sent, failed);
+            return null;
+        });
+        sentMeter.mark(sent.size());
+        log.debug("Sent {} emails, {} failed, after their delivery stopped waiting", sent.size(), failed.size());
+    }
+
+    /**
+     * Delete the sent emails from the outbox, and save the next attempt of the remaining ones.
+     */
+    private void store(List<MailOutbox> sent, List<MailOutbox> remaining) {
+        if (!sent.isEmpty()) {
+            mailOutboxRepository.deleteInBatch(sent);
+        }
+        mailOutboxRepository.save(remaining);
+    }
+
+    /**
+     * Lock the emails which are due, and push back their next attempt, so that they are not claimed again while
+     * they are being sent. If this node stops before recording the result, they are sent again after the claim
+     * timeout.
+     */
+    private List<MailOutbox> claim(Instant now) {
+        List<MailOutbox> mails = mailOutboxRepository.findAllByStatusAndNextAttemptDateLessThanEqualOrderByNextAttemptDateAsc(
+            MailStatus.PENDING, now, new PageRequest(0, properties.getBatchSize()));
+        Instant claimedUntil = now.plusMillis(properties.getClaimTimeout());
+        mails.forEach(mail -> mail.setNextAttemptDate(claimedUntil));
+        return mailOutboxRepository.save(mails);
+    }
+
+    /**
+     * Send a batch of emails over a single SMTP connection.
+     *
+     * @return the exceptions of the emails which could not be sent, by id
+     */
+    private Map<Long, Exception> send(List<MailOutbox> mails) {
+        Map<Long, Exception> failures = new HashMap<>();
+        Map<MimeMessage, MailOutbox> messages = new LinkedHashMap<>();
+        for (MailOutbox mail : mails) {
+            try {
+                messages.put(createMimeMessage(mail), mail);
+            } catch (MessagingException e) {
+                failures.put(mail.getId(), e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return failures;
+        }
+        try {
+            javaMailSender.send(messages.keySet().toArray(new MimeMessage[messages.size()]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                messages.values().forEach(mail -> failures.put(mail.getId(), e));
+            } else {
+                e.getFailedMessages().forEach((message, failure) -> failures.put(messages.get(message).getId(), failure));
+            }
+        } catch (MailException e) {
+            messages.values().forEach(mail -> failures.put(mail.getId(), e));
+        }
+        return failures;
+    }
+
+    private MimeMessage createMimeMessage(MailOutbox mail) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper message = new MimeMessageHelper(mimeMessage, mail.isMultipart(), CharEncoding.UTF_8);
+        message.setTo(mail.getRecipient());
+        message.setFrom(jHipsterProperties.getMail().getFrom());
+        message.setSubject(mail.getSubject());
+        message.setText(mail.getContent(), mail.isHtml());
+        return mimeMessage;
+    }
+
+    private void recordFailure(MailOutbox mail, Exception failure, Instant now) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        mail.setLastError(StringUtils.abbreviate(String.valueOf(failure.getMessage()), 255));
+        if (attempts >= properties.getMaxAttempts()) {
+            mail.setStatus(MailStatus.FAILED);
+            failedMeter.mark();
+            log.error("Email {} could not be sent to '{}' after {} attempts: {}", mail.getId(), mail.getRecipient(),
+                attempts, failure.getMessage());
+        } else {
+            long backoff = Math.min(properties.getRetryMaxInterval(),
+                properties.getRetryInitialInterval() << Math.min(attempts - 1, 30));
+            mail.setNextAttemptDate(now.plusMillis(backoff));
+            retriedMeter.mark();
+            if (log.isDebugEnabled()) {
+                log.warn("Email {} could not be sent to '{}', retrying in {} ms", mail.getId(), mail.getRecipient(),
+                    backoff, failure);
+            } else {
+                log.warn("Email {} could not be sent to '{}', retrying in {} ms: {}", mail.getId(), mail.getRecipient(),
+                    backoff, failure.getMessage());
+            }
+        }
+    }
+
+    private static String getDomain(String recipient) {
+        return recipient.substring(recipient.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A token bucket per domain, holding at most a minute of permits, and refilled continuously.
+     */
+    private static final class DomainRateLimiter {
+
+        private final int permitsPerMinute;
+
+        private final Map<String, Bucket> buckets = new HashMap<>();
+
+        DomainRateLimiter(int permitsPerMinute) {
+            this.permitsPerMinute = permitsPerMinute;
+        }
+
+        /**
+         * Take up to the requested number of permits.
+         *
+         * @return the number of permits granted
+         */
+        synchronized int acquire(String domain, int requested, long now) {
+            // Full buckets hold no information, so they are dropped rather than kept for every domain ever seen
+            buckets.values().removeIf(bucket -> bucket.refill(now, permitsPerMinute) >= permitsPerMinute);
+            Bucket bucket = buckets.computeIfAbsent(domain, key -> new Bucket(permitsPerMinute, now));
+            int granted = Math.min(requested, (int) bucket.refill(now, permitsPerMinute));
+            bucket.tokens -= granted;
+            return granted;
+        }
+
+        /**
+         * @return the time for a bucket to get a new permit, in milliseconds
+         */
+        long getPermitInterval() {
+            return (TimeUnit.MINUTES.toMillis(1) + permitsPerMinute - 1) / permitsPerMinute;
+        }
+
+        private static final class Bucket {
+
+            private double tokens;
+
+            private long updated;
+
+            Bucket(double tokens, long updated) {
+                this.tokens = tokens;
+                this.updated = updated;
+            }
+
+            double refill(long now, int permitsPerMinute) {
+                if (now > updated) {
+                    tokens = Math.min(permitsPerMinute, tokens + (now - updated) * permitsPerMinute / 60000.0);
+                    updated = now;
+                }
+                return tokens;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.repository.PointsRepository;
+import com.wafflemkr.points.service.dto.PointsAggregateDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service aggregating the Points of a user over a date range.
+ */
+@Service
+@Transactional(readOnly = true)
+public class PointsStatisticsService {
+
+    /**
+     * The periods Points can be grouped by.
+     */
+    public enum GroupBy {
+        DAY, WEEK, MONTH
+    }
+
+    private final Logger log = LoggerFactory.getLogger(PointsStatisticsService.class);
+
+    private final PointsRepository pointsRepository;
+
+    public PointsStatisticsService(PointsRepository pointsRepository) {
+        this.pointsRepository = pointsRepository;
+    }
+
+    /**
+     * Aggregate the Points of a user between two dates.
+     * <p>
+     * Sums are computed by the database. Averages are over the points having a value for the field, and
+     * are computed from the sums and counts of each field, so that days can be added up into weeks. As JPQL has no portable ISO week function, weeks are built
+     * from the daily aggregates, which are at most 7 rows per week.
+     *
+     * @param login the login of the user
+     * @param from the first day of the range, inclusive
+     * @param to the last day of the range, inclusive
+     * @param groupBy the period to group by
+     * @return the aggregates of each period having points, in chronological order
+     */
+    public List<PointsAggregateDTO> aggregate(String login, LocalDate from, LocalDate to, GroupBy groupBy) {
+        log.debug("Request to aggregate Points of {} from {} to {} by {}", login, from, to, groupBy);
+        switch (groupBy) {
+            case MONTH:
+                return pointsRepository.aggregateByMonth(login, from, to);
+            case WEEK:
+                Map<LocalDate, PointsAggregateDTO> weeks = new LinkedHashMap<>();
+                for (PointsAggregateDTO day : pointsRepository.aggregateByDay(login, from, to)) {
+                    LocalDate weekStart = WeeklyPointsService.weekStart(day.getPeriodStart());
+                    weeks.computeIfAbsent(weekStart, start -> new PointsAggregateDTO(start, 0L, 0L, 0L, 0L, 0L, 0L, 0L)).add(day);
+                }
+                return new ArrayList<>(weeks.values());
+            default:
+                return pointsRepository.aggregateByDay(login, from, to);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.wafflemkr.points.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.wafflemkr.points.config.ApplicationProperties;
+import com.wafflemkr.points.domain.*;
+import com.wafflemkr.points.repository.*;
+import com.wafflemkr.points.repository.search.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service propagating entity changes to Elasticsearch asynchronously.
+ * <p>
+ * Writers call {@link #enqueue(Class, Long)} in their own transaction, which only records the change
+ * in the outbox table. The outbox is then flushed periodically, in batches each claimed and processed in
+ * its own transaction, until it is empty or the flush time budget is spent: changes to the same entity are
+ * coalesced, the current state of each entity is read back from the database, and it is sent to
+ * Elasticsearch in one bulk request per entity type. Entities which no longer exist are removed from their index.
+ * <p>
+ * Nodes flushing at once claim different entries, skipping the locked ones. An entity is only indexed by the
+ * node holding its oldest entry: a node claiming a later entry of an entity which is being indexed elsewhere
+ * leaves it for a later flush, so that an older state read by the other node cannot overwrite a newer one.
+ * Processing an entry again after a failed flush is harmless, as each flush reads the current state.
+ * <p>
+ * The queue depth and lag gauges query the outbox table when they are read, so they keep growing while
+ * flushes fail or fall behind.
+ */
+@Service
+@Transactional
+public class SearchIndexingService {
+
+    private final Logger log = LoggerFactory.getLogger(SearchIndexingService.class);
+
+    private final SearchIndexOutboxRepository searchIndexOutboxRepository;
+
+    private final Map<String, IndexedEntity<?>> indexedEntities = new HashMap<>();
+
+    private final ApplicationProperties.SearchIndexing properties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer flushTimer;
+
+    private final Meter documentsMeter;
+
+    public SearchIndexingService(SearchIndexOutboxRepository searchIndexOutboxRepository, ApplicationProperties applicationProperties,
+            PlatformTransactionManager transactionManager, MetricRegistry metricRegistry,
+            PointsRepository pointsRepository, PointsSearchRepository pointsSearchRepository,
+            WeightRepository weightRepository, WeightSearchRepository weightSearchRepository,
+            BloodPressureRepository bloodPressureRepository, BloodPressureSearchRepository bloodPressureSearchRepository,
+            PreferencesRepository preferencesRepository, PreferencesSearchRepository preferencesSearchRepository,
+            UserRepository userRepository, UserSearchRepository userSearchRepository) {
+        this.searchIndexOutboxRepository = searchIndexOutboxRepository;
+        this.properties = applicationProperties.getSearchIndexing();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        register(Points.class, pointsRepository, pointsSearchRepository, Points::getId);
+        register(Weight.class, weightRepository, weightSearchRepository, Weight::getId);
+        register(BloodPressure.class, bloodPressureRepository, bloodPressureSearchRepository, BloodPressure::getId);
+        register(Preferences.class, preferencesRepository, preferencesSearchRepository, Preferences::getId);
+        register(User.class, userRepository, userSearchRepository, User::getId);
+
+        this.flushTimer = metricRegistry.timer(MetricRegistry.name(SearchIndexingService.class, "flush"));
+        this.documentsMeter = metricRegistry.meter(MetricRegistry.name(SearchIndexingService.class, "documents"));
+        metricRegistry.register(MetricRegistry.name(SearchIndexingService.class, "queue-depth"),
+            (Gauge<Long>) searchIndexOutboxRepository::count);
+        metricRegistry.register(MetricRegistry.name(SearchIndexingService.class, "lag"),
+            (Gauge<Long>) () -> searchIndexOutboxRepository.findFirstByOrderByIdAsc()
+                .map(oldest -> Duration.between(oldest.getCreatedDate(), Instant.now()).toMillis())
+                .orElse(0L));
+    }
+
+    private <T> void register(Class<T> entityType, JpaRepository<T, Long> repository,
+            ElasticsearchRepository<T, Long> searchRepository, Function<T, Long> idGetter) {
+        indexedEntities.put(entityType.getSimpleName(), new IndexedEntity<>(repository, searchRepository, idGetter));
+    }
+
+    /**
+     * Record that an entity was created, updated or deleted, so its search index is updated.
+     *
+     * @param entityType the class of the entity
+     * @param id the id of the entity
+     */
+    public void enqueue(Class<?> entityType, Long id) {
+        enqueue(entityType, Collections.singletonList(id));
+    }
+
+    /**
+     * Record that several entities of the same type were created, updated or deleted.
+     *
+     * @param entityType the class of the entities
+     * @param ids the ids of the entities
+     */
+    public void enqueue(Class<?> entityType, Collection<Long> ids) {
+        String type = entityType.getSimpleName();
+        if (!indexedEntities.containsKey(type)) {
+            throw new IllegalArgumentException("No search index is registered for " + entityType.getName());
+        }
+        searchIndexOutboxRepository.save(ids.stream()
+            .map(id -> new SearchIndexOutbox().entityType(type).entityId(id))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Flush the indexing outbox on a fixed delay.
+     * <p>
+     * If Elasticsearch is unavailable the transaction of the current batch is rolled back, and its entries
+     * are retried at the next run.
+     */
+    @Scheduled(fixedDelayString = "${application.search-indexing.flush-interval:1000}")
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Propagate the pending entries of the outbox to Elasticsearch, one batch per transaction, until the outbox
+     * is empty or the flush time budget is spent.
+     *
+     * @return the number of outbox entries processed
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int flush() {
+        final Timer.Context context = flushTimer.time();
+        try {
+            long deadline = System.currentTimeMillis() + properties.getFlushTimeBudget();
+            int processed = 0;
+            while (true) {
+                Batch batch = transactionTemplate.execute(status -> flushBatch());
+                processed += batch.processed;
+                if (batch.claimed < properties.getBatchSize() || batch.processed == 0
+                        || System.currentTimeMillis() >= deadline) {
+                    break;
+                }
+            }
+            if (processed > 0) {
+                log.debug("Flushed {} search index updates", processed);
+            }
+            return processed;
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * Claim the oldest entries of the outbox, and reindex their entities.
+     */
+    private Batch flushBatch() {
+        List<SearchIndexOutbox> claimed = searchIndexOutboxRepository.findAllByOrderByIdAsc(
+            new PageRequest(0, properties.getBatchSize()));
+        if (claimed.isEmpty()) {
+            return new Batch(0, 0);
+        }
+        // Older entries are locked by other nodes, which may be indexing the same entities
+        Set<String> busy = searchIndexOutboxRepository.findAllByIdLessThan(claimed.get(0).getId()).stream()
+            .map(SearchIndexingService::key)
+            .collect(Collectors.toSet());
+        List<SearchIndexOutbox> pending = claimed.stream()
+            .filter(entry -> !busy.contains(key(entry)))
+            .collect(Collectors.toList());
+        if (pending.size() < claimed.size()) {
+            log.debug("Leaving {} search index updates of entities being indexed by another node",
+                claimed.size() - pending.size());
+        }
+
+        Map<String, Set<Long>> idsByType = new LinkedHashMap<>();
+        pending.forEach(entry -> idsByType.computeIfAbsent(entry.getEntityType(), type -> new LinkedHashSet<>())
+            .add(entry.getEntityId()));
+        idsByType.forEach((type, ids) -> {
+            IndexedEntity<?> indexedEntity = indexedEntities.get(type);
+            if (indexedEntity == null) {
+                log.warn("Dropping {} search index updates of unknown type {}", ids.size(), type);
+            } else {
+                indexedEntity.reindex(ids);
+                documentsMeter.mark(ids.size());
+            }
+        });
+        searchIndexOutboxRepository.deleteInBatch(pending);
+        return new Batch(claimed.size(), pending.size());
+    }
+
+    private static String key(SearchIndexOutbox entry) {
+        return entry.getEntityType() + '#' + entry.getEntityId();
+    }
+
+    private static final class Batch {
+
+        private final int claimed;
+
+        private final int processed;
+
+        Batch(int claimed, int processed) {
+            this.claimed = claimed;
+            this.processed = processed;
+        }
+    }
+
+    private static final class IndexedEntity<T> {
+
+        private final JpaRepository<T, Long> repository;
+
+        private final ElasticsearchRepository<T, Long> searchRepository;
+
+        private final Function<T, Long> idGetter;
+
+        IndexedEntity(JpaRepository<T, Long> repository, ElasticsearchRepository<T, Long> searchRepository,
+                Function<T, Long> idGetter) {
+            this.repository = repository;
+            this.searchRepository = searchRepository;
+            this.idGetter = idGetter;
+        }
+
+        void reindex(Set<Long> ids) {
+            List<T> entities = repository.findAll(ids);
+            if (!entities.isEmpty()) {
+                searchRepository.save(entities);
+            }
+            Set<Long> deletedIds = new HashSet<>(ids);
+            entities.forEach(entity -> deletedIds.remove(idGetter.apply(entity)));
+            deletedIds.forEach(searchRepository::delete);
+        }
+    }
+}
@@ -5,7 +5,6 @@ import com.wafflemkr.points.domain.User;
 import com.wafflemkr.points.repository.AuthorityRepository;
 import com.wafflemkr.points.repository.UserRepository;
 import com.wafflemkr.points.security.AuthoritiesConstants;
-import com.wafflemkr.points.repository.search.UserSearchRepository;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -38,18 +37,18 @@ public class SocialService {
 
     private final MailService mailService;
 
-    private final UserSearchRepository userSearchRepository;
+    private final SearchIndexingService searchIndexingService;
 
     public SocialService(UsersConnectionRepository usersConnectionRepository, AuthorityRepository authorityRepository,
             PasswordEncoder passwordEncoder, UserRepository userRepository,
-            MailService mailService, UserSearchRepository userSearchRepository) {
+            MailService mailService, SearchIndexingService searchIndexingService) {
 
         this.usersConnectionRepository = usersConnectionRepository;
         this.authorityRepository = authorityRepository;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
         this.mailService = mailService;
-        this.userSearchRepository = userSearchRepository;
+        this.searchIndexingService = searchIndexingService;
     }
 
     public void deleteUserSocialConnection(String login) {
@@ -112,8 +111,9 @@ public class SocialService {
         newUser.setLangKey(langKey);
         newUser.setImageUrl(imageUrl);
 
-        userSearchRepository.save(newUser);
-        return userRepository.save(newUser);
+        User user = userRepository.save(newUser);
+        searchIndexingService.enqueue(User.class, user.getId());
+        return user;
     }
 
     /**
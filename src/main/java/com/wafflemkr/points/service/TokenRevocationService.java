@@ -0,0 +1,125 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.domain.RevokedToken;
+import com.wafflemkr.points.repository.RevokedTokenRepository;
+import com.wafflemkr.points.security.jwt.TokenRevocationList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Service revoking JWT tokens before they expire.
+ * <p>
+ * Revoked tokens are stored in the database, so that all the nodes of the application know about them, and
+ * copied to the in-memory {@link TokenRevocationList} which is checked on each request. A token revoked on
+ * another node is rejected after the next synchronization.
+ * <p>
+ * The unique token id of the table decides which request revokes a token: a refresh token used twice at the
+ * same time, even on two nodes, is only accepted once.
+ */
+@Service
+@Transactional
+public class TokenRevocationService {
+
+    /**
+     * Tokens revoked slightly before the last synchronization are loaded again, in case the clocks of the nodes
+     * are not exactly in sync, or a transaction committed late.
+     */
+    private static final long SYNC_OVERLAP_SECONDS = 60;
+
+    private final Logger log = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    private final TokenRevocationList tokenRevocationList;
+
+    private final TransactionTemplate newTransaction;
+
+    private Instant lastSync = Instant.EPOCH;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, TokenRevocationList tokenRevocationList,
+            PlatformTransactionManager transactionManager) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.tokenRevocationList = tokenRevocationList;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Load the tokens which are still revoked before the application serves its first request.
+     * <p>
+     * In development Liquibase runs asynchronously, so the table may not exist yet: the tokens are then loaded
+     * by the first synchronization.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            loadRevokedTokens(Instant.now());
+        } catch (DataAccessException e) {
+            log.warn("Could not load the revoked tokens at startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Revoke a token until it expires.
+     * <p>
+     * The token is inserted in its own transaction, which commits before this method returns, so that only one
+     * of several concurrent calls for the same token gets {@code true}.
+     *
+     * @param tokenId the "jti" claim of the token
+     * @param expiration the expiration of the token
+     * @return true if the token is revoked by this call, false if it was already revoked
+     */
+    public boolean revoke(String tokenId, Instant expiration) {
+        log.debug("Request to revoke token {}", tokenId);
+        boolean revoked;
+        try {
+            newTransaction.execute(status ->
+                revokedTokenRepository.saveAndFlush(new RevokedToken().tokenId(tokenId).expirationDate(expiration)));
+            revoked = true;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Token {} is already revoked", tokenId);
+            revoked = false;
+        }
+        tokenRevocationList.revoke(tokenId, expiration.toEpochMilli());
+        return revoked;
+    }
+
+    /**
+     * Load the tokens revoked by the other nodes, and forget the tokens which have expired.
+     */
+    @Scheduled(fixedDelayString = "${application.security.revocation-sync-interval:10000}")
+    public void synchronize() {
+        Instant now = Instant.now();
+        loadRevokedTokens(now);
+        tokenRevocationList.prune(now.toEpochMilli());
+        int deleted = revokedTokenRepository.deleteAllByExpirationDateBefore(now);
+        if (deleted > 0) {
+            log.debug("Deleted {} expired revoked tokens", deleted);
+        }
+    }
+
+    private void loadRevokedTokens(Instant now) {
+        List<RevokedToken> revokedTokens = revokedTokenRepository.findAllByRevokedDateAfterAndExpirationDateAfter(
+            lastSync.minus(SYNC_OVERLAP_SECONDS, ChronoUnit.SECONDS), now);
+        revokedTokens.forEach(revokedToken ->
+            tokenRevocationList.revoke(revokedToken.getTokenId(), revokedToken.getExpirationDate().toEpochMilli()));
+        lastSync = now;
+        if (!revokedTokens.isEmpty()) {
+            log.debug("Loaded {} revoked tokens", revokedTokens.size());
+        }
+    }
+}
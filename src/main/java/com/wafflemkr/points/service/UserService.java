@@ -1,12 +1,12 @@
 package com.wafflemkr.points.service;
 
+import com.wafflemkr.points.config.ApplicationProperties;
 import com.wafflemkr.points.config.CacheConfiguration;
 import com.wafflemkr.points.domain.Authority;
 import com.wafflemkr.points.domain.User;
 import com.wafflemkr.points.repository.AuthorityRepository;
 import com.wafflemkr.points.config.Constants;
 import com.wafflemkr.points.repository.UserRepository;
-import com.wafflemkr.points.repository.search.UserSearchRepository;
 import com.wafflemkr.points.security.AuthoritiesConstants;
 import com.wafflemkr.points.security.SecurityUtils;
 import com.wafflemkr.points.service.util.RandomUtil;
@@ -14,6 +14,7 @@ import com.wafflemkr.points.service.dto.UserDTO;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -25,6 +26,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -34,6 +37,8 @@ import java.util.stream.Collectors;
 @Transactional
 public class UserService {
 
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
     private final UserRepository userRepository;
@@ -42,19 +47,23 @@ public class UserService {
 
     private final SocialService socialService;
 
-    private final UserSearchRepository userSearchRepository;
+    private final SearchIndexingService searchIndexingService;
 
     private final AuthorityRepository authorityRepository;
 
     private final CacheManager cacheManager;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, SocialService socialService, UserSearchRepository userSearchRepository, AuthorityRepository authorityRepository, CacheManager cacheManager) {
+    private final int passwordHashCost;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, SocialService socialService, SearchIndexingService searchIndexingService, AuthorityRepository authorityRepository, CacheManager cacheManager,
+            ApplicationProperties applicationProperties) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.socialService = socialService;
-        this.userSearchRepository = userSearchRepository;
+        this.searchIndexingService = searchIndexingService;
         this.authorityRepository = authorityRepository;
         this.cacheManager = cacheManager;
+        this.passwordHashCost = applicationProperties.getSecurity().getPasswordHashCost();
     }
 
     public Optional<User> activateRegistration(String key) {
@@ -64,9 +73,8 @@ public class UserService {
                 // activate given user for the registration key.
                 user.setActivated(true);
                 user.setActivationKey(null);
-                userSearchRepository.save(user);
-                cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-                cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+                searchIndexingService.enqueue(User.class, user.getId());
+                clearUserCaches(user);
                 log.debug("Activated user: {}", user);
                 return user;
             });
@@ -81,8 +89,7 @@ public class UserService {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 user.setResetKey(null);
                 user.setResetDate(null);
-                cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-                cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+                clearUserCaches(user);
                 return user;
            });
     }
@@ -93,8 +100,7 @@ public class UserService {
             .map(user -> {
                 user.setResetKey(RandomUtil.generateResetKey());
                 user.setResetDate(Instant.now());
-                cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-                cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+                clearUserCaches(user);
                 return user;
             });
     }
@@ -120,9 +126,8 @@ public class UserService {
         authorities.add(authority);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
-        userSearchRepository.save(newUser);
-        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(newUser.getLogin());
-        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(newUser.getEmail());
+        searchIndexingService.enqueue(User.class, newUser.getId());
+        clearUserCaches(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
@@ -151,9 +156,8 @@ public class UserService {
         user.setResetDate(Instant.now());
         user.setActivated(true);
         userRepository.save(user);
-        userSearchRepository.save(user);
-        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+        searchIndexingService.enqueue(User.class, user.getId());
+        clearUserCaches(user);
         log.debug("Created Information for User: {}", user);
         return user;
     }
@@ -171,14 +175,14 @@ public class UserService {
         SecurityUtils.getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
             .ifPresent(user -> {
+                clearUserCaches(user);
                 user.setFirstName(firstName);
                 user.setLastName(lastName);
                 user.setEmail(email);
                 user.setLangKey(langKey);
                 user.setImageUrl(imageUrl);
-                userSearchRepository.save(user);
-                cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-                cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+                searchIndexingService.enqueue(User.class, user.getId());
+                clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
             });
     }
@@ -193,6 +197,7 @@ public class UserService {
         return Optional.of(userRepository
             .findOne(userDTO.getId()))
             .map(user -> {
+                clearUserCaches(user);
                 user.setLogin(userDTO.getLogin());
                 user.setFirstName(userDTO.getFirstName());
                 user.setLastName(userDTO.getLastName());
@@ -205,9 +210,8 @@ public class UserService {
                 userDTO.getAuthorities().stream()
                     .map(authorityRepository::findOne)
                     .forEach(managedAuthorities::add);
-                userSearchRepository.save(user);
-                cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-                cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+                searchIndexingService.enqueue(User.class, user.getId());
+                clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -218,9 +222,8 @@ public class UserService {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             socialService.deleteUserSocialConnection(user.getLogin());
             userRepository.delete(user);
-            userSearchRepository.delete(user);
-            cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-            cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+            searchIndexingService.enqueue(User.class, user.getId());
+            clearUserCaches(user);
             log.debug("Deleted User: {}", user);
         });
     }
@@ -231,12 +234,33 @@ public class UserService {
             .ifPresent(user -> {
                 String encryptedPassword = passwordEncoder.encode(password);
                 user.setPassword(encryptedPassword);
-                cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-                cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+                clearUserCaches(user);
                 log.debug("Changed password for User: {}", user);
             });
     }
 
+    /**
+     * Hash the password of a user again if its hash does not use the configured cost. Hashes can not be
+     * converted, so this is done when the user has just logged in with the password.
+     *
+     * @param login the login of the authenticated user
+     * @param password the password the user authenticated with
+     */
+    public void rehashPasswordIfNeeded(String login, String password) {
+        userRepository.findOneByLogin(login)
+            .filter(user -> getPasswordHashCost(user.getPassword()) != passwordHashCost)
+            .ifPresent(user -> {
+                user.setPassword(passwordEncoder.encode(password));
+                clearUserCaches(user);
+                log.debug("Hashed the password of User {} again with cost {}", login, passwordHashCost);
+            });
+    }
+
+    private static int getPasswordHashCost(String encodedPassword) {
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
     @Transactional(readOnly = true)
     public Page<UserDTO> getAllManagedUsers(Pageable pageable) {
         return userRepository.findAllByLoginNot(pageable, Constants.ANONYMOUS_USER).map(UserDTO::new);
@@ -268,9 +292,23 @@ public class UserService {
         for (User user : users) {
             log.debug("Deleting not activated user {}", user.getLogin());
             userRepository.delete(user);
-            userSearchRepository.delete(user);
-            cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
-            cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+            searchIndexingService.enqueue(User.class, user.getId());
+            clearUserCaches(user);
+        }
+    }
+
+    /**
+     * Evict a user from the caches, under its login and its email, which are both used to log in.
+     * <p>
+     * Called before changing the login or email of a user too, so that the previous ones are not cached anymore.
+     */
+    private void clearUserCaches(User user) {
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).evict(user.getLogin());
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).evict(user.getEmail());
+        Cache usersByLoginOrEmail = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_OR_EMAIL_CACHE);
+        usersByLoginOrEmail.evict(user.getLogin().toLowerCase(Locale.ENGLISH));
+        if (user.getEmail() != null) {
+            usersByLoginOrEmail.evict(user.getEmail().toLowerCase(Locale.ENGLISH));
         }
     }
 
@@ -0,0 +1,157 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.domain.Points;
+import com.wafflemkr.points.domain.Preferences;
+import com.wafflemkr.points.domain.WeeklyPoints;
+import com.wafflemkr.points.repository.PreferencesRepository;
+import com.wafflemkr.points.repository.RollupRowCreator;
+import com.wafflemkr.points.repository.WeeklyPointsRepository;
+import com.wafflemkr.points.service.dto.WeeklyPointsDTO;
+import com.wafflemkr.points.service.mapper.WeeklyPointsMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Service maintaining the per-user weekly rollup of Points.
+ * <p>
+ * Callers must invoke {@link #add(Points)} and {@link #subtract(Points)} in the same transaction
+ * as the Points write, so the rollup never drifts from the underlying entries.
+ * <p>
+ * The row of a week is locked before it is updated. The first write to a week has no row to lock, so the row
+ * is first created empty if absent, see {@link RollupRowCreator}: when two first writes race, one of them waits
+ * for the row created by the other, and both then lock and update the same row.
+ */
+@Service
+@Transactional
+public class WeeklyPointsService {
+
+    private final Logger log = LoggerFactory.getLogger(WeeklyPointsService.class);
+
+    private final WeeklyPointsRepository weeklyPointsRepository;
+
+    private final WeeklyPointsMapper weeklyPointsMapper;
+
+    private final PreferencesRepository preferencesRepository;
+
+    private final RollupRowCreator rollupRowCreator;
+
+    public WeeklyPointsService(WeeklyPointsRepository weeklyPointsRepository, WeeklyPointsMapper weeklyPointsMapper,
+            PreferencesRepository preferencesRepository, RollupRowCreator rollupRowCreator) {
+        this.weeklyPointsRepository = weeklyPointsRepository;
+        this.weeklyPointsMapper = weeklyPointsMapper;
+        this.preferencesRepository = preferencesRepository;
+        this.rollupRowCreator = rollupRowCreator;
+    }
+
+    /**
+     * Add the contribution of a points entry to its week.
+     *
+     * @param points the created or updated points
+     */
+    public void add(Points points) {
+        apply(points, 1);
+    }
+
+    /**
+     * Add the contributions of several points entries, touching each user's week only once.
+     *
+     * @param pointsList the created points
+     */
+    public void addAll(Collection<Points> pointsList) {
+        Map<String, Points> weeks = new HashMap<>();
+        for (Points points : pointsList) {
+            if (!isTracked(points)) {
+                continue;
+            }
+            LocalDate weekStart = weekStart(points.getDate());
+            Points week = weeks.computeIfAbsent(points.getUser().getId() + "/" + weekStart,
+                key -> new Points().user(points.getUser()).date(weekStart).exercise(0).meals(0).alcohol(0));
+            week.exercise(week.getExercise() + valueOf(points.getExercise()))
+                .meals(week.getMeals() + valueOf(points.getMeals()))
+                .alcohol(week.getAlcohol() + valueOf(points.getAlcohol()));
+        }
+        weeks.values().forEach(this::add);
+    }
+
+    /**
+     * Remove the contribution of a points entry from its week, before it is updated or deleted.
+     *
+     * @param points the points as currently stored
+     */
+    public void subtract(Points points) {
+        apply(points, -1);
+    }
+
+    /**
+     * Get the weekly rollup of the current user for the week containing the given date.
+     *
+     * @param login the login of the user
+     * @param date any day of the requested week
+     * @return the weekly totals, all set to 0 if nothing was recorded that week
+     */
+    @Transactional(readOnly = true)
+    public WeeklyPointsDTO findByUserLogin(String login, LocalDate date) {
+        LocalDate weekStart = weekStart(date);
+        WeeklyPointsDTO weeklyPointsDTO = weeklyPointsRepository.findOneByUserLoginAndWeekStart(login, weekStart)
+            .map(weeklyPointsMapper::toDto)
+            .orElseGet(() -> {
+                WeeklyPointsDTO empty = new WeeklyPointsDTO();
+                empty.setWeekStart(weekStart);
+                empty.setUserLogin(login);
+                return empty;
+            });
+        preferencesRepository.findOneByUserLogin(login)
+            .map(Preferences::getWeeklyGoals)
+            .ifPresent(weeklyPointsDTO::setWeeklyGoals);
+        return weeklyPointsDTO;
+    }
+
+    /**
+     * @param date a day
+     * @return the Monday starting the ISO week of the day
+     */
+    public static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private void apply(Points points, int sign) {
+        if (!isTracked(points)) {
+            return;
+        }
+        Long userId = points.getUser().getId();
+        LocalDate weekStart = weekStart(points.getDate());
+        WeeklyPoints weeklyPoints = findForUpdate(userId, weekStart);
+        weeklyPoints
+            .exercise(weeklyPoints.getExercise() + sign * valueOf(points.getExercise()))
+            .meals(weeklyPoints.getMeals() + sign * valueOf(points.getMeals()))
+            .alcohol(weeklyPoints.getAlcohol() + sign * valueOf(points.getAlcohol()));
+        weeklyPointsRepository.save(weeklyPoints);
+        log.debug("Updated weekly points: {}", weeklyPoints);
+    }
+
+    private WeeklyPoints findForUpdate(Long userId, LocalDate weekStart) {
+        return weeklyPointsRepository.findOneByUserIdAndWeekStart(userId, weekStart).orElseGet(() -> {
+            rollupRowCreator.createIfAbsent("weekly_points", "week_start", userId, weekStart);
+            return weeklyPointsRepository.findOneByUserIdAndWeekStart(userId, weekStart)
+                .orElseThrow(() -> new IllegalStateException("No weekly points of user " + userId + " for " + weekStart));
+        });
+    }
+
+    private static boolean isTracked(Points points) {
+        return points != null && points.getDate() != null && points.getUser() != null && points.getUser().getId() != null;
+    }
+
+    private static int valueOf(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,212 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.repository.WeightRepository;
+import com.wafflemkr.points.service.dto.WeightBucketDTO;
+import com.wafflemkr.points.service.dto.WeightDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service downsampling the Weight readings of a user, so that charts get a few hundred points
+ * whatever the number of readings.
+ */
+@Service
+@Transactional(readOnly = true)
+public class WeightSeriesService {
+
+    /**
+     * Maximum number of points of a downsampled series.
+     */
+    public static final int MAX_POINTS = 2000;
+
+    private final Logger log = LoggerFactory.getLogger(WeightSeriesService.class);
+
+    private final WeightRepository weightRepository;
+
+    public WeightSeriesService(WeightRepository weightRepository) {
+        this.weightRepository = weightRepository;
+    }
+
+    /**
+     * Split a time range into buckets of equal duration, and summarize the readings of each bucket.
+     * <p>
+     * The readings are aggregated in a single pass over a database cursor, so memory use only depends
+     * on the number of buckets.
+     *
+     * @param login the login of the user
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param bucketCount the number of buckets
+     * @return the summary of each bucket having readings, in chronological order
+     */
+    public List<WeightBucketDTO> findBuckets(String login, ZonedDateTime from, ZonedDateTime to, int bucketCount) {
+        log.debug("Request to get {} buckets of Weights of {} from {} to {}", bucketCount, login, from, to);
+        long start = from.toInstant().toEpochMilli();
+        long span = to.toInstant().toEpochMilli() - start;
+        double[] min = new double[bucketCount];
+        double[] max = new double[bucketCount];
+        double[] sum = new double[bucketCount];
+        double[] last = new double[bucketCount];
+        long[] count = new long[bucketCount];
+        try (Stream<Object[]> readings = weightRepository.streamReadingsByUserLogin(login, from, to)) {
+            Iterator<Object[]> iterator = readings.iterator();
+            while (iterator.hasNext()) {
+                Object[] reading = iterator.next();
+                long offset = ((ZonedDateTime) reading[1]).toInstant().toEpochMilli() - start;
+                int bucket = (int) Math.min(bucketCount - 1, offset * bucketCount / span);
+                double weight = (Double) reading[2];
+                if (count[bucket] == 0 || weight < min[bucket]) {
+                    min[bucket] = weight;
+                }
+                if (count[bucket] == 0 || weight > max[bucket]) {
+                    max[bucket] = weight;
+                }
+                sum[bucket] += weight;
+                last[bucket] = weight;
+                count[bucket]++;
+            }
+        }
+        List<WeightBucketDTO> buckets = new ArrayList<>();
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            if (count[bucket] > 0) {
+                ZonedDateTime bucketStart = Instant.ofEpochMilli(start + span * bucket / bucketCount).atZone(ZoneOffset.UTC);
+                buckets.add(new WeightBucketDTO(bucketStart, min[bucket], max[bucket], sum[bucket] / count[bucket],
+                    last[bucket], count[bucket]));
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Select the readings which best preserve the visual shape of the series, using the
+     * Largest-Triangle-Three-Buckets algorithm.
+     * <p>
+     * Unlike bucket summaries, the returned points are actual readings. The first and last readings
+     * are always kept. The readings are counted, then read over a database cursor, so memory use only
+     * depends on the size of the buckets.
+     *
+     * @param login the login of the user
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param threshold the number of readings to keep, at least 3
+     * @return the selected readings, in chronological order
+     */
+    public List<WeightDTO> findLargestTriangleThreeBuckets(String login, ZonedDateTime from, ZonedDateTime to, int threshold) {
+        log.debug("Request to get {} Weights of {} from {} to {} by LTTB", threshold, login, from, to);
+        long length = weightRepository.countReadingsByUserLogin(login, from, to);
+        List<WeightDTO> result = new ArrayList<>();
+        try (Stream<Object[]> readings = weightRepository.streamReadingsByUserLogin(login, from, to)) {
+            for (Object[] reading : largestTriangleThreeBuckets(readings.iterator(), length, threshold)) {
+                WeightDTO weightDTO = new WeightDTO();
+                weightDTO.setId((Long) reading[0]);
+                weightDTO.setTimestamp((ZonedDateTime) reading[1]);
+                weightDTO.setWeight((Double) reading[2]);
+                result.add(weightDTO);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets, by Sveinn Steinarsson, reading one bucket ahead of the selected one.
+     * <p>
+     * The buckets are computed from the number of readings. If readings were added since they were counted,
+     * the extra ones are only candidates for the last point; if readings were deleted, the series ends early.
+     *
+     * @param readings the readings as id, timestamp and weight, in chronological order
+     * @param length the number of readings
+     * @param threshold the number of readings to keep
+     * @return the kept readings, in chronological order
+     */
+    static List<Object[]> largestTriangleThreeBuckets(Iterator<Object[]> readings, long length, int threshold) {
+        List<Object[]> sampled = new ArrayList<>();
+        if (threshold >= length || threshold < 3) {
+            readings.forEachRemaining(sampled::add);
+            return sampled;
+        }
+        if (!readings.hasNext()) {
+            return sampled;
+        }
+        // Buckets exclude the first and last readings, which are always kept
+        double every = (double) (length - 2) / (threshold - 2);
+        Object[] a = readings.next();
+        sampled.add(a);
+        List<Object[]> bucket = nextBucket(readings, bucketEnd(1, every) - 1);
+        for (int i = 1; i <= threshold - 2 && !bucket.isEmpty(); i++) {
+            // The third point of the triangles is the average of the next bucket, which is the last reading at the end
+            List<Object[]> next = i < threshold - 2 ?
+                nextBucket(readings, bucketEnd(i + 1, every) - bucketEnd(i, every)) : lastReading(readings);
+            if (next.isEmpty()) {
+                break;
+            }
+            double averageX = 0;
+            double averageY = 0;
+            for (Object[] reading : next) {
+                averageX += x(reading);
+                averageY += y(reading);
+            }
+            averageX /= next.size();
+            averageY /= next.size();
+
+            double maxArea = -1;
+            Object[] selected = bucket.get(0);
+            for (Object[] reading : bucket) {
+                double area = Math.abs((x(a) - averageX) * (y(reading) - y(a)) - (x(a) - x(reading)) * (averageY - y(a)));
+                if (area > maxArea) {
+                    maxArea = area;
+                    selected = reading;
+                }
+            }
+            sampled.add(selected);
+            a = selected;
+            bucket = next;
+        }
+        if (!bucket.isEmpty()) {
+            sampled.add(bucket.get(bucket.size() - 1));
+        }
+        return sampled;
+    }
+
+    /**
+     * @return the index following the last reading of a bucket, the first bucket starting after the first reading
+     */
+    private static long bucketEnd(int bucket, double every) {
+        return (long) Math.floor(bucket * every) + 1;
+    }
+
+    private static List<Object[]> nextBucket(Iterator<Object[]> readings, long size) {
+        List<Object[]> bucket = new ArrayList<>();
+        while (bucket.size() < size && readings.hasNext()) {
+            bucket.add(readings.next());
+        }
+        return bucket;
+    }
+
+    private static List<Object[]> lastReading(Iterator<Object[]> readings) {
+        Object[] last = null;
+        while (readings.hasNext()) {
+            last = readings.next();
+        }
+        return last == null ? Collections.emptyList() : Collections.singletonList(last);
+    }
+
+    private static long x(Object[] reading) {
+        return ((ZonedDateTime) reading[1]).toInstant().toEpochMilli();
+    }
+
+    private static double y(Object[] reading) {
+        return (Double) reading[2];
+    }
+}
@@ -0,0 +1,61 @@
+package com.wafflemkr.points.service.dto;
+
+
+import java.time.LocalDate;
+import java.io.Serializable;
+
+/**
+ * A DTO for the rolling BloodPressure averages of a user, over the days ending at a date.
+ */
+public class BloodPressureStatsDTO implements Serializable {
+
+    private LocalDate date;
+
+    private BloodPressureWindowDTO last7Days = new BloodPressureWindowDTO(7);
+
+    private BloodPressureWindowDTO last30Days = new BloodPressureWindowDTO(30);
+
+    private BloodPressureWindowDTO last90Days = new BloodPressureWindowDTO(90);
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public BloodPressureWindowDTO getLast7Days() {
+        return last7Days;
+    }
+
+    public void setLast7Days(BloodPressureWindowDTO last7Days) {
+        this.last7Days = last7Days;
+    }
+
+    public BloodPressureWindowDTO getLast30Days() {
+        return last30Days;
+    }
+
+    public void setLast30Days(BloodPressureWindowDTO last30Days) {
+        this.last30Days = last30Days;
+    }
+
+    public BloodPressureWindowDTO getLast90Days() {
+        return last90Days;
+    }
+
+    public void setLast90Days(BloodPressureWindowDTO last90Days) {
+        this.last90Days = last90Days;
+    }
+
+    @Override
+    public String toString() {
+        return "BloodPressureStatsDTO{" +
+            "date='" + getDate() + "'" +
+            ", last7Days=" + getLast7Days() +
+            ", last30Days=" + getLast30Days() +
+            ", last90Days=" + getLast90Days() +
+            "}";
+    }
+}
@@ -0,0 +1,72 @@
+package com.wafflemkr.points.service.dto;
+
+
+import java.io.Serializable;
+
+/**
+ * A DTO for the average BloodPressure readings of a user over a number of days.
+ */
+public class BloodPressureWindowDTO implements Serializable {
+
+    private int days;
+
+    private long readings;
+
+    private long systolicSum;
+
+    private long diastolicSum;
+
+    public BloodPressureWindowDTO() {
+    }
+
+    public BloodPressureWindowDTO(int days) {
+        this.days = days;
+    }
+
+    /**
+     * Add the totals of a day to the window.
+     *
+     * @param systolicSum the sum of the systolic readings of the day
+     * @param diastolicSum the sum of the diastolic readings of the day
+     * @param readings the number of readings of the day
+     */
+    public void add(long systolicSum, long diastolicSum, long readings) {
+        this.systolicSum += systolicSum;
+        this.diastolicSum += diastolicSum;
+        this.readings += readings;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    public long getReadings() {
+        return readings;
+    }
+
+    public void setReadings(long readings) {
+        this.readings = readings;
+    }
+
+    public Double getSystolicAverage() {
+        return readings == 0 ? null : (double) systolicSum / readings;
+    }
+
+    public Double getDiastolicAverage() {
+        return readings == 0 ? null : (double) diastolicSum / readings;
+    }
+
+    @Override
+    public String toString() {
+        return "BloodPressureWindowDTO{" +
+            "days=" + getDays() +
+            ", readings=" + getReadings() +
+            ", systolicAverage=" + getSystolicAverage() +
+            ", diastolicAverage=" + getDiastolicAverage() +
+            "}";
+    }
+}
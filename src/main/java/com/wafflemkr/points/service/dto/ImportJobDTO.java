@@ -0,0 +1,149 @@
+package com.wafflemkr.points.service.dto;
+
+
+import com.wafflemkr.points.domain.enumeration.ImportStatus;
+import com.wafflemkr.points.domain.enumeration.ImportType;
+
+import java.time.Instant;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for the ImportJob entity.
+ */
+public class ImportJobDTO implements Serializable {
+
+    private Long id;
+
+    private ImportType type;
+
+    private ImportStatus status;
+
+    private Long importedRows;
+
+    private Long rejectedRows;
+
+    private String errors;
+
+    private Instant createdDate;
+
+    private Instant finishedDate;
+
+    private Long userId;
+
+    private String userLogin;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ImportType getType() {
+        return type;
+    }
+
+    public void setType(ImportType type) {
+        this.type = type;
+    }
+
+    public ImportStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ImportStatus status) {
+        this.status = status;
+    }
+
+    public Long getImportedRows() {
+        return importedRows;
+    }
+
+    public void setImportedRows(Long importedRows) {
+        this.importedRows = importedRows;
+    }
+
+    public Long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public void setRejectedRows(Long rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+
+    public String getErrors() {
+        return errors;
+    }
+
+    public void setErrors(String errors) {
+        this.errors = errors;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Instant getFinishedDate() {
+        return finishedDate;
+    }
+
+    public void setFinishedDate(Instant finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserLogin() {
+        return userLogin;
+    }
+
+    public void setUserLogin(String userLogin) {
+        this.userLogin = userLogin;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ImportJobDTO importJobDTO = (ImportJobDTO) o;
+        if(importJobDTO.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), importJobDTO.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "ImportJobDTO{" +
+            "id=" + getId() +
+            ", type='" + getType() + "'" +
+            ", status='" + getStatus() + "'" +
+            ", importedRows=" + getImportedRows() +
+            ", rejectedRows=" + getRejectedRows() +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", finishedDate='" + getFinishedDate() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,121 @@
+package com.wafflemkr.points.service.dto;
+
+
+import java.time.LocalDate;
+import java.io.Serializable;
+
+/**
+ * A DTO holding the Points of a user aggregated over a day, a week or a month.
+ * <p>
+ * It is built directly by JPQL constructor expressions, so aggregating a range never loads the entities.
+ */
+public class PointsAggregateDTO implements Serializable {
+
+    private final LocalDate periodStart;
+
+    private long exercise;
+
+    private long meals;
+
+    private long alcohol;
+
+    private long entries;
+
+    private long exerciseEntries;
+
+    private long mealsEntries;
+
+    private long alcoholEntries;
+
+    public PointsAggregateDTO(LocalDate periodStart, Long exercise, Long meals, Long alcohol, Long entries,
+            Long exerciseEntries, Long mealsEntries, Long alcoholEntries) {
+        this.periodStart = periodStart;
+        this.exercise = valueOf(exercise);
+        this.meals = valueOf(meals);
+        this.alcohol = valueOf(alcohol);
+        this.entries = valueOf(entries);
+        this.exerciseEntries = valueOf(exerciseEntries);
+        this.mealsEntries = valueOf(mealsEntries);
+        this.alcoholEntries = valueOf(alcoholEntries);
+    }
+
+    public PointsAggregateDTO(Integer year, Integer month, Long exercise, Long meals, Long alcohol, Long entries,
+            Long exerciseEntries, Long mealsEntries, Long alcoholEntries) {
+        this(LocalDate.of(year, month, 1), exercise, meals, alcohol, entries, exerciseEntries, mealsEntries, alcoholEntries);
+    }
+
+    /**
+     * Add the totals of another aggregate to this one.
+     *
+     * @param other the aggregate to add
+     * @return this aggregate
+     */
+    public PointsAggregateDTO add(PointsAggregateDTO other) {
+        exercise += other.exercise;
+        meals += other.meals;
+        alcohol += other.alcohol;
+        entries += other.entries;
+        exerciseEntries += other.exerciseEntries;
+        mealsEntries += other.mealsEntries;
+        alcoholEntries += other.alcoholEntries;
+        return this;
+    }
+
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public long getExercise() {
+        return exercise;
+    }
+
+    public long getMeals() {
+        return meals;
+    }
+
+    public long getAlcohol() {
+        return alcohol;
+    }
+
+    public long getTotal() {
+        return exercise + meals + alcohol;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public double getExerciseAverage() {
+        return average(exercise, exerciseEntries);
+    }
+
+    public double getMealsAverage() {
+        return average(meals, mealsEntries);
+    }
+
+    public double getAlcoholAverage() {
+        return average(alcohol, alcoholEntries);
+    }
+
+    /**
+     * Average over the entries having a value, as SQL {@code avg} does.
+     */
+    private static double average(long sum, long count) {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    private static long valueOf(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    @Override
+    public String toString() {
+        return "PointsAggregateDTO{" +
+            "periodStart='" + getPeriodStart() + "'" +
+            ", exercise=" + getExercise() +
+            ", meals=" + getMeals() +
+            ", alcohol=" + getAlcohol() +
+            ", entries=" + getEntries() +
+            "}";
+    }
+}
@@ -0,0 +1,106 @@
+package com.wafflemkr.points.service.dto;
+
+
+import java.time.LocalDate;
+import java.io.Serializable;
+
+/**
+ * A DTO for the WeeklyPoints entity, completed with the goal progress of the user.
+ */
+public class WeeklyPointsDTO implements Serializable {
+
+    private LocalDate weekStart;
+
+    private Integer exercise = 0;
+
+    private Integer meals = 0;
+
+    private Integer alcohol = 0;
+
+    private Integer weeklyGoals;
+
+    private Long userId;
+
+    private String userLogin;
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public void setWeekStart(LocalDate weekStart) {
+        this.weekStart = weekStart;
+    }
+
+    public Integer getExercise() {
+        return exercise;
+    }
+
+    public void setExercise(Integer exercise) {
+        this.exercise = exercise;
+    }
+
+    public Integer getMeals() {
+        return meals;
+    }
+
+    public void setMeals(Integer meals) {
+        this.meals = meals;
+    }
+
+    public Integer getAlcohol() {
+        return alcohol;
+    }
+
+    public void setAlcohol(Integer alcohol) {
+        this.alcohol = alcohol;
+    }
+
+    public Integer getTotal() {
+        return exercise + meals + alcohol;
+    }
+
+    public Integer getWeeklyGoals() {
+        return weeklyGoals;
+    }
+
+    public void setWeeklyGoals(Integer weeklyGoals) {
+        this.weeklyGoals = weeklyGoals;
+    }
+
+    /**
+     * @return the ratio of the weekly total to the weekly goals, or null if the user has no goals set
+     */
+    public Double getGoalProgress() {
+        if (weeklyGoals == null || weeklyGoals == 0) {
+            return null;
+        }
+        return getTotal().doubleValue() / weeklyGoals;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getUserLogin() {
+        return userLogin;
+    }
+
+    public void setUserLogin(String userLogin) {
+        this.userLogin = userLogin;
+    }
+
+    @Override
+    public String toString() {
+        return "WeeklyPointsDTO{" +
+            "weekStart='" + getWeekStart() + "'" +
+            ", exercise=" + getExercise() +
+            ", meals=" + getMeals() +
+            ", alcohol=" + getAlcohol() +
+            ", weeklyGoals=" + getWeeklyGoals() +
+            "}";
+    }
+}
@@ -0,0 +1,95 @@
+package com.wafflemkr.points.service.dto;
+
+
+import java.time.ZonedDateTime;
+import java.io.Serializable;
+
+/**
+ * A DTO summarizing the Weight readings of a time bucket.
+ */
+public class WeightBucketDTO implements Serializable {
+
+    private ZonedDateTime start;
+
+    private Double min;
+
+    private Double max;
+
+    private Double average;
+
+    private Double last;
+
+    private Long count;
+
+    public WeightBucketDTO() {
+    }
+
+    public WeightBucketDTO(ZonedDateTime start, Double min, Double max, Double average, Double last, Long count) {
+        this.start = start;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.last = last;
+        this.count = count;
+    }
+
+    public ZonedDateTime getStart() {
+        return start;
+    }
+
+    public void setStart(ZonedDateTime start) {
+        this.start = start;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public void setMin(Double min) {
+        this.min = min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public void setMax(Double max) {
+        this.max = max;
+    }
+
+    public Double getAverage() {
+        return average;
+    }
+
+    public void setAverage(Double average) {
+        this.average = average;
+    }
+
+    public Double getLast() {
+        return last;
+    }
+
+    public void setLast(Double last) {
+        this.last = last;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return "WeightBucketDTO{" +
+            "start='" + getStart() + "'" +
+            ", min=" + getMin() +
+            ", max=" + getMax() +
+            ", average=" + getAverage() +
+            ", last=" + getLast() +
+            ", count=" + getCount() +
+            "}";
+    }
+}
@@ -0,0 +1,17 @@
+package com.wafflemkr.points.service.mapper;
+
+import com.wafflemkr.points.domain.*;
+import com.wafflemkr.points.service.dto.ImportJobDTO;
+
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity ImportJob and its DTO ImportJobDTO.
+ */
+@Mapper(componentModel = "spring", uses = {UserMapper.class})
+public interface ImportJobMapper {
+
+    @Mapping(source = "user.id", target = "userId")
+    @Mapping(source = "user.login", target = "userLogin")
+    ImportJobDTO toDto(ImportJob importJob);
+}
@@ -0,0 +1,18 @@
+package com.wafflemkr.points.service.mapper;
+
+import com.wafflemkr.points.domain.*;
+import com.wafflemkr.points.service.dto.WeeklyPointsDTO;
+
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity WeeklyPoints and its DTO WeeklyPointsDTO.
+ */
+@Mapper(componentModel = "spring", uses = {UserMapper.class})
+public interface WeeklyPointsMapper {
+
+    @Mapping(source = "user.id", target = "userId")
+    @Mapping(source = "user.login", target = "userLogin")
+    @Mapping(target = "weeklyGoals", ignore = true)
+    WeeklyPointsDTO toDto(WeeklyPoints weeklyPoints);
+}
@@ -1,5 +1,6 @@
 package com.wafflemkr.points.web.rest;
 
+import com.wafflemkr.points.service.AuditEventExportService;
 import com.wafflemkr.points.service.AuditEventService;
 import com.wafflemkr.points.web.rest.util.PaginationUtil;
 
@@ -11,7 +12,10 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.List;
@@ -25,8 +29,11 @@ public class AuditResource {
 
     private final AuditEventService auditEventService;
 
-    public AuditResource(AuditEventService auditEventService) {
+    private final AuditEventExportService auditEventExportService;
+
+    public AuditResource(AuditEventService auditEventService, AuditEventExportService auditEventExportService) {
         this.auditEventService = auditEventService;
+        this.auditEventExportService = auditEventExportService;
     }
 
     /**
@@ -64,6 +71,34 @@ public class AuditResource {
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /audits/export : export the AuditEvents between the fromDate and toDate, as NDJSON.
+     * <p>
+     * The response is streamed from the database as it is written, whatever the number of AuditEvents, with the
+     * timeout of the history export.
+     *
+     * @param fromDate the start of the time period of AuditEvents to export
+     * @param toDate the end of the time period of AuditEvents to export
+     * @param response the response the AuditEvents are written to
+     * @return the task writing the AuditEvents, one per line, with status 200 (OK)
+     */
+    @GetMapping(path = "/export", params = {"fromDate", "toDate"})
+    public WebAsyncTask<Void> export(
+        @RequestParam(value = "fromDate") LocalDate fromDate,
+        @RequestParam(value = "toDate") LocalDate toDate,
+        HttpServletResponse response) {
+
+        Instant from = fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Instant to = toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant();
+        response.setContentType(ExportResource.NDJSON.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"audits-" + fromDate + "-" + toDate + ".ndjson\"");
+        return new WebAsyncTask<>(ExportResource.EXPORT_TIMEOUT_MILLIS, () -> {
+            auditEventExportService.export(from, to, response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+
     /**
      * GET  /audits/:id : get an AuditEvent by id.
      *
@@ -5,8 +5,16 @@ import com.wafflemkr.points.domain.BloodPressure;
 
 import com.wafflemkr.points.repository.BloodPressureRepository;
 import com.wafflemkr.points.repository.search.BloodPressureSearchRepository;
+import com.wafflemkr.points.security.AuthoritiesConstants;
+import com.wafflemkr.points.security.SecurityUtils;
+import com.wafflemkr.points.service.BloodPressureStatsService;
+import com.wafflemkr.points.service.SearchIndexingService;
+import com.wafflemkr.points.service.dto.BloodPressureStatsDTO;
 import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
+import com.wafflemkr.points.web.rest.errors.InternalServerErrorException;
 import com.wafflemkr.points.web.rest.util.HeaderUtil;
+import com.wafflemkr.points.web.websocket.EntityChangeService;
+import com.wafflemkr.points.web.rest.util.KeysetCursor;
 import com.wafflemkr.points.web.rest.util.PaginationUtil;
 import com.wafflemkr.points.service.dto.BloodPressureDTO;
 import com.wafflemkr.points.service.mapper.BloodPressureMapper;
@@ -14,14 +22,17 @@ import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.LocalDate;
 
 import java.util.List;
 import java.util.Optional;
@@ -47,10 +58,21 @@ public class BloodPressureResource {
 
     private final BloodPressureSearchRepository bloodPressureSearchRepository;
 
-    public BloodPressureResource(BloodPressureRepository bloodPressureRepository, BloodPressureMapper bloodPressureMapper, BloodPressureSearchRepository bloodPressureSearchRepository) {
+    private final SearchIndexingService searchIndexingService;
+
+    private final BloodPressureStatsService bloodPressureStatsService;
+
+    private final EntityChangeService entityChangeService;
+
+    public BloodPressureResource(BloodPressureRepository bloodPressureRepository, BloodPressureMapper bloodPressureMapper, BloodPressureSearchRepository bloodPressureSearchRepository, SearchIndexingService searchIndexingService,
+            BloodPressureStatsService bloodPressureStatsService,
+            EntityChangeService entityChangeService) {
         this.bloodPressureRepository = bloodPressureRepository;
         this.bloodPressureMapper = bloodPressureMapper;
         this.bloodPressureSearchRepository = bloodPressureSearchRepository;
+        this.searchIndexingService = searchIndexingService;
+        this.bloodPressureStatsService = bloodPressureStatsService;
+        this.entityChangeService = entityChangeService;
     }
 
     /**
@@ -62,6 +84,7 @@ public class BloodPressureResource {
      */
     @PostMapping("/blood-pressures")
     @Timed
+    @Transactional
     public ResponseEntity<BloodPressureDTO> createBloodPressure(@RequestBody BloodPressureDTO bloodPressureDTO) throws URISyntaxException {
         log.debug("REST request to save BloodPressure : {}", bloodPressureDTO);
         if (bloodPressureDTO.getId() != null) {
@@ -69,8 +92,10 @@ public class BloodPressureResource {
         }
         BloodPressure bloodPressure = bloodPressureMapper.toEntity(bloodPressureDTO);
         bloodPressure = bloodPressureRepository.save(bloodPressure);
+        bloodPressureStatsService.add(bloodPressure);
         BloodPressureDTO result = bloodPressureMapper.toDto(bloodPressure);
-        bloodPressureSearchRepository.save(bloodPressure);
+        searchIndexingService.enqueue(BloodPressure.class, bloodPressure.getId());
+        entityChangeService.created(EntityChangeService.BLOOD_PRESSURES, bloodPressure.getUser(), result.getId(), result);
         return ResponseEntity.created(new URI("/api/blood-pressures/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -87,15 +112,19 @@ public class BloodPressureResource {
      */
     @PutMapping("/blood-pressures")
     @Timed
+    @Transactional
     public ResponseEntity<BloodPressureDTO> updateBloodPressure(@RequestBody BloodPressureDTO bloodPressureDTO) throws URISyntaxException {
         log.debug("REST request to update BloodPressure : {}", bloodPressureDTO);
         if (bloodPressureDTO.getId() == null) {
             return createBloodPressure(bloodPressureDTO);
         }
+        bloodPressureStatsService.subtract(bloodPressureRepository.findOne(bloodPressureDTO.getId()));
         BloodPressure bloodPressure = bloodPressureMapper.toEntity(bloodPressureDTO);
         bloodPressure = bloodPressureRepository.save(bloodPressure);
+        bloodPressureStatsService.add(bloodPressure);
         BloodPressureDTO result = bloodPressureMapper.toDto(bloodPressure);
-        bloodPressureSearchRepository.save(bloodPressure);
+        searchIndexingService.enqueue(BloodPressure.class, bloodPressure.getId());
+        entityChangeService.updated(EntityChangeService.BLOOD_PRESSURES, bloodPressure.getUser(), result.getId(), result);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, bloodPressureDTO.getId().toString()))
             .body(result);
@@ -103,6 +132,8 @@ public class BloodPressureResource {
 
     /**
      * GET  /blood-pressures : get all the bloodPressures.
+     * <p>
+     * Only administrators see the bloodPressures of every user, other users only get their own.
      *
      * @param pageable the pagination information
      * @return the ResponseEntity with status 200 (OK) and the list of bloodPressures in body
@@ -111,11 +142,67 @@ public class BloodPressureResource {
     @Timed
     public ResponseEntity<List<BloodPressureDTO>> getAllBloodPressures(Pageable pageable) {
         log.debug("REST request to get a page of BloodPressures");
-        Page<BloodPressure> page = bloodPressureRepository.findAll(pageable);
+        Page<BloodPressure> page;
+        if (SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN)) {
+            page = bloodPressureRepository.findAll(pageable);
+        } else {
+            page = bloodPressureRepository.findByUserLogin(getCurrentUserLogin(), pageable);
+        }
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/blood-pressures");
         return new ResponseEntity<>(bloodPressureMapper.toDto(page.getContent()), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /blood-pressures?cursor=:cursor : get a keyset page of the bloodPressures, most recent first.
+     * <p>
+     * As for offset pagination, only administrators see the bloodPressures of every user.
+     * <p>
+     * Pass an empty cursor to get the first page, then follow the "next" link of each response. Unlike offset
+     * pagination, no total count is computed. Blood pressures without a timestamp are not listed in this mode.
+     *
+     * @param cursor the cursor of the page, empty for the first page
+     * @param size the page size
+     * @return the ResponseEntity with status 200 (OK) and the list of bloodPressures in body
+     */
+    @GetMapping(value = "/blood-pressures", params = "cursor")
+    @Timed
+    public ResponseEntity<List<BloodPressureDTO>> getAllBloodPressuresByCursor(@RequestParam String cursor, @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get a keyset page of BloodPressures after {}", cursor);
+        int pageSize = KeysetCursor.boundedPageSize(size);
+        Pageable limit = new PageRequest(0, pageSize + 1);
+        List<BloodPressure> bloodPressures;
+        boolean admin = SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN);
+        if (cursor.isEmpty()) {
+            bloodPressures = admin ? bloodPressureRepository.findKeysetFirstPage(limit)
+                : bloodPressureRepository.findKeysetFirstPageByUserLogin(getCurrentUserLogin(), limit);
+        } else {
+            KeysetCursor<LocalDate> position = KeysetCursor.decode(cursor, LocalDate::parse, ENTITY_NAME);
+            bloodPressures = admin ? bloodPressureRepository.findKeysetPageAfter(position.getKey(), position.getId(), limit)
+                : bloodPressureRepository.findKeysetPageAfterByUserLogin(getCurrentUserLogin(), position.getKey(), position.getId(), limit);
+        }
+        String nextCursor = null;
+        if (bloodPressures.size() > pageSize) {
+            bloodPressures = bloodPressures.subList(0, pageSize);
+            BloodPressure last = bloodPressures.get(pageSize - 1);
+            nextCursor = KeysetCursor.encode(last.getTimestamp(), last.getId());
+        }
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(nextCursor, pageSize, "/api/blood-pressures");
+        return new ResponseEntity<>(bloodPressureMapper.toDto(bloodPressures), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /blood-pressures/stats : get the rolling 7, 30 and 90-day averages of the current user.
+     *
+     * @param date the last day of the windows, today if not set
+     * @return the ResponseEntity with status 200 (OK) and the averages in body
+     */
+    @GetMapping("/blood-pressures/stats")
+    @Timed
+    public ResponseEntity<BloodPressureStatsDTO> getBloodPressureStats(@RequestParam(required = false) LocalDate date) {
+        log.debug("REST request to get BloodPressure stats up to {}", date);
+        return ResponseEntity.ok(bloodPressureStatsService.findByUserLogin(getCurrentUserLogin(), date != null ? date : LocalDate.now()));
+    }
+
     /**
      * GET  /blood-pressures/:id : get the "id" bloodPressure.
      *
@@ -139,10 +226,16 @@ public class BloodPressureResource {
      */
     @DeleteMapping("/blood-pressures/{id}")
     @Timed
+    @Transactional
     public ResponseEntity<Void> deleteBloodPressure(@PathVariable Long id) {
         log.debug("REST request to delete BloodPressure : {}", id);
+        BloodPressure bloodPressure = bloodPressureRepository.findOne(id);
+        bloodPressureStatsService.subtract(bloodPressure);
         bloodPressureRepository.delete(id);
-        bloodPressureSearchRepository.delete(id);
+        searchIndexingService.enqueue(BloodPressure.class, id);
+        if (bloodPressure != null) {
+            entityChangeService.deleted(EntityChangeService.BLOOD_PRESSURES, bloodPressure.getUser(), id);
+        }
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 
@@ -163,4 +256,9 @@ public class BloodPressureResource {
         return new ResponseEntity<>(bloodPressureMapper.toDto(page.getContent()), headers, HttpStatus.OK);
     }
 
+    private String getCurrentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin()
+            .orElseThrow(() -> new InternalServerErrorException("Current user login not found"));
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.wafflemkr.points.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import com.wafflemkr.points.security.SecurityUtils;
+import com.wafflemkr.points.service.HealthExportService;
+import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
+import com.wafflemkr.points.web.rest.errors.InternalServerErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Locale;
+
+/**
+ * REST controller for exporting the health history of the current user.
+ */
+@RestController
+@RequestMapping("/api")
+public class ExportResource {
+
+    private static final String ENTITY_NAME = "export";
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+
+    static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    /**
+     * Timeout of the streamed exports, which can take much longer than the default timeout of asynchronous requests.
+     */
+    static final long EXPORT_TIMEOUT_MILLIS = 600000;
+
+    private final Logger log = LoggerFactory.getLogger(ExportResource.class);
+
+    private final HealthExportService healthExportService;
+
+    public ExportResource(HealthExportService healthExportService) {
+        this.healthExportService = healthExportService;
+    }
+
+    /**
+     * GET  /export : export the points, weights and blood pressures of the current user.
+     * <p>
+     * The response is streamed from the database as it is written, whatever the length of the history, on another
+     * thread and with a timeout of its own.
+     *
+     * @param format the format of the export: ndjson or csv
+     * @param response the response the history is written to
+     * @return the task writing the history, with status 200 (OK),
+     * or with status 400 (Bad Request) if the format is not supported
+     */
+    @GetMapping("/export")
+    @Timed
+    public WebAsyncTask<Void> exportHistory(@RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) {
+        log.debug("REST request to export the history of the current user as {}", format);
+        HealthExportService.Format exportFormat;
+        try {
+            exportFormat = HealthExportService.Format.valueOf(format.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("The history can only be exported as ndjson or csv", ENTITY_NAME, "invalidformat");
+        }
+        // The body is written on another thread, where the security context is not available
+        String login = SecurityUtils.getCurrentUserLogin()
+            .orElseThrow(() -> new InternalServerErrorException("Current user login not found"));
+        boolean csv = exportFormat == HealthExportService.Format.CSV;
+        response.setContentType((csv ? CSV : NDJSON).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"history." + (csv ? "csv" : "ndjson") + "\"");
+        return new WebAsyncTask<>(EXPORT_TIMEOUT_MILLIS, () -> {
+            healthExportService.export(login, exportFormat, response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+}
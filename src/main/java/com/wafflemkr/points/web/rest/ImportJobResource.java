@@ -0,0 +1,102 @@
+package com.wafflemkr.points.web.rest;
+
+import com.codahale.metrics.annotation.Timed;
+import com.wafflemkr.points.domain.enumeration.ImportType;
+import com.wafflemkr.points.security.AuthoritiesConstants;
+import com.wafflemkr.points.security.SecurityUtils;
+import com.wafflemkr.points.service.ImportJobService;
+import com.wafflemkr.points.service.dto.ImportJobDTO;
+import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
+import com.wafflemkr.points.web.rest.errors.InternalServerErrorException;
+import com.wafflemkr.points.web.rest.errors.TooManyRequestsException;
+import io.github.jhipster.web.util.ResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * REST controller for importing CSV files of weights and blood pressures.
+ */
+@RestController
+@RequestMapping("/api")
+public class ImportJobResource {
+
+    private final Logger log = LoggerFactory.getLogger(ImportJobResource.class);
+
+    private static final String ENTITY_NAME = "importJob";
+
+    /**
+     * Delay after which a rejected import can be submitted again, imports usually take a few seconds.
+     */
+    private static final long RETRY_AFTER_SECONDS = 30;
+
+    private final ImportJobService importJobService;
+
+    public ImportJobResource(ImportJobService importJobService) {
+        this.importJobService = importJobService;
+    }
+
+    /**
+     * POST  /import-jobs : Start importing a CSV file of readings for the current user.
+     *
+     * @param type the type of the readings: weight or blood_pressure
+     * @param file the CSV file
+     * @return the ResponseEntity with status 202 (Accepted) and with body the new importJobDTO,
+     * or with status 400 (Bad Request) if the type is not supported or the file is empty,
+     * or with status 429 (Too Many Requests) and a Retry-After header if too many imports are in progress
+     * @throws IOException if the file cannot be read
+     * @throws URISyntaxException if the Location URI syntax is incorrect
+     */
+    @PostMapping("/import-jobs")
+    @Timed
+    public ResponseEntity<ImportJobDTO> createImportJob(@RequestParam String type, @RequestParam MultipartFile file)
+            throws IOException, URISyntaxException {
+        log.debug("REST request to import {} readings from {}", type, file.getOriginalFilename());
+        ImportType importType;
+        try {
+            importType = ImportType.valueOf(type.toUpperCase(Locale.ENGLISH).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Only weights and blood pressures can be imported", ENTITY_NAME, "invalidtype");
+        }
+        if (file.isEmpty()) {
+            throw new BadRequestAlertException("The imported file is empty", ENTITY_NAME, "emptyfile");
+        }
+        ImportJobDTO result;
+        try (InputStream content = file.getInputStream()) {
+            result = importJobService.submit(getCurrentUserLogin(), importType, content);
+        } catch (TaskRejectedException e) {
+            throw new TooManyRequestsException("Too many imports in progress", RETRY_AFTER_SECONDS);
+        }
+        return ResponseEntity.accepted()
+            .location(new URI("/api/import-jobs/" + result.getId()))
+            .body(result);
+    }
+
+    /**
+     * GET  /import-jobs/:id : get the "id" importJob, to follow its progress.
+     *
+     * @param id the id of the importJobDTO to retrieve
+     * @return the ResponseEntity with status 200 (OK) and with body the importJobDTO, or with status 404 (Not Found)
+     */
+    @GetMapping("/import-jobs/{id}")
+    @Timed
+    public ResponseEntity<ImportJobDTO> getImportJob(@PathVariable Long id) {
+        log.debug("REST request to get ImportJob : {}", id);
+        String login = SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN) ? null : getCurrentUserLogin();
+        return ResponseUtil.wrapOrNotFound(importJobService.findOne(id, login));
+    }
+
+    private String getCurrentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin()
+            .orElseThrow(() -> new InternalServerErrorException("Current user login not found"));
+    }
+}
@@ -5,26 +5,46 @@ import com.wafflemkr.points.domain.Points;
 
 import com.wafflemkr.points.repository.PointsRepository;
 import com.wafflemkr.points.repository.search.PointsSearchRepository;
+import com.wafflemkr.points.security.AuthoritiesConstants;
+import com.wafflemkr.points.security.SecurityUtils;
+import com.wafflemkr.points.service.PointsStatisticsService;
+import com.wafflemkr.points.service.SearchIndexingService;
+import com.wafflemkr.points.service.WeeklyPointsService;
+import com.wafflemkr.points.service.dto.PointsAggregateDTO;
+import com.wafflemkr.points.service.dto.WeeklyPointsDTO;
 import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
+import com.wafflemkr.points.web.rest.errors.InternalServerErrorException;
 import com.wafflemkr.points.web.rest.util.HeaderUtil;
+import com.wafflemkr.points.web.websocket.EntityChangeService;
+import com.wafflemkr.points.web.rest.util.KeysetCursor;
 import com.wafflemkr.points.web.rest.util.PaginationUtil;
+import com.wafflemkr.points.web.rest.vm.BatchItemResultVM;
 import com.wafflemkr.points.service.dto.PointsDTO;
 import com.wafflemkr.points.service.mapper.PointsMapper;
 import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.LocalDate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -42,16 +62,39 @@ public class PointsResource {
 
     private static final String ENTITY_NAME = "points";
 
+    /**
+     * Maximum number of points accepted by a single batch request.
+     */
+    public static final int MAX_BATCH_SIZE = 5000;
+
     private final PointsRepository pointsRepository;
 
     private final PointsMapper pointsMapper;
 
     private final PointsSearchRepository pointsSearchRepository;
 
-    public PointsResource(PointsRepository pointsRepository, PointsMapper pointsMapper, PointsSearchRepository pointsSearchRepository) {
+    private final SearchIndexingService searchIndexingService;
+
+    private final WeeklyPointsService weeklyPointsService;
+
+    private final PointsStatisticsService pointsStatisticsService;
+
+    private final EntityChangeService entityChangeService;
+
+    private final Validator validator;
+
+    public PointsResource(PointsRepository pointsRepository, PointsMapper pointsMapper, PointsSearchRepository pointsSearchRepository,
+            SearchIndexingService searchIndexingService, WeeklyPointsService weeklyPointsService,
+            PointsStatisticsService pointsStatisticsService, Validator validator,
+            EntityChangeService entityChangeService) {
         this.pointsRepository = pointsRepository;
         this.pointsMapper = pointsMapper;
         this.pointsSearchRepository = pointsSearchRepository;
+        this.searchIndexingService = searchIndexingService;
+        this.weeklyPointsService = weeklyPointsService;
+        this.pointsStatisticsService = pointsStatisticsService;
+        this.validator = validator;
+        this.entityChangeService = entityChangeService;
     }
 
     /**
@@ -63,6 +106,7 @@ public class PointsResource {
      */
     @PostMapping("/points")
     @Timed
+    @Transactional
     public ResponseEntity<PointsDTO> createPoints(@Valid @RequestBody PointsDTO pointsDTO) throws URISyntaxException {
         log.debug("REST request to save Points : {}", pointsDTO);
         if (pointsDTO.getId() != null) {
@@ -70,13 +114,69 @@ public class PointsResource {
         }
         Points points = pointsMapper.toEntity(pointsDTO);
         points = pointsRepository.save(points);
+        weeklyPointsService.add(points);
         PointsDTO result = pointsMapper.toDto(points);
-        pointsSearchRepository.save(points);
+        searchIndexingService.enqueue(Points.class, points.getId());
+        entityChangeService.created(EntityChangeService.POINTS, points.getUser(), result.getId(), result);
         return ResponseEntity.created(new URI("/api/points/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
     }
 
+    /**
+     * POST  /points/batch : Create many new points at once.
+     * <p>
+     * Valid points are inserted using JDBC batching and indexed together by the next search index flush,
+     * invalid ones are reported without failing the whole batch.
+     *
+     * @param pointsDTOs the pointsDTOs to create
+     * @return the ResponseEntity with status 200 (OK) and with body the result of each item, in request order,
+     * or with status 400 (Bad Request) if the batch is too large
+     */
+    @PostMapping("/points/batch")
+    @Timed
+    @Transactional
+    public ResponseEntity<List<BatchItemResultVM>> createPointsBatch(@RequestBody List<PointsDTO> pointsDTOs) {
+        log.debug("REST request to save a batch of {} Points", pointsDTOs.size());
+        if (pointsDTOs.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestAlertException("A batch cannot contain more than " + MAX_BATCH_SIZE + " points", ENTITY_NAME, "batchtoolarge");
+        }
+        BatchItemResultVM[] results = new BatchItemResultVM[pointsDTOs.size()];
+        List<Integer> indexes = new ArrayList<>();
+        List<Points> pointsList = new ArrayList<>();
+        for (int i = 0; i < pointsDTOs.size(); i++) {
+            PointsDTO pointsDTO = pointsDTOs.get(i);
+            List<String> errors = new ArrayList<>();
+            if (pointsDTO == null) {
+                errors.add("A points cannot be null");
+            } else {
+                if (pointsDTO.getId() != null) {
+                    errors.add("A new points cannot already have an ID");
+                }
+                Set<ConstraintViolation<PointsDTO>> violations = validator.validate(pointsDTO);
+                violations.forEach(violation -> errors.add(violation.getPropertyPath() + ": " + violation.getMessage()));
+            }
+            if (errors.isEmpty()) {
+                indexes.add(i);
+                pointsList.add(pointsMapper.toEntity(pointsDTO));
+            } else {
+                results[i] = BatchItemResultVM.rejected(i, errors);
+            }
+        }
+        List<Points> saved = pointsRepository.save(pointsList);
+        pointsRepository.flush();
+        weeklyPointsService.addAll(saved);
+        searchIndexingService.enqueue(Points.class, saved.stream().map(Points::getId).collect(Collectors.toList()));
+        saved.forEach(points -> entityChangeService.created(EntityChangeService.POINTS, points.getUser(), points.getId(),
+            pointsMapper.toDto(points)));
+        for (int i = 0; i < saved.size(); i++) {
+            results[indexes.get(i)] = BatchItemResultVM.created(indexes.get(i), saved.get(i).getId());
+        }
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createAlert(saved.size() + " " + ENTITY_NAME + " were created", String.valueOf(saved.size())))
+            .body(Arrays.asList(results));
+    }
+
     /**
      * PUT  /points : Updates an existing points.
      *
@@ -88,15 +188,19 @@ public class PointsResource {
      */
     @PutMapping("/points")
     @Timed
+    @Transactional
     public ResponseEntity<PointsDTO> updatePoints(@Valid @RequestBody PointsDTO pointsDTO) throws URISyntaxException {
         log.debug("REST request to update Points : {}", pointsDTO);
         if (pointsDTO.getId() == null) {
             return createPoints(pointsDTO);
         }
+        weeklyPointsService.subtract(pointsRepository.findOne(pointsDTO.getId()));
         Points points = pointsMapper.toEntity(pointsDTO);
         points = pointsRepository.save(points);
+        weeklyPointsService.add(points);
         PointsDTO result = pointsMapper.toDto(points);
-        pointsSearchRepository.save(points);
+        searchIndexingService.enqueue(Points.class, points.getId());
+        entityChangeService.updated(EntityChangeService.POINTS, points.getUser(), result.getId(), result);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, pointsDTO.getId().toString()))
             .body(result);
@@ -104,6 +208,8 @@ public class PointsResource {
 
     /**
      * GET  /points : get all the points.
+     * <p>
+     * Only administrators see the points of every user, other users only get their own.
      *
      * @param pageable the pagination information
      * @return the ResponseEntity with status 200 (OK) and the list of points in body
@@ -112,11 +218,93 @@ public class PointsResource {
     @Timed
     public ResponseEntity<List<PointsDTO>> getAllPoints(Pageable pageable) {
         log.debug("REST request to get a page of Points");
-        Page<Points> page = pointsRepository.findAll(pageable);
+        Page<Points> page;
+        if (SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN)) {
+            page = pointsRepository.findAll(pageable);
+        } else {
+            page = pointsRepository.findByUserLogin(getCurrentUserLogin(), pageable);
+        }
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/points");
         return new ResponseEntity<>(pointsMapper.toDto(page.getContent()), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /points/weekly : get the weekly totals of the current user.
+     *
+     * @param date any day of the requested week, defaults to today
+     * @return the ResponseEntity with status 200 (OK) and with body the weeklyPointsDTO
+     */
+    @GetMapping("/points/weekly")
+    @Timed
+    public ResponseEntity<WeeklyPointsDTO> getWeeklyPoints(@RequestParam(required = false) LocalDate date) {
+        log.debug("REST request to get the weekly Points of week : {}", date);
+        return ResponseEntity.ok(weeklyPointsService.findByUserLogin(getCurrentUserLogin(), date != null ? date : LocalDate.now()));
+    }
+
+    /**
+     * GET  /points?cursor=:cursor : get a keyset page of the points, most recent first.
+     * <p>
+     * As for offset pagination, only administrators see the points of every user.
+     * <p>
+     * Pass an empty cursor to get the first page, then follow the "next" link of each response. Unlike offset
+     * pagination, no total count is computed. Points without a date are not listed in this mode.
+     *
+     * @param cursor the cursor of the page, empty for the first page
+     * @param size the page size
+     * @return the ResponseEntity with status 200 (OK) and the list of points in body
+     */
+    @GetMapping(value = "/points", params = "cursor")
+    @Timed
+    public ResponseEntity<List<PointsDTO>> getAllPointsByCursor(@RequestParam String cursor, @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get a keyset page of Points after {}", cursor);
+        int pageSize = KeysetCursor.boundedPageSize(size);
+        Pageable limit = new PageRequest(0, pageSize + 1);
+        List<Points> points;
+        boolean admin = SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN);
+        if (cursor.isEmpty()) {
+            points = admin ? pointsRepository.findKeysetFirstPage(limit)
+                : pointsRepository.findKeysetFirstPageByUserLogin(getCurrentUserLogin(), limit);
+        } else {
+            KeysetCursor<LocalDate> position = KeysetCursor.decode(cursor, LocalDate::parse, ENTITY_NAME);
+            points = admin ? pointsRepository.findKeysetPageAfter(position.getKey(), position.getId(), limit)
+                : pointsRepository.findKeysetPageAfterByUserLogin(getCurrentUserLogin(), position.getKey(), position.getId(), limit);
+        }
+        String nextCursor = null;
+        if (points.size() > pageSize) {
+            points = points.subList(0, pageSize);
+            Points last = points.get(pageSize - 1);
+            nextCursor = KeysetCursor.encode(last.getDate(), last.getId());
+        }
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(nextCursor, pageSize, "/api/points");
+        return new ResponseEntity<>(pointsMapper.toDto(points), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /points/range : get the points of the current user between two dates, aggregated by period.
+     *
+     * @param from the first day of the range, inclusive
+     * @param to the last day of the range, inclusive
+     * @param groupBy the period to aggregate by: day, week or month
+     * @return the ResponseEntity with status 200 (OK) and the aggregates of each period in body,
+     * or with status 400 (Bad Request) if the range or the period is invalid
+     */
+    @GetMapping("/points/range")
+    @Timed
+    public ResponseEntity<List<PointsAggregateDTO>> getPointsRange(@RequestParam LocalDate from, @RequestParam LocalDate to,
+            @RequestParam(defaultValue = "day") String groupBy) {
+        log.debug("REST request to get Points from {} to {} grouped by {}", from, to, groupBy);
+        if (from.isAfter(to)) {
+            throw new BadRequestAlertException("The start of the range must not be after its end", ENTITY_NAME, "invalidrange");
+        }
+        PointsStatisticsService.GroupBy period;
+        try {
+            period = PointsStatisticsService.GroupBy.valueOf(groupBy.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Points can only be grouped by day, week or month", ENTITY_NAME, "invalidgroupby");
+        }
+        return ResponseEntity.ok(pointsStatisticsService.aggregate(getCurrentUserLogin(), from, to, period));
+    }
+
     /**
      * GET  /points/:id : get the "id" points.
      *
@@ -140,10 +328,16 @@ public class PointsResource {
      */
     @DeleteMapping("/points/{id}")
     @Timed
+    @Transactional
     public ResponseEntity<Void> deletePoints(@PathVariable Long id) {
         log.debug("REST request to delete Points : {}", id);
+        Points points = pointsRepository.findOne(id);
+        weeklyPointsService.subtract(points);
         pointsRepository.delete(id);
-        pointsSearchRepository.delete(id);
+        searchIndexingService.enqueue(Points.class, id);
+        if (points != null) {
+            entityChangeService.deleted(EntityChangeService.POINTS, points.getUser(), id);
+        }
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 
@@ -164,4 +358,9 @@ public class PointsResource {
         return new ResponseEntity<>(pointsMapper.toDto(page.getContent()), headers, HttpStatus.OK);
     }
 
+    private String getCurrentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin()
+            .orElseThrow(() -> new InternalServerErrorException("Current user login not found"));
+    }
+
 }
@@ -5,6 +5,7 @@ import com.wafflemkr.points.domain.Preferences;
 
 import com.wafflemkr.points.repository.PreferencesRepository;
 import com.wafflemkr.points.repository.search.PreferencesSearchRepository;
+import com.wafflemkr.points.service.SearchIndexingService;
 import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
 import com.wafflemkr.points.web.rest.util.HeaderUtil;
 import com.wafflemkr.points.service.dto.PreferencesDTO;
@@ -13,6 +14,7 @@ import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -43,10 +45,13 @@ public class PreferencesResource {
 
     private final PreferencesSearchRepository preferencesSearchRepository;
 
-    public PreferencesResource(PreferencesRepository preferencesRepository, PreferencesMapper preferencesMapper, PreferencesSearchRepository preferencesSearchRepository) {
+    private final SearchIndexingService searchIndexingService;
+
+    public PreferencesResource(PreferencesRepository preferencesRepository, PreferencesMapper preferencesMapper, PreferencesSearchRepository preferencesSearchRepository, SearchIndexingService searchIndexingService) {
         this.preferencesRepository = preferencesRepository;
         this.preferencesMapper = preferencesMapper;
         this.preferencesSearchRepository = preferencesSearchRepository;
+        this.searchIndexingService = searchIndexingService;
     }
 
     /**
@@ -58,6 +63,7 @@ public class PreferencesResource {
      */
     @PostMapping("/preferences")
     @Timed
+    @Transactional
     public ResponseEntity<PreferencesDTO> createPreferences(@Valid @RequestBody PreferencesDTO preferencesDTO) throws URISyntaxException {
         log.debug("REST request to save Preferences : {}", preferencesDTO);
         if (preferencesDTO.getId() != null) {
@@ -66,7 +72,7 @@ public class PreferencesResource {
         Preferences preferences = preferencesMapper.toEntity(preferencesDTO);
         preferences = preferencesRepository.save(preferences);
         PreferencesDTO result = preferencesMapper.toDto(preferences);
-        preferencesSearchRepository.save(preferences);
+        searchIndexingService.enqueue(Preferences.class, preferences.getId());
         return ResponseEntity.created(new URI("/api/preferences/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -83,6 +89,7 @@ public class PreferencesResource {
      */
     @PutMapping("/preferences")
     @Timed
+    @Transactional
     public ResponseEntity<PreferencesDTO> updatePreferences(@Valid @RequestBody PreferencesDTO preferencesDTO) throws URISyntaxException {
         log.debug("REST request to update Preferences : {}", preferencesDTO);
         if (preferencesDTO.getId() == null) {
@@ -91,7 +98,7 @@ public class PreferencesResource {
         Preferences preferences = preferencesMapper.toEntity(preferencesDTO);
         preferences = preferencesRepository.save(preferences);
         PreferencesDTO result = preferencesMapper.toDto(preferences);
-        preferencesSearchRepository.save(preferences);
+        searchIndexingService.enqueue(Preferences.class, preferences.getId());
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, preferencesDTO.getId().toString()))
             .body(result);
@@ -133,10 +140,11 @@ public class PreferencesResource {
      */
     @DeleteMapping("/preferences/{id}")
     @Timed
+    @Transactional
     public ResponseEntity<Void> deletePreferences(@PathVariable Long id) {
         log.debug("REST request to delete Preferences : {}", id);
         preferencesRepository.delete(id);
-        preferencesSearchRepository.delete(id);
+        searchIndexingService.enqueue(Preferences.class, id);
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 
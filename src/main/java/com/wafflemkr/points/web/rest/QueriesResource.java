@@ -0,0 +1,74 @@
+package com.wafflemkr.points.web.rest;
+
+import com.wafflemkr.points.config.metrics.QueryStatistics;
+import com.wafflemkr.points.web.rest.vm.QueryStatisticsVM;
+
+import com.codahale.metrics.annotation.Timed;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Controller for viewing the statistics of the SQL statements.
+ */
+@RestController
+@RequestMapping("/management")
+public class QueriesResource {
+
+    /**
+     * The orders in which the statements can be listed, the largest first.
+     */
+    public enum Sort {
+        TOTAL(QueryStatisticsVM::getTotalTime),
+        MEAN(QueryStatisticsVM::getMeanTime),
+        MAX(QueryStatisticsVM::getMaxTime),
+        COUNT(QueryStatisticsVM::getCount),
+        ROWS(QueryStatisticsVM::getRows),
+        REPEATED(QueryStatisticsVM::getRepeated);
+
+        private final Comparator<QueryStatisticsVM> comparator;
+
+        Sort(ToDoubleFunction<QueryStatisticsVM> key) {
+            this.comparator = Comparator.comparingDouble(key).reversed();
+        }
+    }
+
+    private final QueryStatistics queryStatistics;
+
+    public QueriesResource(QueryStatistics queryStatistics) {
+        this.queryStatistics = queryStatistics;
+    }
+
+    /**
+     * GET  /queries : get the statistics of the slowest statements.
+     *
+     * @param sort the order of the statements: TOTAL, MEAN or MAX time, COUNT, ROWS or REPEATED
+     * @param size the maximum number of statements
+     * @return the statistics of the statements
+     */
+    @GetMapping("/queries")
+    @Timed
+    public List<QueryStatisticsVM> getQueries(@RequestParam(defaultValue = "TOTAL") Sort sort,
+            @RequestParam(defaultValue = "20") int size) {
+        return queryStatistics.getStatements()
+            .stream()
+            .map(QueryStatisticsVM::new)
+            .sorted(sort.comparator)
+            .limit(Math.max(0, size))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * DELETE  /queries : reset the statistics of the statements.
+     */
+    @DeleteMapping("/queries")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Timed
+    public void resetQueries() {
+        queryStatistics.reset();
+    }
+}
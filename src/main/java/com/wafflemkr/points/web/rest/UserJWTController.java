@@ -1,53 +1,156 @@
 package com.wafflemkr.points.web.rest;
 
+import com.wafflemkr.points.security.PasswordHashingExecutor;
 import com.wafflemkr.points.security.jwt.JWTConfigurer;
 import com.wafflemkr.points.security.jwt.TokenProvider;
+import com.wafflemkr.points.service.TokenRevocationService;
+import com.wafflemkr.points.service.UserService;
+import com.wafflemkr.points.web.rest.errors.TooManyRequestsException;
 import com.wafflemkr.points.web.rest.vm.LoginVM;
+import com.wafflemkr.points.web.rest.vm.RefreshTokenVM;
 
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller to authenticate users.
+ * <p>
+ * Users get a short-lived access token, which authenticates their requests, and a refresh token, which is only
+ * accepted to get a new access token. Both can be revoked before they expire.
  */
 @RestController
 @RequestMapping("/api")
 public class UserJWTController {
 
+    private final Logger log = LoggerFactory.getLogger(UserJWTController.class);
+
     private final TokenProvider tokenProvider;
 
     private final AuthenticationManager authenticationManager;
 
-    public UserJWTController(TokenProvider tokenProvider, AuthenticationManager authenticationManager) {
+    private final UserDetailsService userDetailsService;
+
+    private final TokenRevocationService tokenRevocationService;
+
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    private final UserService userService;
+
+    public UserJWTController(TokenProvider tokenProvider, AuthenticationManager authenticationManager,
+            UserDetailsService userDetailsService, TokenRevocationService tokenRevocationService,
+            PasswordHashingExecutor passwordHashingExecutor, UserService userService) {
         this.tokenProvider = tokenProvider;
         this.authenticationManager = authenticationManager;
+        this.userDetailsService = userDetailsService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.userService = userService;
     }
 
+    /**
+     * POST  /authenticate : authenticate a user with a login or email and a password.
+     * <p>
+     * Checking the password is slow on purpose, so it runs on the {@link PasswordHashingExecutor} and the request
+     * is completed asynchronously. The password is hashed again if its hash does not use the configured cost.
+     *
+     * @param loginVM the credentials
+     * @return the ResponseEntity with status 200 (OK) and the tokens in body,
+     * or with status 401 (Unauthorized) if the credentials are not valid,
+     * or with status 429 (Too Many Requests) and a Retry-After header if too many users are logging in
+     */
     @PostMapping("/authenticate")
     @Timed
-    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM) {
+    public CompletableFuture<ResponseEntity<JWTToken>> authorize(@Valid @RequestBody LoginVM loginVM) {
 
         UsernamePasswordAuthenticationToken authenticationToken =
             new UsernamePasswordAuthenticationToken(loginVM.getUsername(), loginVM.getPassword());
-
-        Authentication authentication = this.authenticationManager.authenticate(authenticationToken);
-        SecurityContextHolder.getContext().setAuthentication(authentication);
         boolean rememberMe = (loginVM.isRememberMe() == null) ? false : loginVM.isRememberMe();
-        String jwt = tokenProvider.createToken(authentication, rememberMe);
+
+        try {
+            return passwordHashingExecutor.submit(() -> {
+                Authentication authentication = this.authenticationManager.authenticate(authenticationToken);
+                userService.rehashPasswordIfNeeded(authentication.getName(), loginVM.getPassword());
+                return createResponse(authentication, tokenProvider.createRefreshToken(authentication, rememberMe));
+            });
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("Too many authentications in progress",
+                passwordHashingExecutor.getRetryAfterSeconds());
+        }
+    }
+
+    /**
+     * POST  /authenticate/refresh : get a new access token with a refresh token.
+     * <p>
+     * The refresh token is replaced by a new one, expiring at the same time, and can not be used again: the new
+     * tokens are only issued by the request which revokes it, even if it is used twice at the same time.
+     * The authorities of the user are read again, so that changes are applied at the next refresh.
+     *
+     * @param refreshTokenVM the refresh token
+     * @return the ResponseEntity with status 200 (OK) and the new tokens in body,
+     * or with status 401 (Unauthorized) if the refresh token is not valid or was revoked
+     */
+    @PostMapping("/authenticate/refresh")
+    @Timed
+    public ResponseEntity<JWTToken> refresh(@Valid @RequestBody RefreshTokenVM refreshTokenVM) {
+        Claims refreshToken = tokenProvider.parseRefreshToken(refreshTokenVM.getRefreshToken())
+            .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        log.debug("REST request to refresh the access token of {}", refreshToken.getSubject());
+        UserDetails user = userDetailsService.loadUserByUsername(refreshToken.getSubject());
+        Authentication authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        if (!tokenRevocationService.revoke(refreshToken.getId(), refreshToken.getExpiration().toInstant())) {
+            throw new BadCredentialsException("Refresh token already used");
+        }
+        return createResponse(authentication, tokenProvider.createRefreshToken(refreshToken));
+    }
+
+    /**
+     * POST  /logout : revoke the access token of the current request, and the given refresh token.
+     *
+     * @param refreshTokenVM the refresh token, optional
+     * @return the ResponseEntity with status 200 (OK)
+     */
+    @PostMapping("/logout")
+    @Timed
+    public ResponseEntity<Void> logout(@RequestBody(required = false) RefreshTokenVM refreshTokenVM) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getCredentials() instanceof String) {
+            tokenProvider.parseToken((String) authentication.getCredentials()).ifPresent(this::revoke);
+        }
+        if (refreshTokenVM != null && refreshTokenVM.getRefreshToken() != null) {
+            tokenProvider.parseRefreshToken(refreshTokenVM.getRefreshToken()).ifPresent(this::revoke);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    private void revoke(Claims token) {
+        log.debug("REST request to revoke a token of {}", token.getSubject());
+        tokenRevocationService.revoke(token.getId(), token.getExpiration().toInstant());
+    }
+
+    private ResponseEntity<JWTToken> createResponse(Authentication authentication, String refreshToken) {
+        String jwt = tokenProvider.createToken(authentication);
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.add(JWTConfigurer.AUTHORIZATION_HEADER, "Bearer " + jwt);
-        return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
+        return new ResponseEntity<>(new JWTToken(jwt, refreshToken), httpHeaders, HttpStatus.OK);
     }
 
     /**
@@ -57,8 +160,11 @@ public class UserJWTController {
 
         private String idToken;
 
-        JWTToken(String idToken) {
+        private String refreshToken;
+
+        JWTToken(String idToken, String refreshToken) {
             this.idToken = idToken;
+            this.refreshToken = refreshToken;
         }
 
         @JsonProperty("id_token")
@@ -69,5 +175,14 @@ public class UserJWTController {
         void setIdToken(String idToken) {
             this.idToken = idToken;
         }
+
+        @JsonProperty("refresh_token")
+        String getRefreshToken() {
+            return refreshToken;
+        }
+
+        void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
     }
 }
@@ -5,8 +5,16 @@ import com.wafflemkr.points.domain.Weight;
 
 import com.wafflemkr.points.repository.WeightRepository;
 import com.wafflemkr.points.repository.search.WeightSearchRepository;
+import com.wafflemkr.points.security.AuthoritiesConstants;
+import com.wafflemkr.points.security.SecurityUtils;
+import com.wafflemkr.points.service.SearchIndexingService;
+import com.wafflemkr.points.service.WeightSeriesService;
+import com.wafflemkr.points.service.dto.WeightBucketDTO;
 import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
+import com.wafflemkr.points.web.rest.errors.InternalServerErrorException;
 import com.wafflemkr.points.web.rest.util.HeaderUtil;
+import com.wafflemkr.points.web.websocket.EntityChangeService;
+import com.wafflemkr.points.web.rest.util.KeysetCursor;
 import com.wafflemkr.points.web.rest.util.PaginationUtil;
 import com.wafflemkr.points.service.dto.WeightDTO;
 import com.wafflemkr.points.service.mapper.WeightMapper;
@@ -14,14 +22,20 @@ import io.github.jhipster.web.util.ResponseUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 
 import java.util.List;
 import java.util.Optional;
@@ -47,10 +61,21 @@ public class WeightResource {
 
     private final WeightSearchRepository weightSearchRepository;
 
-    public WeightResource(WeightRepository weightRepository, WeightMapper weightMapper, WeightSearchRepository weightSearchRepository) {
+    private final SearchIndexingService searchIndexingService;
+
+    private final WeightSeriesService weightSeriesService;
+
+    private final EntityChangeService entityChangeService;
+
+    public WeightResource(WeightRepository weightRepository, WeightMapper weightMapper, WeightSearchRepository weightSearchRepository, SearchIndexingService searchIndexingService,
+            WeightSeriesService weightSeriesService,
+            EntityChangeService entityChangeService) {
         this.weightRepository = weightRepository;
         this.weightMapper = weightMapper;
         this.weightSearchRepository = weightSearchRepository;
+        this.searchIndexingService = searchIndexingService;
+        this.weightSeriesService = weightSeriesService;
+        this.entityChangeService = entityChangeService;
     }
 
     /**
@@ -62,6 +87,7 @@ public class WeightResource {
      */
     @PostMapping("/weights")
     @Timed
+    @Transactional
     public ResponseEntity<WeightDTO> createWeight(@RequestBody WeightDTO weightDTO) throws URISyntaxException {
         log.debug("REST request to save Weight : {}", weightDTO);
         if (weightDTO.getId() != null) {
@@ -70,7 +96,8 @@ public class WeightResource {
         Weight weight = weightMapper.toEntity(weightDTO);
         weight = weightRepository.save(weight);
         WeightDTO result = weightMapper.toDto(weight);
-        weightSearchRepository.save(weight);
+        searchIndexingService.enqueue(Weight.class, weight.getId());
+        entityChangeService.created(EntityChangeService.WEIGHTS, weight.getUser(), result.getId(), result);
         return ResponseEntity.created(new URI("/api/weights/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString()))
             .body(result);
@@ -87,6 +114,7 @@ public class WeightResource {
      */
     @PutMapping("/weights")
     @Timed
+    @Transactional
     public ResponseEntity<WeightDTO> updateWeight(@RequestBody WeightDTO weightDTO) throws URISyntaxException {
         log.debug("REST request to update Weight : {}", weightDTO);
         if (weightDTO.getId() == null) {
@@ -95,7 +123,8 @@ public class WeightResource {
         Weight weight = weightMapper.toEntity(weightDTO);
         weight = weightRepository.save(weight);
         WeightDTO result = weightMapper.toDto(weight);
-        weightSearchRepository.save(weight);
+        searchIndexingService.enqueue(Weight.class, weight.getId());
+        entityChangeService.updated(EntityChangeService.WEIGHTS, weight.getUser(), result.getId(), result);
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, weightDTO.getId().toString()))
             .body(result);
@@ -103,6 +132,8 @@ public class WeightResource {
 
     /**
      * GET  /weights : get all the weights.
+     * <p>
+     * Only administrators see the weights of every user, other users only get their own.
      *
      * @param pageable the pagination information
      * @return the ResponseEntity with status 200 (OK) and the list of weights in body
@@ -111,11 +142,97 @@ public class WeightResource {
     @Timed
     public ResponseEntity<List<WeightDTO>> getAllWeights(Pageable pageable) {
         log.debug("REST request to get a page of Weights");
-        Page<Weight> page = weightRepository.findAll(pageable);
+        Page<Weight> page;
+        if (SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN)) {
+            page = weightRepository.findAll(pageable);
+        } else {
+            page = weightRepository.findByUserLogin(getCurrentUserLogin(), pageable);
+        }
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/api/weights");
         return new ResponseEntity<>(weightMapper.toDto(page.getContent()), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /weights?cursor=:cursor : get a keyset page of the weights, most recent first.
+     * <p>
+     * As for offset pagination, only administrators see the weights of every user.
+     * <p>
+     * Pass an empty cursor to get the first page, then follow the "next" link of each response. Unlike offset
+     * pagination, no total count is computed. Weights without a timestamp are not listed in this mode.
+     *
+     * @param cursor the cursor of the page, empty for the first page
+     * @param size the page size
+     * @return the ResponseEntity with status 200 (OK) and the list of weights in body
+     */
+    @GetMapping(value = "/weights", params = "cursor")
+    @Timed
+    public ResponseEntity<List<WeightDTO>> getAllWeightsByCursor(@RequestParam String cursor, @RequestParam(defaultValue = "20") int size) {
+        log.debug("REST request to get a keyset page of Weights after {}", cursor);
+        int pageSize = KeysetCursor.boundedPageSize(size);
+        Pageable limit = new PageRequest(0, pageSize + 1);
+        List<Weight> weights;
+        boolean admin = SecurityUtils.isCurrentUserInRole(AuthoritiesConstants.ADMIN);
+        if (cursor.isEmpty()) {
+            weights = admin ? weightRepository.findKeysetFirstPage(limit)
+                : weightRepository.findKeysetFirstPageByUserLogin(getCurrentUserLogin(), limit);
+        } else {
+            KeysetCursor<ZonedDateTime> position = KeysetCursor.decode(cursor, key -> Instant.parse(key).atZone(ZoneOffset.UTC), ENTITY_NAME);
+            weights = admin ? weightRepository.findKeysetPageAfter(position.getKey(), position.getId(), limit)
+                : weightRepository.findKeysetPageAfterByUserLogin(getCurrentUserLogin(), position.getKey(), position.getId(), limit);
+        }
+        String nextCursor = null;
+        if (weights.size() > pageSize) {
+            weights = weights.subList(0, pageSize);
+            Weight last = weights.get(pageSize - 1);
+            nextCursor = KeysetCursor.encode(last.getTimestamp().toInstant(), last.getId());
+        }
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(nextCursor, pageSize, "/api/weights");
+        return new ResponseEntity<>(weightMapper.toDto(weights), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /weights/series : get the weights of the current user between two dates, summarized in buckets
+     * of equal duration.
+     *
+     * @param from the first day of the range, inclusive
+     * @param to the last day of the range, inclusive
+     * @param buckets the number of buckets
+     * @return the ResponseEntity with status 200 (OK) and the min, max, average and last weight of each bucket in body,
+     * or with status 400 (Bad Request) if the range or the number of buckets is invalid
+     */
+    @GetMapping("/weights/series")
+    @Timed
+    public ResponseEntity<List<WeightBucketDTO>> getWeightSeries(@RequestParam LocalDate from, @RequestParam LocalDate to,
+            @RequestParam(defaultValue = "300") int buckets) {
+        log.debug("REST request to get {} buckets of Weights from {} to {}", buckets, from, to);
+        checkSeriesRequest(from, to, buckets);
+        return ResponseEntity.ok(weightSeriesService.findBuckets(getCurrentUserLogin(),
+            from.atStartOfDay(ZoneOffset.UTC), to.plusDays(1).atStartOfDay(ZoneOffset.UTC), buckets));
+    }
+
+    /**
+     * GET  /weights/series/lttb : get the weights of the current user between two dates, downsampled with the
+     * Largest-Triangle-Three-Buckets algorithm to preserve the shape of the series.
+     *
+     * @param from the first day of the range, inclusive
+     * @param to the last day of the range, inclusive
+     * @param points the number of weights to return, at least 3
+     * @return the ResponseEntity with status 200 (OK) and the selected weights in body,
+     * or with status 400 (Bad Request) if the range or the number of points is invalid
+     */
+    @GetMapping("/weights/series/lttb")
+    @Timed
+    public ResponseEntity<List<WeightDTO>> getWeightSeriesByLttb(@RequestParam LocalDate from, @RequestParam LocalDate to,
+            @RequestParam(defaultValue = "300") int points) {
+        log.debug("REST request to get {} Weights by LTTB from {} to {}", points, from, to);
+        checkSeriesRequest(from, to, points);
+        if (points < 3) {
+            throw new BadRequestAlertException("At least 3 points are needed", ENTITY_NAME, "invalidpoints");
+        }
+        return ResponseEntity.ok(weightSeriesService.findLargestTriangleThreeBuckets(getCurrentUserLogin(),
+            from.atStartOfDay(ZoneOffset.UTC), to.plusDays(1).atStartOfDay(ZoneOffset.UTC), points));
+    }
+
     /**
      * GET  /weights/:id : get the "id" weight.
      *
@@ -139,10 +256,15 @@ public class WeightResource {
      */
     @DeleteMapping("/weights/{id}")
     @Timed
+    @Transactional
     public ResponseEntity<Void> deleteWeight(@PathVariable Long id) {
         log.debug("REST request to delete Weight : {}", id);
+        Weight weight = weightRepository.findOne(id);
         weightRepository.delete(id);
-        weightSearchRepository.delete(id);
+        searchIndexingService.enqueue(Weight.class, id);
+        if (weight != null) {
+            entityChangeService.deleted(EntityChangeService.WEIGHTS, weight.getUser(), id);
+        }
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 
@@ -163,4 +285,19 @@ public class WeightResource {
         return new ResponseEntity<>(weightMapper.toDto(page.getContent()), headers, HttpStatus.OK);
     }
 
+    private void checkSeriesRequest(LocalDate from, LocalDate to, int points) {
+        if (from.isAfter(to)) {
+            throw new BadRequestAlertException("The start of the range must not be after its end", ENTITY_NAME, "invalidrange");
+        }
+        if (points < 1 || points > WeightSeriesService.MAX_POINTS) {
+            throw new BadRequestAlertException("A series has between 1 and " + WeightSeriesService.MAX_POINTS + " points",
+                ENTITY_NAME, "invalidpoints");
+        }
+    }
+
+    private String getCurrentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin()
+            .orElseThrow(() -> new InternalServerErrorException("Current user login not found"));
+    }
+
 }
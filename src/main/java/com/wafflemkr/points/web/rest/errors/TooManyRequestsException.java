@@ -0,0 +1,24 @@
+package com.wafflemkr.points.web.rest.errors;
+
+import org.zalando.problem.AbstractThrowableProblem;
+import org.zalando.problem.Status;
+
+import java.util.Collections;
+
+/**
+ * Exception returning a Too Many Requests code, with the delay after which the client can retry.
+ */
+public class TooManyRequestsException extends AbstractThrowableProblem {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(ErrorConstants.DEFAULT_TYPE, message, Status.TOO_MANY_REQUESTS, null, null, null,
+            Collections.singletonMap("message", "error.http.429"));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,82 @@
+package com.wafflemkr.points.web.rest.util;
+
+import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Opaque cursor used for keyset (seek) pagination.
+ * <p>
+ * A cursor encodes the sort key and the id of the last row of a page, so the next page can be fetched
+ * with an index seek on {@code (key, id)} instead of an {@code OFFSET} scan.
+ *
+ * @param <K> the type of the sort key
+ */
+public final class KeysetCursor<K> {
+
+    /**
+     * Maximum number of rows returned by a single keyset page.
+     */
+    public static final int MAX_PAGE_SIZE = 2000;
+
+    private static final char SEPARATOR = ';';
+
+    private final K key;
+
+    private final Long id;
+
+    private KeysetCursor(K key, Long id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Encode the position of a row as a cursor.
+     *
+     * @param key the sort key of the row, encoded using its {@code toString()} value
+     * @param id the id of the row
+     * @return the cursor, safe to use in a URL
+     */
+    public static String encode(Object key, Long id) {
+        String value = key.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor created by {@link #encode(Object, Long)}.
+     *
+     * @param cursor the cursor
+     * @param keyParser the parser of the sort key
+     * @param entityName the name of the paginated entity, used in the error if the cursor is invalid
+     * @param <K> the type of the sort key
+     * @return the decoded cursor
+     * @throws BadRequestAlertException if the cursor is invalid
+     */
+    public static <K> KeysetCursor<K> decode(String cursor, Function<String, K> keyParser, String entityName) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(SEPARATOR);
+            return new KeysetCursor<>(keyParser.apply(value.substring(0, separator)), Long.valueOf(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestAlertException("Invalid pagination cursor", entityName, "invalidcursor");
+        }
+    }
+
+    /**
+     * @param size the requested page size
+     * @return the page size, bounded between 1 and {@link #MAX_PAGE_SIZE}
+     */
+    public static int boundedPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+}
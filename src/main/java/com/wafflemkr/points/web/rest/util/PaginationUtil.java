@@ -42,6 +42,24 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * Generate the headers of a keyset page: only a "next" link carrying the cursor of the following page,
+     * as computing the total count or the last page would defeat the purpose of keyset pagination.
+     *
+     * @param nextCursor the cursor of the next page, or null if this page is the last one
+     * @param size the page size
+     * @param baseUrl the URL of the paginated resource
+     * @return the headers
+     */
+    public static HttpHeaders generateKeysetPaginationHttpHeaders(String nextCursor, int size, String baseUrl) {
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null) {
+            String uri = UriComponentsBuilder.fromUriString(baseUrl).queryParam("cursor", nextCursor).queryParam("size", size).toUriString();
+            headers.add(HttpHeaders.LINK, "<" + uri + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+
     private static String generateUri(String baseUrl, int page, int size) {
         return UriComponentsBuilder.fromUriString(baseUrl).queryParam("page", page).queryParam("size", size).toUriString();
     }
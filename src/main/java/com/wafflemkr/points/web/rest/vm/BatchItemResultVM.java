@@ -0,0 +1,59 @@
+package com.wafflemkr.points.web.rest.vm;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * View Model object reporting the outcome of one item of a batch request.
+ */
+public class BatchItemResultVM {
+
+    private final int index;
+
+    private final Long id;
+
+    private final int status;
+
+    private final List<String> errors;
+
+    private BatchItemResultVM(int index, Long id, int status, List<String> errors) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.errors = errors;
+    }
+
+    public static BatchItemResultVM created(int index, Long id) {
+        return new BatchItemResultVM(index, id, 201, Collections.emptyList());
+    }
+
+    public static BatchItemResultVM rejected(int index, List<String> errors) {
+        return new BatchItemResultVM(index, null, 400, errors);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchItemResultVM{" +
+            "index=" + index +
+            ", id=" + id +
+            ", status=" + status +
+            ", errors=" + errors +
+            '}';
+    }
+}
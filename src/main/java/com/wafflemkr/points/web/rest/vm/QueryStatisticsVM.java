@@ -0,0 +1,125 @@
+package com.wafflemkr.points.web.rest.vm;
+
+import com.wafflemkr.points.config.metrics.QueryStatistics;
+
+/**
+ * View Model object for storing the statistics of a SQL statement.
+ */
+public class QueryStatisticsVM {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private String statement;
+
+    private long count;
+
+    private double totalTime;
+
+    private double meanTime;
+
+    private double maxTime;
+
+    private long rows;
+
+    private long repeated;
+
+    public QueryStatisticsVM(QueryStatistics.Statement statement) {
+        this.statement = statement.getShape();
+        this.count = statement.getCount();
+        this.totalTime = statement.getTotalNanos() / NANOS_PER_MILLI;
+        this.meanTime = count == 0 ? 0 : totalTime / count;
+        this.maxTime = statement.getMaxNanos() / NANOS_PER_MILLI;
+        this.rows = statement.getRows();
+        this.repeated = statement.getRepeated();
+    }
+
+    public QueryStatisticsVM() {
+        // Empty public constructor used by Jackson.
+    }
+
+    /**
+     * @return the SQL of the statement, with "?" in place of its values
+     */
+    public String getStatement() {
+        return statement;
+    }
+
+    public void setStatement(String statement) {
+        this.statement = statement;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * @return the total execution time, in milliseconds
+     */
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    public void setTotalTime(double totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * @return the mean execution time, in milliseconds
+     */
+    public double getMeanTime() {
+        return meanTime;
+    }
+
+    public void setMeanTime(double meanTime) {
+        this.meanTime = meanTime;
+    }
+
+    /**
+     * @return the longest execution time, in milliseconds
+     */
+    public double getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(double maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * @return the number of rows read or updated
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * @return the number of requests which executed the statement as an N+1 query
+     */
+    public long getRepeated() {
+        return repeated;
+    }
+
+    public void setRepeated(long repeated) {
+        this.repeated = repeated;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStatisticsVM{" +
+            "statement='" + statement + '\'' +
+            ", count=" + count +
+            ", totalTime=" + totalTime +
+            ", maxTime=" + maxTime +
+            ", rows=" + rows +
+            ", repeated=" + repeated +
+            '}';
+    }
+}
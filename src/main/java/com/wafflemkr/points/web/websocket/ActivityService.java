@@ -1,49 +1,131 @@
 package com.wafflemkr.points.web.websocket;
 
 import com.wafflemkr.points.web.websocket.dto.ActivityDTO;
+import com.wafflemkr.points.web.websocket.dto.ActivitySnapshotDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import java.security.Principal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.wafflemkr.points.config.WebsocketConfiguration.IP_ADDRESS;
 
+/**
+ * Tracks the page each websocket session is on, for the admin tracker.
+ * <p>
+ * Activities are not broadcast as they are received: only the latest page of each session is kept, and the
+ * sessions which changed or disconnected since the previous tick are sent to "/topic/tracker" as a single
+ * snapshot, so the cost of the tracker depends on the tick rather than on how fast users navigate. A client
+ * subscribing to "/topic/tracker" first receives a full snapshot.
+ * <p>
+ * Each node tracks its own sessions: with a relayed broker, the changes of every node reach the tracker, but the
+ * first full snapshot only has the sessions of the node the tracker is connected to.
+ */
 @Controller
 public class ActivityService implements ApplicationListener<SessionDisconnectEvent> {
 
     private static final Logger log = LoggerFactory.getLogger(ActivityService.class);
 
+    private static final String TRACKER_DESTINATION = "/topic/tracker";
+
     private final SimpMessageSendingOperations messagingTemplate;
 
-    public ActivityService(SimpMessageSendingOperations messagingTemplate) {
+    private final SimpUserRegistry userRegistry;
+
+    private final Map<String, ActivityDTO> activities = new ConcurrentHashMap<>();
+
+    private final Set<String> changedSessionIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> removedSessionIds = ConcurrentHashMap.newKeySet();
+
+    public ActivityService(SimpMessageSendingOperations messagingTemplate, SimpUserRegistry userRegistry) {
         this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
     }
 
     @SubscribeMapping("/topic/activity")
-    @SendTo("/topic/tracker")
-    public ActivityDTO sendActivity(@Payload ActivityDTO activityDTO, StompHeaderAccessor stompHeaderAccessor, Principal principal) {
+    public void sendActivity(@Payload ActivityDTO activityDTO, StompHeaderAccessor stompHeaderAccessor, Principal principal) {
         activityDTO.setUserLogin(principal.getName());
         activityDTO.setSessionId(stompHeaderAccessor.getSessionId());
         activityDTO.setIpAddress(stompHeaderAccessor.getSessionAttributes().get(IP_ADDRESS).toString());
         activityDTO.setTime(Instant.now());
-        log.debug("Sending user tracking data {}", activityDTO);
-        return activityDTO;
+        log.debug("Recording user tracking data {}", activityDTO);
+        activities.put(activityDTO.getSessionId(), activityDTO);
+        changedSessionIds.add(activityDTO.getSessionId());
+    }
+
+    /**
+     * Send all the activities to a new subscriber of the tracker; later changes come from {@link #sendChanges()}.
+     */
+    @SubscribeMapping(TRACKER_DESTINATION)
+    public ActivitySnapshotDTO subscribeTracker() {
+        ActivitySnapshotDTO snapshot = new ActivitySnapshotDTO();
+        snapshot.setFull(true);
+        snapshot.setActivities(new ArrayList<>(activities.values()));
+        return snapshot;
     }
 
     @Override
     public void onApplicationEvent(SessionDisconnectEvent event) {
-        ActivityDTO activityDTO = new ActivityDTO();
-        activityDTO.setSessionId(event.getSessionId());
-        activityDTO.setPage("logout");
-        messagingTemplate.convertAndSend("/topic/tracker", activityDTO);
+        if (activities.remove(event.getSessionId()) != null) {
+            changedSessionIds.remove(event.getSessionId());
+            removedSessionIds.add(event.getSessionId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.websocket.tracker-tick:2000}")
+    public void scheduledSendChanges() {
+        sendChanges();
+    }
+
+    /**
+     * Send the activities which changed since the previous call to the tracker, if anyone is tracking them.
+     *
+     * @return whether a snapshot was sent
+     */
+    public boolean sendChanges() {
+        ActivitySnapshotDTO snapshot = new ActivitySnapshotDTO();
+        for (Iterator<String> it = changedSessionIds.iterator(); it.hasNext(); ) {
+            String sessionId = it.next();
+            it.remove();
+            ActivityDTO activity = activities.get(sessionId);
+            if (activity != null) {
+                snapshot.getActivities().add(activity);
+            }
+        }
+        for (Iterator<String> it = removedSessionIds.iterator(); it.hasNext(); ) {
+            snapshot.getRemovedSessionIds().add(it.next());
+            it.remove();
+        }
+        if ((snapshot.getActivities().isEmpty() && snapshot.getRemovedSessionIds().isEmpty()) || !isTracked()) {
+            return false;
+        }
+        try {
+            messagingTemplate.convertAndSend(TRACKER_DESTINATION, snapshot);
+        } catch (MessagingException e) {
+            log.warn("Could not send {} to the tracker: {}", snapshot, e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isTracked() {
+        return !userRegistry.findSubscriptions(subscription ->
+            TRACKER_DESTINATION.equals(subscription.getDestination())).isEmpty();
     }
 }
@@ -0,0 +1,173 @@
+package com.wafflemkr.points.web.websocket;
+
+import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.repository.UserRepository;
+import com.wafflemkr.points.web.websocket.dto.EntityChangeDTO;
+import com.wafflemkr.points.web.websocket.dto.EntityChangeDTO.Action;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Service pushing the changes of a user's entities to the clients the user is connected with, so that they do
+ * not have to poll the REST API.
+ * <p>
+ * Clients subscribe to "/user/queue/{entityType}", for instance "/user/queue/points", and only receive the
+ * changes of their own entities. Changes are buffered until the transaction commits, so clients never see a
+ * change which is rolled back, and the changes of the same type in a transaction are sent together, in
+ * messages of at most {@link #MAX_ENTITIES_PER_MESSAGE} entities.
+ */
+@Service
+public class EntityChangeService {
+
+    public static final String POINTS = "points";
+
+    public static final String WEIGHTS = "weights";
+
+    public static final String BLOOD_PRESSURES = "blood-pressures";
+
+    static final int MAX_ENTITIES_PER_MESSAGE = 100;
+
+    private static final String DESTINATION_PREFIX = "/queue/";
+
+    private final Logger log = LoggerFactory.getLogger(EntityChangeService.class);
+
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    private final UserRepository userRepository;
+
+    public EntityChangeService(SimpMessageSendingOperations messagingTemplate, UserRepository userRepository) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Record that an entity was created.
+     *
+     * @param entityType the type of the entity, which is also the name of the destination
+     * @param owner the user owning the entity, whose clients are notified
+     * @param id the id of the entity
+     * @param entity the DTO of the entity
+     */
+    public void created(String entityType, User owner, Long id, Object entity) {
+        record(entityType, Action.CREATED, owner, id, entity);
+    }
+
+    /**
+     * Record that an entity was updated.
+     *
+     * @param entityType the type of the entity, which is also the name of the destination
+     * @param owner the user owning the entity, whose clients are notified
+     * @param id the id of the entity
+     * @param entity the DTO of the entity
+     */
+    public void updated(String entityType, User owner, Long id, Object entity) {
+        record(entityType, Action.UPDATED, owner, id, entity);
+    }
+
+    /**
+     * Record that an entity was deleted.
+     *
+     * @param entityType the type of the entity, which is also the name of the destination
+     * @param owner the user owning the entity, whose clients are notified
+     * @param id the id of the entity
+     */
+    public void deleted(String entityType, User owner, Long id) {
+        record(entityType, Action.DELETED, owner, id, null);
+    }
+
+    private void record(String entityType, Action action, User owner, Long id, Object entity) {
+        if (owner == null || owner.getId() == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            PendingChanges changes = new PendingChanges();
+            changes.add(getLogin(owner, changes), entityType, action, id, entity);
+            changes.send();
+            return;
+        }
+        PendingChanges changes = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            PendingChanges newChanges = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, newChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    newChanges.send();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(EntityChangeService.this);
+                }
+            });
+            changes = newChanges;
+        }
+        changes.add(getLogin(owner, changes), entityType, action, id, entity);
+    }
+
+    /**
+     * Get the login of the owner, which is usually only known by its id when the entity was mapped from a DTO.
+     */
+    private String getLogin(User owner, PendingChanges changes) {
+        if (owner.getLogin() != null) {
+            return owner.getLogin();
+        }
+        return changes.logins.computeIfAbsent(owner.getId(), id -> {
+            User user = userRepository.findOne(id);
+            return user == null ? null : user.getLogin();
+        });
+    }
+
+    /**
+     * The changes of a transaction, by user, entity type and action, in the order they were made.
+     */
+    private final class PendingChanges {
+
+        private final Map<Long, String> logins = new HashMap<>();
+
+        private final Map<List<Object>, List<EntityChangeDTO>> messages = new LinkedHashMap<>();
+
+        void add(String login, String entityType, Action action, Long id, Object entity) {
+            if (login == null) {
+                return;
+            }
+            List<EntityChangeDTO> changes = messages.computeIfAbsent(Arrays.asList(login, entityType, action),
+                key -> new ArrayList<>());
+            EntityChangeDTO change = changes.isEmpty() ? null : changes.get(changes.size() - 1);
+            if (change == null || change.getIds().size() >= MAX_ENTITIES_PER_MESSAGE) {
+                change = new EntityChangeDTO();
+                change.setEntityType(entityType);
+                change.setAction(action);
+                if (action != Action.DELETED) {
+                    change.setEntities(new ArrayList<>());
+                }
+                changes.add(change);
+            }
+            change.getIds().add(id);
+            if (entity != null && change.getEntities() != null) {
+                change.getEntities().add(entity);
+            }
+        }
+
+        void send() {
+            messages.forEach((key, changes) -> changes.forEach(change -> {
+                String login = (String) key.get(0);
+                try {
+                    messagingTemplate.convertAndSendToUser(login, DESTINATION_PREFIX + change.getEntityType(), change);
+                } catch (MessagingException e) {
+                    // The change is committed, clients which miss it get it from the REST API
+                    log.warn("Could not push {} to user '{}': {}", change, login, e.getMessage());
+                }
+            }));
+        }
+    }
+}
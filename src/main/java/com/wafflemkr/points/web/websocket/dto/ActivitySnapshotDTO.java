@@ -0,0 +1,52 @@
+package com.wafflemkr.points.web.websocket.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for sending the changes of the users' activities to the tracker.
+ */
+public class ActivitySnapshotDTO {
+
+    /**
+     * Whether the snapshot has all the activities, rather than the changes since the previous snapshot.
+     */
+    private boolean full;
+
+    private List<ActivityDTO> activities = new ArrayList<>();
+
+    private List<String> removedSessionIds = new ArrayList<>();
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public void setFull(boolean full) {
+        this.full = full;
+    }
+
+    public List<ActivityDTO> getActivities() {
+        return activities;
+    }
+
+    public void setActivities(List<ActivityDTO> activities) {
+        this.activities = activities;
+    }
+
+    public List<String> getRemovedSessionIds() {
+        return removedSessionIds;
+    }
+
+    public void setRemovedSessionIds(List<String> removedSessionIds) {
+        this.removedSessionIds = removedSessionIds;
+    }
+
+    @Override
+    public String toString() {
+        return "ActivitySnapshotDTO{" +
+            "full=" + full +
+            ", activities=" + activities.size() +
+            ", removedSessionIds=" + removedSessionIds.size() +
+            '}';
+    }
+}
@@ -0,0 +1,65 @@
+package com.wafflemkr.points.web.websocket.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for the changes of a user's entities, pushed to the user's connected clients.
+ * <p>
+ * The entities are only set for created and updated entities, in the same format as the REST API.
+ */
+public class EntityChangeDTO {
+
+    public enum Action {
+        CREATED, UPDATED, DELETED
+    }
+
+    private String entityType;
+
+    private Action action;
+
+    private List<Long> ids = new ArrayList<>();
+
+    private List<Object> entities;
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    public List<Object> getEntities() {
+        return entities;
+    }
+
+    public void setEntities(List<Object> entities) {
+        this.entities = entities;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityChangeDTO{" +
+            "entityType='" + entityType + '\'' +
+            ", action=" + action +
+            ", ids=" + ids +
+            '}';
+    }
+}
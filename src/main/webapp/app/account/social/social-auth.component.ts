@@ -20,8 +20,10 @@ export class SocialAuthComponent implements OnInit {
     ngOnInit() {
         const token = this.cookieService.get('social-authentication');
         if (token.length) {
-            this.loginService.loginWithToken(token, false).then(() => {
+            const refreshToken = this.cookieService.get('social-authentication-refresh');
+            this.loginService.loginWithToken(token, false, refreshToken).then(() => {
                     this.cookieService.remove('social-authentication');
+                    this.cookieService.remove('social-authentication-refresh');
                     this.router.navigate(['']);
                  }, () => {
                     this.router.navigate(['social-register'], {queryParams: {'success': 'false'}});
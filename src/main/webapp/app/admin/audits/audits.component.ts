@@ -42,6 +42,18 @@ export class AuditsComponent implements OnInit {
         this.onChangeDate();
     }
 
+    export() {
+        this.auditsService.export({fromDate: this.fromDate, toDate: this.toDate}).subscribe((blob) => {
+            const link = document.createElement('a');
+            link.href = window.URL.createObjectURL(blob);
+            link.download = `audits-${this.fromDate}-${this.toDate}.ndjson`;
+            document.body.appendChild(link);
+            link.click();
+            document.body.removeChild(link);
+            window.URL.revokeObjectURL(link.href);
+        });
+    }
+
     ngOnInit() {
         this.today();
         this.previousMonth();
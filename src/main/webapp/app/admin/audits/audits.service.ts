@@ -1,5 +1,5 @@
 import { Injectable } from '@angular/core';
-import { Http, Response, URLSearchParams } from '@angular/http';
+import { Http, Response, ResponseContentType, URLSearchParams } from '@angular/http';
 import { Observable } from 'rxjs/Observable';
 import { SERVER_API_URL } from '../../app.constants';
 
@@ -21,4 +21,17 @@ export class AuditsService  {
 
         return this.http.get(SERVER_API_URL + 'management/audits', options);
     }
+
+    export(req: any): Observable<Blob> {
+        const params: URLSearchParams = new URLSearchParams();
+        params.set('fromDate', req.fromDate);
+        params.set('toDate', req.toDate);
+
+        const options = {
+            search: params,
+            responseType: ResponseContentType.Blob
+        };
+
+        return this.http.get(SERVER_API_URL + 'management/audits/export', options).map((res: Response) => res.blob());
+    }
 }
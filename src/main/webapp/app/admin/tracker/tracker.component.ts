@@ -15,27 +15,28 @@ export class JhiTrackerComponent implements OnInit, OnDestroy {
     ) {
     }
 
-    showActivity(activity: any) {
-        let existingActivity = false;
-        for (let index = 0; index < this.activities.length; index++) {
-            if (this.activities[index].sessionId === activity.sessionId) {
-                existingActivity = true;
-                if ( activity.page === 'logout' ) {
-                    this.activities.splice(index, 1);
-                } else {
-                    this.activities[index] = activity;
-                }
-            }
+    showSnapshot(snapshot: any) {
+        if (snapshot.full) {
+            this.activities = [];
         }
-        if (!existingActivity && (activity.page !== 'logout')) {
+        const removed = snapshot.removedSessionIds || [];
+        this.activities = this.activities.filter((activity) => removed.indexOf(activity.sessionId) === -1);
+        snapshot.activities.forEach((activity) => this.showActivity(activity));
+    }
+
+    showActivity(activity: any) {
+        const index = this.activities.findIndex((existingActivity) => existingActivity.sessionId === activity.sessionId);
+        if (index === -1) {
             this.activities.push(activity);
+        } else {
+            this.activities[index] = activity;
         }
     }
 
     ngOnInit() {
         this.trackerService.subscribe();
-        this.trackerService.receive().subscribe((activity) => {
-            this.showActivity(activity);
+        this.trackerService.receive().subscribe((snapshot) => {
+            this.showSnapshot(snapshot);
         });
     }
 
@@ -3,6 +3,8 @@ import { Injector } from '@angular/core';
 import { RequestOptionsArgs, Response } from '@angular/http';
 import { Observable } from 'rxjs/Observable';
 import { LoginService } from '../../shared/login/login.service';
+import { AuthServerProvider } from '../../shared/auth/auth-jwt.service';
+import { Principal } from '../../shared/auth/principal.service';
 
 export class AuthExpiredInterceptor extends JhiHttpInterceptor {
 
@@ -15,9 +17,23 @@ export class AuthExpiredInterceptor extends JhiHttpInterceptor {
     }
 
     responseIntercept(observable: Observable<Response>): Observable<Response> {
-        return <Observable<Response>> observable.catch((error, source) => {
+        return <Observable<Response>> observable.catch((error) => {
             if (error.status === 401) {
+                const authServerProvider: AuthServerProvider = this.injector.get(AuthServerProvider);
                 const loginService: LoginService = this.injector.get(LoginService);
+                if (authServerProvider.getRefreshToken() && !/api\/(authenticate|logout)/.test(error.url)) {
+                    // The access token expired: get a new one, and send the request again with it, only once
+                    const principal: Principal = this.injector.get(Principal);
+                    return authServerProvider.refresh()
+                        .catch(() => {
+                            loginService.logout();
+                            return Observable.throw(error);
+                        })
+                        .mergeMap(() => {
+                            principal.identity(true);
+                            return observable;
+                        });
+                }
                 loginService.logout();
             }
             return Observable.throw(error);
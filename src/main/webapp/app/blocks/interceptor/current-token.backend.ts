@@ -0,0 +1,31 @@
+import { Connection, ConnectionBackend, Request } from '@angular/http';
+import { Observable } from 'rxjs/Observable';
+import { LocalStorageService, SessionStorageService } from 'ngx-webstorage';
+
+/**
+ * Backend replacing the access token of a request with the current one each time the request is sent.
+ * Requests are created with the token of the time, so a request retried after a refresh would send the
+ * expired token again.
+ */
+export class CurrentTokenBackend implements ConnectionBackend {
+
+    constructor(
+        private backend: ConnectionBackend,
+        private localStorage: LocalStorageService,
+        private sessionStorage: SessionStorageService
+    ) {}
+
+    createConnection(request: Request): Connection {
+        const connection = this.backend.createConnection(request);
+        const response = connection.response;
+        connection.response = Observable.defer(() => {
+            // Only the requests authenticated by the AuthInterceptor have the header
+            const token = this.localStorage.retrieve('authenticationToken') || this.sessionStorage.retrieve('authenticationToken');
+            if (!!token && request.headers.has('Authorization')) {
+                request.headers.set('Authorization', 'Bearer ' + token);
+            }
+            return response;
+        });
+        return connection;
+    }
+}
@@ -3,6 +3,7 @@ import { Injector } from '@angular/core';
 import { Http, XHRBackend, RequestOptions } from '@angular/http';
 
 import { AuthInterceptor } from './auth.interceptor';
+import { CurrentTokenBackend } from './current-token.backend';
 import { LocalStorageService, SessionStorageService } from 'ngx-webstorage';
 import { AuthExpiredInterceptor } from './auth-expired.interceptor';
 import { ErrorHandlerInterceptor } from './errorhandler.interceptor';
@@ -17,7 +18,7 @@ export function interceptableFactory(
     eventManager: JhiEventManager
 ) {
     return new JhiInterceptableHttp(
-        backend,
+        new CurrentTokenBackend(backend, localStorage, sessionStorage),
         defaultOptions,
         [
             new AuthInterceptor(localStorage, sessionStorage),
@@ -4,19 +4,32 @@ import { Observable } from 'rxjs/Observable';
 import { LocalStorageService, SessionStorageService } from 'ngx-webstorage';
 import { SERVER_API_URL } from '../../app.constants';
 
+// The access token is refreshed this long before it expires
+const REFRESH_MARGIN_MILLIS = 60000;
+
 @Injectable()
 export class AuthServerProvider {
+    private refreshTimeout: any;
+    private refreshing: Observable<any>;
+
     constructor(
         private http: Http,
         private $localStorage: LocalStorageService,
         private $sessionStorage: SessionStorageService
-    ) {}
+    ) {
+        this.scheduleRefresh(this.getToken());
+    }
 
     getToken() {
 
         return this.$localStorage.retrieve('authenticationToken') || this.$sessionStorage.retrieve('authenticationToken');
     }
 
+    getRefreshToken() {
+
+        return this.$localStorage.retrieve('refreshToken') || this.$sessionStorage.retrieve('refreshToken');
+    }
+
     login(credentials): Observable<any> {
 
         const data = {
@@ -30,14 +43,18 @@ export class AuthServerProvider {
             const bearerToken = resp.headers.get('Authorization');
             if (bearerToken && bearerToken.slice(0, 7) === 'Bearer ') {
                 const jwt = bearerToken.slice(7, bearerToken.length);
+                this.storeRefreshToken(resp.json().refresh_token, credentials.rememberMe);
                 this.storeAuthenticationToken(jwt, credentials.rememberMe);
                 return jwt;
             }
         }
     }
 
-    loginWithToken(jwt, rememberMe) {
+    loginWithToken(jwt, rememberMe, refreshToken?) {
         if (jwt) {
+            if (refreshToken) {
+                this.storeRefreshToken(refreshToken, rememberMe);
+            }
             this.storeAuthenticationToken(jwt, rememberMe);
             return Promise.resolve(jwt);
         } else {
@@ -45,20 +62,68 @@ export class AuthServerProvider {
         }
     }
 
+    /**
+     * Get a new access token with the refresh token, which is replaced too.
+     * A refresh token is only accepted once, so concurrent callers share the refresh in progress.
+     */
+    refresh(): Observable<any> {
+        if (!this.refreshing) {
+            const rememberMe = !!this.$localStorage.retrieve('refreshToken');
+            this.refreshing = this.http.post(SERVER_API_URL + 'api/authenticate/refresh', { refreshToken: this.getRefreshToken() })
+                .map((resp) => {
+                    const body = resp.json();
+                    this.storeRefreshToken(body.refresh_token, rememberMe);
+                    this.storeAuthenticationToken(body.id_token, rememberMe);
+                    return body.id_token;
+                })
+                .finally(() => {
+                    this.refreshing = null;
+                })
+                .share();
+        }
+        return this.refreshing;
+    }
+
     storeAuthenticationToken(jwt, rememberMe) {
         if (rememberMe) {
             this.$localStorage.store('authenticationToken', jwt);
         } else {
             this.$sessionStorage.store('authenticationToken', jwt);
         }
+        this.scheduleRefresh(jwt);
+    }
+
+    storeRefreshToken(refreshToken, rememberMe) {
+        if (rememberMe) {
+            this.$localStorage.store('refreshToken', refreshToken);
+        } else {
+            this.$sessionStorage.store('refreshToken', refreshToken);
+        }
     }
 
     logout(): Observable<any> {
 
         return new Observable((observer) => {
-            this.$localStorage.clear('authenticationToken');
-            this.$sessionStorage.clear('authenticationToken');
-            observer.complete();
+            const clear = () => {
+                clearTimeout(this.refreshTimeout);
+                this.$localStorage.clear('authenticationToken');
+                this.$sessionStorage.clear('authenticationToken');
+                this.$localStorage.clear('refreshToken');
+                this.$sessionStorage.clear('refreshToken');
+                observer.complete();
+            };
+            // Revoke the tokens, but log out even if the server can not be reached
+            this.http.post(SERVER_API_URL + 'api/logout', { refreshToken: this.getRefreshToken() }).subscribe(clear, clear);
         });
     }
+
+    private scheduleRefresh(jwt) {
+        clearTimeout(this.refreshTimeout);
+        if (!jwt || !this.getRefreshToken()) {
+            return;
+        }
+        const expiration = JSON.parse(atob(jwt.split('.')[1].replace(/-/g, '+').replace(/_/g, '/'))).exp * 1000;
+        const delay = Math.max(0, expiration - Date.now() - REFRESH_MARGIN_MILLIS);
+        this.refreshTimeout = setTimeout(() => this.refresh().subscribe(() => {}, () => {}), delay);
+    }
 }
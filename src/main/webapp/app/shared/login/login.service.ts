@@ -31,8 +31,8 @@ export class LoginService {
         });
     }
 
-    loginWithToken(jwt, rememberMe) {
-        return this.authServerProvider.loginWithToken(jwt, rememberMe);
+    loginWithToken(jwt, rememberMe, refreshToken?) {
+        return this.authServerProvider.loginWithToken(jwt, rememberMe, refreshToken);
     }
 
     logout() {
@@ -3,4 +3,9 @@
 import '../content/scss/vendor.scss';
 import 'rxjs/add/operator/map';
 import 'rxjs/add/operator/catch';
+import 'rxjs/add/operator/finally';
+import 'rxjs/add/operator/mergeMap';
+import 'rxjs/add/operator/share';
+import 'rxjs/add/observable/defer';
+import 'rxjs/add/observable/throw';
 // jhipster-needle-add-element-to-vendor - JHipster will add new menu items here
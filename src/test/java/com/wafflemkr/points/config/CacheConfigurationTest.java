@@ -0,0 +1,113 @@
+package com.wafflemkr.points.config;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.ResourceUnit;
+import org.ehcache.config.SizedResourcePool;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the sizing of the caches with the application.cache properties.
+ *
+ * @see CacheConfiguration
+ */
+public class CacheConfigurationTest {
+
+    private static final String REGION = "com.wafflemkr.points.domain.Points";
+
+    private static final String OTHER = "com.wafflemkr.points.domain.Weight";
+
+    private JHipsterProperties jHipsterProperties;
+
+    private ApplicationProperties applicationProperties;
+
+    private ApplicationProperties.Cache.Region region;
+
+    @Before
+    public void setup() {
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getCache().getEhcache().setMaxEntries(100);
+        jHipsterProperties.getCache().getEhcache().setTimeToLiveSeconds(3600);
+        applicationProperties = new ApplicationProperties();
+        region = new ApplicationProperties.Cache.Region();
+        region.setName(REGION);
+        applicationProperties.getCache().setRegions(Collections.singletonList(region));
+    }
+
+    @Test
+    public void testJHipsterPropertiesAreTheLastFallback() {
+        CacheConfiguration configuration = new CacheConfiguration(jHipsterProperties, applicationProperties);
+
+        ResourcePools resourcePools = configuration.resourcePools(OTHER);
+        assertPool(resourcePools, ResourceType.Core.HEAP, 100, EntryUnit.ENTRIES);
+        assertThat(resourcePools.getResourceTypeSet()).containsOnly(ResourceType.Core.HEAP);
+        assertThat(configuration.timeToLiveSeconds(OTHER)).isEqualTo(3600);
+    }
+
+    @Test
+    public void testRegionOverridesTheDefaults() {
+        ApplicationProperties.Cache.Region defaults = applicationProperties.getCache().getDefaults();
+        defaults.setHeapEntries(1000L);
+        defaults.setOffHeapSizeMb(16L);
+        defaults.setTimeToLiveSeconds(600L);
+        region.setHeapEntries(5000L);
+        region.setOffHeapSizeMb(128L);
+        CacheConfiguration configuration = new CacheConfiguration(jHipsterProperties, applicationProperties);
+
+        ResourcePools regionPools = configuration.resourcePools(REGION);
+        assertPool(regionPools, ResourceType.Core.HEAP, 5000, EntryUnit.ENTRIES);
+        assertPool(regionPools, ResourceType.Core.OFFHEAP, 128, MemoryUnit.MB);
+        // The time to live is not set by the region, so it is the default one
+        assertThat(configuration.timeToLiveSeconds(REGION)).isEqualTo(600);
+
+        ResourcePools otherPools = configuration.resourcePools(OTHER);
+        assertPool(otherPools, ResourceType.Core.HEAP, 1000, EntryUnit.ENTRIES);
+        assertPool(otherPools, ResourceType.Core.OFFHEAP, 16, MemoryUnit.MB);
+    }
+
+    @Test
+    public void testHeapSizeInMegabytesWinsOverEntries() {
+        applicationProperties.getCache().getDefaults().setHeapEntries(1000L);
+        region.setHeapSizeMb(8L);
+        CacheConfiguration configuration = new CacheConfiguration(jHipsterProperties, applicationProperties);
+
+        assertPool(configuration.resourcePools(REGION), ResourceType.Core.HEAP, 8, MemoryUnit.MB);
+    }
+
+    @Test
+    public void testDiskTierIsOffWithoutDiskPath() {
+        region.setOffHeapSizeMb(128L);
+        region.setDiskSizeMb(512L);
+        CacheConfiguration configuration = new CacheConfiguration(jHipsterProperties, applicationProperties);
+
+        assertThat(configuration.resourcePools(REGION).getResourceTypeSet())
+            .containsOnly(ResourceType.Core.HEAP, ResourceType.Core.OFFHEAP);
+    }
+
+    @Test
+    public void testDiskTierIsPersistentWithDiskPath() {
+        applicationProperties.getCache().setDiskPath("build/points-cache");
+        region.setOffHeapSizeMb(128L);
+        region.setDiskSizeMb(512L);
+        CacheConfiguration configuration = new CacheConfiguration(jHipsterProperties, applicationProperties);
+
+        ResourcePools resourcePools = configuration.resourcePools(REGION);
+        assertPool(resourcePools, ResourceType.Core.DISK, 512, MemoryUnit.MB);
+        assertThat(resourcePools.getPoolForResource(ResourceType.Core.DISK).isPersistent()).isTrue();
+    }
+
+    private static void assertPool(ResourcePools resourcePools, ResourceType<SizedResourcePool> type, long size,
+            ResourceUnit unit) {
+        SizedResourcePool pool = resourcePools.getPoolForResource(type);
+        assertThat(pool.getSize()).isEqualTo(size);
+        assertThat(pool.getUnit()).isEqualTo(unit);
+    }
+}
@@ -0,0 +1,95 @@
+package com.wafflemkr.points.config;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.spring.cache.HazelcastCacheManager;
+import com.wafflemkr.points.repository.UserRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test two nodes of the clustered cache, running on the same machine.
+ *
+ * @see ClusteredCacheConfiguration
+ */
+public class ClusteredCacheConfigurationTest {
+
+    private static final int PORT = 15701;
+
+    private HazelcastInstance first;
+
+    private HazelcastInstance second;
+
+    @Before
+    public void setup() {
+        ApplicationProperties.Cache.Cluster cluster = new ApplicationProperties.Cache.Cluster();
+        cluster.setGroupName("points-test");
+        cluster.setPort(PORT);
+        cluster.setMembers(Arrays.asList("127.0.0.1:" + PORT, "127.0.0.1:" + (PORT + 1)));
+        cluster.setInstanceName("points-test-1");
+        first = Hazelcast.newHazelcastInstance(ClusteredCacheConfiguration.hazelcastConfig(cluster));
+        cluster.setInstanceName("points-test-2");
+        second = Hazelcast.newHazelcastInstance(ClusteredCacheConfiguration.hazelcastConfig(cluster));
+    }
+
+    @After
+    public void tearDown() {
+        second.shutdown();
+        first.shutdown();
+    }
+
+    @Test
+    public void testNodesJoinTheCluster() {
+        assertThat(first.getCluster().getMembers()).hasSize(2);
+        assertThat(second.getCluster().getMembers()).hasSize(2);
+    }
+
+    @Test
+    public void testCacheIsSharedBetweenNodes() {
+        Cache firstCache = new HazelcastCacheManager(first).getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        Cache secondCache = new HazelcastCacheManager(second).getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+
+        firstCache.put("johndoe", "john@localhost");
+        assertThat(secondCache.get("johndoe").get()).isEqualTo("john@localhost");
+
+        firstCache.evict("johndoe");
+        assertThat(secondCache.get("johndoe")).isNull();
+    }
+
+    @Test
+    public void testNearCacheIsInvalidatedByOtherNodes() throws Exception {
+        IMap<String, String> firstMap = first.getMap("com.wafflemkr.points.domain.Points");
+        IMap<String, String> secondMap = second.getMap("com.wafflemkr.points.domain.Points");
+        // Use keys owned by the first node, as a node does not keep its own entries in its near cache
+        String key = keyOwnedBy(first, "points");
+        firstMap.put(key, "AAAAAAAAAA");
+
+        assertThat(secondMap.get(key)).isEqualTo("AAAAAAAAAA");
+        assertThat(secondMap.get(key)).isEqualTo("AAAAAAAAAA");
+        assertThat(secondMap.getLocalMapStats().getNearCacheStats().getHits()).isEqualTo(1);
+
+        firstMap.put(key, "BBBBBBBBBB");
+        // Invalidations are sent asynchronously
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!"BBBBBBBBBB".equals(secondMap.get(key)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(secondMap.get(key)).isEqualTo("BBBBBBBBBB");
+    }
+
+    private String keyOwnedBy(HazelcastInstance node, String prefix) {
+        for (int i = 0; ; i++) {
+            String key = prefix + i;
+            if (node.getPartitionService().getPartition(key).getOwner().localMember()) {
+                return key;
+            }
+        }
+    }
+}
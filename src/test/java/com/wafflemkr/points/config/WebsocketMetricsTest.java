@@ -0,0 +1,77 @@
+package com.wafflemkr.points.config;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+
+public class WebsocketMetricsTest {
+
+    private MetricRegistry metricRegistry;
+
+    private WebsocketMetrics websocketMetrics;
+
+    @Before
+    public void setup() {
+        metricRegistry = new MetricRegistry();
+        websocketMetrics = new WebsocketMetrics(metricRegistry);
+    }
+
+    @Test
+    public void testSessionsAreCounted() throws Exception {
+        WebSocketHandler handler = websocketMetrics.sessionDecoratorFactory().decorate(mock(WebSocketHandler.class));
+        WebSocketSession session = mock(WebSocketSession.class);
+
+        handler.afterConnectionEstablished(session);
+        handler.afterConnectionEstablished(session);
+        assertThat(metricRegistry.getGauges().get(MetricRegistry.name(WebsocketMetrics.class, "sessions")).getValue()).isEqualTo(2);
+
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        assertThat(websocketMetrics.getSessions()).isEqualTo(1);
+        assertThat(metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "slow-consumers")).getCount()).isZero();
+    }
+
+    @Test
+    public void testSlowConsumersAreCounted() throws Exception {
+        WebSocketHandler handler = websocketMetrics.sessionDecoratorFactory().decorate(mock(WebSocketHandler.class));
+        WebSocketSession session = mock(WebSocketSession.class);
+
+        handler.afterConnectionEstablished(session);
+        handler.afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+
+        assertThat(websocketMetrics.getSessions()).isZero();
+        assertThat(metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "slow-consumers")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMessagesAreCounted() {
+        websocketMetrics.inboundInterceptor().preSend(MessageBuilder.withPayload("test").build(), null);
+        websocketMetrics.outboundInterceptor().preSend(MessageBuilder.withPayload("test").build(), null);
+        websocketMetrics.outboundInterceptor().preSend(MessageBuilder.withPayload("test").build(), null);
+
+        assertThat(metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "inbound-messages")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "outbound-messages")).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testMessagesOfAFullChannelAreDropped() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+
+        Throwable thrown = catchThrowable(() -> websocketMetrics.droppingHandler("outbound").rejectedExecution(() -> { }, executor));
+
+        assertThat(thrown).isInstanceOf(RejectedExecutionException.class);
+        assertThat(metricRegistry.meter(MetricRegistry.name(WebsocketMetrics.class, "dropped-messages")).getCount()).isEqualTo(1);
+    }
+}
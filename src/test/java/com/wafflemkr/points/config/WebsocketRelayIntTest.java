@@ -0,0 +1,103 @@
+package com.wafflemkr.points.config;
+
+import com.wafflemkr.points.PointsApp;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.jms.*;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the STOMP broker relay against an embedded ActiveMQ broker.
+ *
+ * @see WebsocketConfiguration
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class, properties = "application.websocket.broker=relay")
+public class WebsocketRelayIntTest {
+
+    private static final String RELAY_PORT_PROPERTY = "application.websocket.relay.port";
+
+    private static BrokerService broker;
+
+    @Autowired
+    private SimpMessageSendingOperations messagingTemplate;
+
+    @Autowired
+    @Qualifier("stompBrokerRelayMessageHandler")
+    private AbstractBrokerMessageHandler stompBrokerRelayMessageHandler;
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        broker = new BrokerService();
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.addConnector("vm://relay-test");
+        broker.addConnector("stomp://localhost:" + port);
+        broker.start();
+        broker.waitUntilStarted();
+        System.setProperty(RELAY_PORT_PROPERTY, String.valueOf(port));
+    }
+
+    @AfterClass
+    public static void stopBroker() throws Exception {
+        System.clearProperty(RELAY_PORT_PROPERTY);
+        broker.stop();
+        broker.waitUntilStopped();
+    }
+
+    @Test
+    public void testMessagesAreRelayedToTheBroker() throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!stompBrokerRelayMessageHandler.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(stompBrokerRelayMessageHandler.isBrokerAvailable()).isTrue();
+
+        Connection connection = new ActiveMQConnectionFactory("vm://relay-test?create=false").createConnection();
+        try {
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createTopic("tracker"));
+
+            messagingTemplate.convertAndSend("/topic/tracker", "test");
+
+            Message message = consumer.receive(10000);
+            assertThat(message).isNotNull();
+            assertThat(getText(message)).isEqualTo("test");
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * ActiveMQ maps STOMP frames with a content-length header, as sent by the relay, to bytes messages.
+     */
+    private static String getText(Message message) throws JMSException {
+        if (message instanceof TextMessage) {
+            return ((TextMessage) message).getText();
+        }
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,99 @@
+package com.wafflemkr.points.config.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Test class for the HdrHistogramReservoir.
+ *
+ * @see HdrHistogramReservoir
+ */
+public class HdrHistogramReservoirTest {
+
+    private ManualClock clock;
+
+    private HdrHistogramReservoir reservoir;
+
+    @Before
+    public void setup() {
+        clock = new ManualClock();
+        reservoir = new HdrHistogramReservoir(60, TimeUnit.SECONDS, clock);
+    }
+
+    @Test
+    public void testPercentilesOfAllTheValues() {
+        for (long value = 1; value <= 10000; value++) {
+            reservoir.update(value * 1000);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertThat(snapshot.size()).isEqualTo(10000);
+        assertThat(snapshot.getMedian()).isCloseTo(5000000, within(50000.0));
+        assertThat(snapshot.get99thPercentile()).isCloseTo(9900000, within(99000.0));
+        assertThat(snapshot.get999thPercentile()).isCloseTo(9990000, within(99900.0));
+        assertThat(snapshot.getMin()).isEqualTo(1000);
+        assertThat(snapshot.getMax()).isCloseTo(10000000, within(100000L));
+    }
+
+    @Test
+    public void testTailIsNotSmeared() {
+        for (int i = 0; i < 499; i++) {
+            reservoir.update(1000);
+        }
+        reservoir.update(1000000000);
+
+        assertThat(reservoir.getSnapshot().getMax()).isCloseTo(1000000000, within(10000000L));
+        assertThat(reservoir.getSnapshot().get999thPercentile()).isCloseTo(1000000000, within(10000000.0));
+    }
+
+    @Test
+    public void testValuesLeaveTheWindow() {
+        reservoir.update(1000);
+        clock.advance(30, TimeUnit.SECONDS);
+        reservoir.update(2000);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(2);
+
+        clock.advance(35, TimeUnit.SECONDS);
+        reservoir.update(3000);
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(snapshot.getMin()).isEqualTo(2000);
+
+        clock.advance(10, TimeUnit.MINUTES);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSnapshotsDoNotLoseValues() {
+        reservoir.update(1000);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(1);
+        reservoir.update(2000);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(2);
+        clock.advance(10, TimeUnit.SECONDS);
+        assertThat(reservoir.getSnapshot().size()).isEqualTo(2);
+        assertThat(reservoir.getSnapshot().getValues()).hasSize(2);
+    }
+
+    private static class ManualClock extends Clock {
+
+        private long tick;
+
+        void advance(long duration, TimeUnit unit) {
+            tick += unit.toNanos(duration);
+        }
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
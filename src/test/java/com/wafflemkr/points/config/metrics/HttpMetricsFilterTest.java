@@ -0,0 +1,120 @@
+package com.wafflemkr.points.config.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.prometheus.client.CollectorRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Test class for the HttpMetricsFilter.
+ *
+ * @see HttpMetricsFilter
+ */
+public class HttpMetricsFilterTest {
+
+    private MetricRegistry metricRegistry;
+
+    private CollectorRegistry collectorRegistry;
+
+    private HttpMetricsFilter filter;
+
+    @Before
+    public void setup() {
+        metricRegistry = new MetricRegistry();
+        collectorRegistry = new CollectorRegistry(true);
+        filter = new HttpMetricsFilter(metricRegistry, collectorRegistry, 60, Arrays.asList(0.1, 1.0));
+    }
+
+    @Test
+    public void testRequestsAreTimedByEndpointAndStatusClass() throws Exception {
+        request("GET", "/api/points/1", "/api/points/{id}", 200);
+        request("GET", "/api/points/2", "/api/points/{id}", 200);
+        request("GET", "/api/points/3", "/api/points/{id}", 404);
+
+        Timer ok = metricRegistry.getTimers().get("http.GET /api/points/{id}.2xx");
+        Timer notFound = metricRegistry.getTimers().get("http.GET /api/points/{id}.4xx");
+        assertThat(ok.getCount()).isEqualTo(2);
+        assertThat(notFound.getCount()).isEqualTo(1);
+
+        assertThat(sample("http_server_requests_seconds_count", "GET", "/api/points/{id}", "2xx")).isEqualTo(2);
+        assertThat(sample("http_server_requests_seconds_count", "GET", "/api/points/{id}", "4xx")).isEqualTo(1);
+        assertThat(sample("http_server_requests_seconds_bucket", "GET", "/api/points/{id}", "2xx", "+Inf")).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnmappedRequestsShareAMetric() throws Exception {
+        request("GET", "/unknown/1", null, 404);
+        request("GET", "/unknown/2", null, 404);
+
+        assertThat(metricRegistry.getTimers().get("http.GET " + HttpMetricsFilter.UNMAPPED + ".4xx").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNonStandardMethodsShareAMetric() throws Exception {
+        request("PROPFIND", "/api/points/1", "/api/points/{id}", 405);
+        request("get", "/api/points/1", "/api/points/{id}", 405);
+
+        assertThat(metricRegistry.getTimers().get("http." + HttpMetricsFilter.OTHER_METHOD + " /api/points/{id}.4xx").getCount())
+            .isEqualTo(2);
+        assertThat(metricRegistry.getTimers()).hasSize(1);
+        assertThat(sample("http_server_requests_seconds_count", HttpMetricsFilter.OTHER_METHOD, "/api/points/{id}", "4xx"))
+            .isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedRequestsAreServerErrors() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/points");
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/points");
+                throw new IllegalStateException("Failure");
+            }
+        });
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            fail("The failure should be thrown");
+        } catch (IllegalStateException e) {
+            assertThat(metricRegistry.getTimers().get("http.POST /api/points.5xx").getCount()).isEqualTo(1);
+        }
+    }
+
+    private void request(String method, String uri, String pattern, int status) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                if (pattern != null) {
+                    req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+                }
+                resp.setStatus(status);
+            }
+        }));
+    }
+
+    private double sample(String name, String... labelValues) {
+        String[] labelNames = labelValues.length == 4 ?
+            new String[]{"method", "uri", "status", "le"} : new String[]{"method", "uri", "status"};
+        Double value = collectorRegistry.getSampleValue(name, labelNames, labelValues);
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,67 @@
+package com.wafflemkr.points.config.metrics;
+
+import com.wafflemkr.points.PointsApp;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the QueryStatisticsProxy of the application datasource.
+ *
+ * @see QueryStatisticsProxy
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+public class QueryStatisticsProxyIntTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private List<PublicMetrics> publicMetrics;
+
+    @Test
+    public void testPoolMetricsArePublished() {
+        assertThat(dataSource).isNotInstanceOf(HikariDataSource.class);
+
+        List<String> names = publicMetrics.stream()
+            .flatMap(metrics -> metrics.metrics().stream())
+            .map(Metric::getName)
+            .collect(Collectors.toList());
+        assertThat(names).contains("datasource.primary.active", "datasource.primary.usage");
+    }
+
+    @Test
+    public void testBackReferencesAreProxies() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select 1")) {
+            assertThat(statement.getConnection()).isSameAs(connection);
+            assertThat(resultSet.getStatement()).isSameAs(statement);
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select 1")) {
+            statement.execute();
+            try (ResultSet resultSet = statement.getResultSet()) {
+                assertThat(statement.getConnection()).isSameAs(connection);
+                assertThat(resultSet.getStatement()).isSameAs(statement);
+            }
+        }
+    }
+}
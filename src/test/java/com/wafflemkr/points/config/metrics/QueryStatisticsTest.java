@@ -0,0 +1,109 @@
+package com.wafflemkr.points.config.metrics;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.wafflemkr.points.config.ApplicationProperties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the QueryStatistics.
+ *
+ * @see QueryStatistics
+ */
+public class QueryStatisticsTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private QueryStatistics queryStatistics;
+
+    private MetricRegistry metricRegistry;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getMetrics().getQueries().setRepeatThreshold(3);
+        applicationProperties.getMetrics().getQueries().setMaxStatements(2);
+        queryStatistics = new QueryStatistics(applicationProperties);
+        metricRegistry = new MetricRegistry();
+        metricRegistry.registerAll(queryStatistics);
+    }
+
+    @Test
+    public void testNormalize() {
+        assertThat(QueryStatistics.normalize("select points0_.id as id1_5_0_ from points points0_\n   where points0_.id=42"))
+            .isEqualTo("select points0_.id as id1_5_0_ from points points0_ where points0_.id=?");
+        assertThat(QueryStatistics.normalize("select * from jhi_user where login = 'it''s me' and id in (1, 2, 3)"))
+            .isEqualTo("select * from jhi_user where login = ? and id in (?)");
+        assertThat(QueryStatistics.normalize("delete from points where id IN (?,?)"))
+            .isEqualTo("delete from points where id in (?)");
+    }
+
+    @Test
+    public void testStatementsAreGroupedByShape() {
+        queryStatistics.recordExecution("select * from points where id = 1", 2000000, 0);
+        queryStatistics.recordRows("select * from points where id = 1", 1);
+        queryStatistics.recordExecution("select * from points where id = 2", 4000000, 0);
+        queryStatistics.recordExecution("update points set exercise = 1 where id = 2", 1000000, 1);
+
+        assertThat(queryStatistics.getStatements()).hasSize(2);
+        QueryStatistics.Statement select = queryStatistics.getStatements().stream()
+            .filter(statement -> statement.getShape().startsWith("select")).findFirst().get();
+        assertThat(select.getShape()).isEqualTo("select * from points where id = ?");
+        assertThat(select.getCount()).isEqualTo(2);
+        assertThat(select.getTotalNanos()).isEqualTo(6000000);
+        assertThat(select.getMaxNanos()).isEqualTo(4000000);
+        assertThat(select.getRows()).isEqualTo(1);
+
+        Timer selects = metricRegistry.getTimers().get(MetricRegistry.name(QueryStatistics.class, "select"));
+        Timer updates = metricRegistry.getTimers().get(MetricRegistry.name(QueryStatistics.class, "update"));
+        assertThat(selects.getCount()).isEqualTo(2);
+        assertThat(updates.getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getMeters().get(MetricRegistry.name(QueryStatistics.class, "rows")).getCount())
+            .isEqualTo(2);
+    }
+
+    @Test
+    public void testStatementsBeyondTheMaximumAreOnlyCounted() {
+        queryStatistics.recordExecution("select * from points", 1000, 0);
+        queryStatistics.recordExecution("select * from weight", 1000, 0);
+        queryStatistics.recordExecution("select * from blood_pressure", 1000, 0);
+
+        assertThat(queryStatistics.getStatements()).hasSize(2);
+        assertThat(metricRegistry.getMeters().get(MetricRegistry.name(QueryStatistics.class, "untracked-statements"))
+            .getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getTimers().get(MetricRegistry.name(QueryStatistics.class, "select")).getCount())
+            .isEqualTo(3);
+    }
+
+    @Test
+    public void testRepeatedQueriesAreReported() {
+        Meter repeatedQueries = metricRegistry.getMeters().get(MetricRegistry.name(QueryStatistics.class, "repeated-queries"));
+
+        queryStatistics.openScope();
+        for (int id = 1; id <= 3; id++) {
+            queryStatistics.recordExecution("select * from jhi_user where id = " + id, 1000, 0);
+            queryStatistics.recordExecution("insert into points (id) values (" + id + ")", 1000, 1);
+        }
+        queryStatistics.recordExecution("select * from points", 1000, 0);
+        queryStatistics.closeScope("GET /api/points");
+
+        assertThat(repeatedQueries.getCount()).isEqualTo(1);
+        assertThat(queryStatistics.getStatements().stream().filter(statement -> statement.getRepeated() > 0)
+            .map(QueryStatistics.Statement::getShape).collect(Collectors.toList()))
+            .containsExactly("select * from jhi_user where id = ?");
+
+        // Outside of a request, queries are not reported
+        for (int id = 1; id <= 3; id++) {
+            queryStatistics.recordExecution("select * from jhi_user where id = " + id, 1000, 0);
+        }
+        queryStatistics.closeScope("scheduled task");
+        assertThat(repeatedQueries.getCount()).isEqualTo(1);
+    }
+}
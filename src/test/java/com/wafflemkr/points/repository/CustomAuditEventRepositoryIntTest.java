@@ -1,6 +1,8 @@
 package com.wafflemkr.points.repository;
 
+import com.codahale.metrics.MetricRegistry;
 import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.config.ApplicationProperties;
 import com.wafflemkr.points.config.Constants;
 import com.wafflemkr.points.config.audit.AuditEventConverter;
 import com.wafflemkr.points.domain.PersistentAuditEvent;
@@ -14,6 +16,7 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.servlet.http.HttpSession;
@@ -42,6 +45,11 @@ public class CustomAuditEventRepositoryIntTest {
     @Autowired
     private AuditEventConverter auditEventConverter;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private AuditEventWriter auditEventWriter;
+
     private CustomAuditEventRepository customAuditEventRepository;
 
     private PersistentAuditEvent testUserEvent;
@@ -52,7 +60,11 @@ public class CustomAuditEventRepositoryIntTest {
 
     @Before
     public void setup() {
-        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter);
+        // A writer of its own, so that events queued by other tests are not written here
+        auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, transactionManager,
+            new ApplicationProperties(), new MetricRegistry());
+        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter,
+            auditEventWriter);
         persistenceAuditEventRepository.deleteAll();
         Instant oneHourAgo = Instant.now().minusSeconds(3600);
 
@@ -160,6 +172,7 @@ public class CustomAuditEventRepositoryIntTest {
         data.put("test-key", "test-value");
         AuditEvent event = new AuditEvent("test-user", "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(1);
         PersistentAuditEvent persistentAuditEvent = persistentAuditEvents.get(0);
@@ -180,6 +193,7 @@ public class CustomAuditEventRepositoryIntTest {
         data.put("test-key", largeData);
         AuditEvent event = new AuditEvent("test-user", "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(1);
         PersistentAuditEvent persistentAuditEvent = persistentAuditEvents.get(0);
@@ -203,6 +217,7 @@ public class CustomAuditEventRepositoryIntTest {
         data.put("test-key", details);
         AuditEvent event = new AuditEvent("test-user", "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(1);
         PersistentAuditEvent persistentAuditEvent = persistentAuditEvents.get(0);
@@ -216,6 +231,7 @@ public class CustomAuditEventRepositoryIntTest {
         data.put("test-key", null);
         AuditEvent event = new AuditEvent("test-user", "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(1);
         PersistentAuditEvent persistentAuditEvent = persistentAuditEvents.get(0);
@@ -228,6 +244,7 @@ public class CustomAuditEventRepositoryIntTest {
         data.put("test-key", "test-value");
         AuditEvent event = new AuditEvent(Constants.ANONYMOUS_USER, "test-type", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(0);
     }
@@ -238,8 +255,46 @@ public class CustomAuditEventRepositoryIntTest {
         data.put("test-key", "test-value");
         AuditEvent event = new AuditEvent("test-user", "AUTHORIZATION_FAILURE", data);
         customAuditEventRepository.add(event);
+        auditEventWriter.flush();
         List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
         assertThat(persistentAuditEvents).hasSize(0);
     }
 
+    @Test
+    public void addAuditEventsInSeveralBatches() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().setBatchSize(2);
+        auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, transactionManager,
+            applicationProperties, new MetricRegistry());
+        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter,
+            auditEventWriter);
+
+        for (int i = 0; i < 5; i++) {
+            customAuditEventRepository.add(new AuditEvent("test-user", "test-type", new HashMap<>()));
+        }
+        assertThat(persistenceAuditEventRepository.findAll()).isEmpty();
+
+        auditEventWriter.flush();
+        assertThat(persistenceAuditEventRepository.findAll()).hasSize(5);
+    }
+
+    @Test
+    public void addAuditEventWhenQueueIsFull() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().setQueueCapacity(1);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository, transactionManager,
+            applicationProperties, metricRegistry);
+        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter,
+            auditEventWriter);
+
+        customAuditEventRepository.add(new AuditEvent("test-user", "test-type", new HashMap<>()));
+        customAuditEventRepository.add(new AuditEvent("test-other-user", "test-type", new HashMap<>()));
+        assertThat(metricRegistry.meter(MetricRegistry.name(AuditEventWriter.class, "dropped")).getCount()).isEqualTo(1);
+
+        auditEventWriter.flush();
+        List<PersistentAuditEvent> persistentAuditEvents = persistenceAuditEventRepository.findAll();
+        assertThat(persistentAuditEvents).hasSize(1);
+        assertThat(persistentAuditEvents.get(0).getPrincipal()).isEqualTo("test-user");
+    }
 }
@@ -0,0 +1,129 @@
+package com.wafflemkr.points.repository;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.MailOutbox;
+import com.wafflemkr.points.domain.enumeration.MailStatus;
+import com.wafflemkr.points.domain.util.FixedPostgreSQL95Dialect;
+
+import org.hibernate.LockOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Test class for the MailOutboxRepository claim query, with two transactions committing on their own.
+ *
+ * @see MailOutboxRepository
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+public class MailOutboxRepositoryIntTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-18T12:00:00Z");
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private MailOutbox oldest;
+
+    private MailOutbox newest;
+
+    @Before
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        mailOutboxRepository.deleteAllInBatch();
+        oldest = mailOutboxRepository.saveAndFlush(createMail(NOW.minusSeconds(60)));
+        newest = mailOutboxRepository.saveAndFlush(createMail(NOW.minusSeconds(30)));
+    }
+
+    @After
+    public void destroy() {
+        mailOutboxRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void assertThatTheProdDialectSkipsLockedRows() {
+        assertThat(new FixedPostgreSQL95Dialect().getWriteLockString(LockOptions.SKIP_LOCKED))
+            .containsIgnoringCase("for update skip locked");
+    }
+
+    @Test
+    public void assertThatASecondClaimSkipsTheLockedMailsWithoutBlocking() throws Exception {
+        // H2 has no skip locked: the second claim would wait for the first one
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+            connection.getMetaData().getDatabaseProductName());
+        assumeTrue("PostgreSQL".equals(database));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<List<Long>> first = executor.submit(() -> transactionTemplate.execute(status -> {
+                List<Long> ids = claim(1);
+                locked.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ids;
+            }));
+            assertThat(locked.await(30, TimeUnit.SECONDS)).isTrue();
+
+            Future<List<Long>> second = executor.submit(() -> transactionTemplate.execute(status -> claim(2)));
+            // Times out if the second claim waits for the lock of the first one
+            assertThat(second.get(10, TimeUnit.SECONDS)).containsExactly(newest.getId());
+
+            release.countDown();
+            assertThat(first.get(30, TimeUnit.SECONDS)).containsExactly(oldest.getId());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Long> claim(int size) {
+        return mailOutboxRepository.findAllByStatusAndNextAttemptDateLessThanEqualOrderByNextAttemptDateAsc(
+            MailStatus.PENDING, NOW, new PageRequest(0, size)).stream()
+            .map(MailOutbox::getId)
+            .collect(Collectors.toList());
+    }
+
+    private static MailOutbox createMail(Instant nextAttemptDate) {
+        MailOutbox mail = new MailOutbox()
+            .recipient("john.doe@localhost")
+            .subject("subject")
+            .content("content");
+        mail.setNextAttemptDate(nextAttemptDate);
+        return mail;
+    }
+}
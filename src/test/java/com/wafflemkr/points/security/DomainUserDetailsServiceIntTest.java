@@ -3,6 +3,8 @@ package com.wafflemkr.points.security;
 import com.wafflemkr.points.PointsApp;
 import com.wafflemkr.points.domain.User;
 import com.wafflemkr.points.repository.UserRepository;
+import com.wafflemkr.points.service.UserService;
+import com.wafflemkr.points.service.dto.UserDTO;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Before;
@@ -10,14 +12,17 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Locale;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 /**
  * Test class for DomainUserDetailsService.
@@ -42,12 +47,20 @@ public class DomainUserDetailsServiceIntTest {
     @Autowired
     private UserDetailsService domainUserDetailsService;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
     private User userOne;
     private User userTwo;
     private User userThree;
 
     @Before
     public void init() {
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_OR_EMAIL_CACHE).clear();
+
         userOne = new User();
         userOne.setLogin(USER_ONE_LOGIN);
         userOne.setPassword(RandomStringUtils.random(60));
@@ -119,6 +132,23 @@ public class DomainUserDetailsServiceIntTest {
         assertThat(userDetails.getUsername()).isEqualTo(USER_ONE_LOGIN);
     }
 
+    @Test
+    @Transactional
+    public void assertThatPreviousEmailIsEvictedWhenUserIsUpdated() {
+        domainUserDetailsService.loadUserByUsername(USER_TWO_EMAIL);
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_OR_EMAIL_CACHE).get(USER_TWO_EMAIL)).isNotNull();
+
+        UserDTO userDTO = new UserDTO(userTwo);
+        userDTO.setEmail("test-user-two-updated@localhost");
+        userService.updateUser(userDTO);
+
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_OR_EMAIL_CACHE).get(USER_TWO_EMAIL)).isNull();
+        assertThat(catchThrowable(() -> domainUserDetailsService.loadUserByUsername(USER_TWO_EMAIL)))
+            .isInstanceOf(UsernameNotFoundException.class);
+        UserDetails userDetails = domainUserDetailsService.loadUserByUsername("test-user-two-updated@localhost");
+        assertThat(userDetails.getUsername()).isEqualTo(USER_TWO_LOGIN);
+    }
+
     @Test(expected = UserNotActivatedException.class)
     @Transactional
     public void assertThatUserNotActivatedExceptionIsThrownForNotActivatedUsers() {
@@ -0,0 +1,86 @@
+package com.wafflemkr.points.security;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.wafflemkr.points.config.ApplicationProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PasswordHashingExecutorTest {
+
+    private MetricRegistry metricRegistry;
+
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Before
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().setPasswordHashThreads(1);
+        applicationProperties.getSecurity().setPasswordHashQueueCapacity(1);
+        metricRegistry = new MetricRegistry();
+        passwordHashingExecutor = new PasswordHashingExecutor(applicationProperties, metricRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        passwordHashingExecutor.shutdown();
+    }
+
+    @Test
+    public void testTaskFailureCompletesTheFuture() {
+        CompletableFuture<String> future = passwordHashingExecutor.submit(() -> {
+            throw new IllegalStateException("test failure");
+        });
+
+        Throwable thrown = catchThrowable(() -> future.get(10, TimeUnit.SECONDS));
+        assertThat(thrown).isInstanceOf(ExecutionException.class);
+        assertThat(thrown.getCause()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTasksAreRejectedWhenTheQueueIsFull() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = passwordHashingExecutor.submit(() -> {
+            running.countDown();
+            await(release);
+            return "first";
+        });
+        assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> second = passwordHashingExecutor.submit(() -> "second");
+
+        Gauge<Integer> queueDepth = metricRegistry.getGauges()
+            .get(MetricRegistry.name(PasswordHashingExecutor.class, "queue-depth"));
+        assertThat(queueDepth.getValue()).isEqualTo(1);
+        assertThat(catchThrowable(() -> passwordHashingExecutor.submit(() -> "third")))
+            .isInstanceOf(RejectedExecutionException.class);
+        assertThat(passwordHashingExecutor.getRetryAfterSeconds()).isGreaterThanOrEqualTo(1);
+        assertThat(metricRegistry.meter(MetricRegistry.name(PasswordHashingExecutor.class, "rejected")).getCount())
+            .isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo("second");
+        assertThat(metricRegistry.timer(MetricRegistry.name(PasswordHashingExecutor.class, "hash")).getCount())
+            .isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
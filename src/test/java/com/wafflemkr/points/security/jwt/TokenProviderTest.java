@@ -1,7 +1,9 @@
 package com.wafflemkr.points.security.jwt;
 
+import com.wafflemkr.points.config.ApplicationProperties;
 import com.wafflemkr.points.security.AuthoritiesConstants;
 import io.github.jhipster.config.JHipsterProperties;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.junit.Before;
@@ -16,6 +18,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -24,14 +27,13 @@ public class TokenProviderTest {
     private final String secretKey = "e5c9ee274ae87bc031adda32e27fa98b9290da83";
     private final long ONE_MINUTE = 60000;
     private JHipsterProperties jHipsterProperties;
+    private TokenRevocationList tokenRevocationList;
     private TokenProvider tokenProvider;
 
     @Before
     public void setup() {
         jHipsterProperties = Mockito.mock(JHipsterProperties.class);
-        tokenProvider = new TokenProvider(jHipsterProperties);
-        ReflectionTestUtils.setField(tokenProvider, "secretKey", secretKey);
-        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
+        tokenProvider = createTokenProvider(new ApplicationProperties());
     }
 
     @Test
@@ -44,7 +46,7 @@ public class TokenProviderTest {
     @Test
     public void testReturnFalseWhenJWTisMalformed() {
         Authentication authentication = createAuthentication();
-        String token = tokenProvider.createToken(authentication, false);
+        String token = tokenProvider.createToken(authentication);
         String invalidToken = token.substring(1);
         boolean isTokenValid = tokenProvider.validateToken(invalidToken);
 
@@ -56,7 +58,7 @@ public class TokenProviderTest {
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", -ONE_MINUTE);
 
         Authentication authentication = createAuthentication();
-        String token = tokenProvider.createToken(authentication, false);
+        String token = tokenProvider.createToken(authentication);
 
         boolean isTokenValid = tokenProvider.validateToken(token);
 
@@ -79,6 +81,138 @@ public class TokenProviderTest {
         assertThat(isTokenValid).isEqualTo(false);
     }
 
+    @Test
+    public void testResolveAuthenticationOfValidToken() {
+        String token = tokenProvider.createToken(createAuthentication());
+
+        Optional<Authentication> first = tokenProvider.resolveAuthentication(token);
+        Optional<Authentication> second = tokenProvider.resolveAuthentication(token);
+
+        assertThat(first).isPresent();
+        assertThat(first.get().getName()).isEqualTo("anonymous");
+        assertThat(first.get().getCredentials()).isEqualTo(token);
+        assertThat(first.get().getAuthorities()).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.ANONYMOUS);
+        assertThat(second).isPresent();
+        assertThat(second.get()).isNotSameAs(first.get());
+        assertThat(second.get().getPrincipal()).isSameAs(first.get().getPrincipal());
+    }
+
+    @Test
+    public void testResolveAuthenticationSharesAuthorities() {
+        String token = tokenProvider.createToken(createAuthentication());
+        String otherToken = tokenProvider.createToken(createAuthentication());
+
+        GrantedAuthority authority = tokenProvider.resolveAuthentication(token).get().getAuthorities().iterator().next();
+        GrantedAuthority otherAuthority = tokenProvider.resolveAuthentication(otherToken).get().getAuthorities().iterator().next();
+
+        assertThat(otherAuthority).isSameAs(authority);
+    }
+
+    @Test
+    public void testResolveAuthenticationOfLegacyToken() {
+        // Issued before the tokens had an id and a type
+        String token = Jwts.builder()
+            .setSubject("anonymous")
+            .claim("auth", AuthoritiesConstants.ANONYMOUS)
+            .signWith(SignatureAlgorithm.HS512, secretKey)
+            .setExpiration(new Date(new Date().getTime() + ONE_MINUTE))
+            .compact();
+
+        Optional<Authentication> authentication = tokenProvider.resolveAuthentication(token);
+
+        assertThat(authentication).isPresent();
+        assertThat(authentication.get().getName()).isEqualTo("anonymous");
+        assertThat(tokenProvider.parseRefreshToken(token)).isEmpty();
+    }
+
+    @Test
+    public void testResolveAuthenticationOfInvalidToken() {
+        assertThat(tokenProvider.resolveAuthentication(createTokenWithDifferentSignature())).isEmpty();
+    }
+
+    @Test
+    public void testResolveAuthenticationOfExpiredToken() {
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", -ONE_MINUTE);
+        String token = tokenProvider.createToken(createAuthentication());
+
+        assertThat(tokenProvider.resolveAuthentication(token)).isEmpty();
+    }
+
+    @Test
+    public void testResolveAuthenticationWhenCacheIsFull() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().setTokenCacheSize(1);
+        tokenProvider = createTokenProvider(applicationProperties);
+        String token = tokenProvider.createToken(createAuthentication());
+        String otherToken = tokenProvider.createToken(createAuthentication());
+
+        assertThat(tokenProvider.resolveAuthentication(token)).isPresent();
+        assertThat(tokenProvider.resolveAuthentication(otherToken)).isPresent();
+        assertThat(tokenProvider.resolveAuthentication(token)).isPresent();
+    }
+
+    @Test
+    public void testResolveAuthenticationOfRevokedToken() {
+        String token = tokenProvider.createToken(createAuthentication());
+        assertThat(tokenProvider.resolveAuthentication(token)).isPresent();
+
+        Claims claims = tokenProvider.parseToken(token).get();
+        tokenRevocationList.revoke(claims.getId(), claims.getExpiration().getTime());
+
+        assertThat(tokenProvider.resolveAuthentication(token)).isEmpty();
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+    }
+
+    @Test
+    public void testRefreshTokenIsNotAnAccessToken() {
+        String refreshToken = tokenProvider.createRefreshToken(createAuthentication(), false);
+        String token = tokenProvider.createToken(createAuthentication());
+
+        assertThat(tokenProvider.resolveAuthentication(refreshToken)).isEmpty();
+        assertThat(tokenProvider.parseRefreshToken(refreshToken).get().getSubject()).isEqualTo("anonymous");
+        assertThat(tokenProvider.parseRefreshToken(token)).isEmpty();
+    }
+
+    @Test
+    public void testRefreshTokenValidity() {
+        Claims refreshToken = tokenProvider.parseRefreshToken(tokenProvider.createRefreshToken(createAuthentication(), false)).get();
+        Claims rememberMeToken = tokenProvider.parseRefreshToken(tokenProvider.createRefreshToken(createAuthentication(), true)).get();
+
+        assertThat(rememberMeToken.getExpiration()).isAfter(refreshToken.getExpiration());
+    }
+
+    @Test
+    public void testReplacedRefreshTokenKeepsItsExpiration() {
+        Claims refreshToken = tokenProvider.parseRefreshToken(tokenProvider.createRefreshToken(createAuthentication(), true)).get();
+
+        Claims replacement = tokenProvider.parseRefreshToken(tokenProvider.createRefreshToken(refreshToken)).get();
+
+        assertThat(replacement.getId()).isNotEqualTo(refreshToken.getId());
+        assertThat(replacement.getSubject()).isEqualTo(refreshToken.getSubject());
+        assertThat(replacement.getExpiration()).isEqualTo(refreshToken.getExpiration());
+    }
+
+    @Test
+    public void testRevokedRefreshTokenIsRejected() {
+        String refreshToken = tokenProvider.createRefreshToken(createAuthentication(), false);
+        Claims claims = tokenProvider.parseRefreshToken(refreshToken).get();
+
+        tokenRevocationList.revoke(claims.getId(), claims.getExpiration().getTime());
+
+        assertThat(tokenProvider.parseRefreshToken(refreshToken)).isEmpty();
+    }
+
+    private TokenProvider createTokenProvider(ApplicationProperties applicationProperties) {
+        tokenRevocationList = new TokenRevocationList(applicationProperties);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties, tokenRevocationList);
+        ReflectionTestUtils.setField(tokenProvider, "secretKey", secretKey);
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", ONE_MINUTE);
+        ReflectionTestUtils.setField(tokenProvider, "refreshTokenValidityInMilliseconds", 2 * ONE_MINUTE);
+        ReflectionTestUtils.setField(tokenProvider, "refreshTokenValidityInMillisecondsForRememberMe", 3 * ONE_MINUTE);
+        return tokenProvider;
+    }
+
     private Authentication createAuthentication() {
         Collection<GrantedAuthority> authorities = new ArrayList<>();
         authorities.add(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
@@ -0,0 +1,63 @@
+package com.wafflemkr.points.security.jwt;
+
+import com.wafflemkr.points.config.ApplicationProperties;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenRevocationListTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private TokenRevocationList tokenRevocationList;
+
+    @Before
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().setRevocationExpectedTokens(100);
+        tokenRevocationList = new TokenRevocationList(applicationProperties);
+    }
+
+    @Test
+    public void testRevokedTokensAreRevoked() {
+        for (int i = 0; i < 1000; i++) {
+            tokenRevocationList.revoke("revoked-" + i, NOW + 1000);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(tokenRevocationList.isRevoked("revoked-" + i)).isTrue();
+        }
+        assertThat(tokenRevocationList.isRevoked(UUID.randomUUID().toString())).isFalse();
+    }
+
+    @Test
+    public void testExpiredTokensArePruned() {
+        tokenRevocationList.revoke("expired", NOW - 1);
+        tokenRevocationList.revoke("valid", NOW + 1000);
+
+        tokenRevocationList.prune(NOW);
+
+        assertThat(tokenRevocationList.size()).isEqualTo(1);
+        assertThat(tokenRevocationList.isRevoked("expired")).isFalse();
+        assertThat(tokenRevocationList.isRevoked("valid")).isTrue();
+    }
+
+    @Test
+    public void testBloomFilterFalsePositiveRate() {
+        TokenRevocationList.BloomFilter bloomFilter = new TokenRevocationList.BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            bloomFilter.add(UUID.randomUUID().toString());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (bloomFilter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+}
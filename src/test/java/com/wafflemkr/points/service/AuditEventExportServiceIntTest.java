@@ -0,0 +1,90 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.PersistentAuditEvent;
+import com.wafflemkr.points.repository.PersistenceAuditEventRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditEventExportService.
+ *
+ * @see AuditEventExportService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+@Transactional
+public class AuditEventExportServiceIntTest {
+
+    @Autowired
+    private AuditEventExportService auditEventExportService;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Before
+    public void init() {
+        persistenceAuditEventRepository.deleteAll();
+        createEvent("test-user", "AUTHENTICATION_SUCCESS", Instant.parse("2018-01-02T10:00:00Z"), "remoteAddress", "1.2.3.4");
+        createEvent("test-user", "AUTHENTICATION_FAILURE", Instant.parse("2018-01-01T10:00:00Z"), null, null);
+        createEvent("test-other-user", "AUTHENTICATION_SUCCESS", Instant.parse("2018-01-03T10:00:00Z"), "message", "test");
+        createEvent("test-old-user", "AUTHENTICATION_SUCCESS", Instant.parse("2017-12-31T10:00:00Z"), null, null);
+    }
+
+    @Test
+    public void assertThatEventsOfThePeriodAreExportedAsNdjson() throws Exception {
+        String[] lines = export(Instant.parse("2018-01-01T00:00:00Z"), Instant.parse("2018-01-03T00:00:00Z")).split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"principal\":\"test-user\"").contains("\"type\":\"AUTHENTICATION_FAILURE\"");
+        assertThat(lines[1]).contains("\"principal\":\"test-user\"").contains("\"type\":\"AUTHENTICATION_SUCCESS\"")
+            .contains("\"remoteAddress\":\"1.2.3.4\"");
+    }
+
+    @Test
+    public void assertThatEventDataIsGroupedByEvent() throws Exception {
+        createEvent("test-other-user", "AUTHENTICATION_FAILURE", Instant.parse("2018-01-03T10:00:00Z"), "message", "other");
+        PersistentAuditEvent event = persistenceAuditEventRepository.findByPrincipal("test-other-user").get(0);
+        event.getData().put("remoteAddress", "5.6.7.8");
+        persistenceAuditEventRepository.saveAndFlush(event);
+
+        String[] lines = export(Instant.parse("2018-01-03T00:00:00Z"), Instant.parse("2018-01-04T00:00:00Z")).split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(String.join("\n", lines)).contains("\"remoteAddress\":\"5.6.7.8\"");
+    }
+
+    @Test
+    public void assertThatEmptyPeriodIsExportedAsEmpty() throws Exception {
+        assertThat(export(Instant.parse("2019-01-01T00:00:00Z"), Instant.parse("2019-02-01T00:00:00Z"))).isEmpty();
+    }
+
+    private void createEvent(String principal, String type, Instant date, String dataName, String dataValue) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType(type);
+        event.setAuditEventDate(date);
+        if (dataName != null) {
+            event.getData().put(dataName, dataValue);
+        }
+        persistenceAuditEventRepository.saveAndFlush(event);
+    }
+
+    private String export(Instant fromDate, Instant toDate) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        auditEventExportService.export(fromDate, toDate, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.PersistentAuditEvent;
+import com.wafflemkr.points.repository.PersistenceAuditEventRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditEventRetentionService, on the plain audit event table used by H2.
+ *
+ * @see AuditEventRetentionService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+@Transactional
+public class AuditEventRetentionServiceIntTest {
+
+    private static final YearMonth CURRENT_MONTH = YearMonth.of(2026, 10);
+
+    @Autowired
+    private AuditEventRetentionService auditEventRetentionService;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void init() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void assertThatExpiredEventsAreDeleted() {
+        // Retention is 12 months beyond the current one: October 2025 is the oldest month kept
+        PersistentAuditEvent expired = createEvent(LocalDateTime.of(2025, 9, 30, 23, 59));
+        PersistentAuditEvent kept = createEvent(LocalDateTime.of(2025, 10, 1, 0, 0));
+
+        auditEventRetentionService.applyRetention(CURRENT_MONTH);
+
+        List<PersistentAuditEvent> events = persistenceAuditEventRepository.findAll();
+        assertThat(events).extracting(PersistentAuditEvent::getId).containsExactly(kept.getId());
+        assertThat(countEventData(expired)).isEqualTo(0);
+        assertThat(countEventData(kept)).isEqualTo(1);
+    }
+
+    @Test
+    public void assertThatEventDataHasTheDateOfItsEvent() {
+        LocalDateTime date = LocalDateTime.of(2026, 10, 18, 16, 0);
+        PersistentAuditEvent event = createEvent(date);
+
+        Timestamp dataDate = jdbcTemplate.queryForObject(
+            "select event_date from jhi_persistent_audit_evt_data where event_id = ?", Timestamp.class, event.getId());
+        assertThat(dataDate.toLocalDateTime()).isEqualTo(date);
+    }
+
+    private PersistentAuditEvent createEvent(LocalDateTime date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("test-user");
+        event.setAuditEventType("test-type");
+        event.setAuditEventDate(date.atZone(ZoneId.systemDefault()).toInstant());
+        event.getData().put("test-key", "test-value");
+        return persistenceAuditEventRepository.saveAndFlush(event);
+    }
+
+    private int countEventData(PersistentAuditEvent event) {
+        return jdbcTemplate.queryForObject("select count(*) from jhi_persistent_audit_evt_data where event_id = ?",
+            Integer.class, event.getId());
+    }
+}
@@ -0,0 +1,122 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.BloodPressure;
+import com.wafflemkr.points.domain.DailyBloodPressure;
+import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.repository.DailyBloodPressureRepository;
+import com.wafflemkr.points.repository.UserRepository;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the BloodPressureStatsService, with concurrent writers committing their own transactions.
+ *
+ * @see BloodPressureStatsService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+public class BloodPressureStatsServiceIntTest {
+
+    private static final int WRITERS = 2;
+
+    private static final int DAYS = 10;
+
+    @Autowired
+    private BloodPressureStatsService bloodPressureStatsService;
+
+    @Autowired
+    private DailyBloodPressureRepository dailyBloodPressureRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @Before
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        user = new User();
+        user.setLogin("pressure-" + RandomStringUtils.randomAlphabetic(5).toLowerCase());
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail(user.getLogin() + "@localhost");
+        user.setLangKey("en");
+        user = userRepository.saveAndFlush(user);
+    }
+
+    @After
+    public void destroy() {
+        transactionTemplate.execute(status -> {
+            dailyBloodPressureRepository.deleteInBatch(findAllOfUser());
+            userRepository.delete(user.getId());
+            return null;
+        });
+    }
+
+    @Test
+    public void assertThatConcurrentFirstReadingsOfADayAreBothCounted() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            for (int day = 0; day < DAYS; day++) {
+                LocalDate date = LocalDate.of(2026, 1, 5).plusDays(day);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> writes = new ArrayList<>();
+                for (int writer = 0; writer < WRITERS; writer++) {
+                    writes.add(executor.submit(() -> {
+                        start.await();
+                        return transactionTemplate.execute(status -> {
+                            bloodPressureStatsService.add(new BloodPressure().timestamp(date).systolic(120).diastolic(80).user(user));
+                            return null;
+                        });
+                    }));
+                }
+                start.countDown();
+                for (Future<?> write : writes) {
+                    // Rethrows the failure of a writer, such as a unique constraint violation
+                    write.get(30, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<DailyBloodPressure> dailyBloodPressures = transactionTemplate.execute(status -> findAllOfUser());
+        assertThat(dailyBloodPressures).hasSize(DAYS);
+        assertThat(dailyBloodPressures).extracting("readings").containsOnly(WRITERS);
+        assertThat(dailyBloodPressures).extracting("systolicSum").containsOnly(120L * WRITERS);
+        assertThat(dailyBloodPressures).extracting("diastolicSum").containsOnly(80L * WRITERS);
+    }
+
+    private List<DailyBloodPressure> findAllOfUser() {
+        return dailyBloodPressureRepository.findAll().stream()
+            .filter(dailyBloodPressure -> user.getId().equals(dailyBloodPressure.getUser().getId()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,103 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.BloodPressure;
+import com.wafflemkr.points.domain.Points;
+import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.domain.Weight;
+import com.wafflemkr.points.repository.BloodPressureRepository;
+import com.wafflemkr.points.repository.PointsRepository;
+import com.wafflemkr.points.repository.WeightRepository;
+import com.wafflemkr.points.web.rest.UserResourceIntTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the HealthExportService.
+ *
+ * @see HealthExportService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+@Transactional
+public class HealthExportServiceIntTest {
+
+    @Autowired
+    private HealthExportService healthExportService;
+
+    @Autowired
+    private PointsRepository pointsRepository;
+
+    @Autowired
+    private WeightRepository weightRepository;
+
+    @Autowired
+    private BloodPressureRepository bloodPressureRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    private User user;
+
+    @Before
+    public void init() {
+        user = UserResourceIntTest.createEntity(em);
+        user.setLogin("history-owner");
+        em.persist(user);
+        User other = UserResourceIntTest.createEntity(em);
+        em.persist(other);
+
+        pointsRepository.saveAndFlush(new Points().date(LocalDate.of(2018, 1, 2)).exercise(1).meals(0).alcohol(1)
+            .notes("Dinner, then \"drinks\"").user(user));
+        pointsRepository.saveAndFlush(new Points().date(LocalDate.of(2018, 1, 1)).exercise(1).meals(1).alcohol(1)
+            .notes("AAAAAAAAAA").user(user));
+        pointsRepository.saveAndFlush(new Points().date(LocalDate.of(2018, 1, 1)).exercise(0).meals(0).alcohol(0)
+            .notes("BBBBBBBBBB").user(other));
+        weightRepository.saveAndFlush(new Weight().timestamp(Instant.ofEpochSecond(0L).atZone(ZoneOffset.UTC)).weight(80.5).user(user));
+        bloodPressureRepository.saveAndFlush(new BloodPressure().timestamp(LocalDate.of(2018, 1, 3)).systolic(120).diastolic(80).user(user));
+    }
+
+    @Test
+    public void assertThatHistoryIsExportedAsNdjson() throws Exception {
+        String[] lines = export(HealthExportService.Format.NDJSON).split("\n");
+
+        assertThat(lines).hasSize(4);
+        assertThat(lines[0]).startsWith("{\"type\":\"points\"").contains("\"date\":\"2018-01-01\"");
+        assertThat(lines[1]).contains("\"date\":\"2018-01-02\"").contains("\"userLogin\":\"history-owner\"");
+        assertThat(lines[2]).startsWith("{\"type\":\"weight\"").contains("\"weight\":80.5");
+        assertThat(lines[3]).startsWith("{\"type\":\"blood-pressure\"").contains("\"systolic\":120");
+    }
+
+    @Test
+    public void assertThatHistoryIsExportedAsCsv() throws Exception {
+        String[] lines = export(HealthExportService.Format.CSV).split("\n");
+
+        assertThat(lines).hasSize(5);
+        assertThat(lines[0]).isEqualTo(HealthExportService.CSV_HEADER);
+        assertThat(lines[1]).endsWith(",2018-01-01,1,1,1,AAAAAAAAAA,,,");
+        assertThat(lines[2]).endsWith(",2018-01-02,1,0,1,\"Dinner, then \"\"drinks\"\"\",,,");
+        assertThat(lines[3]).startsWith("weight,").endsWith(",1970-01-01T00:00:00Z,,,,,80.5,,");
+        assertThat(lines[4]).startsWith("blood-pressure,").endsWith(",2018-01-03,,,,,,120,80");
+    }
+
+    private String export(HealthExportService.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        healthExportService.export("history-owner", format, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
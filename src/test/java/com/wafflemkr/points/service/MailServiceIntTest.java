@@ -1,36 +1,47 @@
 package com.wafflemkr.points.service;
+import com.wafflemkr.points.config.ApplicationProperties;
 import com.wafflemkr.points.config.Constants;
 
 import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.MailOutbox;
 import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.domain.enumeration.MailStatus;
+import com.wafflemkr.points.repository.MailOutboxRepository;
+
+import com.codahale.metrics.MetricRegistry;
 import io.github.jhipster.config.JHipsterProperties;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
-import org.mockito.MockitoAnnotations;
-import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.MessageSource;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.thymeleaf.spring4.SpringTemplateEngine;
 
+import javax.mail.MessagingException;
 import javax.mail.Multipart;
+import javax.mail.SendFailedException;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.*;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = PointsApp.class)
+@Transactional
 public class MailServiceIntTest {
 
     @Autowired
@@ -42,26 +53,46 @@ public class MailServiceIntTest {
     @Autowired
     private SpringTemplateEngine templateEngine;
 
-    @Spy
-    private JavaMailSenderImpl javaMailSender;
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private RecordingMailSender javaMailSender;
+
+    private ApplicationProperties applicationProperties;
 
-    @Captor
-    private ArgumentCaptor messageCaptor;
+    private ApplicationProperties.Mail mailProperties;
 
     private MailService mailService;
 
+    private MailDeliveryService mailDeliveryService;
+
     @Before
     public void setup() {
-        MockitoAnnotations.initMocks(this);
-        doNothing().when(javaMailSender).send(any(MimeMessage.class));
-        mailService = new MailService(jHipsterProperties, javaMailSender, messageSource, templateEngine);
+        mailOutboxRepository.deleteAll();
+        javaMailSender = new RecordingMailSender();
+        applicationProperties = new ApplicationProperties();
+        mailProperties = applicationProperties.getMail();
+        mailService = new MailService(jHipsterProperties, messageSource, templateEngine, mailOutboxRepository);
+        mailDeliveryService = createMailDeliveryService();
+    }
+
+    private MailDeliveryService createMailDeliveryService() {
+        return new MailDeliveryService(mailOutboxRepository, javaMailSender, jHipsterProperties,
+            applicationProperties, transactionManager, new MetricRegistry());
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        mailDeliveryService.shutdown();
     }
 
     @Test
     public void testSendEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
@@ -73,8 +104,7 @@ public class MailServiceIntTest {
     @Test
     public void testSendHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, true);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         assertThat(message.getSubject()).isEqualTo("testSubject");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo("john.doe@example.com");
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
@@ -86,8 +116,7 @@ public class MailServiceIntTest {
     @Test
     public void testSendMultipartEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", true, false);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart) ((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
         ByteArrayOutputStream aos = new ByteArrayOutputStream();
@@ -103,8 +132,7 @@ public class MailServiceIntTest {
     @Test
     public void testSendMultipartHtmlEmail() throws Exception {
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", true, true);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         MimeMultipart mp = (MimeMultipart) message.getContent();
         MimeBodyPart part = (MimeBodyPart) ((MimeMultipart) mp.getBodyPart(0).getContent()).getBodyPart(0);
         ByteArrayOutputStream aos = new ByteArrayOutputStream();
@@ -124,8 +152,7 @@ public class MailServiceIntTest {
         user.setEmail("john.doe@example.com");
         user.setLangKey("en");
         mailService.sendEmailFromTemplate(user, "testEmail", "email.test.title");
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         assertThat(message.getSubject()).isEqualTo("test title");
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
@@ -140,8 +167,7 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendActivationEmail(user);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -155,8 +181,7 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendCreationEmail(user);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -170,8 +195,7 @@ public class MailServiceIntTest {
         user.setLogin("john");
         user.setEmail("john.doe@example.com");
         mailService.sendPasswordResetMail(user);
-        verify(javaMailSender).send((MimeMessage) messageCaptor.capture());
-        MimeMessage message = (MimeMessage) messageCaptor.getValue();
+        MimeMessage message = deliverOne();
         assertThat(message.getAllRecipients()[0].toString()).isEqualTo(user.getEmail());
         assertThat(message.getFrom()[0].toString()).isEqualTo("test@localhost");
         assertThat(message.getContent().toString()).isNotEmpty();
@@ -180,8 +204,148 @@ public class MailServiceIntTest {
 
     @Test
     public void testSendEmailWithException() throws Exception {
-        doThrow(MailSendException.class).when(javaMailSender).send(any(MimeMessage.class));
+        javaMailSender.failingRecipients.add("john.doe@example.com");
         mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+        Instant beforeDelivery = Instant.now();
+        assertThat(mailDeliveryService.deliver()).isZero();
+
+        MailOutbox mail = mailOutboxRepository.findAll().get(0);
+        assertThat(mail.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(mail.getAttempts()).isEqualTo(1);
+        assertThat(mail.getLastError()).isEqualTo("Rejected recipient");
+        assertThat(mail.getNextAttemptDate().isBefore(beforeDelivery.plusMillis(60000))).isFalse();
+
+        // The email is not retried before the end of its backoff
+        javaMailSender.failingRecipients.clear();
+        assertThat(mailDeliveryService.deliver()).isZero();
+        assertThat(javaMailSender.batches).isEmpty();
+    }
+
+    @Test
+    public void testSendEmailFailedAfterMaxAttempts() throws Exception {
+        mailProperties.setMaxAttempts(1);
+        javaMailSender.failingRecipients.add("john.doe@example.com");
+        mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+        assertThat(mailDeliveryService.deliver()).isZero();
+
+        MailOutbox mail = mailOutboxRepository.findAll().get(0);
+        assertThat(mail.getStatus()).isEqualTo(MailStatus.FAILED);
+        assertThat(mail.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSendEmailsInOneBatchPerDomain() throws Exception {
+        mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+        mailService.sendEmail("jane.doe@example.com", "testSubject", "testContent", false, false);
+        mailService.sendEmail("john.doe@example.org", "testSubject", "testContent", false, false);
+        assertThat(mailDeliveryService.deliver()).isEqualTo(3);
+
+        assertThat(javaMailSender.batches).hasSize(2);
+        assertThat(javaMailSender.batches).extracting(List::size).containsExactlyInAnyOrder(2, 1);
+        assertThat(mailOutboxRepository.count()).isZero();
     }
 
+    @Test
+    public void testSendOnlyOneFailedEmailOfBatchIsRetried() throws Exception {
+        javaMailSender.failingRecipients.add("jane.doe@example.com");
+        mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+        mailService.sendEmail("jane.doe@example.com", "testSubject", "testContent", false, false);
+        assertThat(mailDeliveryService.deliver()).isEqualTo(1);
+
+        assertThat(mailOutboxRepository.findAll()).extracting(MailOutbox::getRecipient).containsExactly("jane.doe@example.com");
+    }
+
+    @Test
+    public void testSendEmailsOverDomainRateLimitAreDeferred() throws Exception {
+        mailProperties.setDomainRateLimit(2);
+        mailDeliveryService.shutdown();
+        mailDeliveryService = createMailDeliveryService();
+        mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+        mailService.sendEmail("jane.doe@example.com", "testSubject", "testContent", false, false);
+        mailService.sendEmail("jim.doe@example.com", "testSubject", "testContent", false, false);
+        mailService.sendEmail("john.doe@example.org", "testSubject", "testContent", false, false);
+        assertThat(mailDeliveryService.deliver()).isEqualTo(3);
+
+        MailOutbox mail = mailOutboxRepository.findAll().get(0);
+        assertThat(mail.getRecipient()).endsWith("@example.com");
+        assertThat(mail.getStatus()).isEqualTo(MailStatus.PENDING);
+        assertThat(mail.getAttempts()).isZero();
+        assertThat(mail.getNextAttemptDate().isAfter(Instant.now())).isTrue();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testSlowEmailIsRecordedAfterTheDeliveryTimeout() throws Exception {
+        // The late result is recorded by the worker thread, so the outbox must be committed
+        mailProperties.setDeliveryTimeout(100);
+        javaMailSender.sendLatch = new CountDownLatch(1);
+        try {
+            mailService.sendEmail("john.doe@example.com", "testSubject", "testContent", false, false);
+            assertThat(mailDeliveryService.deliver()).isZero();
+
+            // Still claimed while it is being sent
+            assertThat(mailOutboxRepository.findAll().get(0).getNextAttemptDate().isAfter(Instant.now())).isTrue();
+            assertThat(mailDeliveryService.deliver()).isZero();
+
+            javaMailSender.sendLatch.countDown();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (mailOutboxRepository.count() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(mailOutboxRepository.count()).isZero();
+            assertThat(javaMailSender.batches).hasSize(1);
+        } finally {
+            javaMailSender.sendLatch.countDown();
+            mailOutboxRepository.deleteAll();
+        }
+    }
+
+    private MimeMessage deliverOne() {
+        assertThat(mailDeliveryService.deliver()).isEqualTo(1);
+        assertThat(javaMailSender.batches).hasSize(1);
+        return javaMailSender.batches.get(0).get(0);
+    }
+
+    /**
+     * Records the messages instead of connecting to an SMTP server, rejects some recipients, and can hang like a
+     * slow server.
+     */
+    private static class RecordingMailSender extends JavaMailSenderImpl {
+
+        private final List<List<MimeMessage>> batches = new ArrayList<>();
+
+        private final Set<String> failingRecipients = new HashSet<>();
+
+        private volatile CountDownLatch sendLatch;
+
+        @Override
+        protected synchronized void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+            if (sendLatch != null) {
+                try {
+                    sendLatch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+            List<MimeMessage> batch = new ArrayList<>();
+            for (MimeMessage mimeMessage : mimeMessages) {
+                try {
+                    if (failingRecipients.contains(mimeMessage.getAllRecipients()[0].toString())) {
+                        failedMessages.put(mimeMessage, new SendFailedException("Rejected recipient"));
+                    } else {
+                        batch.add(mimeMessage);
+                    }
+                } catch (MessagingException e) {
+                    failedMessages.put(mimeMessage, e);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+            if (!failedMessages.isEmpty()) {
+                throw new MailSendException(failedMessages);
+            }
+        }
+    }
 }
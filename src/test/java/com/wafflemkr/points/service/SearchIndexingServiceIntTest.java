@@ -0,0 +1,129 @@
+package com.wafflemkr.points.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.config.ApplicationProperties;
+import com.wafflemkr.points.domain.Points;
+import com.wafflemkr.points.domain.SearchIndexOutbox;
+import com.wafflemkr.points.repository.PointsRepository;
+import com.wafflemkr.points.repository.SearchIndexOutboxRepository;
+import com.wafflemkr.points.repository.search.PointsSearchRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the SearchIndexingService.
+ *
+ * @see SearchIndexingService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+@Transactional
+public class SearchIndexingServiceIntTest {
+
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
+    @Autowired
+    private SearchIndexOutboxRepository searchIndexOutboxRepository;
+
+    @Autowired
+    private PointsRepository pointsRepository;
+
+    @Autowired
+    private PointsSearchRepository pointsSearchRepository;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    private Points points;
+
+    @Before
+    public void init() {
+        pointsSearchRepository.deleteAll();
+        searchIndexOutboxRepository.deleteAll();
+        points = new Points().date(LocalDate.ofEpochDay(0L)).exercise(1).meals(1).alcohol(1).notes("AAAAAAAAAA");
+    }
+
+    @Test
+    public void assertThatRepeatedUpdatesAreCoalesced() {
+        pointsRepository.saveAndFlush(points);
+        searchIndexingService.enqueue(Points.class, points.getId());
+        searchIndexingService.enqueue(Points.class, points.getId());
+
+        assertThat(pointsSearchRepository.exists(points.getId())).isFalse();
+        assertThat(searchIndexingService.flush()).isEqualTo(2);
+
+        assertThat(pointsSearchRepository.exists(points.getId())).isTrue();
+        assertThat(searchIndexOutboxRepository.count()).isZero();
+        assertThat(searchIndexingService.flush()).isZero();
+    }
+
+    @Test
+    public void assertThatFlushProcessesBatchesUntilTheOutboxIsEmpty() {
+        int batchSize = applicationProperties.getSearchIndexing().getBatchSize();
+        applicationProperties.getSearchIndexing().setBatchSize(1);
+        try {
+            pointsRepository.saveAndFlush(points);
+            searchIndexingService.enqueue(Points.class, points.getId());
+            searchIndexingService.enqueue(Points.class, points.getId());
+            searchIndexingService.enqueue(Points.class, points.getId());
+
+            assertThat(searchIndexingService.flush()).isEqualTo(3);
+            assertThat(searchIndexOutboxRepository.count()).isZero();
+            assertThat(pointsSearchRepository.exists(points.getId())).isTrue();
+        } finally {
+            applicationProperties.getSearchIndexing().setBatchSize(batchSize);
+        }
+    }
+
+    @Test
+    public void assertThatDeletedEntitiesAreRemovedFromIndex() {
+        pointsRepository.saveAndFlush(points);
+        pointsSearchRepository.save(points);
+
+        pointsRepository.delete(points.getId());
+        searchIndexingService.enqueue(Points.class, points.getId());
+        searchIndexingService.flush();
+
+        assertThat(pointsSearchRepository.exists(points.getId())).isFalse();
+    }
+
+    @Test
+    public void assertThatGaugesReportPendingEntriesBeforeAnyFlush() {
+        pointsRepository.saveAndFlush(points);
+        SearchIndexOutbox oldest = new SearchIndexOutbox().entityType("Points").entityId(points.getId());
+        oldest.setCreatedDate(Instant.now().minusSeconds(60));
+        searchIndexOutboxRepository.saveAndFlush(oldest);
+        searchIndexingService.enqueue(Points.class, points.getId());
+
+        Gauge<?> queueDepth = metricRegistry.getGauges().get(MetricRegistry.name(SearchIndexingService.class, "queue-depth"));
+        Gauge<?> lag = metricRegistry.getGauges().get(MetricRegistry.name(SearchIndexingService.class, "lag"));
+        assertThat(queueDepth.getValue()).isEqualTo(2L);
+        assertThat((Long) lag.getValue()).isGreaterThanOrEqualTo(60000L);
+
+        searchIndexingService.flush();
+        assertThat(queueDepth.getValue()).isEqualTo(0L);
+        assertThat(lag.getValue()).isEqualTo(0L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void assertThatUnknownEntityTypesAreRejected() {
+        searchIndexingService.enqueue(String.class, 1L);
+    }
+}
@@ -6,7 +6,6 @@ import com.wafflemkr.points.domain.User;
 import com.wafflemkr.points.repository.AuthorityRepository;
 import com.wafflemkr.points.repository.UserRepository;
 import com.wafflemkr.points.security.AuthoritiesConstants;
-import com.wafflemkr.points.repository.search.UserSearchRepository;
 import com.wafflemkr.points.service.MailService;
 
 import org.junit.Before;
@@ -42,7 +41,7 @@ public class SocialServiceIntTest {
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private UserSearchRepository userSearchRepository;
+    private SearchIndexingService searchIndexingService;
 
 
     @Mock
@@ -64,7 +63,7 @@ public class SocialServiceIntTest {
         when(mockUsersConnectionRepository.createConnectionRepository(anyString())).thenReturn(mockConnectionRepository);
 
         socialService = new SocialService(mockUsersConnectionRepository, authorityRepository,
-                passwordEncoder, userRepository, mockMailService, userSearchRepository);
+                passwordEncoder, userRepository, mockMailService, searchIndexingService);
     }
 
     @Test
@@ -0,0 +1,122 @@
+package com.wafflemkr.points.service;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.Points;
+import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.domain.WeeklyPoints;
+import com.wafflemkr.points.repository.UserRepository;
+import com.wafflemkr.points.repository.WeeklyPointsRepository;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the WeeklyPointsService, with concurrent writers committing their own transactions.
+ *
+ * @see WeeklyPointsService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+public class WeeklyPointsServiceIntTest {
+
+    private static final int WRITERS = 2;
+
+    private static final int WEEKS = 10;
+
+    @Autowired
+    private WeeklyPointsService weeklyPointsService;
+
+    @Autowired
+    private WeeklyPointsRepository weeklyPointsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @Before
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        user = new User();
+        user.setLogin("weekly-" + RandomStringUtils.randomAlphabetic(5).toLowerCase());
+        user.setPassword(RandomStringUtils.random(60));
+        user.setActivated(true);
+        user.setEmail(user.getLogin() + "@localhost");
+        user.setLangKey("en");
+        user = userRepository.saveAndFlush(user);
+    }
+
+    @After
+    public void destroy() {
+        transactionTemplate.execute(status -> {
+            weeklyPointsRepository.deleteInBatch(findAllOfUser());
+            userRepository.delete(user.getId());
+            return null;
+        });
+    }
+
+    @Test
+    public void assertThatConcurrentFirstWritesOfAWeekAreBothCounted() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            for (int week = 0; week < WEEKS; week++) {
+                LocalDate date = LocalDate.of(2026, 1, 5).plusWeeks(week);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> writes = new ArrayList<>();
+                for (int writer = 0; writer < WRITERS; writer++) {
+                    writes.add(executor.submit(() -> {
+                        start.await();
+                        return transactionTemplate.execute(status -> {
+                            weeklyPointsService.add(new Points().date(date).exercise(1).meals(1).alcohol(0).user(user));
+                            return null;
+                        });
+                    }));
+                }
+                start.countDown();
+                for (Future<?> write : writes) {
+                    // Rethrows the failure of a writer, such as a unique constraint violation
+                    write.get(30, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<WeeklyPoints> weeklyPoints = transactionTemplate.execute(status -> findAllOfUser());
+        assertThat(weeklyPoints).hasSize(WEEKS);
+        assertThat(weeklyPoints).extracting("exercise").containsOnly(WRITERS);
+        assertThat(weeklyPoints).extracting("meals").containsOnly(WRITERS);
+        assertThat(weeklyPoints).extracting("alcohol").containsOnly(0);
+    }
+
+    private List<WeeklyPoints> findAllOfUser() {
+        return weeklyPointsRepository.findAll().stream()
+            .filter(weeklyPoints -> user.getId().equals(weeklyPoints.getUser().getId()))
+            .collect(Collectors.toList());
+    }
+}
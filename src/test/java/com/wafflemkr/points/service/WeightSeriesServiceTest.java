@@ -0,0 +1,130 @@
+package com.wafflemkr.points.service;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the downsampling of the weight series while the readings are streamed.
+ *
+ * @see WeightSeriesService
+ */
+public class WeightSeriesServiceTest {
+
+    private static final ZonedDateTime START = ZonedDateTime.of(2018, 1, 1, 7, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    public void testStreamedSelectionMatchesTheWholeSeries() {
+        Random random = new Random(42);
+        // Sizes where the bucket boundaries are exact, and sizes where they are not
+        int[][] cases = {{482, 50}, {1002, 12}, {1000, 50}, {5, 3}, {10, 9}};
+        for (int[] sizes : cases) {
+            List<Object[]> readings = createReadings(random, sizes[0]);
+
+            List<Object[]> sampled = WeightSeriesService.largestTriangleThreeBuckets(
+                readings.iterator(), readings.size(), sizes[1]);
+
+            List<Object[]> expected = new ArrayList<>();
+            for (int index : largestTriangleThreeBuckets(readings, sizes[1])) {
+                expected.add(readings.get(index));
+            }
+            assertThat(sampled).as("%d readings to %d", sizes[0], sizes[1]).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void testSmallSeriesIsNotDownsampled() {
+        List<Object[]> readings = createReadings(new Random(42), 10);
+
+        assertThat(WeightSeriesService.largestTriangleThreeBuckets(readings.iterator(), readings.size(), 10))
+            .containsExactlyElementsOf(readings);
+    }
+
+    @Test
+    public void testSeriesEndsEarlyWhenReadingsWereDeleted() {
+        List<Object[]> readings = createReadings(new Random(42), 60);
+
+        List<Object[]> sampled = WeightSeriesService.largestTriangleThreeBuckets(readings.iterator(), 100, 20);
+
+        assertThat(sampled.size()).isLessThan(20);
+        assertThat(sampled.get(0)).isSameAs(readings.get(0));
+        assertThat(sampled.get(sampled.size() - 1)).isSameAs(readings.get(readings.size() - 1));
+    }
+
+    @Test
+    public void testExtraReadingsOnlyCompeteForTheLastPoint() {
+        List<Object[]> readings = createReadings(new Random(42), 120);
+
+        List<Object[]> sampled = WeightSeriesService.largestTriangleThreeBuckets(readings.iterator(), 100, 20);
+
+        assertThat(sampled).hasSize(20);
+        assertThat(sampled.get(19)).isSameAs(readings.get(119));
+    }
+
+    private static List<Object[]> createReadings(Random random, int size) {
+        List<Object[]> readings = new ArrayList<>();
+        double weight = 80;
+        for (int i = 0; i < size; i++) {
+            weight += random.nextGaussian() * 0.5;
+            readings.add(new Object[]{(long) i, START.plusHours(12L * i + random.nextInt(6)), weight});
+        }
+        return readings;
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets over the whole series in memory, as published by Sveinn Steinarsson.
+     */
+    private static int[] largestTriangleThreeBuckets(List<Object[]> readings, int threshold) {
+        int length = readings.size();
+        long[] x = new long[length];
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = ((ZonedDateTime) readings.get(i)[1]).toInstant().toEpochMilli();
+            y[i] = (Double) readings.get(i)[2];
+        }
+        if (threshold >= length) {
+            int[] all = new int[length];
+            for (int i = 0; i < length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] sampled = new int[threshold];
+        double every = (double) (length - 2) / (threshold - 2);
+        int a = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            int averageStart = (int) Math.floor((i + 1) * every) + 1;
+            int averageEnd = Math.min((int) Math.floor((i + 2) * every) + 1, length);
+            double averageX = 0;
+            double averageY = 0;
+            for (int j = averageStart; j < averageEnd; j++) {
+                averageX += x[j];
+                averageY += y[j];
+            }
+            averageX /= averageEnd - averageStart;
+            averageY /= averageEnd - averageStart;
+
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((x[a] - averageX) * (y[j] - y[a]) - (x[a] - x[j]) * (averageY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampled[i + 1] = next;
+            a = next;
+        }
+        sampled[threshold - 1] = length - 1;
+        return sampled;
+    }
+}
@@ -4,6 +4,7 @@ import com.wafflemkr.points.PointsApp;
 import com.wafflemkr.points.config.audit.AuditEventConverter;
 import com.wafflemkr.points.domain.PersistentAuditEvent;
 import com.wafflemkr.points.repository.PersistenceAuditEventRepository;
+import com.wafflemkr.points.service.AuditEventExportService;
 import com.wafflemkr.points.service.AuditEventService;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,13 +18,16 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -48,6 +52,9 @@ public class AuditResourceIntTest {
     @Autowired
     private AuditEventConverter auditEventConverter;
 
+    @Autowired
+    private AuditEventExportService auditEventExportService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -66,7 +73,7 @@ public class AuditResourceIntTest {
         MockitoAnnotations.initMocks(this);
         AuditEventService auditEventService =
             new AuditEventService(auditEventRepository, auditEventConverter);
-        AuditResource auditResource = new AuditResource(auditEventService);
+        AuditResource auditResource = new AuditResource(auditEventService, auditEventExportService);
         this.restAuditMockMvc = MockMvcBuilders.standaloneSetup(auditResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setConversionService(formattingConversionService)
@@ -138,6 +145,19 @@ public class AuditResourceIntTest {
             .andExpect(header().string("X-Total-Count", "0"));
     }
 
+    @Test
+    public void exportAudits() throws Exception {
+        MvcResult mvcResult = restAuditMockMvc.perform(get("/management/audits/export?fromDate=2015-08-01&toDate=2015-08-31"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        // The export does not depend on the default timeout of asynchronous requests
+        assertThat(mvcResult.getRequest().getAsyncContext().getTimeout()).isEqualTo(ExportResource.EXPORT_TIMEOUT_MILLIS);
+
+        restAuditMockMvc.perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(ExportResource.NDJSON));
+    }
+
     @Test
     public void getNonExistingAudit() throws Exception {
         // Get the audit
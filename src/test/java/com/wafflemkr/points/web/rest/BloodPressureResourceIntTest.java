@@ -3,11 +3,16 @@ package com.wafflemkr.points.web.rest;
 import com.wafflemkr.points.PointsApp;
 
 import com.wafflemkr.points.domain.BloodPressure;
+import com.wafflemkr.points.domain.User;
 import com.wafflemkr.points.repository.BloodPressureRepository;
 import com.wafflemkr.points.repository.search.BloodPressureSearchRepository;
+import com.wafflemkr.points.security.AuthoritiesConstants;
+import com.wafflemkr.points.service.BloodPressureStatsService;
+import com.wafflemkr.points.service.SearchIndexingService;
 import com.wafflemkr.points.service.dto.BloodPressureDTO;
 import com.wafflemkr.points.service.mapper.BloodPressureMapper;
 import com.wafflemkr.points.web.rest.errors.ExceptionTranslator;
+import com.wafflemkr.points.web.websocket.EntityChangeService;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -18,6 +23,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -61,6 +67,15 @@ public class BloodPressureResourceIntTest {
     @Autowired
     private BloodPressureSearchRepository bloodPressureSearchRepository;
 
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
+    @Autowired
+    private EntityChangeService entityChangeService;
+
+    @Autowired
+    private BloodPressureStatsService bloodPressureStatsService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -80,7 +95,7 @@ public class BloodPressureResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final BloodPressureResource bloodPressureResource = new BloodPressureResource(bloodPressureRepository, bloodPressureMapper, bloodPressureSearchRepository);
+        final BloodPressureResource bloodPressureResource = new BloodPressureResource(bloodPressureRepository, bloodPressureMapper, bloodPressureSearchRepository, searchIndexingService, bloodPressureStatsService, entityChangeService);
         this.restBloodPressureMockMvc = MockMvcBuilders.standaloneSetup(bloodPressureResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -129,6 +144,7 @@ public class BloodPressureResourceIntTest {
         assertThat(testBloodPressure.getDiastolic()).isEqualTo(DEFAULT_DIASTOLIC);
 
         // Validate the BloodPressure in Elasticsearch
+        searchIndexingService.flush();
         BloodPressure bloodPressureEs = bloodPressureSearchRepository.findOne(testBloodPressure.getId());
         assertThat(bloodPressureEs).isEqualToIgnoringGivenFields(testBloodPressure);
     }
@@ -155,6 +171,7 @@ public class BloodPressureResourceIntTest {
 
     @Test
     @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
     public void getAllBloodPressures() throws Exception {
         // Initialize the database
         bloodPressureRepository.saveAndFlush(bloodPressure);
@@ -169,6 +186,57 @@ public class BloodPressureResourceIntTest {
             .andExpect(jsonPath("$.[*].diastolic").value(hasItem(DEFAULT_DIASTOLIC)));
     }
 
+    @Test
+    @Transactional
+    @WithMockUser("bp-stats")
+    public void getBloodPressureStats() throws Exception {
+        User user = UserResourceIntTest.createEntity(em);
+        user.setLogin("bp-stats");
+        em.persist(user);
+        for (BloodPressure reading : new BloodPressure[] {
+                new BloodPressure().timestamp(LocalDate.of(2018, 3, 30)).systolic(120).diastolic(80).user(user),
+                new BloodPressure().timestamp(LocalDate.of(2018, 3, 20)).systolic(130).diastolic(90).user(user),
+                new BloodPressure().timestamp(LocalDate.of(2018, 2, 1)).systolic(140).diastolic(100).user(user),
+                new BloodPressure().timestamp(LocalDate.of(2017, 12, 1)).systolic(200).diastolic(100).user(user)}) {
+            restBloodPressureMockMvc.perform(post("/api/blood-pressures")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(bloodPressureMapper.toDto(reading))))
+                .andExpect(status().isCreated());
+        }
+
+        restBloodPressureMockMvc.perform(get("/api/blood-pressures/stats?date=2018-03-31"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.last7Days.readings").value(1))
+            .andExpect(jsonPath("$.last7Days.systolicAverage").value(120D))
+            .andExpect(jsonPath("$.last30Days.readings").value(2))
+            .andExpect(jsonPath("$.last30Days.diastolicAverage").value(85D))
+            .andExpect(jsonPath("$.last90Days.readings").value(3))
+            .andExpect(jsonPath("$.last90Days.systolicAverage").value(130D));
+
+        // Moving a reading out of a window, then deleting another, updates the rollup
+        BloodPressure recent = bloodPressureRepository.findAll().stream()
+            .filter(reading -> LocalDate.of(2018, 3, 30).equals(reading.getTimestamp())).findFirst().get();
+        BloodPressure older = bloodPressureRepository.findAll().stream()
+            .filter(reading -> LocalDate.of(2018, 3, 20).equals(reading.getTimestamp())).findFirst().get();
+        BloodPressureDTO moved = bloodPressureMapper.toDto(older);
+        moved.setTimestamp(LocalDate.of(2018, 3, 29));
+        em.detach(older);
+        restBloodPressureMockMvc.perform(put("/api/blood-pressures")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(moved)))
+            .andExpect(status().isOk());
+        restBloodPressureMockMvc.perform(delete("/api/blood-pressures/{id}", recent.getId())
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isOk());
+
+        restBloodPressureMockMvc.perform(get("/api/blood-pressures/stats?date=2018-03-31"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.last7Days.readings").value(1))
+            .andExpect(jsonPath("$.last7Days.systolicAverage").value(130D))
+            .andExpect(jsonPath("$.last90Days.readings").value(2));
+    }
+
     @Test
     @Transactional
     public void getBloodPressure() throws Exception {
@@ -225,6 +293,7 @@ public class BloodPressureResourceIntTest {
         assertThat(testBloodPressure.getDiastolic()).isEqualTo(UPDATED_DIASTOLIC);
 
         // Validate the BloodPressure in Elasticsearch
+        searchIndexingService.flush();
         BloodPressure bloodPressureEs = bloodPressureSearchRepository.findOne(testBloodPressure.getId());
         assertThat(bloodPressureEs).isEqualToIgnoringGivenFields(testBloodPressure);
     }
@@ -262,6 +331,7 @@ public class BloodPressureResourceIntTest {
             .andExpect(status().isOk());
 
         // Validate Elasticsearch is empty
+        searchIndexingService.flush();
         boolean bloodPressureExistsInEs = bloodPressureSearchRepository.exists(bloodPressure.getId());
         assertThat(bloodPressureExistsInEs).isFalse();
 
@@ -0,0 +1,233 @@
+package com.wafflemkr.points.web.rest;
+
+import com.wafflemkr.points.PointsApp;
+
+import com.wafflemkr.points.config.ApplicationProperties;
+import com.wafflemkr.points.domain.BloodPressure;
+import com.wafflemkr.points.domain.ImportJob;
+import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.domain.Weight;
+import com.wafflemkr.points.domain.enumeration.ImportStatus;
+import com.wafflemkr.points.domain.enumeration.ImportType;
+import com.wafflemkr.points.repository.BloodPressureRepository;
+import com.wafflemkr.points.repository.ImportJobRepository;
+import com.wafflemkr.points.repository.SearchIndexOutboxRepository;
+import com.wafflemkr.points.repository.UserRepository;
+import com.wafflemkr.points.repository.WeightRepository;
+import com.wafflemkr.points.service.BloodPressureStatsService;
+import com.wafflemkr.points.service.ImportJobService;
+import com.wafflemkr.points.service.SearchIndexingService;
+import com.wafflemkr.points.service.mapper.ImportJobMapper;
+import com.wafflemkr.points.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the ImportJobResource REST controller.
+ *
+ * @see ImportJobResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+public class ImportJobResourceIntTest {
+
+    private static final String IMPORTER_LOGIN = "csv-importer";
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private ImportJobMapper importJobMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private WeightRepository weightRepository;
+
+    @Autowired
+    private BloodPressureRepository bloodPressureRepository;
+
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
+    @Autowired
+    private BloodPressureStatsService bloodPressureStatsService;
+
+    @Autowired
+    private SearchIndexOutboxRepository searchIndexOutboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private EntityManager em;
+
+    private ApplicationProperties applicationProperties;
+
+    private MockMvc restImportJobMockMvc;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getCsvImport().setChunkSize(2);
+        // Run the imports in the calling thread, so that they see the test transaction
+        ImportJobService importJobService = new ImportJobService(importJobRepository, importJobMapper, userRepository,
+            weightRepository, bloodPressureRepository, searchIndexingService, bloodPressureStatsService, transactionManager,
+            applicationProperties, Runnable::run);
+        this.restImportJobMockMvc = createMockMvc(importJobService);
+    }
+
+    private MockMvc createMockMvc(ImportJobService importJobService) {
+        final ImportJobResource importJobResource = new ImportJobResource(importJobService);
+        return MockMvcBuilders.standaloneSetup(importJobResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Before
+    public void initTest() {
+        User user = UserResourceIntTest.createEntity(em);
+        user.setLogin(IMPORTER_LOGIN);
+        em.persist(user);
+        searchIndexOutboxRepository.deleteAll();
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(IMPORTER_LOGIN)
+    public void importWeights() throws Exception {
+        int databaseSizeBeforeImport = weightRepository.findAll().size();
+        MockMultipartFile file = new MockMultipartFile("file", "weights.csv", "text/csv",
+            ("timestamp,weight\n" +
+            "2017-01-01T08:00:00Z,80.5\n" +
+            "2017-01-02,80.1\n" +
+            "not a date,80.0\n" +
+            "2017-01-03T08:00:00+01:00,-1\n" +
+            "2017-01-04T08:00:00Z,79.9\n").getBytes(StandardCharsets.UTF_8));
+
+        MvcResult result = restImportJobMockMvc.perform(fileUpload("/api/import-jobs").file(file).param("type", "weight"))
+            .andExpect(status().isAccepted())
+            .andExpect(header().string("Location", startsWith("/api/import-jobs/")))
+            .andExpect(jsonPath("$.type").value("WEIGHT"))
+            .andReturn();
+
+        restImportJobMockMvc.perform(get(result.getResponse().getHeader("Location")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status").value("COMPLETED"))
+            .andExpect(jsonPath("$.importedRows").value(3))
+            .andExpect(jsonPath("$.rejectedRows").value(2))
+            .andExpect(jsonPath("$.userLogin").value(IMPORTER_LOGIN));
+
+        List<Weight> weightList = weightRepository.findAll();
+        assertThat(weightList).hasSize(databaseSizeBeforeImport + 3);
+        assertThat(weightList).filteredOn(weight -> weight.getUser() != null && IMPORTER_LOGIN.equals(weight.getUser().getLogin()))
+            .extracting(Weight::getWeight).containsExactlyInAnyOrder(80.5, 80.1, 79.9);
+        assertThat(searchIndexOutboxRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(IMPORTER_LOGIN)
+    public void importBloodPressures() throws Exception {
+        int databaseSizeBeforeImport = bloodPressureRepository.findAll().size();
+        MockMultipartFile file = new MockMultipartFile("file", "blood-pressures.csv", "text/csv",
+            ("2017-01-01,120,80\n" +
+            "2017-01-02,80,120\n" +
+            "2017-01-03,121,81\n" +
+            "2017-01-04,120.7,80\n" +
+            "2017-01-05,122.0,82\n").getBytes(StandardCharsets.UTF_8));
+
+        MvcResult result = restImportJobMockMvc.perform(fileUpload("/api/import-jobs").file(file).param("type", "blood-pressure"))
+            .andExpect(status().isAccepted())
+            .andReturn();
+
+        restImportJobMockMvc.perform(get(result.getResponse().getHeader("Location")))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.importedRows").value(3))
+            .andExpect(jsonPath("$.rejectedRows").value(2));
+
+        List<BloodPressure> bloodPressureList = bloodPressureRepository.findAll();
+        assertThat(bloodPressureList).hasSize(databaseSizeBeforeImport + 3);
+        assertThat(bloodPressureList).extracting(BloodPressure::getTimestamp).contains(LocalDate.of(2017, 1, 3), LocalDate.of(2017, 1, 5))
+            .doesNotContain(LocalDate.of(2017, 1, 2), LocalDate.of(2017, 1, 4));
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(IMPORTER_LOGIN)
+    public void importWhenTooManyImportsAreInProgress() throws Exception {
+        ImportJobService importJobService = new ImportJobService(importJobRepository, importJobMapper, userRepository,
+            weightRepository, bloodPressureRepository, searchIndexingService, bloodPressureStatsService, transactionManager,
+            applicationProperties, command -> {
+                throw new TaskRejectedException("Executor is full");
+            });
+        int databaseSizeBeforeImport = importJobRepository.findAll().size();
+        MockMultipartFile file = new MockMultipartFile("file", "weights.csv", "text/csv",
+            "2017-01-01,80.5\n".getBytes(StandardCharsets.UTF_8));
+
+        createMockMvc(importJobService).perform(fileUpload("/api/import-jobs").file(file).param("type", "weight"))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "30"));
+
+        // The job is not left pending forever
+        List<ImportJob> importJobList = importJobRepository.findAll();
+        assertThat(importJobList).hasSize(databaseSizeBeforeImport + 1);
+        ImportJob importJob = importJobList.stream().max(Comparator.comparing(ImportJob::getId)).get();
+        assertThat(importJob.getStatus()).isEqualTo(ImportStatus.FAILED);
+        assertThat(importJob.getFinishedDate()).isNotNull();
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(IMPORTER_LOGIN)
+    public void importUnsupportedType() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "points.csv", "text/csv", "2017-01-01,1".getBytes(StandardCharsets.UTF_8));
+
+        restImportJobMockMvc.perform(fileUpload("/api/import-jobs").file(file).param("type", "points"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser("another-user")
+    public void getImportJobOfAnotherUser() throws Exception {
+        User user = userRepository.findOneByLogin(IMPORTER_LOGIN).get();
+        Long id = importJobRepository.saveAndFlush(new ImportJob()
+            .type(ImportType.WEIGHT).user(user)).getId();
+
+        restImportJobMockMvc.perform(get("/api/import-jobs/{id}", id))
+            .andExpect(status().isNotFound());
+    }
+}
@@ -3,11 +3,17 @@ package com.wafflemkr.points.web.rest;
 import com.wafflemkr.points.PointsApp;
 
 import com.wafflemkr.points.domain.Points;
+import com.wafflemkr.points.domain.User;
 import com.wafflemkr.points.repository.PointsRepository;
 import com.wafflemkr.points.repository.search.PointsSearchRepository;
+import com.wafflemkr.points.security.AuthoritiesConstants;
+import com.wafflemkr.points.service.SearchIndexingService;
+import com.wafflemkr.points.service.PointsStatisticsService;
+import com.wafflemkr.points.service.WeeklyPointsService;
 import com.wafflemkr.points.service.dto.PointsDTO;
 import com.wafflemkr.points.service.mapper.PointsMapper;
 import com.wafflemkr.points.web.rest.errors.ExceptionTranslator;
+import com.wafflemkr.points.web.websocket.EntityChangeService;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -16,21 +22,27 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import javax.validation.Validator;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.wafflemkr.points.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -67,6 +79,21 @@ public class PointsResourceIntTest {
     @Autowired
     private PointsSearchRepository pointsSearchRepository;
 
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
+    @Autowired
+    private EntityChangeService entityChangeService;
+
+    @Autowired
+    private WeeklyPointsService weeklyPointsService;
+
+    @Autowired
+    private PointsStatisticsService pointsStatisticsService;
+
+    @Autowired
+    private Validator validator;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -86,7 +113,7 @@ public class PointsResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final PointsResource pointsResource = new PointsResource(pointsRepository, pointsMapper, pointsSearchRepository);
+        final PointsResource pointsResource = new PointsResource(pointsRepository, pointsMapper, pointsSearchRepository, searchIndexingService, weeklyPointsService, pointsStatisticsService, validator, entityChangeService);
         this.restPointsMockMvc = MockMvcBuilders.standaloneSetup(pointsResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -139,6 +166,7 @@ public class PointsResourceIntTest {
         assertThat(testPoints.getNotes()).isEqualTo(DEFAULT_NOTES);
 
         // Validate the Points in Elasticsearch
+        searchIndexingService.flush();
         Points pointsEs = pointsSearchRepository.findOne(testPoints.getId());
         assertThat(pointsEs).isEqualToIgnoringGivenFields(testPoints);
     }
@@ -163,6 +191,34 @@ public class PointsResourceIntTest {
         assertThat(pointsList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    @Transactional
+    public void createPointsBatch() throws Exception {
+        int databaseSizeBeforeCreate = pointsRepository.findAll().size();
+
+        // Create a batch with one invalid item in the middle
+        PointsDTO first = pointsMapper.toDto(points);
+        PointsDTO invalid = pointsMapper.toDto(createEntity(em).notes(null));
+        PointsDTO last = pointsMapper.toDto(createEntity(em).notes(UPDATED_NOTES));
+        restPointsMockMvc.perform(post("/api/points/batch")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(first, invalid, last))))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[0].status").value(201))
+            .andExpect(jsonPath("$.[1].status").value(400))
+            .andExpect(jsonPath("$.[1].index").value(1))
+            .andExpect(jsonPath("$.[2].status").value(201));
+
+        // Validate the valid Points are in the database and in Elasticsearch
+        List<Points> pointsList = pointsRepository.findAll();
+        assertThat(pointsList).hasSize(databaseSizeBeforeCreate + 2);
+        Points testPoints = pointsList.get(pointsList.size() - 1);
+        assertThat(testPoints.getNotes()).isEqualTo(UPDATED_NOTES);
+        searchIndexingService.flush();
+        assertThat(pointsSearchRepository.exists(testPoints.getId())).isTrue();
+    }
+
     @Test
     @Transactional
     public void checkNotesIsRequired() throws Exception {
@@ -184,6 +240,7 @@ public class PointsResourceIntTest {
 
     @Test
     @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
     public void getAllPoints() throws Exception {
         // Initialize the database
         pointsRepository.saveAndFlush(points);
@@ -200,6 +257,59 @@ public class PointsResourceIntTest {
             .andExpect(jsonPath("$.[*].notes").value(hasItem(DEFAULT_NOTES.toString())));
     }
 
+    @Test
+    @Transactional
+    @WithMockUser("points-owner")
+    public void getAllPointsOfCurrentUser() throws Exception {
+        // Initialize the database with points of the current user and of nobody
+        User user = UserResourceIntTest.createEntity(em);
+        user.setLogin("points-owner");
+        em.persist(user);
+        pointsRepository.saveAndFlush(points.user(user));
+        Points otherPoints = pointsRepository.saveAndFlush(createEntity(em));
+
+        restPointsMockMvc.perform(get("/api/points?sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(points.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(otherPoints.getId().intValue()))));
+
+        restPointsMockMvc.perform(get("/api/points?cursor="))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(points.getId().intValue())))
+            .andExpect(jsonPath("$.[*].id").value(not(hasItem(otherPoints.getId().intValue()))));
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
+    public void getAllPointsByCursor() throws Exception {
+        // Initialize the database with points more recent than any other
+        Points oldest = pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(3000, 1, 1)));
+        Points middle = pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(3000, 1, 2)));
+        Points newest = pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(3000, 1, 3)));
+
+        // Get the first page, most recent first
+        MvcResult result = restPointsMockMvc.perform(get("/api/points?cursor=&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[0].id").value(newest.getId().intValue()))
+            .andExpect(jsonPath("$.[1].id").value(middle.getId().intValue()))
+            .andReturn();
+        String link = result.getResponse().getHeader(HttpHeaders.LINK);
+        assertThat(link).endsWith("; rel=\"next\"");
+
+        // Follow the next link
+        String next = link.substring(link.indexOf("/api/"), link.indexOf('>'));
+        restPointsMockMvc.perform(get(next))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].id").value(oldest.getId().intValue()));
+
+        restPointsMockMvc.perform(get("/api/points?cursor=invalid"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getPoints() throws Exception {
@@ -262,6 +372,7 @@ public class PointsResourceIntTest {
         assertThat(testPoints.getNotes()).isEqualTo(UPDATED_NOTES);
 
         // Validate the Points in Elasticsearch
+        searchIndexingService.flush();
         Points pointsEs = pointsSearchRepository.findOne(testPoints.getId());
         assertThat(pointsEs).isEqualToIgnoringGivenFields(testPoints);
     }
@@ -299,6 +410,7 @@ public class PointsResourceIntTest {
             .andExpect(status().isOk());
 
         // Validate Elasticsearch is empty
+        searchIndexingService.flush();
         boolean pointsExistsInEs = pointsSearchRepository.exists(points.getId());
         assertThat(pointsExistsInEs).isFalse();
 
@@ -307,6 +419,97 @@ public class PointsResourceIntTest {
         assertThat(pointsList).hasSize(databaseSizeBeforeDelete - 1);
     }
 
+    @Test
+    @Transactional
+    @WithMockUser("weekly-points")
+    public void getWeeklyPoints() throws Exception {
+        User user = UserResourceIntTest.createEntity(em);
+        user.setLogin("weekly-points");
+        em.persist(user);
+        em.flush();
+        points.setUser(user);
+
+        // Create two points in the same week, then update and delete one of them through the API
+        restPointsMockMvc.perform(post("/api/points")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(pointsMapper.toDto(points))))
+            .andExpect(status().isCreated());
+        Points other = createEntity(em).user(user);
+        pointsRepository.saveAndFlush(other);
+        weeklyPointsService.add(other);
+
+        em.detach(other);
+        other.exercise(UPDATED_EXERCISE).meals(UPDATED_MEALS).alcohol(UPDATED_ALCOHOL);
+        restPointsMockMvc.perform(put("/api/points")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(pointsMapper.toDto(other))))
+            .andExpect(status().isOk());
+
+        restPointsMockMvc.perform(get("/api/points/weekly?date={date}", DEFAULT_DATE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.weekStart").value(WeeklyPointsService.weekStart(DEFAULT_DATE).toString()))
+            .andExpect(jsonPath("$.exercise").value(DEFAULT_EXERCISE + UPDATED_EXERCISE))
+            .andExpect(jsonPath("$.meals").value(DEFAULT_MEALS + UPDATED_MEALS))
+            .andExpect(jsonPath("$.alcohol").value(DEFAULT_ALCOHOL + UPDATED_ALCOHOL));
+
+        restPointsMockMvc.perform(delete("/api/points/{id}", other.getId())
+            .accept(TestUtil.APPLICATION_JSON_UTF8))
+            .andExpect(status().isOk());
+
+        restPointsMockMvc.perform(get("/api/points/weekly?date={date}", DEFAULT_DATE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.exercise").value(DEFAULT_EXERCISE))
+            .andExpect(jsonPath("$.meals").value(DEFAULT_MEALS))
+            .andExpect(jsonPath("$.alcohol").value(DEFAULT_ALCOHOL))
+            .andExpect(jsonPath("$.total").value(DEFAULT_EXERCISE + DEFAULT_MEALS + DEFAULT_ALCOHOL));
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser("points-range")
+    public void getPointsRange() throws Exception {
+        User user = UserResourceIntTest.createEntity(em);
+        user.setLogin("points-range");
+        em.persist(user);
+        // Monday 2018-01-15 and Wednesday 2018-01-17 are in the same week, 2018-01-22 and 2018-01-23 in the next one
+        pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(2018, 1, 15)).user(user));
+        pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(2018, 1, 17)).exercise(0).user(user));
+        pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(2018, 1, 22)).user(user));
+        pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(2018, 1, 23)).exercise(null).user(user));
+        pointsRepository.saveAndFlush(createEntity(em).date(LocalDate.of(2018, 2, 1)).user(user));
+
+        restPointsMockMvc.perform(get("/api/points/range?from=2018-01-01&to=2018-01-31&groupBy=week"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].periodStart").value("2018-01-15"))
+            .andExpect(jsonPath("$.[0].exercise").value(DEFAULT_EXERCISE))
+            .andExpect(jsonPath("$.[0].meals").value(2 * DEFAULT_MEALS))
+            .andExpect(jsonPath("$.[0].entries").value(2))
+            .andExpect(jsonPath("$.[0].exerciseAverage").value(DEFAULT_EXERCISE / 2.0))
+            .andExpect(jsonPath("$.[1].periodStart").value("2018-01-22"))
+            .andExpect(jsonPath("$.[1].entries").value(2))
+            .andExpect(jsonPath("$.[1].exerciseAverage").value((double) DEFAULT_EXERCISE))
+            .andExpect(jsonPath("$.[1].mealsAverage").value((double) DEFAULT_MEALS));
+
+        restPointsMockMvc.perform(get("/api/points/range?from=2018-01-01&to=2018-12-31&groupBy=month"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].periodStart").value("2018-01-01"))
+            .andExpect(jsonPath("$.[0].entries").value(4))
+            .andExpect(jsonPath("$.[0].exerciseAverage").value(DEFAULT_EXERCISE * 2 / 3.0))
+            .andExpect(jsonPath("$.[1].periodStart").value("2018-02-01"));
+
+        restPointsMockMvc.perform(get("/api/points/range?from=2018-01-15&to=2018-01-15"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].total").value(DEFAULT_EXERCISE + DEFAULT_MEALS + DEFAULT_ALCOHOL));
+
+        restPointsMockMvc.perform(get("/api/points/range?from=2018-01-01&to=2018-01-31&groupBy=year"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void searchPoints() throws Exception {
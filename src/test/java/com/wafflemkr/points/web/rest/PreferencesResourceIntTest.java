@@ -5,6 +5,7 @@ import com.wafflemkr.points.PointsApp;
 import com.wafflemkr.points.domain.Preferences;
 import com.wafflemkr.points.repository.PreferencesRepository;
 import com.wafflemkr.points.repository.search.PreferencesSearchRepository;
+import com.wafflemkr.points.service.SearchIndexingService;
 import com.wafflemkr.points.service.dto.PreferencesDTO;
 import com.wafflemkr.points.service.mapper.PreferencesMapper;
 import com.wafflemkr.points.web.rest.errors.ExceptionTranslator;
@@ -57,6 +58,9 @@ public class PreferencesResourceIntTest {
     @Autowired
     private PreferencesSearchRepository preferencesSearchRepository;
 
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -76,7 +80,7 @@ public class PreferencesResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final PreferencesResource preferencesResource = new PreferencesResource(preferencesRepository, preferencesMapper, preferencesSearchRepository);
+        final PreferencesResource preferencesResource = new PreferencesResource(preferencesRepository, preferencesMapper, preferencesSearchRepository, searchIndexingService);
         this.restPreferencesMockMvc = MockMvcBuilders.standaloneSetup(preferencesResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -123,6 +127,7 @@ public class PreferencesResourceIntTest {
         assertThat(testPreferences.getWeightUnit()).isEqualTo(DEFAULT_WEIGHT_UNIT);
 
         // Validate the Preferences in Elasticsearch
+        searchIndexingService.flush();
         Preferences preferencesEs = preferencesSearchRepository.findOne(testPreferences.getId());
         assertThat(preferencesEs).isEqualToIgnoringGivenFields(testPreferences);
     }
@@ -253,6 +258,7 @@ public class PreferencesResourceIntTest {
         assertThat(testPreferences.getWeightUnit()).isEqualTo(UPDATED_WEIGHT_UNIT);
 
         // Validate the Preferences in Elasticsearch
+        searchIndexingService.flush();
         Preferences preferencesEs = preferencesSearchRepository.findOne(testPreferences.getId());
         assertThat(preferencesEs).isEqualToIgnoringGivenFields(testPreferences);
     }
@@ -290,6 +296,7 @@ public class PreferencesResourceIntTest {
             .andExpect(status().isOk());
 
         // Validate Elasticsearch is empty
+        searchIndexingService.flush();
         boolean preferencesExistsInEs = preferencesSearchRepository.exists(preferences.getId());
         assertThat(preferencesExistsInEs).isFalse();
 
@@ -0,0 +1,95 @@
+package com.wafflemkr.points.web.rest;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.config.metrics.QueryStatistics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the QueriesResource REST controller.
+ *
+ * @see QueriesResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+public class QueriesResourceIntTest {
+
+    private static final String USER_QUERY = "select login from jhi_user where login = ?";
+
+    @Autowired
+    private QueryStatistics queryStatistics;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private MockMvc restQueriesMockMvc;
+
+    @Before
+    public void setup() {
+        QueriesResource queriesResource = new QueriesResource(queryStatistics);
+        this.restQueriesMockMvc = MockMvcBuilders
+            .standaloneSetup(queriesResource)
+            .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        queryStatistics.reset();
+    }
+
+    @Test
+    public void getQueries() throws Exception {
+        jdbcTemplate.queryForList("select login from jhi_user where login = 'admin'");
+        jdbcTemplate.queryForList("select login from jhi_user where login = ?", "user");
+
+        restQueriesMockMvc.perform(get("/management/queries?sort=MAX&size=100"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[*].statement").value(hasItem(USER_QUERY)));
+
+        QueryStatistics.Statement statement = queryStatistics.getStatements().stream()
+            .filter(s -> s.getShape().equals(USER_QUERY)).findFirst().get();
+        assertThat(statement.getCount()).isEqualTo(2);
+        assertThat(statement.getRows()).isEqualTo(2);
+    }
+
+    @Test
+    public void getQueriesWithSize() throws Exception {
+        jdbcTemplate.queryForList("select login from jhi_user where login = 'admin'");
+        jdbcTemplate.queryForList("select count(*) from jhi_user");
+
+        restQueriesMockMvc.perform(get("/management/queries?size=1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    public void resetQueries() throws Exception {
+        jdbcTemplate.queryForList("select login from jhi_user where login = 'admin'");
+        assertThat(queryStatistics.getStatements()).isNotEmpty();
+
+        restQueriesMockMvc.perform(delete("/management/queries"))
+            .andExpect(status().isNoContent());
+
+        assertThat(queryStatistics.getStatements()).isEmpty();
+    }
+}
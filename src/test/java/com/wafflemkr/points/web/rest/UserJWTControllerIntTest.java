@@ -1,24 +1,46 @@
 package com.wafflemkr.points.web.rest;
 
 import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.RevokedToken;
 import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.repository.RevokedTokenRepository;
 import com.wafflemkr.points.repository.UserRepository;
+import com.wafflemkr.points.security.PasswordHashingExecutor;
 import com.wafflemkr.points.security.jwt.TokenProvider;
+import com.wafflemkr.points.service.TokenRevocationService;
+import com.wafflemkr.points.service.UserService;
 import com.wafflemkr.points.web.rest.vm.LoginVM;
+import com.wafflemkr.points.web.rest.vm.RefreshTokenVM;
 import com.wafflemkr.points.web.rest.errors.ExceptionTranslator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
@@ -44,64 +66,70 @@ public class UserJWTControllerIntTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private UserService userService;
+
     @Autowired
     private ExceptionTranslator exceptionTranslator;
 
     private MockMvc mockMvc;
 
+    private final List<User> committedUsers = new ArrayList<>();
+
     @Before
     public void setup() {
-        UserJWTController userJWTController = new UserJWTController(tokenProvider, authenticationManager);
+        UserJWTController userJWTController = new UserJWTController(tokenProvider, authenticationManager, userDetailsService,
+            tokenRevocationService, passwordHashingExecutor, userService);
         this.mockMvc = MockMvcBuilders.standaloneSetup(userJWTController)
             .setControllerAdvice(exceptionTranslator)
             .build();
     }
 
+    @After
+    public void tearDown() {
+        userRepository.delete(committedUsers);
+    }
+
     @Test
-    @Transactional
     public void testAuthorize() throws Exception {
-        User user = new User();
-        user.setLogin("user-jwt-controller");
-        user.setEmail("user-jwt-controller@example.com");
-        user.setActivated(true);
-        user.setPassword(passwordEncoder.encode("test"));
-
-        userRepository.saveAndFlush(user);
+        createCommittedUser("user-jwt-controller", passwordEncoder.encode("test"));
 
         LoginVM login = new LoginVM();
         login.setUsername("user-jwt-controller");
         login.setPassword("test");
-        mockMvc.perform(post("/api/authenticate")
-            .contentType(TestUtil.APPLICATION_JSON_UTF8)
-            .content(TestUtil.convertObjectToJsonBytes(login)))
+        authorize(login)
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.id_token").isString())
             .andExpect(jsonPath("$.id_token").isNotEmpty())
+            .andExpect(jsonPath("$.refresh_token").isNotEmpty())
             .andExpect(header().string("Authorization", not(nullValue())))
             .andExpect(header().string("Authorization", not(isEmptyString())));
     }
 
     @Test
-    @Transactional
     public void testAuthorizeWithRememberMe() throws Exception {
-        User user = new User();
-        user.setLogin("user-jwt-controller-remember-me");
-        user.setEmail("user-jwt-controller-remember-me@example.com");
-        user.setActivated(true);
-        user.setPassword(passwordEncoder.encode("test"));
-
-        userRepository.saveAndFlush(user);
+        createCommittedUser("user-jwt-controller-remember-me", passwordEncoder.encode("test"));
 
         LoginVM login = new LoginVM();
         login.setUsername("user-jwt-controller-remember-me");
         login.setPassword("test");
         login.setRememberMe(true);
-        mockMvc.perform(post("/api/authenticate")
-            .contentType(TestUtil.APPLICATION_JSON_UTF8)
-            .content(TestUtil.convertObjectToJsonBytes(login)))
+        authorize(login)
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.id_token").isString())
             .andExpect(jsonPath("$.id_token").isNotEmpty())
@@ -110,16 +138,144 @@ public class UserJWTControllerIntTest {
     }
 
     @Test
-    @Transactional
     public void testAuthorizeFails() throws Exception {
         LoginVM login = new LoginVM();
         login.setUsername("wrong-user");
         login.setPassword("wrong password");
-        mockMvc.perform(post("/api/authenticate")
-            .contentType(TestUtil.APPLICATION_JSON_UTF8)
-            .content(TestUtil.convertObjectToJsonBytes(login)))
+        authorize(login)
             .andExpect(status().isUnauthorized())
             .andExpect(jsonPath("$.id_token").doesNotExist())
             .andExpect(header().doesNotExist("Authorization"));
     }
+
+    @Test
+    public void testAuthorizeRehashesPassword() throws Exception {
+        // The tests hash passwords with a cost of 4
+        User user = createCommittedUser("user-jwt-controller-rehash", new BCryptPasswordEncoder(5).encode("test"));
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-rehash");
+        login.setPassword("test");
+        authorize(login)
+            .andExpect(status().isOk());
+
+        String password = userRepository.findOne(user.getId()).getPassword();
+        assertThat(password).startsWith("$2a$04$");
+        assertThat(passwordEncoder.matches("test", password)).isTrue();
+    }
+
+    @Test
+    @Transactional
+    public void testRefresh() throws Exception {
+        String refreshToken = authenticate("user-jwt-controller-refresh").getRefreshToken();
+
+        String response = mockMvc.perform(post("/api/authenticate/refresh")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(refreshTokenVM(refreshToken))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id_token").isNotEmpty())
+            .andExpect(jsonPath("$.refresh_token").isNotEmpty())
+            .andExpect(header().string("Authorization", not(isEmptyString())))
+            .andReturn().getResponse().getContentAsString();
+        String accessToken = new ObjectMapper().readTree(response).get("id_token").asText();
+        assertThat(tokenProvider.resolveAuthentication(accessToken).get().getName()).isEqualTo("user-jwt-controller-refresh");
+
+        // A refresh token can only be used once
+        mockMvc.perform(post("/api/authenticate/refresh")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(refreshTokenVM(refreshToken))))
+            .andExpect(status().isUnauthorized())
+            .andExpect(jsonPath("$.id_token").doesNotExist());
+    }
+
+    @Test
+    public void testRefreshWithTokenRevokedByAnotherNode() throws Exception {
+        createCommittedUser("user-jwt-controller-refresh-node", passwordEncoder.encode("test"));
+        Authentication authentication = authenticationManager.authenticate(
+            new UsernamePasswordAuthenticationToken("user-jwt-controller-refresh-node", "test"));
+        String refreshToken = tokenProvider.createRefreshToken(authentication, false);
+        Claims claims = tokenProvider.parseRefreshToken(refreshToken).get();
+
+        // Revoked in the database only, as by a concurrent refresh on a node not synchronized with yet
+        RevokedToken revokedToken = revokedTokenRepository.saveAndFlush(new RevokedToken()
+            .tokenId(claims.getId())
+            .expirationDate(claims.getExpiration().toInstant()));
+        try {
+            mockMvc.perform(post("/api/authenticate/refresh")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(refreshTokenVM(refreshToken))))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.id_token").doesNotExist());
+        } finally {
+            revokedTokenRepository.delete(revokedToken);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void testRefreshWithAccessToken() throws Exception {
+        String accessToken = authenticate("user-jwt-controller-refresh-access").getIdToken();
+
+        mockMvc.perform(post("/api/authenticate/refresh")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(refreshTokenVM(accessToken))))
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @Transactional
+    public void testLogout() throws Exception {
+        UserJWTController.JWTToken tokens = authenticate("user-jwt-controller-logout");
+        SecurityContextHolder.getContext().setAuthentication(tokenProvider.resolveAuthentication(tokens.getIdToken()).get());
+
+        mockMvc.perform(post("/api/logout")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(refreshTokenVM(tokens.getRefreshToken()))))
+            .andExpect(status().isOk());
+
+        assertThat(tokenProvider.resolveAuthentication(tokens.getIdToken())).isEmpty();
+        assertThat(tokenProvider.parseRefreshToken(tokens.getRefreshToken())).isEmpty();
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Authentication runs on the password hashing threads, so its users must be committed.
+     */
+    private User createCommittedUser(String login, String encodedPassword) {
+        User user = new User();
+        user.setLogin(login);
+        user.setEmail(login + "@example.com");
+        user.setActivated(true);
+        user.setPassword(encodedPassword);
+        committedUsers.add(userRepository.saveAndFlush(user));
+        return user;
+    }
+
+    private ResultActions authorize(LoginVM login) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(post("/api/authenticate")
+            .contentType(TestUtil.APPLICATION_JSON_UTF8)
+            .content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+
+    private UserJWTController.JWTToken authenticate(String login) {
+        User user = new User();
+        user.setLogin(login);
+        user.setEmail(login + "@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+        userRepository.saveAndFlush(user);
+
+        Authentication authentication = authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(login, "test"));
+        return new UserJWTController.JWTToken(tokenProvider.createToken(authentication),
+            tokenProvider.createRefreshToken(authentication, false));
+    }
+
+    private RefreshTokenVM refreshTokenVM(String refreshToken) {
+        RefreshTokenVM refreshTokenVM = new RefreshTokenVM();
+        refreshTokenVM.setRefreshToken(refreshToken);
+        return refreshTokenVM;
+    }
 }
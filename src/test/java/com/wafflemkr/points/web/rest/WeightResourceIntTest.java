@@ -2,12 +2,17 @@ package com.wafflemkr.points.web.rest;
 
 import com.wafflemkr.points.PointsApp;
 
+import com.wafflemkr.points.domain.User;
 import com.wafflemkr.points.domain.Weight;
 import com.wafflemkr.points.repository.WeightRepository;
 import com.wafflemkr.points.repository.search.WeightSearchRepository;
+import com.wafflemkr.points.security.AuthoritiesConstants;
+import com.wafflemkr.points.service.SearchIndexingService;
+import com.wafflemkr.points.service.WeightSeriesService;
 import com.wafflemkr.points.service.dto.WeightDTO;
 import com.wafflemkr.points.service.mapper.WeightMapper;
 import com.wafflemkr.points.web.rest.errors.ExceptionTranslator;
+import com.wafflemkr.points.web.websocket.EntityChangeService;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -18,6 +23,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -61,6 +67,15 @@ public class WeightResourceIntTest {
     @Autowired
     private WeightSearchRepository weightSearchRepository;
 
+    @Autowired
+    private SearchIndexingService searchIndexingService;
+
+    @Autowired
+    private EntityChangeService entityChangeService;
+
+    @Autowired
+    private WeightSeriesService weightSeriesService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
@@ -80,7 +95,7 @@ public class WeightResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final WeightResource weightResource = new WeightResource(weightRepository, weightMapper, weightSearchRepository);
+        final WeightResource weightResource = new WeightResource(weightRepository, weightMapper, weightSearchRepository, searchIndexingService, weightSeriesService, entityChangeService);
         this.restWeightMockMvc = MockMvcBuilders.standaloneSetup(weightResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -127,6 +142,7 @@ public class WeightResourceIntTest {
         assertThat(testWeight.getWeight()).isEqualTo(DEFAULT_WEIGHT);
 
         // Validate the Weight in Elasticsearch
+        searchIndexingService.flush();
         Weight weightEs = weightSearchRepository.findOne(testWeight.getId());
         assertThat(testWeight.getTimestamp()).isEqualTo(testWeight.getTimestamp());
         assertThat(weightEs).isEqualToIgnoringGivenFields(testWeight, "timestamp");
@@ -154,6 +170,7 @@ public class WeightResourceIntTest {
 
     @Test
     @Transactional
+    @WithMockUser(authorities = AuthoritiesConstants.ADMIN)
     public void getAllWeights() throws Exception {
         // Initialize the database
         weightRepository.saveAndFlush(weight);
@@ -167,6 +184,44 @@ public class WeightResourceIntTest {
             .andExpect(jsonPath("$.[*].weight").value(hasItem(DEFAULT_WEIGHT.doubleValue())));
     }
 
+    @Test
+    @Transactional
+    @WithMockUser("weight-series")
+    public void getWeightSeries() throws Exception {
+        User user = UserResourceIntTest.createEntity(em);
+        user.setLogin("weight-series");
+        em.persist(user);
+        ZonedDateTime day = ZonedDateTime.of(2018, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        weightRepository.saveAndFlush(new Weight().timestamp(day.plusHours(6)).weight(70D).user(user));
+        weightRepository.saveAndFlush(new Weight().timestamp(day.plusHours(12)).weight(72D).user(user));
+        weightRepository.saveAndFlush(new Weight().timestamp(day.plusHours(18)).weight(71D).user(user));
+        weightRepository.saveAndFlush(new Weight().timestamp(day.plusHours(30)).weight(69D).user(user));
+        weightRepository.saveAndFlush(new Weight().timestamp(day.plusHours(36)).weight(73D).user(user));
+        weightRepository.saveAndFlush(new Weight().timestamp(day.plusDays(5)).weight(60D).user(user));
+
+        restWeightMockMvc.perform(get("/api/weights/series?from=2018-01-01&to=2018-01-02&buckets=2"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].min").value(70D))
+            .andExpect(jsonPath("$.[0].max").value(72D))
+            .andExpect(jsonPath("$.[0].average").value(71D))
+            .andExpect(jsonPath("$.[0].last").value(71D))
+            .andExpect(jsonPath("$.[0].count").value(3))
+            .andExpect(jsonPath("$.[1].count").value(2))
+            .andExpect(jsonPath("$.[1].last").value(73D));
+
+        restWeightMockMvc.perform(get("/api/weights/series/lttb?from=2018-01-01&to=2018-01-02&points=3"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3))
+            .andExpect(jsonPath("$.[0].weight").value(70D))
+            .andExpect(jsonPath("$.[1].weight").value(69D))
+            .andExpect(jsonPath("$.[2].weight").value(73D));
+
+        restWeightMockMvc.perform(get("/api/weights/series?from=2018-01-02&to=2018-01-01"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getWeight() throws Exception {
@@ -220,6 +275,7 @@ public class WeightResourceIntTest {
         assertThat(testWeight.getWeight()).isEqualTo(UPDATED_WEIGHT);
 
         // Validate the Weight in Elasticsearch
+        searchIndexingService.flush();
         Weight weightEs = weightSearchRepository.findOne(testWeight.getId());
         assertThat(testWeight.getTimestamp()).isEqualTo(testWeight.getTimestamp());
         assertThat(weightEs).isEqualToIgnoringGivenFields(testWeight, "timestamp");
@@ -258,6 +314,7 @@ public class WeightResourceIntTest {
             .andExpect(status().isOk());
 
         // Validate Elasticsearch is empty
+        searchIndexingService.flush();
         boolean weightExistsInEs = weightSearchRepository.exists(weight.getId());
         assertThat(weightExistsInEs).isFalse();
 
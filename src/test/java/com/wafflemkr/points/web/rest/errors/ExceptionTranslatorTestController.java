@@ -58,6 +58,11 @@ public class ExceptionTranslatorTestController {
         throw new BadCredentialsException("test authentication failed!");
     }
 
+    @GetMapping("/test/too-many-requests")
+    public void tooManyRequests() {
+        throw new TooManyRequestsException("test too many requests", 3);
+    }
+
     @GetMapping("/test/response-status")
     public void exceptionWithReponseStatus() {
         throw new TestResponseStatusException();
@@ -2,10 +2,14 @@ package com.wafflemkr.points.web.rest.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+
+import com.wafflemkr.points.web.rest.errors.BadRequestAlertException;
 
 import org.junit.Test;
 import org.springframework.data.domain.Page;
@@ -41,6 +45,28 @@ public class PaginationUtilUnitTest {
         assertTrue(Long.valueOf(xTotalCountHeaders.get(0)).equals(400L));
     }
 
+    @Test
+    public void generateKeysetPaginationHttpHeadersTest() {
+        String baseUrl = "/api/example";
+        String cursor = KeysetCursor.encode("2018-01-19", 1001L);
+        HttpHeaders headers = PaginationUtil.generateKeysetPaginationHttpHeaders(cursor, 20, baseUrl);
+        List<String> strHeaders = headers.get(HttpHeaders.LINK);
+        assertNotNull(strHeaders);
+        assertEquals("</api/example?cursor=" + cursor + "&size=20>; rel=\"next\"", strHeaders.get(0));
+        assertNull(headers.get("X-Total-Count"));
+
+        KeysetCursor<String> decoded = KeysetCursor.decode(cursor, Function.identity(), "example");
+        assertEquals("2018-01-19", decoded.getKey());
+        assertEquals(Long.valueOf(1001L), decoded.getId());
+
+        assertNull(PaginationUtil.generateKeysetPaginationHttpHeaders(null, 20, baseUrl).get(HttpHeaders.LINK));
+    }
+
+    @Test(expected = BadRequestAlertException.class)
+    public void invalidKeysetCursorTest() {
+        KeysetCursor.decode("not a cursor", Function.identity(), "example");
+    }
+
     @Test
     public void commaTest() {
         String baseUrl = "/api/_search/example";
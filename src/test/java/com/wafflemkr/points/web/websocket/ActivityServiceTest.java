@@ -0,0 +1,128 @@
+package com.wafflemkr.points.web.websocket;
+
+import com.wafflemkr.points.web.websocket.dto.ActivityDTO;
+import com.wafflemkr.points.web.websocket.dto.ActivitySnapshotDTO;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpSubscriptionMatcher;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.wafflemkr.points.config.WebsocketConfiguration.IP_ADDRESS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the ActivityService.
+ *
+ * @see ActivityService
+ */
+public class ActivityServiceTest {
+
+    private SimpMessageSendingOperations messagingTemplate;
+
+    private SimpUserRegistry userRegistry;
+
+    private ActivityService activityService;
+
+    @Before
+    public void setup() {
+        messagingTemplate = mock(SimpMessageSendingOperations.class);
+        userRegistry = mock(SimpUserRegistry.class);
+        when(userRegistry.findSubscriptions(any(SimpSubscriptionMatcher.class)))
+            .thenReturn(Collections.singleton(mock(SimpSubscription.class)));
+        activityService = new ActivityService(messagingTemplate, userRegistry);
+    }
+
+    @Test
+    public void testActivitiesAreCoalescedBySession() {
+        visit("session-1", "user", "home");
+        visit("session-1", "user", "points");
+        visit("session-2", "admin", "audits");
+
+        assertThat(activityService.sendChanges()).isTrue();
+
+        ActivitySnapshotDTO snapshot = sentSnapshot();
+        assertThat(snapshot.isFull()).isFalse();
+        assertThat(snapshot.getActivities()).extracting("sessionId", "page")
+            .containsExactlyInAnyOrder(tuple("session-1", "points"), tuple("session-2", "audits"));
+        assertThat(snapshot.getRemovedSessionIds()).isEmpty();
+    }
+
+    @Test
+    public void testOnlyChangesAreSent() {
+        visit("session-1", "user", "home");
+        visit("session-2", "admin", "audits");
+        activityService.sendChanges();
+        reset(messagingTemplate);
+
+        assertThat(activityService.sendChanges()).isFalse();
+        verifyZeroInteractions(messagingTemplate);
+
+        visit("session-2", "admin", "tracker");
+        disconnect("session-1");
+        assertThat(activityService.sendChanges()).isTrue();
+
+        ActivitySnapshotDTO snapshot = sentSnapshot();
+        assertThat(snapshot.getActivities()).extracting("page").containsExactly("tracker");
+        assertThat(snapshot.getRemovedSessionIds()).containsExactly("session-1");
+    }
+
+    @Test
+    public void testNewSubscriberGetsAllActivities() {
+        visit("session-1", "user", "home");
+        visit("session-2", "admin", "audits");
+        disconnect("session-2");
+
+        ActivitySnapshotDTO snapshot = activityService.subscribeTracker();
+
+        assertThat(snapshot.isFull()).isTrue();
+        assertThat(snapshot.getActivities()).extracting("sessionId").containsExactly("session-1");
+    }
+
+    @Test
+    public void testNothingIsSentWithoutTracker() {
+        when(userRegistry.findSubscriptions(any(SimpSubscriptionMatcher.class))).thenReturn(Collections.emptySet());
+        visit("session-1", "user", "home");
+
+        assertThat(activityService.sendChanges()).isFalse();
+        verifyZeroInteractions(messagingTemplate);
+    }
+
+    private void visit(String sessionId, String login, String page) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+        headers.setSessionId(sessionId);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(IP_ADDRESS, "127.0.0.1");
+        headers.setSessionAttributes(attributes);
+        ActivityDTO activity = new ActivityDTO();
+        activity.setPage(page);
+        activityService.sendActivity(activity, headers, () -> login);
+    }
+
+    private void disconnect(String sessionId) {
+        activityService.onApplicationEvent(new SessionDisconnectEvent(this,
+            MessageBuilder.withPayload(new byte[0]).build(), sessionId, CloseStatus.NORMAL));
+    }
+
+    private ActivitySnapshotDTO sentSnapshot() {
+        ArgumentCaptor<ActivitySnapshotDTO> snapshot = ArgumentCaptor.forClass(ActivitySnapshotDTO.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/tracker"), snapshot.capture());
+        return snapshot.getValue();
+    }
+}
@@ -0,0 +1,121 @@
+package com.wafflemkr.points.web.websocket;
+
+import com.wafflemkr.points.PointsApp;
+import com.wafflemkr.points.domain.User;
+import com.wafflemkr.points.repository.UserRepository;
+import com.wafflemkr.points.service.dto.PointsDTO;
+import com.wafflemkr.points.web.websocket.dto.EntityChangeDTO;
+import com.wafflemkr.points.web.websocket.dto.EntityChangeDTO.Action;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the EntityChangeService.
+ *
+ * @see EntityChangeService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = PointsApp.class)
+public class EntityChangeServiceIntTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private SimpMessageSendingOperations messagingTemplate;
+
+    private EntityChangeService entityChangeService;
+
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        entityChangeService = new EntityChangeService(messagingTemplate, userRepository);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        user = userRepository.findOneByLogin("user").get();
+    }
+
+    @Test
+    public void assertThatChangesAreSentAfterCommit() {
+        PointsDTO pointsDTO = new PointsDTO();
+        pointsDTO.setId(1L);
+        transactionTemplate.execute(status -> {
+            entityChangeService.created(EntityChangeService.POINTS, user, 1L, pointsDTO);
+            verifyZeroInteractions(messagingTemplate);
+            return null;
+        });
+
+        ArgumentCaptor<EntityChangeDTO> changeCaptor = ArgumentCaptor.forClass(EntityChangeDTO.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("user"), eq("/queue/points"), changeCaptor.capture());
+        EntityChangeDTO change = changeCaptor.getValue();
+        assertThat(change.getEntityType()).isEqualTo(EntityChangeService.POINTS);
+        assertThat(change.getAction()).isEqualTo(Action.CREATED);
+        assertThat(change.getIds()).containsExactly(1L);
+        assertThat(change.getEntities()).containsExactly(pointsDTO);
+    }
+
+    @Test
+    public void assertThatRolledBackChangesAreNotSent() {
+        transactionTemplate.execute(status -> {
+            entityChangeService.deleted(EntityChangeService.WEIGHTS, user, 1L);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        verifyZeroInteractions(messagingTemplate);
+    }
+
+    @Test
+    public void assertThatChangesOfATransactionAreSentTogether() {
+        User owner = new User();
+        owner.setId(user.getId());
+        transactionTemplate.execute(status -> {
+            for (long id = 1; id <= EntityChangeService.MAX_ENTITIES_PER_MESSAGE + 1; id++) {
+                entityChangeService.deleted(EntityChangeService.BLOOD_PRESSURES, owner, id);
+            }
+            return null;
+        });
+
+        ArgumentCaptor<EntityChangeDTO> changeCaptor = ArgumentCaptor.forClass(EntityChangeDTO.class);
+        verify(messagingTemplate, times(2)).convertAndSendToUser(eq("user"), eq("/queue/blood-pressures"), changeCaptor.capture());
+        List<EntityChangeDTO> changes = changeCaptor.getAllValues();
+        assertThat(changes.get(0).getIds()).hasSize(EntityChangeService.MAX_ENTITIES_PER_MESSAGE);
+        assertThat(changes.get(1).getIds()).containsExactly(EntityChangeService.MAX_ENTITIES_PER_MESSAGE + 1L);
+        assertThat(changes.get(0).getEntities()).isNull();
+    }
+
+    @Test
+    public void assertThatChangesWithoutOwnerAreNotSent() {
+        transactionTemplate.execute(status -> {
+            entityChangeService.updated(EntityChangeService.POINTS, null, 1L, new PointsDTO());
+            return null;
+        });
+
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+    }
+}